@@ -0,0 +1,117 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Values of variables for one evaluation of a {@link PreparedExpression}.
+ * 
+ * Bindings are light weight, and are meant to be created for every evaluation, like for every request. These are not
+ * thread safe, so should not be changed while an evaluation using these is running.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public final class Bindings
+{
+
+	/**
+	 * Values of variables, keyed by variable name
+	 */
+	private final Map<String, Object>	values;
+
+	/**
+	 * Constructs empty Bindings
+	 */
+	public Bindings()
+	{
+		values = new HashMap<String, Object>();
+	}
+
+	/**
+	 * Constructs the Bindings with given values of variables
+	 * 
+	 * @param values the values keyed by variable name
+	 */
+	public Bindings( Map<String, ? extends Object> values )
+	{
+		if( values == null )
+		{
+			throw new IllegalArgumentException( "Values can't be null." );
+		}
+		this.values = new HashMap<String, Object>( values );
+	}
+
+	/**
+	 * Binds the value to variable. Value may be null.
+	 * 
+	 * @param variableName name of the variable
+	 * @param value value of the variable
+	 * @return this Bindings, so values can be bound in chain
+	 */
+	public Bindings bind( String variableName, Object value )
+	{
+		if( variableName == null )
+		{
+			throw new IllegalArgumentException( "Variable name can't be null." );
+		}
+		values.put( variableName, value );
+		return this;
+	}
+
+	/**
+	 * Checks whether a value is bound to the variable
+	 * 
+	 * @param variableName name of the variable
+	 * @return <code>true</code> if a value, even null, is bound
+	 */
+	public boolean isBound( String variableName )
+	{
+		return values.containsKey( variableName );
+	}
+
+	/**
+	 * Returns the value bound to variable
+	 * 
+	 * @param variableName name of the variable
+	 * @return the value, null if no value is bound
+	 */
+	public Object getValue( String variableName )
+	{
+		return values.get( variableName );
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Bindings" + values;
+	}
+}
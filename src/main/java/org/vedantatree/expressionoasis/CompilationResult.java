@@ -0,0 +1,130 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis;
+
+import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.expressions.Expression;
+
+
+/**
+ * Result of compiling an expression in a bulk compilation. It has either the compiled expression, or the error which
+ * failed the compilation of this expression, so one invalid expression does not fail the whole batch. See
+ * {@link Compiler#compileAll(java.util.Collection, ExpressionContext, boolean)}.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public final class CompilationResult
+{
+
+	/**
+	 * The expression which is compiled
+	 */
+	private final String					expression;
+
+	/**
+	 * The compiled expression, <code>null</code> if compilation is failed
+	 */
+	private final Expression				compiledExpression;
+
+	/**
+	 * The error of compilation, <code>null</code> if compilation is successful
+	 */
+	private final ExpressionEngineException	error;
+
+	/**
+	 * Constructs the CompilationResult
+	 * 
+	 * @param expression the expression which is compiled
+	 * @param compiledExpression the compiled expression, <code>null</code> if compilation is failed
+	 * @param error the error of compilation, <code>null</code> if compilation is successful
+	 */
+	CompilationResult( String expression, Expression compiledExpression, ExpressionEngineException error )
+	{
+		this.expression = expression;
+		this.compiledExpression = compiledExpression;
+		this.error = error;
+	}
+
+	/**
+	 * @return the expression which is compiled
+	 */
+	public String getExpression()
+	{
+		return expression;
+	}
+
+	/**
+	 * @return true if expression is compiled successfully
+	 */
+	public boolean isSuccessful()
+	{
+		return error == null;
+	}
+
+	/**
+	 * @return the compiled expression, <code>null</code> if compilation is failed
+	 */
+	public Expression getCompiledExpression()
+	{
+		return compiledExpression;
+	}
+
+	/**
+	 * Returns the compiled expression, or throws the error if compilation is failed
+	 * 
+	 * @return the compiled expression
+	 * @throws ExpressionEngineException the error of compilation
+	 */
+	public Expression getCompiledExpressionOrThrow() throws ExpressionEngineException
+	{
+		if( error != null )
+		{
+			throw error;
+		}
+		return compiledExpression;
+	}
+
+	/**
+	 * @return the error of compilation, <code>null</code> if compilation is successful
+	 */
+	public ExpressionEngineException getError()
+	{
+		return error;
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return "expression[" + expression + "] " + ( error == null ? "compiled[" + compiledExpression + "]" : "error["
+				+ error.getMessage() + "]" );
+	}
+}
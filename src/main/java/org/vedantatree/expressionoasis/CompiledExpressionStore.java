@@ -0,0 +1,599 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.vedantatree.expressionoasis.config.StartupSnapshot;
+
+
+/**
+ * Persistent store of compiled forms of expressions, so a restarted application does not parse the expressions again.
+ * 
+ * Store is a file in a local directory, in which records are appended as expressions are compiled. Record is keyed by
+ * expression, and its value is written by the compiler. Name of file has the fingerprint of grammar and configuration
+ * which the records depend on, so a store written with another version of these is never used. Such files are deleted
+ * by the process which opens a store for writing, if no store is opened over them by this or any other process.
+ * 
+ * File is mapped in memory when opened, and only the hash and position of records are read at that time. A record is
+ * checked and read when its expression is asked for. If the end of file is damaged, like by a crash while appending,
+ * the damaged part is dropped. Only one process appends to a store, it is locked by the first process which opens it,
+ * and other processes only read the records which are present when these open it.
+ * 
+ * Store is enabled for Compiler by setting the path of directory in configuration, as 'compiledExpressionDirectory',
+ * or in System Properties for key {@link #DIRECTORY_PATH_KEY}. System Property is used if both are set.
+ * 
+ * <pre>
+ * file    := MAGIC VERSION fingerprint record*
+ * record  := hash(int) length(int) checksum(int) expression value
+ * </pre>
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public final class CompiledExpressionStore
+{
+
+	private static Log													LOGGER				= LogFactory
+																									.getLog( CompiledExpressionStore.class );
+
+	/**
+	 * Key of System Property for the path of store directory. If it is not set, the directory of configuration is used.
+	 */
+	public static final String											DIRECTORY_PATH_KEY	= "EXPRESSION_OASIS_COMPILED_EXPRESSION_DIRECTORY";
+
+	/**
+	 * Starting bytes of store file
+	 */
+	private static final int											MAGIC				= 0x454F4345;
+
+	/**
+	 * Version of store format, stores of other versions are written again
+	 */
+	private static final int											VERSION				= 2;
+
+	/**
+	 * Bytes of file header, i.e. magic, version and fingerprint
+	 */
+	private static final int											HEADER_LENGTH		= 16;
+
+	/**
+	 * Bytes of record header, i.e. hash, length and checksum
+	 */
+	private static final int											RECORD_HEADER_LENGTH	= 12;
+
+	/**
+	 * Prefix and suffix of the name of store files, fingerprint is placed between these
+	 */
+	private static final String											FILE_PREFIX			= "expressions-";
+	private static final String											FILE_SUFFIX			= ".eos";
+
+	/**
+	 * Open stores keyed by file, so all the compilers of a process share one store for a fingerprint
+	 */
+	private static final ConcurrentHashMap<File, CompiledExpressionStore>	STORES				= new ConcurrentHashMap<File, CompiledExpressionStore>();
+
+	/**
+	 * Store file
+	 */
+	private final File													file;
+
+	/**
+	 * Fingerprint of grammar and configuration
+	 */
+	private final long													fingerprint;
+
+	/**
+	 * Positions of records keyed by the hash of expression. Records with same hash are rare, so positions are kept in
+	 * arrays which are replaced on addition.
+	 */
+	private final ConcurrentHashMap<Integer, int[]>						positions			= new ConcurrentHashMap<Integer, int[]>();
+
+	/**
+	 * Channel of store file, <code>null</code> if store can not be read
+	 */
+	private FileChannel													channel;
+
+	/**
+	 * Lock on store file, <code>null</code> if records are not appended by this process
+	 */
+	private FileLock													lock;
+
+	/**
+	 * Store file mapped in memory. It is mapped again to read the records appended later.
+	 */
+	private volatile ByteBuffer											buffer;
+
+	/**
+	 * Length of the valid records in file, including header
+	 */
+	private int															length;
+
+	/**
+	 * Number of records
+	 */
+	private volatile int												size;
+
+	/**
+	 * Constructs the store
+	 * 
+	 * @param file the store file
+	 * @param fingerprint the fingerprint of grammar and configuration
+	 */
+	private CompiledExpressionStore( File file, long fingerprint )
+	{
+		this.file = file;
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * Opens the store for given fingerprint in directory. Store is created if it does not exist. If store can not be
+	 * read, it is empty, and if it can not be written, records are not appended. Failures are logged, as store is only
+	 * an optimization.
+	 * 
+	 * @param directory the store directory
+	 * @param fingerprint the fingerprint of grammar and configuration used to compile the expressions
+	 * @return the store
+	 */
+	public static CompiledExpressionStore open( File directory, long fingerprint )
+	{
+		File file = new File( directory, FILE_PREFIX + Long.toHexString( fingerprint ) + FILE_SUFFIX ).getAbsoluteFile();
+		CompiledExpressionStore store = STORES.get( file );
+		if( store == null )
+		{
+			synchronized( STORES )
+			{
+				store = STORES.get( file );
+				if( store == null )
+				{
+					store = new CompiledExpressionStore( file, fingerprint );
+					store.load();
+					STORES.put( file, store );
+				}
+			}
+		}
+		return store;
+	}
+
+	/**
+	 * Maps the store file and reads the hash and position of records
+	 */
+	private synchronized void load()
+	{
+		try
+		{
+			File directory = file.getParentFile();
+			if( directory != null )
+			{
+				directory.mkdirs();
+			}
+			channel = new RandomAccessFile( file, "rw" ).getChannel();
+			try
+			{
+				lock = channel.tryLock();
+			}
+			catch( OverlappingFileLockException e )
+			{
+				lock = null;
+			}
+			if( lock != null && directory != null )
+			{
+				deleteStaleStores( directory );
+			}
+
+			ByteBuffer mapped = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+			if( mapped.limit() < HEADER_LENGTH || mapped.getInt() != MAGIC || mapped.getInt() != VERSION
+					|| mapped.getLong() != fingerprint )
+			{
+				if( lock != null )
+				{
+					if( mapped.limit() > 0 )
+					{
+						LOGGER.info( "Compiled expression store is of other version, it will be written again. file["
+								+ file + "]" );
+					}
+					writeHeader();
+				}
+				length = HEADER_LENGTH;
+				buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+				return;
+			}
+
+			int position = HEADER_LENGTH;
+			int count = 0;
+			while( position + RECORD_HEADER_LENGTH <= mapped.limit() )
+			{
+				int hash = mapped.getInt( position );
+				int recordLength = mapped.getInt( position + 4 );
+				if( recordLength < 0 || recordLength > mapped.limit() - position - RECORD_HEADER_LENGTH )
+				{
+					break;
+				}
+				addPosition( hash, position );
+				position += RECORD_HEADER_LENGTH + recordLength;
+				count++;
+			}
+
+			if( position < mapped.limit() )
+			{
+				LOGGER.warn( "Compiled expression store is damaged after " + count + " records, rest is dropped. file["
+						+ file + "]" );
+				if( lock != null )
+				{
+					channel.truncate( position );
+					mapped = channel.map( FileChannel.MapMode.READ_ONLY, 0, position );
+				}
+			}
+
+			length = position;
+			size = count;
+			buffer = mapped;
+			LOGGER.info( "Compiled expression store is opened with " + count + " records. file[" + file + "]" );
+		}
+		catch( IOException e )
+		{
+			LOGGER.warn( "Unable to open compiled expression store. file[" + file + "]", e );
+			close();
+		}
+	}
+
+	/**
+	 * Deletes the store files of other fingerprints from directory, which are not opened by this process and are not
+	 * locked by any other process. Called while holding the lock on {@link #STORES}, so no store is opened in the
+	 * meantime by this process.
+	 * 
+	 * @param directory the store directory
+	 */
+	private void deleteStaleStores( File directory )
+	{
+		File[] files = directory.listFiles();
+		for( int i = 0; files != null && i < files.length; i++ )
+		{
+			File staleFile = files[i].getAbsoluteFile();
+			String name = staleFile.getName();
+			if( !name.startsWith( FILE_PREFIX ) || !name.endsWith( FILE_SUFFIX ) || staleFile.equals( file )
+					|| STORES.containsKey( staleFile ) )
+			{
+				continue;
+			}
+
+			boolean unused = false;
+			try
+			{
+				FileChannel staleChannel = new RandomAccessFile( staleFile, "rw" ).getChannel();
+				try
+				{
+					FileLock staleLock = staleChannel.tryLock();
+					if( staleLock != null )
+					{
+						staleLock.release();
+						unused = true;
+					}
+				}
+				finally
+				{
+					staleChannel.close();
+				}
+			}
+			catch( IOException e )
+			{
+				LOGGER.debug( "Unable to check stale compiled expression store. file[" + staleFile + "]", e );
+			}
+			catch( OverlappingFileLockException e )
+			{
+				// opened by this process
+			}
+
+			if( unused && staleFile.delete() )
+			{
+				LOGGER.info( "Deleted stale compiled expression store. file[" + staleFile + "]" );
+			}
+		}
+	}
+
+	/**
+	 * Writes the file header, replacing all the records
+	 */
+	private void writeHeader() throws IOException
+	{
+		channel.truncate( 0 );
+		ByteBuffer header = ByteBuffer.allocate( HEADER_LENGTH );
+		header.putInt( MAGIC ).putInt( VERSION ).putLong( fingerprint ).flip();
+		channel.write( header, 0 );
+	}
+
+	/**
+	 * Returns the value stored for expression
+	 * 
+	 * @param expression the expression
+	 * @return the buffer with value positioned at its start, or <code>null</code> if expression is not stored
+	 */
+	public ByteBuffer get( String expression )
+	{
+		int[] recordPositions = positions.get( expression.hashCode() );
+		if( recordPositions == null )
+		{
+			return null;
+		}
+
+		for( int position : recordPositions )
+		{
+			ByteBuffer record = getRecord( position );
+			if( record == null || !matches( record, expression ) )
+			{
+				continue;
+			}
+			return record.slice();
+		}
+		return null;
+	}
+
+	/**
+	 * Appends the value of expression, if expression is not stored already and this process appends to store
+	 * 
+	 * @param expression the expression
+	 * @param value the value to store
+	 */
+	public synchronized void put( String expression, byte[] value )
+	{
+		if( lock == null || get( expression ) != null )
+		{
+			return;
+		}
+
+		try
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream( RECORD_HEADER_LENGTH + expression.length() * 2
+					+ value.length + 4 );
+			DataOutputStream output = new DataOutputStream( bytes );
+			output.writeInt( 0 );
+			output.writeInt( 0 );
+			output.writeInt( 0 );
+			StartupSnapshot.writeString( output, expression );
+			output.write( value );
+			output.flush();
+
+			ByteBuffer record = ByteBuffer.wrap( bytes.toByteArray() );
+			int recordLength = record.limit() - RECORD_HEADER_LENGTH;
+			if( (long) length + record.limit() > Integer.MAX_VALUE )
+			{
+				return;
+			}
+
+			CRC32 crc = new CRC32();
+			crc.update( record.array(), RECORD_HEADER_LENGTH, recordLength );
+			record.putInt( 0, expression.hashCode() );
+			record.putInt( 4, recordLength );
+			record.putInt( 8, (int) crc.getValue() );
+
+			int position = length;
+			while( record.hasRemaining() )
+			{
+				channel.write( record, position + record.position() );
+			}
+			length = position + record.limit();
+			addPosition( expression.hashCode(), position );
+			size++;
+		}
+		catch( IOException e )
+		{
+			LOGGER.warn( "Unable to write compiled expression store, it will not be appended. file[" + file + "]", e );
+			releaseLock();
+		}
+	}
+
+	/**
+	 * Returns the checked record at given position, positioned after its expression
+	 * 
+	 * @return the record, or <code>null</code> if it is damaged
+	 */
+	private ByteBuffer getRecord( int position )
+	{
+		ByteBuffer mapped = buffer;
+		if( mapped == null )
+		{
+			return null;
+		}
+		if( position + RECORD_HEADER_LENGTH > mapped.limit()
+				|| position + RECORD_HEADER_LENGTH + mapped.getInt( position + 4 ) > mapped.limit() )
+		{
+			mapped = remap();
+			if( mapped == null )
+			{
+				return null;
+			}
+		}
+
+		ByteBuffer record = mapped.duplicate();
+		int recordLength = record.getInt( position + 4 );
+		int checksum = record.getInt( position + 8 );
+		record.position( position + RECORD_HEADER_LENGTH );
+		record.limit( position + RECORD_HEADER_LENGTH + recordLength );
+		record = record.slice();
+
+		CRC32 crc = new CRC32();
+		for( int i = 0; i < recordLength; i++ )
+		{
+			crc.update( record.get( i ) );
+		}
+		if( (int) crc.getValue() != checksum )
+		{
+			LOGGER.warn( "Record of compiled expression store is damaged, it is ignored. position[" + position
+					+ "] file[" + file + "]" );
+			return null;
+		}
+		return record;
+	}
+
+	/**
+	 * Maps the store file again, to read the records appended after it was mapped
+	 */
+	private synchronized ByteBuffer remap()
+	{
+		if( channel == null )
+		{
+			return null;
+		}
+		try
+		{
+			if( buffer.limit() < length )
+			{
+				buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, length );
+			}
+			return buffer;
+		}
+		catch( IOException e )
+		{
+			LOGGER.warn( "Unable to map compiled expression store. file[" + file + "]", e );
+			return null;
+		}
+	}
+
+	/**
+	 * Checks whether the record is for given expression, without creating the string of stored expression. Record is
+	 * positioned after the expression if it matches.
+	 */
+	private static boolean matches( ByteBuffer record, String expression )
+	{
+		int expressionLength = record.getInt();
+		if( expressionLength != expression.length() )
+		{
+			return false;
+		}
+		int position = record.position();
+		for( int i = 0; i < expressionLength; i++ )
+		{
+			if( record.getChar( position + i * 2 ) != expression.charAt( i ) )
+			{
+				return false;
+			}
+		}
+		record.position( position + expressionLength * 2 );
+		return true;
+	}
+
+	private void addPosition( int hash, int position )
+	{
+		int[] recordPositions = positions.get( hash );
+		if( recordPositions == null )
+		{
+			recordPositions = new int[]
+			{ position };
+		}
+		else
+		{
+			int[] newPositions = new int[recordPositions.length + 1];
+			System.arraycopy( recordPositions, 0, newPositions, 0, recordPositions.length );
+			newPositions[recordPositions.length] = position;
+			recordPositions = newPositions;
+		}
+		positions.put( hash, recordPositions );
+	}
+
+	/**
+	 * @return the number of stored expressions
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return the store file
+	 */
+	public File getFile()
+	{
+		return file;
+	}
+
+	/**
+	 * @return <code>true</code> if records are appended to store by this process
+	 */
+	public synchronized boolean isWritable()
+	{
+		return lock != null;
+	}
+
+	/**
+	 * Closes the store file. Store is opened again from file by next {@link #open(File, long)}.
+	 */
+	public synchronized void close()
+	{
+		STORES.remove( file, this );
+		releaseLock();
+		if( channel != null )
+		{
+			try
+			{
+				channel.close();
+			}
+			catch( IOException e )
+			{
+				LOGGER.warn( "Unable to close compiled expression store. file[" + file + "]", e );
+			}
+		}
+		channel = null;
+		buffer = null;
+		positions.clear();
+		size = 0;
+	}
+
+	private void releaseLock()
+	{
+		if( lock != null )
+		{
+			try
+			{
+				lock.release();
+			}
+			catch( IOException e )
+			{
+				LOGGER.debug( "Unable to release lock of compiled expression store. file[" + file + "]", e );
+			}
+			lock = null;
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "CompiledExpressionStore[" + file + ", size=" + size + "]";
+	}
+}
@@ -26,20 +26,47 @@
  */
 package org.vedantatree.expressionoasis;
 
-import java.util.HashMap;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.vedantatree.expressionoasis.config.ConfigFactory;
+import org.vedantatree.expressionoasis.config.ExpressionCacheConfig;
+import org.vedantatree.expressionoasis.config.ExpressionConfig;
+import org.vedantatree.expressionoasis.config.ExpressionOasisConfig;
+import org.vedantatree.expressionoasis.config.StartupSnapshot;
 import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.extensions.DefaultVariableProvider;
 import org.vedantatree.expressionoasis.expressions.Expression;
+import org.vedantatree.expressionoasis.expressions.ExpressionClassCompiler;
 import org.vedantatree.expressionoasis.expressions.ExpressionFactory;
+import org.vedantatree.expressionoasis.expressions.ExpressionInterner;
+import org.vedantatree.expressionoasis.expressions.ExpressionOptimizer;
+import org.vedantatree.expressionoasis.expressions.ExpressionTypeFinder;
+import org.vedantatree.expressionoasis.expressions.IdentifierExpression;
+import org.vedantatree.expressionoasis.expressions.NumericExpression;
+import org.vedantatree.expressionoasis.expressions.ParameterizedExpression;
+import org.vedantatree.expressionoasis.grammar.CompiledGrammar;
 import org.vedantatree.expressionoasis.grammar.ExpressionToken;
 import org.vedantatree.expressionoasis.grammar.Grammar;
+import org.vedantatree.expressionoasis.types.ValueObject;
 
 
 /**
@@ -78,11 +105,134 @@ import org.vedantatree.expressionoasis.grammar.Grammar;
  * @author Mohit Gupta
  * @version 1.2
  * @since 3.1
+ * 
+ *          Added compilation of CharSequence and character arrays. Tokens refer to the expression characters, and
+ *          strings are created only for the operands which need these. Context property for token is now set only for
+ *          operators and functions, as operands get their value as initialization parameter.
+ * 
+ *          Tokens are restructured and compiled using the kinds from compiled view of grammar, if grammar provides it.
+ *          So the string sets of grammar are not looked up for every token again and again.
+ * 
+ *          Added incremental compilation of edited expressions, which tokenizes only the part around the edit and
+ *          reuses the expressions of unchanged sub trees. See {@link IncrementalExpression}.
+ * 
+ * @author Mohit Gupta
+ * @version 1.3
+ * @since 3.3
+ * 
+ *          Added precedence climbing compilation mode, which builds the expression tree directly from tokens without
+ *          restructuring these in RPN. It can be chosen for each Compiler, or from config.xml. See
+ *          {@link PrecedenceClimbingParser}.
+ * 
+ * @author Mohit Gupta
+ * @version 1.4
+ * @since 3.3
+ * 
+ *          Operands are created by the operand kind and initialized with the literal value which lexer has stamped on
+ *          token, if any.
+ * 
+ * @author Mohit Gupta
+ * @version 1.5
+ * @since 3.3
+ * 
+ *          Cached tokens are kept in a concurrent and bounded {@link ExpressionCache}, instead of an unbounded HashMap
+ *          which was not safe for concurrent compilation. Bounds and expiry are read from config.xml.
+ * 
+ * @author Mohit Gupta
+ * @version 1.6
+ * @since 3.3
+ * 
+ *          If caching is enabled, compiled expression trees are also cached with the context they are compiled with,
+ *          and are reused while the signature of context is same. See {@link ExpressionContext#getSignature()}.
+ * 
+ * @author Mohit Gupta
+ * @version 1.7
+ * @since 3.3
+ * 
+ *          Tokens of compiled expressions, in RPN or as parsed for precedence climbing, are written in a persistent
+ *          {@link CompiledExpressionStore} if its directory is set in configuration or in System Properties. Tokens
+ *          are read from store after restart, so stored expressions are not parsed again.
+ * 
+ * @author Mohit Gupta
+ * @version 1.8
+ * @since 3.3
+ * 
+ *          Compiled expression trees are optimized by {@link ExpressionOptimizer} if it is enabled in configuration,
+ *          or for the Compiler instance by {@link #setOptimizeExpressions(boolean)}. Counts of optimization are kept
+ *          for all compiled trees.
+ * 
+ * @author Mohit Gupta
+ * @version 1.9
+ * @since 3.3
+ * 
+ *          Added bulk compilation, which compiles the distinct expressions of a collection in parallel on a fork join
+ *          pool, and returns the result or error of each expression.
+ * 
+ * @author Mohit Gupta
+ * @version 1.10
+ * @since 3.3
+ * 
+ *          Cached trees are interned with the {@link ExpressionInterner} of their context if it is enabled in
+ *          configuration, or for the Compiler instance by {@link #setInternExpressions(boolean)}, so same sub trees
+ *          are shared across trees.
+ * 
+ * @author Mohit Gupta
+ * @version 1.11
+ * @since 3.3
+ * 
+ *          Added parameterized compilation, which lifts the literals of expression to parameters and caches one tree
+ *          for all the expressions of same shape, i.e. which differ only in literals. See
+ *          {@link #compileParameterized(CharSequence, ExpressionContext, boolean)}.
+ * 
+ * @author Mohit Gupta
+ * @version 1.12
+ * @since 3.3
+ * 
+ *          Validated trees are compiled to generated classes, if enabled in configuration. See
+ *          {@link ExpressionClassCompiler}.
+ * 
+ * @author Mohit Gupta
+ * @version 1.13
+ * @since 3.3
  */
 public class Compiler
 {
 
-	private static Log									LOGGER	= LogFactory.getLog( Compiler.class );
+	private static Log									LOGGER			= LogFactory.getLog( Compiler.class );
+
+	/**
+	 * Estimated bytes of a cached token, with its reference in list
+	 */
+	private static final int							TOKEN_WEIGHT	= 48;
+
+	/**
+	 * Flag of stored token which is used as unary operator
+	 */
+	private static final int							STORED_UNARY	= 1;
+
+	/**
+	 * Flag of stored token which has its own value, rather than a part of expression
+	 */
+	private static final int							STORED_VALUE	= 2;
+
+	/**
+	 * Flag of stored token which is a unary bracket pair without content
+	 */
+	private static final int							STORED_EMPTY	= 4;
+
+	/**
+	 * Types of stored literal values
+	 */
+	private static final int							NO_LITERAL		= 0;
+
+	private static final int							LONG_LITERAL	= 1;
+
+	private static final int							DOUBLE_LITERAL	= 2;
+
+	/**
+	 * Number of expressions compiled by a task of bulk compilation without splitting it further
+	 */
+	private static final int							BULK_TASK_SIZE	= 16;
 
 	/**
 	 * DefaultXMLGrammar instance used to parse the Expression by Parser
@@ -105,7 +255,48 @@ public class Compiler
 	/**
 	 * Cache of RPN tokens produced by the parser / compiler for expressions
 	 */
-	private final Map<String, Stack<ExpressionToken>>	compiledExpressionRPNTokenCache;
+	private final ExpressionCache<String, Stack<ExpressionToken>>	compiledExpressionRPNTokenCache;
+
+	/**
+	 * Specifies whether expression tree is built directly from tokens by precedence climbing, rather than from the
+	 * tokens restructured in RPN
+	 */
+	private final boolean								precedenceClimbing;
+
+	/**
+	 * Cache of tokens produced by the parser for expressions, used in precedence climbing mode
+	 */
+	private final ExpressionCache<String, List<ExpressionToken>>	expressionTokenCache;
+
+	/**
+	 * Directory of persistent store of compiled expressions, <code>null</code> if store is not enabled
+	 */
+	private final File									storeDirectory;
+
+	/**
+	 * Persistent store for the current compiled view of grammar
+	 */
+	private volatile StoreBinding						storeBinding;
+
+	/**
+	 * Counts of optimization of compiled trees, <code>null</code> if optimization is not enabled
+	 */
+	private volatile ExpressionOptimizer.Report			optimizationReport;
+
+	/**
+	 * Specifies whether cached trees are interned with their context
+	 */
+	private volatile boolean							internExpressions;
+
+	/**
+	 * Specifies whether expressions are compiled with their literals lifted to parameters, if caching is enabled
+	 */
+	private final boolean								parameterizeLiterals;
+
+	/**
+	 * Specifies whether validated trees are compiled to generated classes
+	 */
+	private final boolean								compileToClasses;
 
 	/**
 	 * Constructs the Compiler with default DefaultXMLGrammar Instance
@@ -116,26 +307,108 @@ public class Compiler
 	}
 
 	/**
-	 * Constructs the Compiler with specified DefaultXMLGrammar instance.
+	 * Constructs the Compiler with specified DefaultXMLGrammar instance, using the compilation mode from
+	 * configuration.
 	 * 
 	 * @param grammar the grammar using which compiler will parse the expression
 	 * @throws IllegalArgumentException if the grammar object is null
 	 */
 	public Compiler( Grammar grammar )
+	{
+		this( grammar, ConfigFactory.getConfig().getCompilationMode() );
+	}
+
+	/**
+	 * Constructs the Compiler with specified DefaultXMLGrammar instance and compilation mode.
+	 * 
+	 * Precedence climbing mode needs the compiled view of grammar. If grammar does not provide it, tokens are
+	 * restructured in RPN as in RPN mode.
+	 * 
+	 * @param grammar the grammar using which compiler will parse the expression
+	 * @param compilationMode the mode of compilation, one of {@link ExpressionEngineConstants#COMPILATION_MODE_RPN} or
+	 *        {@link ExpressionEngineConstants#COMPILATION_MODE_PRECEDENCE_CLIMBING}
+	 * @throws IllegalArgumentException if the grammar object is null or compilation mode is not known
+	 */
+	public Compiler( Grammar grammar, String compilationMode )
 	{
 		if( grammar == null )
 		{
 			throw new IllegalArgumentException( "Grammar must not be null for the parser." );
 		}
 
+		if( ExpressionEngineConstants.COMPILATION_MODE_PRECEDENCE_CLIMBING.equals( compilationMode ) )
+		{
+			precedenceClimbing = true;
+		}
+		else if( ExpressionEngineConstants.COMPILATION_MODE_RPN.equals( compilationMode ) )
+		{
+			precedenceClimbing = false;
+		}
+		else
+		{
+			throw new IllegalArgumentException( "Unknown compilation mode. compilationMode[" + compilationMode + "]" );
+		}
+
 		this.grammar = grammar;
 		this.parser = new Parser( grammar );
 
 		expressionCachingEnabled = ConfigFactory.getConfig().shouldCacheCompiledExpressions();
 
-		LOGGER.debug( "expression-caching-enabled[" + expressionCachingEnabled + "]" );
-		compiledExpressionRPNTokenCache = expressionCachingEnabled ? new HashMap<String, Stack<ExpressionToken>>()
+		LOGGER.debug( "expression-caching-enabled[" + expressionCachingEnabled + "] compilation-mode["
+				+ compilationMode + "]" );
+		compiledExpressionRPNTokenCache = expressionCachingEnabled && !precedenceClimbing ? this
+				.<Stack<ExpressionToken>> createCache() : null;
+		expressionTokenCache = expressionCachingEnabled && precedenceClimbing ? this
+				.<List<ExpressionToken>> createCache() : null;
+
+		String storeDirectoryPath = System.getProperty( CompiledExpressionStore.DIRECTORY_PATH_KEY );
+		if( storeDirectoryPath == null || storeDirectoryPath.trim().length() == 0 )
+		{
+			storeDirectoryPath = ConfigFactory.getConfig().getCompiledExpressionDirectory();
+		}
+		storeDirectory = storeDirectoryPath != null && storeDirectoryPath.trim().length() > 0 ? new File(
+				storeDirectoryPath ) : null;
+
+		optimizationReport = ConfigFactory.getConfig().shouldOptimizeExpressions() ? new ExpressionOptimizer.Report()
 				: null;
+		internExpressions = ConfigFactory.getConfig().shouldInternExpressions();
+		parameterizeLiterals = ConfigFactory.getConfig().shouldParameterizeLiterals();
+		compileToClasses = ConfigFactory.getConfig().shouldCompileToClasses();
+	}
+
+	/**
+	 * Creates the cache of tokens, with the bounds from configuration
+	 * 
+	 * @return the cache keyed by expression
+	 */
+	private <T extends List<ExpressionToken>> ExpressionCache<String, T> createCache()
+	{
+		ExpressionCacheConfig cacheConfig = ConfigFactory.getConfig().getExpressionCacheConfig();
+		return new ExpressionCache<String, T>( cacheConfig.getMaximumEntries(), cacheConfig.getMaximumWeight(),
+				cacheConfig.getExpireAfterAccessSeconds(), TimeUnit.SECONDS, new ExpressionCache.Weigher<String, T>()
+				{
+
+					public int weigh( String expression, T tokens )
+					{
+						// characters of key are shared by tokens
+						return 64 + expression.length() * 2 + tokens.size() * TOKEN_WEIGHT;
+					}
+				} );
+	}
+
+	/**
+	 * Returns the counts of operations on the cache of compiled expressions, like hits and evictions
+	 * 
+	 * @return the statistics, <code>null</code> if caching is not enabled
+	 */
+	public ExpressionCache.Statistics getCacheStatistics()
+	{
+		if( !expressionCachingEnabled )
+		{
+			return null;
+		}
+		return precedenceClimbing ? expressionTokenCache.getStatistics() : compiledExpressionRPNTokenCache
+				.getStatistics();
 	}
 
 	Grammar getGrammar()
@@ -151,27 +424,267 @@ public class Compiler
 	 * @throws ExpressionEngineException
 	 */
 	protected Stack<ExpressionToken> getTokensInRPN( String expression ) throws ExpressionEngineException
+	{
+		return getTokensInRPN( (CharSequence) expression );
+	}
+
+	/**
+	 * Retrieves a Stack of tokens in RPN that represents the expression.
+	 * 
+	 * If caching is enabled, expression is copied to a string which is used as the key of cache, and tokens are created
+	 * over this string. Otherwise tokens are created over the given expression without copying it.
+	 * 
+	 * @param expression the expression to parse
+	 * @return the stack of restructured Expression Tokens in 'RPN'
+	 * @throws ExpressionEngineException
+	 */
+	protected Stack<ExpressionToken> getTokensInRPN( CharSequence expression ) throws ExpressionEngineException
 	{
 		Stack<ExpressionToken> tokensInRPN = null;
+		String expressionKey = null;
 
-		if( expressionCachingEnabled )
+		if( expressionCachingEnabled && expression != null )
 		{
-			tokensInRPN = compiledExpressionRPNTokenCache.get( expression );
+			expressionKey = expression.toString();
+			tokensInRPN = compiledExpressionRPNTokenCache.get( expressionKey );
 		}
 
 		if( tokensInRPN == null )
 		{
-			List<ExpressionToken> expressionTokens = parser.parse( expression );
-			tokensInRPN = restructureTokensInRPN( expressionTokens );
+			CompiledExpressionStore store = getStore();
+			if( store != null && expressionKey == null && expression != null )
+			{
+				expressionKey = expression.toString();
+			}
+			if( store != null && expressionKey != null )
+			{
+				tokensInRPN = readTokens( store, expressionKey, new Stack<ExpressionToken>() );
+			}
+
+			if( tokensInRPN == null )
+			{
+				// cached tokens must not refer to the caller's characters, which may change later
+				List<ExpressionToken> expressionTokens = parser.parse( expressionKey != null ? expressionKey
+						: expression );
+				tokensInRPN = restructureTokensInRPN( expressionTokens );
+				if( store != null && expressionKey != null )
+				{
+					writeTokens( store, expressionKey, tokensInRPN );
+				}
+			}
 
 			if( expressionCachingEnabled )
 			{
-				compiledExpressionRPNTokenCache.put( expression, tokensInRPN );
+				tokensInRPN = compiledExpressionRPNTokenCache.put( expressionKey, tokensInRPN );
 			}
 		}
 		return tokensInRPN;
 	}
 
+	/**
+	 * Retrieves the tokens of expression, from cache if caching is enabled. It is used in precedence climbing mode.
+	 * 
+	 * @param expression the expression to parse
+	 * @return the list of Expression Tokens
+	 * @throws ExpressionEngineException if expression can not be parsed
+	 */
+	private List<ExpressionToken> getTokens( CharSequence expression ) throws ExpressionEngineException
+	{
+		CompiledExpressionStore store = getStore();
+		if( ( !expressionCachingEnabled && store == null ) || expression == null )
+		{
+			return parser.parse( expression );
+		}
+
+		// cached tokens must not refer to the caller's characters, which may change later
+		String expressionKey = expression.toString();
+		List<ExpressionToken> tokens = expressionCachingEnabled ? expressionTokenCache.get( expressionKey ) : null;
+		if( tokens == null )
+		{
+			if( store != null )
+			{
+				tokens = readTokens( store, expressionKey, new ArrayList<ExpressionToken>() );
+			}
+			if( tokens == null )
+			{
+				tokens = parser.parse( expressionKey );
+				if( store != null )
+				{
+					writeTokens( store, expressionKey, tokens );
+				}
+			}
+			if( expressionCachingEnabled )
+			{
+				tokens = expressionTokenCache.put( expressionKey, tokens );
+			}
+		}
+		return tokens;
+	}
+
+	/**
+	 * Returns the persistent store of compiled expressions for the current compiled view of grammar. Store is changed
+	 * when the view is changed, like on adding a function.
+	 * 
+	 * @return the store, <code>null</code> if store is not enabled or grammar does not provide compiled view
+	 */
+	CompiledExpressionStore getStore()
+	{
+		if( storeDirectory == null )
+		{
+			return null;
+		}
+		CompiledGrammar compiledGrammar = grammar.getCompiledGrammar();
+		if( compiledGrammar == null )
+		{
+			return null;
+		}
+
+		StoreBinding binding = storeBinding;
+		if( binding == null || binding.compiledGrammar != compiledGrammar )
+		{
+			binding = new StoreBinding( compiledGrammar, CompiledExpressionStore.open( storeDirectory,
+					getStoreFingerprint( compiledGrammar ) ) );
+			storeBinding = binding;
+		}
+		return binding.store;
+	}
+
+	/**
+	 * Computes the fingerprint of everything which the stored tokens depend on, i.e. the symbols of grammar, the
+	 * operand expressions of configuration, the lexer mode and the compilation mode
+	 */
+	private long getStoreFingerprint( CompiledGrammar compiledGrammar )
+	{
+		ExpressionOasisConfig config = ConfigFactory.getConfig();
+		StringBuilder settings = new StringBuilder();
+		settings.append( precedenceClimbing ? ExpressionEngineConstants.COMPILATION_MODE_PRECEDENCE_CLIMBING
+				: ExpressionEngineConstants.COMPILATION_MODE_RPN );
+		settings.append( '\n' ).append( config.getLexerMode() );
+		for( ExpressionConfig expressionConfig : config.getExpressionConfigs() )
+		{
+			Class< ? extends Expression> expressionClass = expressionConfig.getExpressionClass();
+			settings.append( '\n' ).append( expressionConfig.getExpressionName() ).append( ' ' )
+					.append( expressionClass == null ? null : expressionClass.getName() ).append( ' ' )
+					.append( expressionConfig.getExpressionType() );
+		}
+
+		byte[] bytes = settings.toString().getBytes( Charset.forName( "UTF-8" ) );
+		CRC32 crc = new CRC32();
+		crc.update( bytes, 0, bytes.length );
+		return ( compiledGrammar.getFingerprint() << 32 ) | crc.getValue();
+	}
+
+	/**
+	 * Writes the tokens of expression in store. Tokens over the expression are written by their place in expression,
+	 * other tokens by their value. Kinds of symbols are not written, these are resolved again when read.
+	 */
+	private void writeTokens( CompiledExpressionStore store, String expression, List<ExpressionToken> tokens )
+	{
+		try
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream( 4 + tokens.size() * 18 );
+			DataOutputStream output = new DataOutputStream( bytes );
+			output.writeInt( tokens.size() );
+			for( ExpressionToken token : tokens )
+			{
+				boolean ownValue = token.getSource() != expression;
+				output.writeByte( ( token instanceof UnaryToken ? STORED_UNARY : 0 ) | ( ownValue ? STORED_VALUE : 0 )
+						| ( token instanceof EmptyBracketToken ? STORED_EMPTY : 0 ) );
+				output.writeInt( token.getIndex() );
+				if( ownValue )
+				{
+					StartupSnapshot.writeString( output, token.getValue() );
+				}
+				else
+				{
+					output.writeInt( token.getOffset() );
+					output.writeInt( token.length() );
+				}
+
+				output.writeInt( token.getOperandKind() );
+				Object literalValue = token.getLiteralValue();
+				if( literalValue instanceof Long )
+				{
+					output.writeByte( LONG_LITERAL );
+					output.writeLong( (Long) literalValue );
+				}
+				else if( literalValue instanceof Double )
+				{
+					output.writeByte( DOUBLE_LITERAL );
+					output.writeDouble( (Double) literalValue );
+				}
+				else
+				{
+					output.writeByte( NO_LITERAL );
+				}
+			}
+			output.flush();
+			store.put( expression, bytes.toByteArray() );
+		}
+		catch( IOException e )
+		{
+			LOGGER.warn( "Unable to write tokens of expression in store. expression[" + expression + "]", e );
+		}
+	}
+
+	/**
+	 * Reads the tokens of expression from store
+	 * 
+	 * @param store the store to read from
+	 * @param expression the expression, stored tokens are created over it
+	 * @param tokens the list to add the tokens to
+	 * @return the list with tokens, or <code>null</code> if expression is not stored
+	 */
+	private <T extends List<ExpressionToken>> T readTokens( CompiledExpressionStore store, String expression,
+			T tokens )
+	{
+		ByteBuffer buffer = store.get( expression );
+		if( buffer == null )
+		{
+			return null;
+		}
+
+		try
+		{
+			int size = buffer.getInt();
+			for( int i = 0; i < size; i++ )
+			{
+				int flags = buffer.get();
+				int index = buffer.getInt();
+				ExpressionToken token;
+				if( ( flags & STORED_VALUE ) != 0 )
+				{
+					token = new ExpressionToken( StartupSnapshot.readString( buffer ), index );
+				}
+				else
+				{
+					int offset = buffer.getInt();
+					int length = buffer.getInt();
+					token = new ExpressionToken( expression, offset, length, index );
+				}
+
+				int operandKind = buffer.getInt();
+				int literalType = buffer.get();
+				Object literalValue = literalType == LONG_LITERAL ? (Object) buffer.getLong()
+						: literalType == DOUBLE_LITERAL ? (Object) buffer.getDouble() : null;
+				if( operandKind >= 0 )
+				{
+					token.setOperandKind( operandKind, literalValue );
+				}
+
+				tokens.add( ( flags & STORED_EMPTY ) != 0 ? new EmptyBracketToken( token )
+						: ( flags & STORED_UNARY ) != 0 ? new UnaryToken( token ) : token );
+			}
+			return tokens;
+		}
+		catch( RuntimeException e )
+		{
+			LOGGER.warn( "Unable to read tokens of expression from store, it will be parsed. expression["
+					+ expression + "]", e );
+			return null;
+		}
+	}
+
 	/**
 	 * It restructures the given list of Expression Tokens in 'Reverse Polish
 	 * Notation'.
@@ -183,6 +696,11 @@ public class Compiler
 	private Stack<ExpressionToken> restructureTokensInRPN( List<ExpressionToken> expressionTokensList )
 			throws ExpressionEngineException
 	{
+		CompiledGrammar compiledGrammar = grammar.getCompiledGrammar();
+		if( compiledGrammar != null )
+		{
+			return restructureTokensInRPN( expressionTokensList, compiledGrammar );
+		}
 
 		// stack to collect operators
 		Stack<ExpressionToken> operatorStack = new Stack<ExpressionToken>();
@@ -345,50 +863,836 @@ public class Compiler
 	}
 
 	/**
-	 * Builds a tree of Expression objects representing the expression.
+	 * It restructures the given list of Expression Tokens in 'Reverse Polish Notation', using the kinds of tokens
+	 * from compiled grammar. Algorithm is same as of {@link #restructureTokensInRPN(List)}.
 	 * 
-	 * @param expression the string representing the expression to build
-	 * @param expressionContext the object which may contain contextual information for expressions
-	 * @return the tree of expression objects
-	 * @throws ExpressionEngineException
+	 * @param expressionTokensList list of Expression Tokens
+	 * @param compiledGrammar the compiled view of grammar
+	 * @return the stack of restructured Expression Tokens in 'RPN'
+	 * @throws ExpressionEngineException if Expression Tokens are invalid
 	 */
-	public Expression compile( String expression, ExpressionContext expressionContext, boolean validate )
-			throws ExpressionEngineException
+	private Stack<ExpressionToken> restructureTokensInRPN( List<ExpressionToken> expressionTokensList,
+			CompiledGrammar compiledGrammar ) throws ExpressionEngineException
 	{
+		Stack<ExpressionToken> operatorStack = new Stack<ExpressionToken>();
+		Stack<ExpressionToken> rpnStack = new Stack<ExpressionToken>();
 
-		Stack<ExpressionToken> rpnTokens = getTokensInRPN( expression );
-
-		Stack<Expression> expressionStack = new Stack<Expression>();
-		int size = rpnTokens.size();
-
-		for( int i = 0; i < size; i++ )
+		int lastKind = CompiledGrammar.OPERAND;
+		for( int i = 0, size = expressionTokensList.size(); i < size; i++ )
 		{
-			ExpressionToken token = rpnTokens.get( i );
-
-			// By default expression is for operand element.
-			String type = ExpressionFactory.OPERAND;
-			Object initializationParameters = token.getValue();
+			ExpressionToken currentToken = expressionTokensList.get( i );
+			int kind = compiledGrammar.getKind( currentToken );
 
-			// Expression for operator
-			if( grammar.isOperator( token ) )
+			if( compiledGrammar.isOperator( kind ) )
 			{
-
-				// Expression for function/unary operator
-				if( isUnary( token ) )
+				// unary operators are in the beginning of expression, after an operator or after left bracket
+				if( ( operatorStack.isEmpty() && rpnStack.isEmpty() ) || compiledGrammar.isOperator( lastKind )
+						|| compiledGrammar.isLeftBracket( lastKind ) )
 				{
-					type = grammar.isFunction( token.getValue() ) ? ExpressionFactory.FUNCTION
-							: ExpressionFactory.UNARY;
-					/*
-					 * Earlier we were assuming that expressionStack must have
-					 * at least one expression in case of Unary Expression.
-					 * Hence we were asserting for at least one expression in
-					 * expression stack here. But this assumption failed in case
+					if( !compiledGrammar.isFunction( kind ) && !compiledGrammar.isUnary( kind ) )
+					{
+						throw new ExpressionEngineException( "Operator \"" + currentToken.getValue()
+								+ "\" can't be used as unary operator at " + currentToken.getIndex() );
+					}
+					operatorStack.push( new UnaryToken( currentToken ) );
+				}
+				else
+				{
+					if( !compiledGrammar.isFunction( kind ) && !compiledGrammar.isBinaryOperator( kind ) )
+					{
+						throw new ExpressionEngineException( "Operator \"" + currentToken.getValue()
+								+ "\" can't be used as binary operator at " + currentToken.getIndex() );
+					}
+					int currentTokenPrecedence = compiledGrammar.getPrecedenceOrder( kind, compiledGrammar
+							.isFunction( kind ) );
+
+					// Remove high precedence operator from opStack and add to RPN stack
+					while( !operatorStack.isEmpty() )
+					{
+						ExpressionToken peekToken = operatorStack.peek();
+						int peekKind = compiledGrammar.getKind( peekToken );
+
+						if( compiledGrammar.isOperator( peekKind )
+								&& currentTokenPrecedence <= compiledGrammar.getPrecedenceOrder( peekKind,
+										peekToken instanceof UnaryToken || compiledGrammar.isFunction( peekKind ) ) )
+						{
+							operatorStack.pop();
+							rpnStack.push( peekToken );
+						}
+						else
+						{
+							break;
+						}
+					}
+
+					operatorStack.push( currentToken );
+				}
+			}
+			else if( compiledGrammar.isBracket( kind ) )
+			{
+				if( compiledGrammar.isLeftBracket( kind ) )
+				{
+					operatorStack.push( currentToken );
+				}
+				else
+				{
+					boolean leftBracketFound = false;
+					boolean empty = compiledGrammar.isLeftBracket( lastKind );
+
+					while( !operatorStack.isEmpty() )
+					{
+						ExpressionToken peekOperator = operatorStack.pop();
+						int peekKind = compiledGrammar.getKind( peekOperator );
+						leftBracketFound = compiledGrammar.isLeftBracket( peekKind );
+
+						if( leftBracketFound )
+						{
+							// Putting the bracket pair on rpnStack, symbol of pair is taken from grammar if defined
+							int pairKind = compiledGrammar.getBracketPair( peekKind );
+							String value = pairKind >= 0 ? compiledGrammar.getSymbol( pairKind ) : peekOperator
+									.getValue()
+									+ compiledGrammar.getSymbol( compiledGrammar.getOppositeBracket( peekKind ) );
+							// empty unary pair, like the brackets of a function without arguments, takes no operand
+							ExpressionToken bracketToken = !compiledGrammar.isUnary( pairKind ) ? new ExpressionToken(
+									value, peekOperator.getIndex() ) : empty ? new EmptyBracketToken( value, peekOperator
+									.getIndex() ) : new UnaryToken( value, peekOperator.getIndex() );
+							rpnStack.push( bracketToken );
+
+							break;
+						}
+
+						rpnStack.push( peekOperator );
+					}
+
+					if( !leftBracketFound )
+					{
+						throw new ExpressionEngineException( "Left bracket is missing for \"" + currentToken.getValue()
+								+ "\" at " + currentToken.getIndex() );
+					}
+				}
+			}
+			else
+			{
+				rpnStack.push( currentToken );
+			}
+			lastKind = kind;
+		}
+
+		// push rest of the tokens to RPN stack
+		while( !operatorStack.isEmpty() )
+		{
+			ExpressionToken element = operatorStack.pop();
+
+			if( compiledGrammar.isLeftBracket( compiledGrammar.getKind( element ) ) )
+			{
+				throw new ExpressionEngineException( "Right bracket is missing for \"" + element.getValue() + "\" at "
+						+ element.getIndex() );
+			}
+
+			rpnStack.push( element );
+		}
+
+		return rpnStack;
+	}
+
+	/**
+	 * Builds a tree of Expression objects representing the expression.
+	 * 
+	 * @param expression the string representing the expression to build
+	 * @param expressionContext the object which may contain contextual information for expressions
+	 * @return the tree of expression objects
+	 * @throws ExpressionEngineException
+	 */
+	public Expression compile( String expression, ExpressionContext expressionContext, boolean validate )
+			throws ExpressionEngineException
+	{
+		return compile( (CharSequence) expression, expressionContext, validate );
+	}
+
+	/**
+	 * Builds a tree of Expression objects representing the expression in given part of character array, like a
+	 * buffer read from file. Characters are not copied unless expression caching is enabled, and array can be reused
+	 * once this method returns.
+	 * 
+	 * @param characters the array containing the expression
+	 * @param offset the offset of expression in array
+	 * @param length the length of expression
+	 * @param expressionContext the object which may contain contextual information for expressions
+	 * @return the tree of expression objects
+	 * @throws ExpressionEngineException
+	 * @throws IndexOutOfBoundsException if offset and length are not in the bounds of array
+	 */
+	public Expression compile( char[] characters, int offset, int length, ExpressionContext expressionContext,
+			boolean validate ) throws ExpressionEngineException
+	{
+		if( characters == null )
+		{
+			throw new ExpressionEngineException( "Passed expression is not a qualified text." );
+		}
+		return compile( CharBuffer.wrap( characters, offset, length ).slice(), expressionContext, validate );
+	}
+
+	/**
+	 * Builds a tree of Expression objects representing the expression.
+	 * 
+	 * Strings are created only for the tokens whose expressions need these, like identifiers, functions and string
+	 * literals. Numeric literals are read directly from expression characters. Expression tree does not refer to the
+	 * given expression once compiled.
+	 * 
+	 * If caching and parameterization of literals are enabled in configuration, expression is compiled by
+	 * {@link #compileParameterized(CharSequence, ExpressionContext, boolean)}.
+	 * 
+	 * @param expression the characters representing the expression to build
+	 * @param expressionContext the object which may contain contextual information for expressions
+	 * @return the tree of expression objects
+	 * @throws ExpressionEngineException
+	 */
+	public Expression compile( CharSequence expression, ExpressionContext expressionContext, boolean validate )
+			throws ExpressionEngineException
+	{
+		if( !expressionCachingEnabled || expression == null || expressionContext == null )
+		{
+			return compileToClass( compileTree( expression, expressionContext, validate ), validate );
+		}
+		if( parameterizeLiterals )
+		{
+			return compileParameterized( expression, expressionContext, validate );
+		}
+		return compileCached( expression.toString(), expressionContext, validate );
+	}
+
+	/**
+	 * Returns the tree cached with context for the expression, compiling and caching it if not cached already
+	 */
+	private Expression compileCached( String expressionKey, ExpressionContext expressionContext, boolean validate )
+			throws ExpressionEngineException
+	{
+		long signature = expressionContext.getSignature();
+		ExpressionCache<String, CompiledTree> compiledTrees = expressionContext.getCompiledTrees();
+
+		CompiledTree compiledTree = compiledTrees.get( expressionKey );
+		if( compiledTree != null )
+		{
+			if( compiledTree.isValid( this, signature, validate ) )
+			{
+				return compiledTree.expression;
+			}
+			compiledTrees.remove( expressionKey );
+		}
+
+		Expression compiledExpression = compileTree( expressionKey, expressionContext, validate );
+		boolean signatureTracked = isSignatureTracked( compiledExpression );
+		if( signatureTracked && internExpressions )
+		{
+			compiledExpression = expressionContext.getExpressionInterner( signature ).intern( compiledExpression,
+					validate );
+		}
+		compiledExpression = compileToClass( compiledExpression, validate );
+		if( signatureTracked )
+		{
+			compiledTrees.put( expressionKey, new CompiledTree( this, signature, validate, compiledExpression ) );
+		}
+		return compiledExpression;
+	}
+
+	/**
+	 * Builds the expression with its numeric, string and boolean literals lifted to parameters, so all the expressions
+	 * of same shape share one tree, like 'amount > 500' and 'amount > 750' or "region == 'EU'" and
+	 * "region == 'US'". Shape of expression is its tokens separated by single space, having the type of literal in place
+	 * of every literal, so it does not depend on the white spaces of expression. Tree is cached with context by shape,
+	 * and literals of expression are bound to it on every evaluation.
+	 * 
+	 * Expressions without literals, and expressions whose tree can not be parameterized, are compiled and cached as
+	 * such.
+	 * 
+	 * @param expression the characters representing the expression to build
+	 * @param expressionContext the object which may contain contextual information for expressions
+	 * @param validate whether to validate the expression on initialization
+	 * @return the {@link ParameterizedExpression} with literals of expression, or the tree of expression if it is not
+	 *         parameterized
+	 * @throws ExpressionEngineException if expression is not valid
+	 */
+	public Expression compileParameterized( CharSequence expression, ExpressionContext expressionContext,
+			boolean validate ) throws ExpressionEngineException
+	{
+		if( expression == null || expressionContext == null )
+		{
+			return compileTree( expression, expressionContext, validate );
+		}
+
+		List<ExpressionToken> tokens = parser.parse( expression );
+		StringBuilder shape = new StringBuilder( expression.length() + 16 );
+		List<ValueObject> parameters = new ArrayList<ValueObject>();
+		ExpressionFactory expressionFactory = ExpressionFactory.getInstance();
+		for( ExpressionToken token : tokens )
+		{
+			if( shape.length() > 0 )
+			{
+				shape.append( ' ' );
+			}
+
+			Class< ? extends Expression> operandClass = grammar.isOperator( token ) || grammar.isBracket( token ) ? null
+					: expressionFactory.getOperandClass( token );
+			if( ParameterizedExpression.isParameterized( operandClass ) )
+			{
+				ValueObject parameter = createExpression( token, ExpressionFactory.OPERAND, null, expressionContext,
+						validate ).getValue();
+				parameters.add( parameter );
+				shape.append( '?' ).append( parameter.getValueType() );
+			}
+			else
+			{
+				shape.append( token.getText() );
+			}
+		}
+
+		if( parameters.isEmpty() )
+		{
+			return compileCached( expression.toString(), expressionContext, validate );
+		}
+
+		String shapeKey = shape.toString();
+		ValueObject[] parameterValues = parameters.toArray( new ValueObject[parameters.size()] );
+		long signature = expressionContext.getSignature();
+		ExpressionCache<String, CompiledTree> compiledTemplates = expressionContext.getCompiledTemplates();
+
+		CompiledTree compiledTemplate = compiledTemplates.get( shapeKey );
+		if( compiledTemplate != null )
+		{
+			if( compiledTemplate.isValid( this, signature, validate ) )
+			{
+				return new ParameterizedExpression( compiledTemplate.expression, parameterValues );
+			}
+			compiledTemplates.remove( shapeKey );
+		}
+
+		Expression template = ParameterizedExpression.parameterize( buildTree( tokens, expressionContext, validate ),
+				parameterValues );
+		if( template == null )
+		{
+			LOGGER.debug( "Literals of expression are not parameterized. expression[" + expression + "]" );
+			return compileCached( expression.toString(), expressionContext, validate );
+		}
+
+		template = optimize( template );
+		template = compileToClass( template, validate );
+		if( isSignatureTracked( template ) )
+		{
+			compiledTemplates.put( shapeKey, new CompiledTree( this, signature, validate, template ) );
+		}
+		return new ParameterizedExpression( template, parameterValues );
+	}
+
+	/**
+	 * Compiles the expressions in parallel, on a fork join pool having a thread for each processor. See
+	 * {@link #compileAll(Collection, ExpressionContext, boolean, ForkJoinPool)}.
+	 * 
+	 * @param expressions the expressions to compile
+	 * @param expressionContext the object which may contain contextual information for expressions
+	 * @param validate whether to validate the expressions on initialization
+	 * @return the results of compilation by expression, in the order of given expressions
+	 */
+	public Map<String, CompilationResult> compileAll( Collection< ? extends CharSequence> expressions,
+			ExpressionContext expressionContext, boolean validate )
+	{
+		ForkJoinPool pool = new ForkJoinPool();
+		try
+		{
+			return compileAll( expressions, expressionContext, validate, pool );
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Compiles the expressions in parallel on the given fork join pool. Same expression is compiled once even if it
+	 * is given many times. Every expression gets its own result, having the compiled expression or the error, so
+	 * invalid expressions do not fail the other ones.
+	 * 
+	 * All expressions are compiled with the same context, so it must not be changed until compilation completes.
+	 * 
+	 * @param expressions the expressions to compile
+	 * @param expressionContext the object which may contain contextual information for expressions
+	 * @param validate whether to validate the expressions on initialization
+	 * @param pool the pool to compile the expressions on
+	 * @return the results of compilation by expression, in the order of given expressions
+	 * @throws IllegalArgumentException if expressions or pool is null
+	 */
+	public Map<String, CompilationResult> compileAll( Collection< ? extends CharSequence> expressions,
+			ExpressionContext expressionContext, boolean validate, ForkJoinPool pool )
+	{
+		if( expressions == null || pool == null )
+		{
+			throw new IllegalArgumentException( "Expressions and pool must not be null." );
+		}
+
+		Map<String, CompilationResult> results = new LinkedHashMap<String, CompilationResult>();
+		for( CharSequence expression : expressions )
+		{
+			results.put( expression == null ? null : expression.toString(), null );
+		}
+
+		String[] distinctExpressions = results.keySet().toArray( new String[results.size()] );
+		CompilationResult[] distinctResults = new CompilationResult[distinctExpressions.length];
+		pool.invoke( new BulkCompilationTask( distinctExpressions, distinctResults, 0, distinctExpressions.length,
+				expressionContext, validate ) );
+
+		for( int i = 0; i < distinctExpressions.length; i++ )
+		{
+			results.put( distinctExpressions[i], distinctResults[i] );
+		}
+		return results;
+	}
+
+	/**
+	 * Compiles the named expressions in parallel, on a fork join pool having a thread for each processor. See
+	 * {@link #compileAll(Collection, ExpressionContext, boolean, ForkJoinPool)}.
+	 * 
+	 * @param namedExpressions the expressions to compile by their names, like the rules of a repository
+	 * @param expressionContext the object which may contain contextual information for expressions
+	 * @param validate whether to validate the expressions on initialization
+	 * @return the results of compilation by name, in the order of given names. Names having the same expression share
+	 *         the result.
+	 */
+	public Map<String, CompilationResult> compileAllNamed( Map<String, ? extends CharSequence> namedExpressions,
+			ExpressionContext expressionContext, boolean validate )
+	{
+		ForkJoinPool pool = new ForkJoinPool();
+		try
+		{
+			return compileAllNamed( namedExpressions, expressionContext, validate, pool );
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Compiles the named expressions in parallel on the given fork join pool. See
+	 * {@link #compileAll(Collection, ExpressionContext, boolean, ForkJoinPool)}.
+	 * 
+	 * @param namedExpressions the expressions to compile by their names, like the rules of a repository
+	 * @param expressionContext the object which may contain contextual information for expressions
+	 * @param validate whether to validate the expressions on initialization
+	 * @param pool the pool to compile the expressions on
+	 * @return the results of compilation by name, in the order of given names. Names having the same expression share
+	 *         the result.
+	 * @throws IllegalArgumentException if named expressions or pool is null
+	 */
+	public Map<String, CompilationResult> compileAllNamed( Map<String, ? extends CharSequence> namedExpressions,
+			ExpressionContext expressionContext, boolean validate, ForkJoinPool pool )
+	{
+		if( namedExpressions == null )
+		{
+			throw new IllegalArgumentException( "Named expressions must not be null." );
+		}
+
+		Map<String, CompilationResult> results = compileAll( namedExpressions.values(), expressionContext, validate,
+				pool );
+
+		Map<String, CompilationResult> namedResults = new LinkedHashMap<String, CompilationResult>(
+				namedExpressions.size() * 4 / 3 + 1 );
+		for( Map.Entry<String, ? extends CharSequence> namedExpression : namedExpressions.entrySet() )
+		{
+			CharSequence expression = namedExpression.getValue();
+			namedResults.put( namedExpression.getKey(), results.get( expression == null ? null : expression
+					.toString() ) );
+		}
+		return namedResults;
+	}
+
+	/**
+	 * Compiles an expression of bulk compilation, returning the error as result rather than throwing it
+	 */
+	private CompilationResult compileForResult( String expression, ExpressionContext expressionContext,
+			boolean validate )
+	{
+		try
+		{
+			return new CompilationResult( expression, compile( expression, expressionContext, validate ), null );
+		}
+		catch( ExpressionEngineException e )
+		{
+			return new CompilationResult( expression, null, e );
+		}
+		catch( RuntimeException e )
+		{
+			return new CompilationResult( expression, null, new ExpressionEngineException(
+					"Unable to compile the expression. expression[" + expression + "]", e ) );
+		}
+	}
+
+	/**
+	 * Task of bulk compilation, which compiles a range of expressions. Range is split in halves until it is small
+	 * enough, so idle threads of pool can steal the halves.
+	 */
+	private final class BulkCompilationTask extends RecursiveAction
+	{
+
+		private static final long			serialVersionUID	= 1L;
+
+		private final String[]				expressions;
+
+		private final CompilationResult[]	results;
+
+		private final int					from;
+
+		private final int					to;
+
+		private final ExpressionContext		expressionContext;
+
+		private final boolean				validate;
+
+		private BulkCompilationTask( String[] expressions, CompilationResult[] results, int from, int to,
+				ExpressionContext expressionContext, boolean validate )
+		{
+			this.expressions = expressions;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+			this.expressionContext = expressionContext;
+			this.validate = validate;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if( to - from <= BULK_TASK_SIZE )
+			{
+				for( int i = from; i < to; i++ )
+				{
+					results[i] = compileForResult( expressions[i], expressionContext, validate );
+				}
+				return;
+			}
+
+			int middle = ( from + to ) >>> 1;
+			invokeAll( new BulkCompilationTask( expressions, results, from, middle, expressionContext, validate ),
+					new BulkCompilationTask( expressions, results, middle, to, expressionContext, validate ) );
+		}
+	}
+
+	/**
+	 * Checks whether the changes which can invalidate the tree are tracked by the signature of context. Variable types
+	 * are tracked only for {@link DefaultVariableProvider}, so trees using the variables of other providers are not
+	 * cached.
+	 * 
+	 * @param compiledExpression the compiled tree
+	 * @return <code>true</code> if tree can be cached with the signature of context
+	 */
+	private boolean isSignatureTracked( Expression compiledExpression )
+	{
+		for( Expression identifier : new ExpressionTypeFinder( compiledExpression, IdentifierExpression.class )
+				.getExpressions() )
+		{
+			Object variableProvider = ( (IdentifierExpression) identifier ).getVariableProvider();
+			if( variableProvider != null && !( variableProvider instanceof DefaultVariableProvider ) )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Builds the tree of Expression objects from the tokens of expression, which may come from cache.
+	 * 
+	 * @param expression the characters representing the expression to build
+	 * @param expressionContext the object which may contain contextual information for expressions
+	 * @param validate whether to validate the expressions on initialization
+	 * @return the tree of expression objects
+	 * @throws ExpressionEngineException if expression is not valid
+	 */
+	private Expression compileTree( CharSequence expression, ExpressionContext expressionContext, boolean validate )
+			throws ExpressionEngineException
+	{
+		Expression compiledExpression = null;
+		if( precedenceClimbing )
+		{
+			CompiledGrammar compiledGrammar = grammar.getCompiledGrammar();
+			if( compiledGrammar != null )
+			{
+				compiledExpression = new PrecedenceClimbingParser( this, compiledGrammar, getTokens( expression ),
+						expressionContext, validate ).parse();
+			}
+		}
+		if( compiledExpression == null )
+		{
+			compiledExpression = compile( getTokensInRPN( expression ), expressionContext, validate, null );
+		}
+		return optimize( compiledExpression );
+	}
+
+	/**
+	 * Builds the tree of Expression objects from the given tokens of expression, without optimizing it
+	 * 
+	 * @param tokens the tokens of expression, as created by parser
+	 * @param expressionContext the object which may contain contextual information for expressions
+	 * @param validate whether to validate the expressions on initialization
+	 * @return the tree of expression objects
+	 * @throws ExpressionEngineException if expression is not valid
+	 */
+	private Expression buildTree( List<ExpressionToken> tokens, ExpressionContext expressionContext, boolean validate )
+			throws ExpressionEngineException
+	{
+		CompiledGrammar compiledGrammar = precedenceClimbing ? grammar.getCompiledGrammar() : null;
+		if( compiledGrammar != null )
+		{
+			return new PrecedenceClimbingParser( this, compiledGrammar, tokens, expressionContext, validate ).parse();
+		}
+		return compile( restructureTokensInRPN( tokens ), expressionContext, validate, null );
+	}
+
+	/**
+	 * Compiles the tree to a generated class, if it is validated and compilation to classes is enabled in
+	 * configuration
+	 * 
+	 * @param compiledExpression the compiled tree
+	 * @param validate whether tree is validated
+	 * @return the {@link org.vedantatree.expressionoasis.expressions.CompiledExpression} for tree, or the tree itself
+	 *         if it is not compiled
+	 * @throws ExpressionEngineException if types of tree can not be found
+	 */
+	private Expression compileToClass( Expression compiledExpression, boolean validate )
+			throws ExpressionEngineException
+	{
+		return compileToClasses && validate ? ExpressionClassCompiler.compile( compiledExpression )
+				: compiledExpression;
+	}
+
+	/**
+	 * Optimizes the compiled tree if optimization is enabled, and adds the counts of its optimization to report of
+	 * compiler
+	 * 
+	 * @param compiledExpression the compiled tree
+	 * @return the optimized tree, or the compiled tree if optimization is not enabled
+	 */
+	private Expression optimize( Expression compiledExpression )
+	{
+		ExpressionOptimizer.Report compilerReport = optimizationReport;
+		if( compilerReport == null )
+		{
+			return compiledExpression;
+		}
+
+		ExpressionOptimizer.Report report = new ExpressionOptimizer.Report();
+		Expression optimizedExpression = ExpressionOptimizer.optimize( compiledExpression, report );
+		compilerReport.add( report );
+		if( LOGGER.isDebugEnabled() )
+		{
+			LOGGER.debug( "optimized-expression[" + optimizedExpression + "] optimization[" + report + "]" );
+		}
+		return optimizedExpression;
+	}
+
+	/**
+	 * Returns the counts of optimization of all the trees compiled by this compiler
+	 * 
+	 * @return the report of optimization, <code>null</code> if optimization is not enabled in configuration
+	 */
+	public ExpressionOptimizer.Report getOptimizationReport()
+	{
+		return optimizationReport;
+	}
+
+	/**
+	 * Sets whether the cached trees of this compiler are interned with the {@link ExpressionInterner} of their context,
+	 * irrespective of configuration. It applies to the trees compiled after it, so it is set before compiling.
+	 * 
+	 * @param internExpressions whether cached expression trees are interned
+	 */
+	public void setInternExpressions( boolean internExpressions )
+	{
+		this.internExpressions = internExpressions;
+	}
+
+	/**
+	 * Sets whether the trees compiled by this compiler are optimized by {@link ExpressionOptimizer}, irrespective of
+	 * configuration. It applies to the trees compiled after it, so it is set before compiling. Counts of optimization
+	 * start again from zero.
+	 * 
+	 * @param optimizeExpressions whether compiled expression trees are optimized
+	 */
+	public void setOptimizeExpressions( boolean optimizeExpressions )
+	{
+		optimizationReport = optimizeExpressions ? new ExpressionOptimizer.Report() : null;
+	}
+
+	/**
+	 * Compiles the expression keeping its tokens and expression tree, so that it can be compiled again
+	 * incrementally once edited. See {@link #recompile(IncrementalExpression, int, int, CharSequence, ExpressionContext, boolean)}.
+	 * 
+	 * @param expression the characters representing the expression to build
+	 * @param expressionContext the object which may contain contextual information for expressions
+	 * @param validate whether to validate the expressions on initialization
+	 * @return the compiled state of expression
+	 * @throws ExpressionEngineException if expression is not valid
+	 */
+	public IncrementalExpression compileIncrementally( CharSequence expression, ExpressionContext expressionContext,
+			boolean validate ) throws ExpressionEngineException
+	{
+		return compile( IncrementalExpression.tokenize( this, parser, expression ), expressionContext, validate );
+	}
+
+	/**
+	 * Compiles an edited expression incrementally, like on every key stroke in an editor. Edit replaces the given
+	 * part of previous expression with the inserted text.
+	 * 
+	 * Only the part of expression around the edit is tokenized again, and the Expression objects of previous tree are
+	 * reused for the sub trees whose tokens are not changed, if the same context object is passed. Expression caching
+	 * is not used, as the expression is not tokenized fully. See {@link IncrementalExpression}.
+	 * 
+	 * @param previous the compiled state of expression before edit
+	 * @param offset the position in previous expression where edit starts
+	 * @param removedLength number of characters removed from offset
+	 * @param insertedText the text inserted at offset, <code>null</code> if nothing is inserted
+	 * @param expressionContext the object which may contain contextual information for expressions
+	 * @param validate whether to validate the expressions on initialization
+	 * @return the compiled state of edited expression
+	 * @throws ExpressionEngineException if edited expression is not valid
+	 * @throws IllegalArgumentException if previous state is null
+	 * @throws IndexOutOfBoundsException if removed part is not inside the previous expression
+	 */
+	public IncrementalExpression recompile( IncrementalExpression previous, int offset, int removedLength,
+			CharSequence insertedText, ExpressionContext expressionContext, boolean validate )
+			throws ExpressionEngineException
+	{
+		if( previous == null )
+		{
+			throw new IllegalArgumentException( "Previous state of expression must not be null." );
+		}
+		return compile( previous.edit( this, parser, offset, removedLength, insertedText ), expressionContext,
+				validate );
+	}
+
+	/**
+	 * Compiles an edited expression incrementally, finding the edit by comparing it with the previous expression. It
+	 * is useful when some edits are not compiled, like while the expression is invalid in between the key strokes.
+	 * 
+	 * @param previous the compiled state of expression before edit
+	 * @param expression the edited expression
+	 * @param expressionContext the object which may contain contextual information for expressions
+	 * @param validate whether to validate the expressions on initialization
+	 * @return the compiled state of edited expression
+	 * @throws ExpressionEngineException if edited expression is not valid
+	 * @throws IllegalArgumentException if previous state is null
+	 */
+	public IncrementalExpression recompile( IncrementalExpression previous, CharSequence expression,
+			ExpressionContext expressionContext, boolean validate ) throws ExpressionEngineException
+	{
+		if( previous == null )
+		{
+			throw new IllegalArgumentException( "Previous state of expression must not be null." );
+		}
+		if( expression == null )
+		{
+			throw new ExpressionEngineException( "Passed expression is not a qualified text." );
+		}
+
+		String previousExpression = previous.getExpression();
+		int previousLength = previousExpression.length();
+		int length = expression.length();
+		int common = Math.min( previousLength, length );
+
+		int prefix = 0;
+		while( prefix < common && previousExpression.charAt( prefix ) == expression.charAt( prefix ) )
+		{
+			prefix++;
+		}
+
+		int suffix = 0;
+		while( suffix < common - prefix
+				&& previousExpression.charAt( previousLength - 1 - suffix ) == expression.charAt( length - 1 - suffix ) )
+		{
+			suffix++;
+		}
+
+		return recompile( previous, prefix, previousLength - prefix - suffix, expression.subSequence( prefix, length
+				- suffix ), expressionContext, validate );
+	}
+
+	/**
+	 * Restructures the tokens collected by builder in RPN and builds the expression tree, reusing the expressions of
+	 * previous state where possible
+	 * 
+	 * @param builder the builder holding the tokens
+	 * @param expressionContext the object which may contain contextual information for expressions
+	 * @param validate whether to validate the expressions on initialization
+	 * @return the compiled state of expression
+	 * @throws ExpressionEngineException if expression is not valid
+	 */
+	private IncrementalExpression compile( IncrementalExpression.Builder builder, ExpressionContext expressionContext,
+			boolean validate ) throws ExpressionEngineException
+	{
+		Stack<ExpressionToken> rpnTokens = restructureTokensInRPN( builder.getTokens() );
+		builder.start( rpnTokens.size(), expressionContext, validate );
+		return builder.build( compile( rpnTokens, expressionContext, validate, builder ) );
+	}
+
+	/**
+	 * Builds a tree of Expression objects from the tokens in RPN.
+	 * 
+	 * @param rpnTokens the tokens in RPN
+	 * @param expressionContext the object which may contain contextual information for expressions
+	 * @param validate whether to validate the expressions on initialization
+	 * @param builder the builder to reuse the expressions from and to collect the expressions in, <code>null</code>
+	 *        if expression is not compiled incrementally
+	 * @return the tree of expression objects
+	 * @throws ExpressionEngineException
+	 */
+	private Expression compile( Stack<ExpressionToken> rpnTokens, ExpressionContext expressionContext,
+			boolean validate, IncrementalExpression.Builder builder ) throws ExpressionEngineException
+	{
+		Stack<Expression> expressionStack = new Stack<Expression>();
+		int size = rpnTokens.size();
+		CompiledGrammar compiledGrammar = grammar.getCompiledGrammar();
+
+		for( int i = 0; i < size; i++ )
+		{
+			ExpressionToken token = rpnTokens.get( i );
+
+			// By default expression is for operand element.
+			String type = ExpressionFactory.OPERAND;
+			Object initializationParameters = null;
+			int operandCount = 0;
+
+			boolean operator;
+			boolean function;
+			if( compiledGrammar != null )
+			{
+				int kind = compiledGrammar.getKind( token );
+				operator = compiledGrammar.isOperator( kind );
+				function = compiledGrammar.isFunction( kind );
+			}
+			else
+			{
+				operator = grammar.isOperator( token );
+				function = grammar.isFunction( token );
+			}
+
+			// Expression for operator
+			if( operator )
+			{
+
+				// Expression for function/unary operator
+				if( token instanceof UnaryToken || function )
+				{
+					type = function ? ExpressionFactory.FUNCTION : ExpressionFactory.UNARY;
+					/*
+					 * Earlier we were assuming that expressionStack must have
+					 * at least one expression in case of Unary Expression.
+					 * Hence we were asserting for at least one expression in
+					 * expression stack here. But this assumption failed in case
 					 * of function call with zero arguments. So the assertion
 					 * has been removed now.
 					 * 
 					 * @see Bug ID: 1691820 @ sourceforge
 					 */
-					initializationParameters = expressionStack.size() == 0 ? null : expressionStack.pop();
+					operandCount = expressionStack.size() == 0 || token instanceof EmptyBracketToken ? 0 : 1;
+					initializationParameters = operandCount == 0 ? null : expressionStack.pop();
 				}
 				else
 				{
@@ -400,6 +1704,7 @@ public class Compiler
 					}
 
 					type = ExpressionFactory.BINARY;
+					operandCount = 2;
 
 					Expression rightExpression = expressionStack.pop();
 					Expression leftExpression = expressionStack.pop();
@@ -412,15 +1717,17 @@ public class Compiler
 			{
 				LOGGER.debug( "token[" + token + "]" );
 			}
-			Expression compiledExpression = ExpressionFactory.getInstance().createExpression( token.getValue(), type );
-			if( LOGGER.isDebugEnabled() )
+			Expression compiledExpression = builder == null ? null : builder.reuse( token, type, operandCount );
+			if( compiledExpression == null )
 			{
-				LOGGER.debug( "expression[" + compiledExpression + "]" );
+				compiledExpression = createExpression( token, type, initializationParameters, expressionContext,
+						validate );
+			}
+
+			if( builder != null )
+			{
+				builder.add( token, type, compiledExpression, operandCount );
 			}
-			expressionContext
-					.setContextProperty( ExpressionEngineConstants.EXPRESSION_CONTENXT_TOKEN, token.getValue() );
-			compiledExpression.initialize( expressionContext, initializationParameters, validate );
-			expressionContext.setContextProperty( ExpressionEngineConstants.EXPRESSION_CONTENXT_TOKEN, null );
 			expressionStack.push( compiledExpression );
 		}
 
@@ -434,6 +1741,43 @@ public class Compiler
 		return expressionStack.peek();
 	}
 
+	/**
+	 * Creates the expression for a token and initializes it.
+	 * 
+	 * @param token the token of expression
+	 * @param type the type of expression i.e. operand, unary, binary or function
+	 * @param initializationParameters the operands of expression, ignored for operands which are initialized by their
+	 *        token
+	 * @param expressionContext the object which may contain contextual information for expressions
+	 * @param validate whether to validate the expression on initialization
+	 * @return the initialized expression
+	 * @throws ExpressionEngineException if expression can not be created or is not valid
+	 */
+	Expression createExpression( ExpressionToken token, String type, Object initializationParameters,
+			ExpressionContext expressionContext, boolean validate ) throws ExpressionEngineException
+	{
+		Expression compiledExpression = ExpressionFactory.getInstance().createExpression( token, type );
+		if( LOGGER.isDebugEnabled() )
+		{
+			LOGGER.debug( "expression[" + compiledExpression + "]" );
+		}
+
+		if( ExpressionFactory.OPERAND.equals( type ) )
+		{
+			// literals parsed by lexer are used as such, numeric literals are read from token characters, other
+			// operands need the string value
+			initializationParameters = token.getLiteralValue() != null ? token.getLiteralValue()
+					: compiledExpression instanceof NumericExpression ? token.getText() : token.getValue();
+		}
+		else
+		{
+			expressionContext.setContextProperty( ExpressionEngineConstants.EXPRESSION_CONTENXT_TOKEN, token.getValue() );
+		}
+		compiledExpression.initialize( expressionContext, initializationParameters, validate );
+		expressionContext.setContextProperty( ExpressionEngineConstants.EXPRESSION_CONTENXT_TOKEN, null );
+		return compiledExpression;
+	}
+
 	/**
 	 * Checks whether the operator is used as unary operator or not.
 	 * 
@@ -445,6 +1789,54 @@ public class Compiler
 		return token instanceof UnaryToken || grammar.isFunction( token ); // || grammar.isUnary( token );
 	}
 
+	/**
+	 * Persistent store with the compiled view of grammar it is opened for
+	 */
+	private static final class StoreBinding
+	{
+
+		private final CompiledGrammar			compiledGrammar;
+
+		private final CompiledExpressionStore	store;
+
+		private StoreBinding( CompiledGrammar compiledGrammar, CompiledExpressionStore store )
+		{
+			this.compiledGrammar = compiledGrammar;
+			this.store = store;
+		}
+	}
+
+	/**
+	 * Expression tree cached with the context it is compiled with
+	 */
+	static final class CompiledTree
+	{
+
+		private final Compiler		compiler;
+
+		private final long			signature;
+
+		private final boolean		validate;
+
+		private final Expression	expression;
+
+		private CompiledTree( Compiler compiler, long signature, boolean validate, Expression expression )
+		{
+			this.compiler = compiler;
+			this.signature = signature;
+			this.validate = validate;
+			this.expression = expression;
+		}
+
+		/**
+		 * Checks whether the tree can be reused for a compilation
+		 */
+		private boolean isValid( Compiler compiler, long signature, boolean validate )
+		{
+			return this.compiler == compiler && this.signature == signature && this.validate == validate;
+		}
+	}
+
 	/**
 	 * This is just an indicator class of operator token that this operator is
 	 * used as unary operator
@@ -459,7 +1851,7 @@ public class Compiler
 		 */
 		public UnaryToken( ExpressionToken token )
 		{
-			this( token.getValue(), token.getIndex() );
+			super( token );
 		}
 
 		/**
@@ -483,6 +1875,35 @@ public class Compiler
 		}
 	}
 
+	/**
+	 * Indicator class of unary bracket pair token that its brackets are empty, like the brackets of a function without
+	 * arguments. It takes no operand from the expression stack.
+	 */
+	private class EmptyBracketToken extends UnaryToken
+	{
+
+		/**
+		 * Constructs the EmptyBracketToken
+		 * 
+		 * @param token
+		 */
+		public EmptyBracketToken( ExpressionToken token )
+		{
+			super( token );
+		}
+
+		/**
+		 * Constructs the EmptyBracketToken
+		 * 
+		 * @param value
+		 * @param index
+		 */
+		public EmptyBracketToken( String value, int index )
+		{
+			super( value, index );
+		}
+	}
+
 	/**
 	 * Not in use currently
 	 * 
@@ -0,0 +1,497 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * Concurrent and bounded cache of compiled forms of expressions, like the tokens in RPN, keyed by expression.
+ * 
+ * Reads do not lock. Entries are kept in a ConcurrentHashMap, and a read only counts the use of entry and notes its
+ * access time. Cache is bounded by number of entries and by estimated bytes of entries, which are given by the
+ * {@link Weigher}. Any of the bounds can be disabled by a value <= 0.
+ * 
+ * When a bound is crossed, entries are evicted by sampled least frequently used policy. A few entries are picked
+ * from a cursor which moves over the map, and the least used of these is removed, the least recently used if counts
+ * are same. Counts of the other picked entries are halved, so the entries which were used often only in past are
+ * evicted in time. Only one thread evicts at a time, other threads which add entries meanwhile do not wait for it.
+ * Cache can go beyond its bounds by the entries added while eviction is running.
+ * 
+ * Entries can also expire after a time since they were last read or added. Expired entries are removed when these
+ * are read, or when eviction picks them.
+ * 
+ * Counts of hits, misses, evictions and expirations are kept, and can be read with {@link #getStatistics()}.
+ * 
+ * @param <K> the type of key
+ * @param <V> the type of cached value
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public final class ExpressionCache<K, V>
+{
+
+	/**
+	 * Number of entries picked to choose the entry to evict
+	 */
+	private static final int				SAMPLE_SIZE	= 8;
+
+	/**
+	 * Entries of cache
+	 */
+	private final ConcurrentHashMap<K, Entry<V>>	entries;
+
+	/**
+	 * Estimates the bytes taken by entries
+	 */
+	private final Weigher<K, V>				weigher;
+
+	/**
+	 * Maximum number of entries, <= 0 if not bounded
+	 */
+	private final int						maximumEntries;
+
+	/**
+	 * Maximum estimated bytes of entries, <= 0 if not bounded
+	 */
+	private final long						maximumWeight;
+
+	/**
+	 * Time after last access when entry expires in nano seconds, <= 0 if entries do not expire
+	 */
+	private final long						expireAfterAccessNanos;
+
+	/**
+	 * Estimated bytes of all entries
+	 */
+	private final AtomicLong				weight		= new AtomicLong();
+
+	private final AtomicLong				hitCount	= new AtomicLong();
+
+	private final AtomicLong				missCount	= new AtomicLong();
+
+	private final AtomicLong				evictionCount	= new AtomicLong();
+
+	private final AtomicLong				expirationCount	= new AtomicLong();
+
+	/**
+	 * Lock held by the thread which is evicting
+	 */
+	private final ReentrantLock				evictionLock	= new ReentrantLock();
+
+	/**
+	 * Cursor over the entries from where eviction picks the entries, guarded by eviction lock
+	 */
+	private Iterator<Map.Entry<K, Entry<V>>>	evictionCursor;
+
+	/**
+	 * Constructs the cache
+	 * 
+	 * @param maximumEntries maximum number of entries, <= 0 if number of entries should not be bounded
+	 * @param maximumWeight maximum estimated bytes of entries, <= 0 if bytes should not be bounded
+	 * @param expireAfterAccess time after last read or addition when entry expires, <= 0 if entries should not
+	 *        expire
+	 * @param timeUnit unit of expiry time
+	 * @param weigher estimates the bytes of an entry, it is required if weight is bounded
+	 * @throws IllegalArgumentException if weight is bounded without weigher
+	 */
+	public ExpressionCache( int maximumEntries, long maximumWeight, long expireAfterAccess, TimeUnit timeUnit,
+			Weigher<K, V> weigher )
+	{
+		if( maximumWeight > 0 && weigher == null )
+		{
+			throw new IllegalArgumentException( "Weigher is required to bound the weight of cache. maximumWeight["
+					+ maximumWeight + "]" );
+		}
+
+		this.entries = new ConcurrentHashMap<K, Entry<V>>( maximumEntries > 0 ? Math.min( maximumEntries, 1024 )
+				: 16 );
+		this.weigher = weigher;
+		this.maximumEntries = maximumEntries;
+		this.maximumWeight = maximumWeight;
+		this.expireAfterAccessNanos = expireAfterAccess > 0 ? timeUnit.toNanos( expireAfterAccess ) : 0;
+	}
+
+	/**
+	 * Returns the cached value for key
+	 * 
+	 * @param key the key
+	 * @return the value, <code>null</code> if not cached or expired
+	 */
+	public V get( K key )
+	{
+		Entry<V> entry = entries.get( key );
+		if( entry == null )
+		{
+			missCount.incrementAndGet();
+			return null;
+		}
+
+		if( expireAfterAccessNanos > 0 )
+		{
+			long now = System.nanoTime();
+			if( now - entry.accessTime > expireAfterAccessNanos )
+			{
+				if( remove( key, entry ) )
+				{
+					expirationCount.incrementAndGet();
+				}
+				missCount.incrementAndGet();
+				return null;
+			}
+			entry.accessTime = now;
+		}
+
+		// lost updates only make the count approximate, which is fine for eviction
+		entry.frequency++;
+		hitCount.incrementAndGet();
+		return entry.value;
+	}
+
+	/**
+	 * Adds the value for key, if key is not cached already. Entries are evicted if cache crosses its bounds.
+	 * 
+	 * @param key the key
+	 * @param value the value
+	 * @return the value which is cached for key, i.e. the value added by another thread if it has added first
+	 */
+	public V put( K key, V value )
+	{
+		int entryWeight = weigher == null ? 0 : weigher.weigh( key, value );
+		Entry<V> entry = new Entry<V>( value, entryWeight, expireAfterAccessNanos > 0 ? System.nanoTime() : 0 );
+
+		Entry<V> existing = entries.putIfAbsent( key, entry );
+		if( existing != null )
+		{
+			return existing.value;
+		}
+
+		weight.addAndGet( entryWeight );
+		if( isOverBounds() )
+		{
+			evict();
+		}
+		return value;
+	}
+
+	/**
+	 * Removes the value for key
+	 * 
+	 * @param key the key
+	 * @return the removed value, <code>null</code> if key was not cached
+	 */
+	public V remove( K key )
+	{
+		Entry<V> entry = entries.get( key );
+		return entry != null && remove( key, entry ) ? entry.value : null;
+	}
+
+	/**
+	 * Removes all the entries. Statistics are not reset.
+	 */
+	public void clear()
+	{
+		for( Iterator<K> iterator = entries.keySet().iterator(); iterator.hasNext(); )
+		{
+			remove( iterator.next() );
+		}
+	}
+
+	/**
+	 * Returns the number of entries
+	 * 
+	 * @return the number of entries
+	 */
+	public int size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * Returns the estimated bytes of all entries
+	 * 
+	 * @return the weight of cache
+	 */
+	public long getWeight()
+	{
+		return weight.get();
+	}
+
+	/**
+	 * Returns the counts of cache operations till now
+	 * 
+	 * @return the statistics
+	 */
+	public Statistics getStatistics()
+	{
+		return new Statistics( hitCount.get(), missCount.get(), evictionCount.get(), expirationCount.get(),
+				entries.size(), weight.get() );
+	}
+
+	/**
+	 * Removes the entry, if it is still the entry for key
+	 */
+	private boolean remove( K key, Entry<V> entry )
+	{
+		if( entries.remove( key, entry ) )
+		{
+			weight.addAndGet( -entry.weight );
+			return true;
+		}
+		return false;
+	}
+
+	private boolean isOverBounds()
+	{
+		return maximumEntries > 0 && entries.size() > maximumEntries || maximumWeight > 0
+				&& weight.get() > maximumWeight;
+	}
+
+	/**
+	 * Evicts the entries till cache is within its bounds. Returns at once if another thread is evicting.
+	 */
+	private void evict()
+	{
+		if( !evictionLock.tryLock() )
+		{
+			return;
+		}
+
+		try
+		{
+			while( isOverBounds() && !entries.isEmpty() )
+			{
+				evictOne();
+			}
+		}
+		finally
+		{
+			evictionLock.unlock();
+		}
+	}
+
+	/**
+	 * Picks a sample of entries from eviction cursor, and removes the least used of these. Expired entries are removed
+	 * as they are picked.
+	 */
+	private void evictOne()
+	{
+		long now = expireAfterAccessNanos > 0 ? System.nanoTime() : 0;
+		K victimKey = null;
+		Entry<V> victim = null;
+
+		for( int i = 0; i < SAMPLE_SIZE; i++ )
+		{
+			if( evictionCursor == null || !evictionCursor.hasNext() )
+			{
+				evictionCursor = entries.entrySet().iterator();
+				if( !evictionCursor.hasNext() )
+				{
+					break;
+				}
+			}
+
+			Map.Entry<K, Entry<V>> candidate = evictionCursor.next();
+			Entry<V> entry = candidate.getValue();
+			if( expireAfterAccessNanos > 0 && now - entry.accessTime > expireAfterAccessNanos )
+			{
+				if( remove( candidate.getKey(), entry ) )
+				{
+					expirationCount.incrementAndGet();
+				}
+				return;
+			}
+
+			if( victim == null || entry.frequency < victim.frequency || entry.frequency == victim.frequency
+					&& entry.accessTime < victim.accessTime )
+			{
+				if( victim != null )
+				{
+					victim.frequency >>>= 1;
+				}
+				victimKey = candidate.getKey();
+				victim = entry;
+			}
+			else
+			{
+				entry.frequency >>>= 1;
+			}
+		}
+
+		if( victim != null && remove( victimKey, victim ) )
+		{
+			evictionCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Estimates the bytes taken by a cache entry
+	 * 
+	 * @param <K> the type of key
+	 * @param <V> the type of value
+	 */
+	public interface Weigher<K, V>
+	{
+
+		/**
+		 * Returns the estimated bytes of key and value
+		 * 
+		 * @param key the key
+		 * @param value the value
+		 * @return the estimated bytes, must not be negative
+		 */
+		int weigh( K key, V value );
+	}
+
+	/**
+	 * Immutable snapshot of counts of cache operations
+	 */
+	public static final class Statistics
+	{
+
+		private final long	hitCount;
+
+		private final long	missCount;
+
+		private final long	evictionCount;
+
+		private final long	expirationCount;
+
+		private final int	size;
+
+		private final long	weight;
+
+		private Statistics( long hitCount, long missCount, long evictionCount, long expirationCount, int size,
+				long weight )
+		{
+			this.hitCount = hitCount;
+			this.missCount = missCount;
+			this.evictionCount = evictionCount;
+			this.expirationCount = expirationCount;
+			this.size = size;
+			this.weight = weight;
+		}
+
+		/**
+		 * @return number of reads which found the value
+		 */
+		public long getHitCount()
+		{
+			return hitCount;
+		}
+
+		/**
+		 * @return number of reads which did not find the value, including the expired values
+		 */
+		public long getMissCount()
+		{
+			return missCount;
+		}
+
+		/**
+		 * @return number of entries removed to keep the cache within bounds
+		 */
+		public long getEvictionCount()
+		{
+			return evictionCount;
+		}
+
+		/**
+		 * @return number of entries removed as these expired
+		 */
+		public long getExpirationCount()
+		{
+			return expirationCount;
+		}
+
+		/**
+		 * @return number of entries when statistics were taken
+		 */
+		public int getSize()
+		{
+			return size;
+		}
+
+		/**
+		 * @return estimated bytes of entries when statistics were taken
+		 */
+		public long getWeight()
+		{
+			return weight;
+		}
+
+		/**
+		 * @return ratio of hits to all reads, 1 if there was no read
+		 */
+		public double getHitRate()
+		{
+			long requestCount = hitCount + missCount;
+			return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "hits[" + hitCount + "] misses[" + missCount + "] evictions[" + evictionCount + "] expirations["
+					+ expirationCount + "] size[" + size + "] weight[" + weight + "]";
+		}
+	}
+
+	/**
+	 * Cached value with its weight and usage
+	 */
+	private static final class Entry<V>
+	{
+
+		private final V		value;
+
+		private final int	weight;
+
+		/**
+		 * Number of reads, halved when entry survives an eviction
+		 */
+		private volatile int	frequency;
+
+		/**
+		 * Time of last read or addition in nano seconds, only if entries expire
+		 */
+		private volatile long	accessTime;
+
+		private Entry( V value, int weight, long accessTime )
+		{
+			this.value = value;
+			this.weight = weight;
+			this.accessTime = accessTime;
+		}
+	}
+}
@@ -33,10 +33,14 @@ import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.vedantatree.expressionoasis.config.ConfigFactory;
+import org.vedantatree.expressionoasis.config.ExpressionCacheConfig;
 import org.vedantatree.expressionoasis.config.ExpressionOasisConfig;
 import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.expressions.ExpressionInterner;
 import org.vedantatree.expressionoasis.extensions.DefaultVariableProvider;
 import org.vedantatree.expressionoasis.extensions.FunctionProvider;
 import org.vedantatree.expressionoasis.extensions.VariableProvider;
@@ -65,6 +69,36 @@ import org.vedantatree.expressionoasis.types.ValueObject;
  * 
  * @author Kris Marwood
  * @version 1.1
+ * 
+ *          Context keeps the expression trees compiled with it, if caching of compiled expressions is enabled. Trees
+ *          are bound to the providers and properties of context, so these are reused only while the signature of
+ *          context is same. See {@link #getSignature()}. A cached tree is shared by the threads which compile the same
+ *          expression with the same context.
+ * 
+ * @author Mohit Gupta
+ * @version 1.2
+ * @since 3.3
+ * 
+ *          Token property, set by compiler while initializing every expression, is kept for each thread. So many
+ *          threads can compile the expressions with the same context at the same time.
+ * 
+ * @author Mohit Gupta
+ * @version 1.3
+ * @since 3.3
+ * 
+ *          Context keeps the interner of the trees compiled with it, which shares the same sub trees across trees.
+ *          Interner is replaced when signature of context changes.
+ * 
+ * @author Mohit Gupta
+ * @version 1.4
+ * @since 3.3
+ * 
+ *          Context keeps the parameterized trees compiled with it, keyed by the shape of expressions, i.e. expression
+ *          with its literals replaced by their types.
+ * 
+ * @author Mohit Gupta
+ * @version 1.5
+ * @since 3.3
  */
 public class ExpressionContext
 {
@@ -87,6 +121,36 @@ public class ExpressionContext
 	 */
 	private Map<Object, Object>				properties			= new Hashtable<Object, Object>();
 
+	/**
+	 * Token of the expression being initialized by compiler in current thread
+	 */
+	private final ThreadLocal<Object>		token				= new ThreadLocal<Object>();
+
+	/**
+	 * Number of changes in providers and properties of this context
+	 */
+	private final AtomicInteger				modificationCount	= new AtomicInteger();
+
+	/**
+	 * Expression trees compiled with this context, created when first needed
+	 */
+	private volatile ExpressionCache<String, Compiler.CompiledTree>	compiledTrees;
+
+	/**
+	 * Parameterized trees compiled with this context by shape of expression, created when first needed
+	 */
+	private volatile ExpressionCache<String, Compiler.CompiledTree>	compiledTemplates;
+
+	/**
+	 * Estimated number of nodes of a cached tree, used to bound the canonical nodes of interner
+	 */
+	private static final int										NODES_PER_TREE	= 32;
+
+	/**
+	 * Interner of the trees compiled with this context, with the signature it is created for
+	 */
+	private volatile InternerBinding								internerBinding;
+
 	/**
 	 * Constructor
 	 */
@@ -121,6 +185,7 @@ public class ExpressionContext
 	public void addVariableProvider( VariableProvider variableProvider, String providerName )
 	{
 		variableProviders.put( providerName, variableProvider );
+		modificationCount.incrementAndGet();
 	}
 
 	/**
@@ -131,6 +196,7 @@ public class ExpressionContext
 	public void addVariableProvider( VariableProvider variableProvider )
 	{
 		variableProviders.put( String.valueOf( variableProvider.hashCode() ), variableProvider );
+		modificationCount.incrementAndGet();
 	}
 
 	/**
@@ -142,6 +208,7 @@ public class ExpressionContext
 	{
 		functionProviders.add( functionProvider );
 		functionProvider.initialize( this );
+		modificationCount.incrementAndGet();
 	}
 
 	/**
@@ -182,6 +249,20 @@ public class ExpressionContext
 			throw new IllegalArgumentException( "Property name can't be null." );
 		}
 
+		// compiler sets the token property while initializing every expression, it does not change the tree
+		if( ExpressionEngineConstants.EXPRESSION_CONTENXT_TOKEN.equals( propertyName ) )
+		{
+			if( propertyValue == null )
+			{
+				token.remove();
+			}
+			else
+			{
+				token.set( propertyValue );
+			}
+			return;
+		}
+
 		if( propertyValue == null )
 		{
 			properties.remove( propertyName );
@@ -190,6 +271,7 @@ public class ExpressionContext
 		{
 			properties.put( propertyName, propertyValue );
 		}
+		modificationCount.incrementAndGet();
 	}
 
 	/**
@@ -201,6 +283,10 @@ public class ExpressionContext
 	 */
 	public Object getContextProperty( String propertyName )
 	{
+		if( ExpressionEngineConstants.EXPRESSION_CONTENXT_TOKEN.equals( propertyName ) )
+		{
+			return token.get();
+		}
 		return properties.get( propertyName );
 	}
 
@@ -211,6 +297,7 @@ public class ExpressionContext
 	public void clearVariableProviders()
 	{
 		variableProviders.clear();
+		modificationCount.incrementAndGet();
 	}
 
 	/**
@@ -222,5 +309,152 @@ public class ExpressionContext
 		variableProviders.clear();
 		functionProviders.clear();
 		properties.clear();
+		modificationCount.incrementAndGet();
+	}
+
+	/**
+	 * Returns the signature of the providers and properties of this context. It changes when a provider is added or
+	 * removed, a property is set, or a variable is added, removed or changes its type in a
+	 * {@link DefaultVariableProvider}. It does not change when only the value of a variable changes.
+	 * 
+	 * Expression trees are initialized with the providers and properties of context, so a tree compiled with this
+	 * context is valid while the signature is same.
+	 * 
+	 * @return the signature
+	 */
+	public long getSignature()
+	{
+		long typeVersions = 0;
+		for( VariableProvider variableProvider : variableProviders.values() )
+		{
+			if( variableProvider instanceof DefaultVariableProvider )
+			{
+				typeVersions += ( (DefaultVariableProvider) variableProvider ).getTypeVersion();
+			}
+		}
+		return ( (long) modificationCount.get() << 32 ) + typeVersions;
+	}
+
+	/**
+	 * Returns the cache of expression trees compiled with this context, creating it on first call. It is bounded by
+	 * number of entries and expiry from configuration.
+	 * 
+	 * @return the cache of trees keyed by expression
+	 */
+	ExpressionCache<String, Compiler.CompiledTree> getCompiledTrees()
+	{
+		ExpressionCache<String, Compiler.CompiledTree> trees = compiledTrees;
+		if( trees == null )
+		{
+			synchronized( this )
+			{
+				trees = compiledTrees;
+				if( trees == null )
+				{
+					trees = createTreeCache();
+					compiledTrees = trees;
+				}
+			}
+		}
+		return trees;
+	}
+
+	/**
+	 * Returns the cache of parameterized trees compiled with this context, creating it on first call. It is bounded in
+	 * the same way as cache of trees.
+	 * 
+	 * @return the cache of parameterized trees keyed by shape of expression
+	 */
+	ExpressionCache<String, Compiler.CompiledTree> getCompiledTemplates()
+	{
+		ExpressionCache<String, Compiler.CompiledTree> templates = compiledTemplates;
+		if( templates == null )
+		{
+			synchronized( this )
+			{
+				templates = compiledTemplates;
+				if( templates == null )
+				{
+					templates = createTreeCache();
+					compiledTemplates = templates;
+				}
+			}
+		}
+		return templates;
+	}
+
+	/**
+	 * Returns the counts of operations on the cache of parameterized trees, like hits and misses
+	 * 
+	 * @return the statistics, <code>null</code> if no expression is parameterized yet
+	 */
+	public ExpressionCache.Statistics getTemplateCacheStatistics()
+	{
+		ExpressionCache<String, Compiler.CompiledTree> templates = compiledTemplates;
+		return templates == null ? null : templates.getStatistics();
+	}
+
+	/**
+	 * Creates the cache of compiled trees, bounded by number of entries and expiry from configuration
+	 */
+	private ExpressionCache<String, Compiler.CompiledTree> createTreeCache()
+	{
+		ExpressionCacheConfig cacheConfig = ConfigFactory.getConfig().getExpressionCacheConfig();
+		return new ExpressionCache<String, Compiler.CompiledTree>( cacheConfig.getMaximumEntries(), 0,
+				cacheConfig.getExpireAfterAccessSeconds(), TimeUnit.SECONDS, null );
+	}
+
+	/**
+	 * Returns the interner of the trees compiled with this context, for the statistics of interning
+	 * 
+	 * @return the interner, <code>null</code> if no tree is interned yet
+	 */
+	public ExpressionInterner getExpressionInterner()
+	{
+		InternerBinding binding = internerBinding;
+		return binding == null ? null : binding.interner;
+	}
+
+	/**
+	 * Returns the interner for the given signature of context, creating a new one if signature is changed. Nodes
+	 * interned with other signature may be bound to other providers or types.
+	 * 
+	 * @param signature the signature of context with which the trees are compiled
+	 * @return the interner for signature
+	 */
+	ExpressionInterner getExpressionInterner( long signature )
+	{
+		InternerBinding binding = internerBinding;
+		if( binding == null || binding.signature != signature )
+		{
+			synchronized( this )
+			{
+				binding = internerBinding;
+				if( binding == null || binding.signature != signature )
+				{
+					int maximumEntries = ConfigFactory.getConfig().getExpressionCacheConfig().getMaximumEntries();
+					binding = new InternerBinding( signature, new ExpressionInterner( maximumEntries * NODES_PER_TREE ) );
+					internerBinding = binding;
+				}
+			}
+		}
+		return binding.interner;
+	}
+
+	/**
+	 * Interner with the signature of context it is created for
+	 */
+	private static final class InternerBinding
+	{
+
+		private final long					signature;
+
+		private final ExpressionInterner	interner;
+
+		private InternerBinding( long signature, ExpressionInterner interner )
+		{
+			this.signature = signature;
+			this.interner = interner;
+		}
 	}
 }
\ No newline at end of file
@@ -26,16 +26,20 @@
  */
 package org.vedantatree.expressionoasis;
 
+import java.util.Collection;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
 import org.vedantatree.expressionoasis.expressions.Expression;
+import org.vedantatree.expressionoasis.expressions.ExpressionOptimizer;
 import org.vedantatree.expressionoasis.expressions.ExpressionTypeFinder;
 import org.vedantatree.expressionoasis.expressions.IdentifierExpression;
 import org.vedantatree.expressionoasis.grammar.Grammar;
+import org.vedantatree.expressionoasis.types.Type;
 import org.vedantatree.expressionoasis.types.ValueObject;
 
 
@@ -70,6 +74,30 @@ import org.vedantatree.expressionoasis.types.ValueObject;
  * @author Mohit Gupta
  * @version 1.2
  * @since 3.1
+ * 
+ *          Exposed the statistics of cache of compiled expressions, so these can be monitored
+ * 
+ * @author Mohit Gupta
+ * @version 1.3
+ * @since 3.3
+ * 
+ *          Added prepared expressions, which are compiled once and evaluated concurrently with different bindings
+ * 
+ * @author Mohit Gupta
+ * @version 1.4
+ * @since 3.3
+ * 
+ *          Exposed the counts of optimization of compiled expressions
+ * 
+ * @author Mohit Gupta
+ * @version 1.5
+ * @since 3.3
+ * 
+ *          Added bulk compilation of expressions in parallel, like for loading a repository of rules
+ * 
+ * @author Mohit Gupta
+ * @version 1.6
+ * @since 3.3
  */
 public final class ExpressionEngine
 {
@@ -96,6 +124,26 @@ public final class ExpressionEngine
 		return compiler.getGrammar();
 	}
 
+	/**
+	 * Returns the counts of operations on the cache of compiled expressions, like hits, misses and evictions
+	 * 
+	 * @return the statistics, <code>null</code> if caching of compiled expressions is not enabled
+	 */
+	public static ExpressionCache.Statistics getCacheStatistics()
+	{
+		return compiler.getCacheStatistics();
+	}
+
+	/**
+	 * Returns the counts of optimization of compiled expressions, like the nodes removed and the sub trees folded
+	 * 
+	 * @return the report of optimization, <code>null</code> if optimization is not enabled
+	 */
+	public static ExpressionOptimizer.Report getOptimizationReport()
+	{
+		return compiler.getOptimizationReport();
+	}
+
 	/**
 	 * Evaluates the expression and returns the result
 	 * 
@@ -138,6 +186,53 @@ public final class ExpressionEngine
 		return compiler.compile( expression, expressionContext, validate );
 	}
 
+	/**
+	 * Compiles many expressions in parallel. Same expression is compiled once, and each expression gets its own result
+	 * having the compiled expression or the error. See
+	 * {@link Compiler#compileAll(Collection, ExpressionContext, boolean, java.util.concurrent.ForkJoinPool)}.
+	 * 
+	 * @param expressions the expressions to compile
+	 * @param expressionContext the object contains the contextual information, shared by all the expressions
+	 * @param validate true if the operands should be validated
+	 * @return the results of compilation by expression, in the order of given expressions
+	 */
+	public static Map<String, CompilationResult> compileExpressions( Collection<String> expressions,
+			ExpressionContext expressionContext, boolean validate )
+	{
+		return compiler.compileAll( expressions, expressionContext, validate );
+	}
+
+	/**
+	 * Compiles many named expressions in parallel, like the rules of a repository. See
+	 * {@link #compileExpressions(Collection, ExpressionContext, boolean)}.
+	 * 
+	 * @param namedExpressions the expressions to compile by their names
+	 * @param expressionContext the object contains the contextual information, shared by all the expressions
+	 * @param validate true if the operands should be validated
+	 * @return the results of compilation by name, in the order of given names
+	 */
+	public static Map<String, CompilationResult> compileNamedExpressions( Map<String, String> namedExpressions,
+			ExpressionContext expressionContext, boolean validate )
+	{
+		return compiler.compileAllNamed( namedExpressions, expressionContext, validate );
+	}
+
+	/**
+	 * Compiles the expression once for many evaluations. Prepared expression is thread safe, and every evaluation
+	 * gives the values of variables in its own {@link Bindings}.
+	 * 
+	 * @param expression the expression to prepare
+	 * @param variableTypes types of the variables which can be used in expression, keyed by variable name
+	 * @return the prepared expression
+	 * @throws ExpressionEngineException if unable to compile the expression, or it uses a variable which is not
+	 *         declared
+	 */
+	public static PreparedExpression prepareExpression( String expression, Map<String, Type> variableTypes )
+			throws ExpressionEngineException
+	{
+		return new PreparedExpression( compiler, expression, variableTypes );
+	}
+
 	/**
 	 * Retrieves a set of variable names contained within the specified expression string
 	 * 
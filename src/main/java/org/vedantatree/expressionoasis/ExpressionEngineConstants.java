@@ -37,4 +37,31 @@ public interface ExpressionEngineConstants
 	String	EXPRESSION_CONTENXT_TOKEN			= "TOKEN";
 	String	EXPRESSION_CONTENXT_XML_PATH_URL	= "XML_PATH_URL";
 
+	/**
+	 * Lexer mode which tokenizes the expression by recursive call for each character
+	 */
+	String	LEXER_MODE_RECURSIVE				= "recursive";
+
+	/**
+	 * Lexer mode which tokenizes the expression in a single iterative pass
+	 */
+	String	LEXER_MODE_ITERATIVE				= "iterative";
+
+	/**
+	 * Lexer mode which tokenizes the expression in a single pass, taking the longest matching delimiter directly from
+	 * the expression
+	 */
+	String	LEXER_MODE_LONGEST_MATCH			= "longestMatch";
+
+	/**
+	 * Compilation mode which restructures the tokens in Reverse Polish Notation, and then builds the expression tree
+	 * from it
+	 */
+	String	COMPILATION_MODE_RPN				= "rpn";
+
+	/**
+	 * Compilation mode which builds the expression tree directly from tokens by precedence climbing
+	 */
+	String	COMPILATION_MODE_PRECEDENCE_CLIMBING	= "precedenceClimbing";
+
 }
@@ -0,0 +1,712 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.expressions.Expression;
+import org.vedantatree.expressionoasis.expressions.ExpressionFactory;
+import org.vedantatree.expressionoasis.grammar.ExpressionToken;
+import org.vedantatree.expressionoasis.utils.StringUtils;
+
+
+/**
+ * Compiled state of an expression which is being edited, like a formula in an editor. It keeps the expression, its
+ * tokens and the tree of Expression objects, so that the expression can be compiled again after an edit using
+ * {@link Compiler#recompile(IncrementalExpression, int, int, CharSequence, ExpressionContext, boolean)}.
+ * 
+ * On edit, only the part of expression between the boundary delimiters around the edit is tokenized again, see
+ * {@link Parser#isBoundaryDelimiter(ExpressionToken)}. Tokens before this part are reused as they are, and tokens
+ * after it are relocated by the change in length without reading their characters again. If the part can not be
+ * tokenized on its own, like when a string literal is opened, it is extended till the next boundary delimiter.
+ * 
+ * Tokens are then restructured in RPN, and an Expression object of previous tree is reused if it is created for the
+ * same operand token, or it is created for the same operator and its operands are reused. So only the sub trees
+ * having the changed tokens are created and initialized again. Expression objects are reused only if the same
+ * context object and validation option are passed, as these are initialized with the context. Reused objects are
+ * shared with the previous tree, so the previous tree should not be uninitialized once it is edited.
+ * 
+ * Instances are immutable, and the previous instance remains valid after an edit.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public final class IncrementalExpression
+{
+
+	private static Log								LOGGER	= LogFactory.getLog( IncrementalExpression.class );
+
+	/**
+	 * Compiler which compiled this expression
+	 */
+	private final Compiler							compiler;
+
+	/**
+	 * The expression text
+	 */
+	private final String							expression;
+
+	/**
+	 * Tokens of expression
+	 */
+	private final List<ExpressionToken>				tokens;
+
+	/**
+	 * Position in expression after the last character of each token
+	 */
+	private final int[]								tokenEnds;
+
+	/**
+	 * Tokens in RPN, from which the expression tree is built
+	 */
+	private final ExpressionToken[]					rpnTokens;
+
+	/**
+	 * Type of expression created for each RPN token, as per ExpressionFactory
+	 */
+	private final String[]							types;
+
+	/**
+	 * Expression created for each RPN token
+	 */
+	private final Expression[]						expressions;
+
+	/**
+	 * Position of the RPN token of parent expression for each RPN token, -1 for root
+	 */
+	private final int[]								parents;
+
+	/**
+	 * Number of operand expressions of expression of each RPN token
+	 */
+	private final int[]								operandCounts;
+
+	/**
+	 * Position of RPN token for each operand token
+	 */
+	private final Map<ExpressionToken, Integer>	operandPositions;
+
+	/**
+	 * Context used to initialize the expressions
+	 */
+	private final ExpressionContext					expressionContext;
+
+	/**
+	 * Whether expressions are validated on initialization
+	 */
+	private final boolean							validate;
+
+	/**
+	 * Number of characters tokenized to create this state
+	 */
+	private final int								tokenizedLength;
+
+	/**
+	 * Number of expressions reused from the previous state
+	 */
+	private final int								reusedExpressionCount;
+
+	private IncrementalExpression( Builder builder, Expression compiledExpression )
+	{
+		this.compiler = builder.compiler;
+		this.expression = builder.expression;
+		this.tokens = Collections.unmodifiableList( builder.tokens );
+		this.tokenEnds = builder.tokenEnds;
+		this.rpnTokens = builder.rpnTokens;
+		this.types = builder.types;
+		this.expressions = builder.expressions;
+		this.parents = builder.parents;
+		this.operandCounts = builder.operandCounts;
+		this.operandPositions = builder.operandPositions;
+		this.expressionContext = builder.expressionContext;
+		this.validate = builder.validate;
+		this.tokenizedLength = builder.tokenizedLength;
+		this.reusedExpressionCount = builder.reusedExpressionCount;
+
+		if( expressions.length == 0 || expressions[expressions.length - 1] != compiledExpression )
+		{
+			throw new IllegalStateException( "Root expression must be created for the last RPN token." );
+		}
+	}
+
+	/**
+	 * Returns the expression text
+	 * 
+	 * @return the expression
+	 */
+	public String getExpression()
+	{
+		return expression;
+	}
+
+	/**
+	 * Returns the tokens of expression
+	 * 
+	 * @return unmodifiable list of tokens, in the order of their occurrence in expression
+	 */
+	public List<ExpressionToken> getTokens()
+	{
+		return tokens;
+	}
+
+	/**
+	 * Returns the tree of Expression objects representing the expression
+	 * 
+	 * @return the root of expression tree
+	 */
+	public Expression getCompiledExpression()
+	{
+		return expressions[expressions.length - 1];
+	}
+
+	/**
+	 * Returns the number of characters which were tokenized to create this state. It is the length of expression if
+	 * it is compiled fully.
+	 * 
+	 * @return the number of tokenized characters
+	 */
+	public int getTokenizedLength()
+	{
+		return tokenizedLength;
+	}
+
+	/**
+	 * Returns the number of Expression objects reused from the previous state
+	 * 
+	 * @return the number of reused expressions, zero if expression is compiled fully
+	 */
+	public int getReusedExpressionCount()
+	{
+		return reusedExpressionCount;
+	}
+
+	/**
+	 * Returns the number of Expression objects in expression tree
+	 * 
+	 * @return the number of expressions
+	 */
+	public int getExpressionCount()
+	{
+		return expressions.length;
+	}
+
+	/**
+	 * Returns the compiler which compiled this expression
+	 * 
+	 * @return the compiler
+	 */
+	Compiler getCompiler()
+	{
+		return compiler;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "{" + expression + ", tokens" + tokens + "}";
+	}
+
+	/**
+	 * Tokenizes the given expression fully
+	 * 
+	 * @param compiler the compiler which compiles the expression
+	 * @param parser the parser to tokenize the expression
+	 * @param expression the expression
+	 * @return the builder holding the tokens
+	 * @throws ExpressionEngineException if unable to parse, or expression is not a qualified text
+	 */
+	static Builder tokenize( Compiler compiler, Parser parser, CharSequence expression )
+			throws ExpressionEngineException
+	{
+		if( expression == null )
+		{
+			throw new ExpressionEngineException( "Passed expression is not a qualified text." );
+		}
+
+		String text = expression.toString();
+		List<ExpressionToken> tokenList = parser.parse( text );
+		int[] ends = new int[tokenList.size()];
+		findEnds( tokenList, text, 0, ends, 0 );
+
+		return new Builder( compiler, text, tokenList, ends, text.length(), null, null );
+	}
+
+	/**
+	 * Applies the edit to this expression and tokenizes the changed part. Edit replaces the given part of expression
+	 * with the inserted text, so an insertion removes nothing and a deletion inserts nothing.
+	 * 
+	 * @param requester the compiler which compiles the edited expression. If it is not the compiler of this state,
+	 *        edited expression is tokenized fully.
+	 * @param parser the parser of requester
+	 * @param offset the position in expression where edit starts
+	 * @param removedLength number of characters removed from offset
+	 * @param insertedText the text inserted at offset, <code>null</code> if nothing is inserted
+	 * @return the builder holding the tokens of edited expression
+	 * @throws ExpressionEngineException if unable to parse, or edited expression is not a qualified text
+	 * @throws IndexOutOfBoundsException if removed part is not inside the expression
+	 */
+	Builder edit( Compiler requester, Parser parser, int offset, int removedLength, CharSequence insertedText )
+			throws ExpressionEngineException
+	{
+		int length = expression.length();
+		if( offset < 0 || removedLength < 0 || offset + removedLength > length )
+		{
+			throw new IndexOutOfBoundsException( "Edit must be inside the expression. offset[" + offset
+					+ "] removedLength[" + removedLength + "] length[" + length + "]" );
+		}
+
+		int insertedLength = insertedText == null ? 0 : insertedText.length();
+		String text = new StringBuilder( length - removedLength + insertedLength ).append( expression, 0, offset )
+				.append( insertedText == null ? "" : insertedText ).append( expression, offset + removedLength, length )
+				.toString();
+
+		if( !StringUtils.isQualifiedString( text ) )
+		{
+			throw new ExpressionEngineException( "Passed expression is not a qualified text." );
+		}
+		if( requester != compiler )
+		{
+			return tokenize( requester, parser, text );
+		}
+
+		int distance = insertedLength - removedLength;
+		int count = tokens.size();
+
+		// keep the tokens till the last boundary delimiter which ends before the edit
+		int first = 0;
+		int from = 0;
+		for( int i = findFirstEndingAfter( offset ) - 1; i >= 0; i-- )
+		{
+			if( parser.isBoundaryDelimiter( tokens.get( i ) ) )
+			{
+				first = i + 1;
+				from = tokenEnds[i];
+				break;
+			}
+		}
+
+		/*
+		 * Tokenize till a boundary delimiter which ends after the edit. It is a valid end of the part only if the part
+		 * is tokenized without error and it ends with a boundary delimiter too, otherwise the characters after it
+		 * are part of the tokens of edit, like in a string literal. So try the next boundary delimiter then.
+		 */
+		List<ExpressionToken> part = null;
+		int[] partEnds = null;
+		int last = count - 1;
+		int to = text.length();
+
+		for( int i = Math.max( first, findFirstEndingAfter( offset + removedLength - 1 ) ); part == null; i++ )
+		{
+			while( i < count && !parser.isBoundaryDelimiter( tokens.get( i ) ) )
+			{
+				i++;
+			}
+
+			to = i < count ? tokenEnds[i] + distance : text.length();
+			try
+			{
+				List<ExpressionToken> partTokens = isBlank( text, from, to ) ? new ArrayList<ExpressionToken>( 0 )
+						: parser.parse( text, from, to );
+				int[] ends = new int[partTokens.size()];
+				findEnds( partTokens, text, from, ends, 0 );
+
+				int size = partTokens.size();
+				if( i == count || size == 0
+						|| ( ends[size - 1] == to && parser.isBoundaryDelimiter( partTokens.get( size - 1 ) ) ) )
+				{
+					part = partTokens;
+					partEnds = ends;
+					last = i < count ? i : count - 1;
+				}
+			}
+			catch( ExpressionEngineException ex )
+			{
+				if( i >= count )
+				{
+					// error is reported with the position in whole expression
+					return tokenize( requester, parser, text );
+				}
+			}
+		}
+
+		if( LOGGER.isDebugEnabled() )
+		{
+			LOGGER.debug( "expression[" + text + "] reusedTokens[" + first + "] partTokens[" + part
+					+ "] relocatedTokens[" + ( count - last - 1 ) + "]" );
+		}
+
+		int size = first + part.size() + count - last - 1;
+		List<ExpressionToken> tokenList = new ArrayList<ExpressionToken>( size );
+		int[] ends = new int[size];
+		Map<ExpressionToken, ExpressionToken> relocatedTokens = new IdentityHashMap<ExpressionToken, ExpressionToken>();
+
+		tokenList.addAll( tokens.subList( 0, first ) );
+		System.arraycopy( tokenEnds, 0, ends, 0, first );
+
+		tokenList.addAll( part );
+		System.arraycopy( partEnds, 0, ends, first, part.size() );
+
+		for( int i = last + 1, position = first + part.size(); i < count; i++, position++ )
+		{
+			ExpressionToken token = tokens.get( i );
+			ExpressionToken relocatedToken = distance == 0 ? token : token.relocate( text, distance );
+			tokenList.add( relocatedToken );
+			ends[position] = tokenEnds[i] + distance;
+			relocatedTokens.put( relocatedToken, token );
+		}
+
+		return new Builder( compiler, text, tokenList, ends, to - from, this, relocatedTokens );
+	}
+
+	/**
+	 * Checks whether given part of text has only blank characters
+	 * 
+	 * @param text the text
+	 * @param from the start of part, inclusive
+	 * @param to the end of part, exclusive
+	 * @return <code>true</code> if part has no character other than blanks
+	 */
+	private static boolean isBlank( CharSequence text, int from, int to )
+	{
+		for( int i = from; i < to; i++ )
+		{
+			if( text.charAt( i ) > ' ' )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the first token which ends after given position
+	 * 
+	 * @param position the position in expression
+	 * @return the index of token, or number of tokens if all tokens end till the position
+	 */
+	private int findFirstEndingAfter( int position )
+	{
+		int low = 0;
+		int high = tokenEnds.length;
+		while( low < high )
+		{
+			int middle = ( low + high ) >>> 1;
+			if( tokenEnds[middle] <= position )
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Finds the position after the last character of each token in expression. Tokens created over the expression
+	 * know their position, characters of other tokens are matched in expression skipping the blanks, as delimiters
+	 * may be combined across blanks.
+	 * 
+	 * @param tokenList the tokens in the order of their occurrence in expression
+	 * @param expression the expression
+	 * @param from the position where first token is searched from
+	 * @param ends the array to fill the positions in
+	 * @param start the index in array for first token
+	 */
+	private static void findEnds( List<ExpressionToken> tokenList, CharSequence expression, int from, int[] ends,
+			int start )
+	{
+		int position = from;
+		for( int i = 0, size = tokenList.size(); i < size; i++ )
+		{
+			ExpressionToken token = tokenList.get( i );
+			if( token.getSource() == expression )
+			{
+				position = token.getOffset() + token.length();
+			}
+			else
+			{
+				int matched = 0;
+				while( matched < token.length() )
+				{
+					if( position >= expression.length() )
+					{
+						throw new IllegalStateException( "Token is not found in expression. token[" + token
+								+ "] expression[" + expression + "]" );
+					}
+
+					char character = expression.charAt( position++ );
+					if( character == token.charAt( matched ) )
+					{
+						matched++;
+					}
+					else if( character > ' ' )
+					{
+						throw new IllegalStateException( "Token is not found in expression. token[" + token
+								+ "] expression[" + expression + "]" );
+					}
+				}
+			}
+			ends[start + i] = position;
+		}
+	}
+
+	/**
+	 * Collects the state of an expression while it is compiled, and finds the Expression objects which can be reused
+	 * from the previous state. Compiler creates the expressions for RPN tokens in order, asking the builder for a
+	 * reusable expression before creating one.
+	 */
+	static final class Builder
+	{
+
+		private final Compiler								compiler;
+
+		private final String								expression;
+
+		private final List<ExpressionToken>					tokens;
+
+		private final int[]									tokenEnds;
+
+		private final int									tokenizedLength;
+
+		/**
+		 * Previous state to reuse the expressions from, <code>null</code> if nothing can be reused
+		 */
+		private IncrementalExpression						previous;
+
+		/**
+		 * Previous tokens of the relocated tokens
+		 */
+		private final Map<ExpressionToken, ExpressionToken>	relocatedTokens;
+
+		private ExpressionContext							expressionContext;
+
+		private boolean										validate;
+
+		private ExpressionToken[]							rpnTokens;
+
+		private String[]									types;
+
+		private Expression[]								expressions;
+
+		private int[]										parents;
+
+		private int[]										operandCounts;
+
+		private Map<ExpressionToken, Integer>				operandPositions;
+
+		/**
+		 * Position in previous state of the expression of each RPN token, -1 if expression is created
+		 */
+		private int[]										previousPositions;
+
+		/**
+		 * Positions of RPN tokens whose expressions are not yet taken as operands
+		 */
+		private int[]										operandStack;
+
+		private int											operandStackSize;
+
+		private int											size;
+
+		private int											reusedExpressionCount;
+
+		private Builder( Compiler compiler, String expression, List<ExpressionToken> tokens, int[] tokenEnds,
+				int tokenizedLength, IncrementalExpression previous,
+				Map<ExpressionToken, ExpressionToken> relocatedTokens )
+		{
+			this.compiler = compiler;
+			this.expression = expression;
+			this.tokens = tokens;
+			this.tokenEnds = tokenEnds;
+			this.tokenizedLength = tokenizedLength;
+			this.previous = previous;
+			this.relocatedTokens = relocatedTokens;
+		}
+
+		/**
+		 * Returns the tokens of expression
+		 * 
+		 * @return the tokens
+		 */
+		List<ExpressionToken> getTokens()
+		{
+			return tokens;
+		}
+
+		/**
+		 * Prepares to collect the expressions
+		 * 
+		 * @param rpnTokenCount number of RPN tokens
+		 * @param context the context to initialize expressions with
+		 * @param validateExpressions whether expressions are validated on initialization
+		 */
+		void start( int rpnTokenCount, ExpressionContext context, boolean validateExpressions )
+		{
+			this.expressionContext = context;
+			this.validate = validateExpressions;
+
+			if( previous != null && ( previous.expressionContext != context || previous.validate != validate ) )
+			{
+				previous = null;
+			}
+
+			rpnTokens = new ExpressionToken[rpnTokenCount];
+			types = new String[rpnTokenCount];
+			expressions = new Expression[rpnTokenCount];
+			parents = new int[rpnTokenCount];
+			operandCounts = new int[rpnTokenCount];
+			previousPositions = new int[rpnTokenCount];
+			operandStack = new int[rpnTokenCount];
+			operandPositions = new IdentityHashMap<ExpressionToken, Integer>();
+		}
+
+		/**
+		 * Finds the expression of previous state which can be used for the token
+		 * 
+		 * @param token the RPN token
+		 * @param type the type of expression as per ExpressionFactory
+		 * @param operandCount number of operand expressions taken by expression of token
+		 * @return the expression to reuse, or <code>null</code> if expression should be created
+		 */
+		Expression reuse( ExpressionToken token, String type, int operandCount )
+		{
+			int position = findPreviousPosition( token, type, operandCount );
+			return position < 0 ? null : previous.expressions[position];
+		}
+
+		/**
+		 * Adds the expression created or reused for next RPN token
+		 * 
+		 * @param token the RPN token
+		 * @param type the type of expression as per ExpressionFactory
+		 * @param expression the expression
+		 * @param operandCount number of operand expressions taken by expression
+		 */
+		void add( ExpressionToken token, String type, Expression expression, int operandCount )
+		{
+			int previousPosition = findPreviousPosition( token, type, operandCount );
+			if( previousPosition >= 0 && previous.expressions[previousPosition] != expression )
+			{
+				previousPosition = -1;
+			}
+
+			int position = size++;
+			rpnTokens[position] = token;
+			types[position] = type;
+			expressions[position] = expression;
+			parents[position] = -1;
+			operandCounts[position] = operandCount;
+			previousPositions[position] = previousPosition;
+
+			for( int i = 0; i < operandCount; i++ )
+			{
+				parents[operandStack[--operandStackSize]] = position;
+			}
+			operandStack[operandStackSize++] = position;
+
+			if( ExpressionFactory.OPERAND.equals( type ) )
+			{
+				operandPositions.put( token, position );
+			}
+			if( previousPosition >= 0 )
+			{
+				reusedExpressionCount++;
+			}
+		}
+
+		/**
+		 * Creates the state once expressions are created for all RPN tokens
+		 * 
+		 * @param compiledExpression the root of expression tree
+		 * @return the state of compiled expression
+		 */
+		IncrementalExpression build( Expression compiledExpression )
+		{
+			return new IncrementalExpression( this, compiledExpression );
+		}
+
+		/**
+		 * Finds the position of expression in previous state which can be used for the token. An operand expression is
+		 * reusable if it is created for the same token. Other expression is reusable if it is created for the same
+		 * operator and type, and all its operands are the reused expressions in same order.
+		 * 
+		 * @param token the RPN token
+		 * @param type the type of expression as per ExpressionFactory
+		 * @param operandCount number of operand expressions taken by expression of token
+		 * @return the position of expression in previous state, -1 if there is no reusable expression
+		 */
+		private int findPreviousPosition( ExpressionToken token, String type, int operandCount )
+		{
+			if( previous == null )
+			{
+				return -1;
+			}
+
+			if( ExpressionFactory.OPERAND.equals( type ) )
+			{
+				ExpressionToken previousToken = relocatedTokens == null ? null : relocatedTokens.get( token );
+				Integer position = previous.operandPositions.get( previousToken == null ? token : previousToken );
+				return position == null ? -1 : position;
+			}
+			if( operandCount == 0 )
+			{
+				return -1;
+			}
+
+			int parent = -1;
+			int lastOperand = -1;
+			for( int i = operandStackSize - operandCount; i < operandStackSize; i++ )
+			{
+				int operand = previousPositions[operandStack[i]];
+				if( operand <= lastOperand || ( parent >= 0 && previous.parents[operand] != parent ) )
+				{
+					return -1;
+				}
+				parent = previous.parents[operand];
+				lastOperand = operand;
+
+				if( parent < 0 )
+				{
+					return -1;
+				}
+			}
+
+			return previous.operandCounts[parent] == operandCount && previous.types[parent].equals( type )
+					&& previous.rpnTokens[parent].getValue().equals( token.getValue() ) ? parent : -1;
+		}
+	}
+}
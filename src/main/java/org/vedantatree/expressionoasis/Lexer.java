@@ -0,0 +1,695 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.expressions.ExpressionFactory;
+import org.vedantatree.expressionoasis.grammar.CompiledGrammar;
+import org.vedantatree.expressionoasis.grammar.DelimiterTrie;
+import org.vedantatree.expressionoasis.grammar.ExpressionToken;
+import org.vedantatree.expressionoasis.grammar.Grammar;
+import org.vedantatree.expressionoasis.grammar.rules.IProductionRule;
+import org.vedantatree.expressionoasis.grammar.rules.ProductionRuleAutomaton;
+
+
+/**
+ * Iterative implementation of the tokenization algorithm of {@link Parser}.
+ * 
+ * It walks the expression once from left to right, keeping the parser cursor,
+ * the token offset and the trimmed bounds of the current token as plain indexes.
+ * Hence it neither recurses for every character, nor extracts a substring for
+ * every character. Single character delimiters are looked up in a table which is
+ * built from the grammar at construction time. The token list produced is same
+ * as the one produced by recursive parsing, including the token indexes.
+ * 
+ * If grammar provides the automaton compiled from its production rules, lexer tracks the automaton state of current
+ * token as cursor moves. So checking a character against the production rules costs a table lookup.
+ * 
+ * Tokens are created over the expression by offset and length, so no string is created for operands while
+ * tokenizing. Delimiter tokens share the delimiter strings of grammar. See {@link ExpressionToken}. If grammar provides
+ * the compiled view of its symbols, kind of every token is stamped on it before returning the tokens.
+ * 
+ * Lexer can also take the longest matching delimiter directly from expression using the delimiter trie of grammar,
+ * instead of combining the delimiters with last token. See {@link #Lexer(Grammar, boolean)}.
+ * 
+ * Lexer is stateless once constructed, so one instance can be shared by threads
+ * as far as the grammar is not being modified.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ * 
+ *        Lexer stamps the operand kind of token, resolved from the production rule which allowed it, and parses the
+ *        numeric literals while lexing. So compiler creates the operands without matching the operand patterns. It is
+ *        done only if grammar provides the automaton.
+ * 
+ * @author Mohit Gupta
+ * @version 1.1
+ * @since 3.3
+ */
+public final class Lexer
+{
+
+	private static Log						LOGGER			= LogFactory.getLog( Lexer.class );
+
+	/**
+	 * Characters below this value are looked up in tables, rest are checked with grammar
+	 */
+	private static final int				TABLE_SIZE		= 128;
+
+	/**
+	 * Grammar used to identify delimiters and to validate the tokens
+	 */
+	private final Grammar					grammar;
+
+	/**
+	 * Whether blanks around the tokens should be ignored, as per grammar
+	 */
+	private final boolean					ignoreBlank;
+
+	/**
+	 * Automaton compiled from production rules, <code>null</code> if grammar does not provide it or some rules are
+	 * not compiled in it
+	 */
+	private final ProductionRuleAutomaton	automaton;
+
+	/**
+	 * Prefix tree of delimiters, <code>null</code> if grammar does not provide it
+	 */
+	private final DelimiterTrie				delimiterTrie;
+
+	/**
+	 * Whether the longest matching delimiter is taken directly from expression
+	 */
+	private final boolean					longestMatch;
+
+	/**
+	 * Table of single character delimiters, indexed by character
+	 */
+	private final boolean[]					delimiterTable	= new boolean[TABLE_SIZE];
+
+	/**
+	 * String values of single character delimiters, to create the tokens without allocating new strings
+	 */
+	private final String[]					delimiterValues	= new String[TABLE_SIZE];
+
+	/**
+	 * Operand kind for the tokens of each compiled rule of automaton, indexed by rule. It is -1 if operand is not
+	 * known by rule.
+	 */
+	private final int[]						ruleOperandKinds;
+
+	/**
+	 * Kinds of literal operands allowed by each compiled rule of automaton, indexed by rule
+	 */
+	private final int[][]					ruleLiteralKinds;
+
+	/**
+	 * Constructs the Lexer for given grammar, which produces the same tokens as recursive parsing
+	 * 
+	 * @param grammar the grammar to tokenize the expressions with
+	 * @throws IllegalArgumentException if the grammar is null
+	 */
+	public Lexer( Grammar grammar )
+	{
+		this( grammar, false );
+	}
+
+	/**
+	 * Constructs the Lexer for given grammar
+	 * 
+	 * @param grammar the grammar to tokenize the expressions with
+	 * @param longestMatch whether to take the longest matching delimiter directly from expression. If grammar does not
+	 *        provide the delimiter trie, lexer works as if it is <code>false</code>.
+	 * @throws IllegalArgumentException if the grammar is null
+	 */
+	public Lexer( Grammar grammar, boolean longestMatch )
+	{
+		if( grammar == null )
+		{
+			throw new IllegalArgumentException( "Grammar must not be null for the lexer." );
+		}
+
+		this.grammar = grammar;
+		this.ignoreBlank = grammar.isIgnoreBlank();
+
+		ProductionRuleAutomaton productionRuleAutomaton = grammar.getProductionRuleAutomaton();
+		this.automaton = productionRuleAutomaton == null || productionRuleAutomaton.hasFallbackRules() ? null
+				: productionRuleAutomaton;
+
+		this.delimiterTrie = grammar.getDelimiterTrie();
+		this.longestMatch = longestMatch && delimiterTrie != null;
+		if( longestMatch && delimiterTrie == null )
+		{
+			LOGGER.warn( "Grammar does not provide delimiter trie, longest match of delimiters is not possible. grammar["
+					+ grammar.getClass().getName() + "]" );
+		}
+
+		List<IProductionRule> rules = automaton == null ? new ArrayList<IProductionRule>() : automaton
+				.getCompiledRules();
+		ExpressionFactory expressionFactory = ExpressionFactory.getInstance();
+		this.ruleOperandKinds = new int[rules.size()];
+		this.ruleLiteralKinds = new int[rules.size()][];
+		for( int rule = 0; rule < rules.size(); rule++ )
+		{
+			ruleOperandKinds[rule] = expressionFactory.getOperandKind( rules.get( rule ) );
+			ruleLiteralKinds[rule] = expressionFactory.getLiteralKinds( rules.get( rule ) );
+		}
+
+		for( char character = 0; character < TABLE_SIZE; character++ )
+		{
+			String value = String.valueOf( character );
+			if( grammar.isDelimiter( value ) )
+			{
+				delimiterTable[character] = true;
+				delimiterValues[character] = value;
+			}
+		}
+	}
+
+	/**
+	 * Breaks the given expression in tokens as per grammar rules.
+	 * 
+	 * @param expression the expression to tokenize, must be a qualified string. Tokens refer to it, hence it must not be
+	 *        modified while tokens are in use.
+	 * @return list of tokens in the order of their occurrence in expression
+	 * @throws ExpressionEngineException if any token is not allowed by grammar
+	 */
+	public List<ExpressionToken> tokenize( CharSequence expression ) throws ExpressionEngineException
+	{
+		List<ExpressionToken> tokenList = longestMatch ? tokenizeByLongestMatch( expression )
+				: tokenizeIteratively( expression );
+
+		// stamp the kinds once, so compiler does not look up the tokens in grammar again
+		CompiledGrammar compiledGrammar = grammar.getCompiledGrammar();
+		if( compiledGrammar != null )
+		{
+			for( int i = 0, size = tokenList.size(); i < size; i++ )
+			{
+				compiledGrammar.getKind( tokenList.get( i ) );
+			}
+		}
+
+		if( LOGGER.isDebugEnabled() )
+		{
+			LOGGER.debug( "expression[" + expression + "] tokens[" + tokenList + "]" );
+		}
+
+		return tokenList;
+	}
+
+	/**
+	 * Breaks the given expression in tokens, in the same way as recursive parsing
+	 * 
+	 * @param expression the expression to tokenize
+	 * @return list of tokens in the order of their occurrence in expression
+	 * @throws ExpressionEngineException if any token is not allowed by grammar
+	 */
+	private List<ExpressionToken> tokenizeIteratively( CharSequence expression ) throws ExpressionEngineException
+	{
+		/*
+		 * It is the same state machine as of Parser.parse( String, List, int, int ), running in a loop.
+		 * 
+		 * The current token is the part of expression from offset to current position (excluding).
+		 * tokenStart and tokenEnd are the bounds of current token after trimming the blanks,
+		 * tokenStart is -1 if current token is blank. These are maintained as cursor moves, so
+		 * the current token string is extracted only when it is added to the token list.
+		 * 
+		 * If grammar provides the production rule automaton, state of current token and state of
+		 * last token + current token are also maintained as cursor moves. Hence grammar rules are checked
+		 * by looking at the automaton state, instead of matching the token collected so far.
+		 * Blanks after the current token are fed to these states only when a non blank character follows
+		 * them, as trimmed token is checked with grammar.
+		 */
+
+		List<ExpressionToken> tokenList = new ArrayList<ExpressionToken>();
+		int length = expression.length();
+
+		int offset = 0;
+		int index = 0;
+		int tokenStart = -1;
+		int tokenEnd = -1;
+		boolean lastTokenDelimiter = false;
+
+		int startState = automaton == null ? 0 : automaton.getStartState();
+		int currentState = startState;
+		int lastCurrentState = ProductionRuleAutomaton.DEAD_STATE;
+
+		for( int position = 0; position < length; position++ )
+		{
+			char character = expression.charAt( position );
+			index = offset;
+
+			if( isDelimiter( character )
+					&& !( automaton != null ? automaton.isApproachable( automaton.next( currentState, character ) )
+							: grammar.isApproachable( getCurrentToken( expression, offset, position, tokenStart,
+									tokenEnd ) + character ) ) )
+			{
+				if( tokenStart >= 0 )
+				{
+					ExpressionToken currentToken = createToken( expression, offset, position, tokenStart, tokenEnd, index );
+					checkValid( currentToken, currentState, offset );
+					tokenList.add( currentToken );
+					lastTokenDelimiter = isDelimiter( currentToken );
+				}
+
+				offset = position + 1;
+				tokenStart = -1;
+				tokenEnd = -1;
+				currentState = startState;
+
+				String delimiter = getDelimiterValue( character );
+
+				// formation of multiple character delimiters
+				if( lastTokenDelimiter )
+				{
+					int lastIndex = tokenList.size() - 1;
+					String previousToken = tokenList.get( lastIndex ).getValue();
+					String combinedDelimiter = delimiterTrie != null ? delimiterTrie.extend( previousToken, character )
+							: previousToken + character;
+
+					if( combinedDelimiter != null && grammar.isDelimiter( combinedDelimiter ) )
+					{
+						index -= previousToken.length();
+						delimiter = combinedDelimiter;
+						tokenList.remove( lastIndex );
+					}
+				}
+
+				if( !isBlank( delimiter ) )
+				{
+					tokenList.add( new ExpressionToken( delimiter, index ) );
+					lastTokenDelimiter = true;
+				}
+
+				if( automaton != null && lastTokenDelimiter )
+				{
+					lastCurrentState = automaton.next( startState, tokenList.get( tokenList.size() - 1 ).getValue() );
+				}
+
+				// current character is consumed as delimiter, it does not become part of next token
+				continue;
+			}
+			else if( lastTokenDelimiter )
+			{
+				int lastIndex = tokenList.size() - 1;
+				String lastToken = tokenList.get( lastIndex ).getValue();
+
+				// give a chance to include previous delimiter in current token, if approachable
+				if( automaton != null ? automaton.isApproachable( lastCurrentState ) : grammar.isApproachable( lastToken
+						+ getCurrentToken( expression, offset, position, tokenStart, tokenEnd ) ) )
+				{
+					offset -= lastToken.length();
+					tokenList.remove( lastIndex );
+					lastTokenDelimiter = lastIndex > 0 && isDelimiter( tokenList.get( lastIndex - 1 ) );
+
+					// offset moved back, so find the trimmed bounds and states again
+					tokenStart = -1;
+					tokenEnd = -1;
+					for( int i = offset; i < position; i++ )
+					{
+						if( !isBlank( expression.charAt( i ) ) )
+						{
+							tokenStart = tokenStart < 0 ? i : tokenStart;
+							tokenEnd = i + 1;
+						}
+					}
+
+					if( automaton != null )
+					{
+						currentState = feed( startState, expression, offset, position, tokenStart, tokenEnd );
+						if( lastTokenDelimiter )
+						{
+							lastCurrentState = feed( automaton.next( startState, tokenList.get( lastIndex - 1 )
+									.getValue() ), expression, offset, position, tokenStart, tokenEnd );
+						}
+					}
+				}
+			}
+
+			// current character becomes part of current token
+			if( automaton != null && ( !ignoreBlank || !isBlank( character ) ) )
+			{
+				// feed the blanks which were left after current token, as these are inside the token now
+				int from = ignoreBlank && tokenStart >= 0 ? tokenEnd : position;
+				for( int i = from; i <= position; i++ )
+				{
+					char next = expression.charAt( i );
+					currentState = automaton.next( currentState, next );
+					if( lastTokenDelimiter )
+					{
+						lastCurrentState = automaton.next( lastCurrentState, next );
+					}
+				}
+			}
+
+			if( !isBlank( character ) )
+			{
+				tokenStart = tokenStart < 0 ? position : tokenStart;
+				tokenEnd = position + 1;
+			}
+		}
+
+		// put the token if any at last
+		if( tokenStart >= 0 )
+		{
+			ExpressionToken currentToken = createToken( expression, offset, length, tokenStart, tokenEnd, index );
+			checkValid( currentToken, currentState, offset );
+			tokenList.add( currentToken );
+		}
+
+		return tokenList;
+	}
+
+	/**
+	 * Breaks the given expression in tokens, taking the longest matching delimiter directly from expression.
+	 * 
+	 * Unlike the recursive parsing, a multiple character delimiter is identified at once from the delimiter trie,
+	 * instead of combining it with the last token. Hence delimiters separated by blanks are not combined, and the
+	 * token list is never modified backwards. A delimiter character starts an operand, like '.' in .5, if it is at
+	 * operand position, i.e. at start or after a delimiter other than right bracket, and it is approachable with the
+	 * next character. Token index is the position of first character of token in expression.
+	 * 
+	 * @param expression the expression to tokenize
+	 * @return list of tokens in the order of their occurrence in expression
+	 * @throws ExpressionEngineException if any token is not allowed by grammar
+	 */
+	private List<ExpressionToken> tokenizeByLongestMatch( CharSequence expression ) throws ExpressionEngineException
+	{
+		List<ExpressionToken> tokenList = new ArrayList<ExpressionToken>();
+		int length = expression.length();
+
+		int offset = 0;
+		int tokenStart = -1;
+		int tokenEnd = -1;
+		boolean operandPosition = true;
+
+		int startState = automaton == null ? 0 : automaton.getStartState();
+		int currentState = startState;
+
+		for( int position = 0; position < length; position++ )
+		{
+			char character = expression.charAt( position );
+			String delimiter = delimiterTrie.longestMatch( expression, position );
+
+			if( delimiter != null
+					&& !( automaton != null ? automaton.isApproachable( automaton.next( currentState, character ) )
+							: grammar.isApproachable( getCurrentToken( expression, offset, position, tokenStart,
+									tokenEnd ) + character ) ) )
+			{
+				if( tokenStart >= 0 )
+				{
+					int tokenIndex = ignoreBlank ? tokenStart : offset;
+					ExpressionToken currentToken = createToken( expression, offset, position, tokenStart, tokenEnd,
+							tokenIndex );
+					checkValid( currentToken, currentState, tokenIndex );
+					tokenList.add( currentToken );
+					operandPosition = false;
+				}
+
+				tokenStart = -1;
+				tokenEnd = -1;
+				currentState = startState;
+
+				if( !isBlank( delimiter ) )
+				{
+					if( operandPosition && position + 1 < length
+							&& isApproachable( character, expression.charAt( position + 1 ) ) )
+					{
+						// delimiter character starts an operand
+						offset = position;
+						tokenStart = position;
+						tokenEnd = position + 1;
+						currentState = automaton == null ? startState : automaton.next( startState, character );
+						continue;
+					}
+
+					tokenList.add( new ExpressionToken( delimiter, position ) );
+					operandPosition = !grammar.isRightBracket( delimiter );
+				}
+
+				position += delimiter.length() - 1;
+				offset = position + 1;
+				continue;
+			}
+
+			// current character becomes part of current token
+			if( automaton != null && ( !ignoreBlank || !isBlank( character ) ) )
+			{
+				// feed the blanks which were left after current token, as these are inside the token now
+				int from = ignoreBlank && tokenStart >= 0 ? tokenEnd : position;
+				for( int i = from; i <= position; i++ )
+				{
+					currentState = automaton.next( currentState, expression.charAt( i ) );
+				}
+			}
+
+			if( !isBlank( character ) )
+			{
+				tokenStart = tokenStart < 0 ? position : tokenStart;
+				tokenEnd = position + 1;
+			}
+		}
+
+		// put the token if any at last
+		if( tokenStart >= 0 )
+		{
+			int tokenIndex = ignoreBlank ? tokenStart : offset;
+			ExpressionToken currentToken = createToken( expression, offset, length, tokenStart, tokenEnd, tokenIndex );
+			checkValid( currentToken, currentState, tokenIndex );
+			tokenList.add( currentToken );
+		}
+
+		return tokenList;
+	}
+
+	/**
+	 * Checks whether the token of two characters is approachable as per grammar
+	 * 
+	 * @param first the first character
+	 * @param second the second character
+	 * @return <code>true</code> if approachable
+	 */
+	private boolean isApproachable( char first, char second )
+	{
+		if( automaton != null )
+		{
+			return automaton.isApproachable( automaton.next( automaton.next( automaton.getStartState(), first ),
+					second ) );
+		}
+		return grammar.isApproachable( new StringBuilder( 2 ).append( first ).append( second ).toString() );
+	}
+
+	/**
+	 * Feeds the current token to automaton
+	 * 
+	 * @param state the state to start from
+	 * @param expression the expression being tokenized
+	 * @param offset the start of current token
+	 * @param position the current position of lexer
+	 * @param tokenStart the start of current token after trimming, -1 if current token is blank
+	 * @param tokenEnd the end of current token after trimming
+	 * @return the state after feeding the current token
+	 */
+	private int feed( int state, CharSequence expression, int offset, int position, int tokenStart, int tokenEnd )
+	{
+		int from = ignoreBlank ? tokenStart : offset;
+		int to = ignoreBlank ? tokenEnd : position;
+
+		for( int i = from; i >= 0 && i < to; i++ )
+		{
+			state = automaton.next( state, expression.charAt( i ) );
+		}
+		return state;
+	}
+
+	/**
+	 * Checks whether given character is a delimiter as per grammar
+	 * 
+	 * @param character the character to check
+	 * @return <code>true</code> if it is a delimiter, <code>false</code> otherwise
+	 */
+	private boolean isDelimiter( char character )
+	{
+		return character < TABLE_SIZE ? delimiterTable[character] : grammar.isDelimiter( String.valueOf( character ) );
+	}
+
+	/**
+	 * Returns the string value for given delimiter character
+	 * 
+	 * @param character the delimiter character
+	 * @return the string value of delimiter
+	 */
+	private String getDelimiterValue( char character )
+	{
+		return character < TABLE_SIZE ? delimiterValues[character] : String.valueOf( character );
+	}
+
+	/**
+	 * Returns the current token for given bounds. Token is trimmed if grammar ignores blanks.
+	 * 
+	 * @param expression the expression being tokenized
+	 * @param offset the start of current token
+	 * @param position the current position of lexer
+	 * @param tokenStart the start of current token after trimming, -1 if current token is blank
+	 * @param tokenEnd the end of current token after trimming
+	 * @return the current token
+	 */
+	private String getCurrentToken( CharSequence expression, int offset, int position, int tokenStart, int tokenEnd )
+	{
+		if( ignoreBlank )
+		{
+			return tokenStart < 0 ? "" : expression.subSequence( tokenStart, tokenEnd ).toString();
+		}
+		return expression.subSequence( offset, position ).toString();
+	}
+
+	/**
+	 * Creates the token for current bounds, over the expression without copying its characters. Token is trimmed if
+	 * grammar ignores blanks. If token is a delimiter, it is created with the delimiter string of grammar instead.
+	 * 
+	 * @param expression the expression being tokenized
+	 * @param offset the start of current token
+	 * @param position the current position of lexer
+	 * @param tokenStart the start of current token after trimming, must not be -1
+	 * @param tokenEnd the end of current token after trimming
+	 * @param index the index of token to set
+	 * @return the current token
+	 */
+	private ExpressionToken createToken( CharSequence expression, int offset, int position, int tokenStart,
+			int tokenEnd, int index )
+	{
+		int from = ignoreBlank ? tokenStart : offset;
+		int to = ignoreBlank ? tokenEnd : position;
+
+		String delimiter = delimiterTrie == null ? null : delimiterTrie.match( expression, from, to );
+		return delimiter != null ? new ExpressionToken( delimiter, index ) : new ExpressionToken( expression, from, to
+				- from, index );
+	}
+
+	/**
+	 * Checks whether given token is a delimiter as per grammar. Tokens created over the expression are not delimiters
+	 * if grammar provides the delimiter trie, so their string value is not created for checking.
+	 * 
+	 * @param token the token to check
+	 * @return <code>true</code> if it is a delimiter, <code>false</code> otherwise
+	 */
+	private boolean isDelimiter( ExpressionToken token )
+	{
+		if( delimiterTrie != null && !token.isMaterialized() )
+		{
+			return false;
+		}
+		return grammar.isDelimiter( token.getValue() );
+	}
+
+	/**
+	 * Checks whether the token is valid or not using grammar. If grammar provides the automaton, operand kind of token
+	 * is stamped from the rule which allowed it.
+	 * 
+	 * @param currentToken current token to check the validity
+	 * @param state the automaton state of current token, if grammar provides the automaton
+	 * @param offset the current offset in parsing
+	 * @throws ExpressionEngineException if the token is not allowed by the grammar
+	 */
+	private void checkValid( ExpressionToken currentToken, int state, int offset ) throws ExpressionEngineException
+	{
+		if( automaton != null ? !automaton.isAllowed( state ) : !grammar.isAllowed( currentToken.getValue() ) )
+		{
+			throw new ExpressionEngineException( "Invalid token \"" + currentToken.getValue() + "\" at position "
+					+ ( offset + 1 ) );
+		}
+
+		if( automaton != null )
+		{
+			stampOperandKind( currentToken, automaton.getAllowedRule( state ) );
+		}
+	}
+
+	/**
+	 * Stamps the operand kind of token for the rule which allowed it. Literal operands allowed by the rule, like
+	 * 'true' for identifiers, are checked first. Value of numeric literal is parsed here.
+	 * 
+	 * @param token the token allowed by the rule
+	 * @param rule the index of compiled rule of automaton
+	 */
+	private void stampOperandKind( ExpressionToken token, int rule )
+	{
+		int kind = ruleOperandKinds[rule];
+		if( kind < 0 )
+		{
+			return;
+		}
+
+		ExpressionFactory expressionFactory = ExpressionFactory.getInstance();
+		CharSequence text = token.getText();
+		int[] literalKinds = ruleLiteralKinds[rule];
+		for( int i = 0; i < literalKinds.length; i++ )
+		{
+			if( expressionFactory.isLiteral( literalKinds[i], text ) )
+			{
+				token.setOperandKind( literalKinds[i], null );
+				return;
+			}
+		}
+		token.setOperandKind( kind, expressionFactory.parseLiteralValue( kind, text ) );
+	}
+
+	/**
+	 * Checks whether the character is blank, using the same rule as String.trim()
+	 * 
+	 * @param character the character to check
+	 * @return <code>true</code> if character is blank
+	 */
+	private static boolean isBlank( char character )
+	{
+		return character <= ' ';
+	}
+
+	/**
+	 * Checks whether the string is blank, using the same rule as String.trim()
+	 * 
+	 * @param value the string to check
+	 * @return <code>true</code> if string has only blank characters
+	 */
+	private static boolean isBlank( String value )
+	{
+		for( int i = 0; i < value.length(); i++ )
+		{
+			if( !isBlank( value.charAt( i ) ) )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+}
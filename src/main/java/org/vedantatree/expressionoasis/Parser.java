@@ -26,15 +26,22 @@
  */
 package org.vedantatree.expressionoasis;
 
+import java.nio.CharBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.vedantatree.expressionoasis.config.ConfigFactory;
 import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.grammar.CompiledGrammar;
 import org.vedantatree.expressionoasis.grammar.DefaultXMLGrammar;
 import org.vedantatree.expressionoasis.grammar.ExpressionToken;
 import org.vedantatree.expressionoasis.grammar.Grammar;
+import org.vedantatree.expressionoasis.grammar.rules.ProductionRuleAutomaton;
 import org.vedantatree.expressionoasis.utils.StringUtils;
 
 
@@ -68,6 +75,19 @@ import org.vedantatree.expressionoasis.utils.StringUtils;
  * 
  * @author Kris Marwood
  * @version 1.1
+ * 
+ *          Added iterative lexer mode, selectable from config.xml. In this mode, parsing is delegated to Lexer which
+ *          produces the same tokens in single pass without recursion. Recursive mode is retained as it is.
+ *          Added longest match lexer mode, in which Lexer identifies the multiple character delimiters directly from
+ *          expression.
+ *          Added parsing of CharSequence and character arrays. Lexer creates the tokens over these without copying.
+ *          Added parsing of a part of expression, and identification of the boundary delimiters after which
+ *          tokenization does not depend on the characters before. These are used to tokenize edited expressions
+ *          again only around the edit, see {@link IncrementalExpression}.
+ * 
+ * @author Mohit Gupta
+ * @version 1.2
+ * @since 3.3
  */
 public final class Parser
 {
@@ -79,6 +99,16 @@ public final class Parser
 	 */
 	private final Grammar	grammar;
 
+	/**
+	 * Lexer used to tokenize the expression in iterative mode, <code>null</code> in recursive mode
+	 */
+	private final Lexer		lexer;
+
+	/**
+	 * Delimiters after which tokenization does not depend on the preceding characters, created on first use
+	 */
+	private volatile Set<String>	boundaryDelimiters;
+
 	/**
 	 * Constructs the Parser with default DefaultXMLGrammar instance
 	 * 
@@ -92,7 +122,7 @@ public final class Parser
 	}
 
 	/**
-	 * Constructs the Parser with given DefaultXMLGrammar object
+	 * Constructs the Parser with given DefaultXMLGrammar object. Lexer mode is picked from configuration.
 	 * 
 	 * @param grammar
 	 *        the grammar using which it parse the expression.
@@ -100,6 +130,22 @@ public final class Parser
 	 *         if the grammar is null.
 	 */
 	public Parser( Grammar grammar )
+	{
+		this( grammar, ConfigFactory.getConfig().getLexerMode() );
+	}
+
+	/**
+	 * Constructs the Parser with given DefaultXMLGrammar object and lexer mode
+	 * 
+	 * @param grammar
+	 *        the grammar using which it parse the expression.
+	 * @param lexerMode the mode of tokenization, one of {@link ExpressionEngineConstants#LEXER_MODE_RECURSIVE},
+	 *        {@link ExpressionEngineConstants#LEXER_MODE_ITERATIVE} or
+	 *        {@link ExpressionEngineConstants#LEXER_MODE_LONGEST_MATCH}
+	 * @throws IllegalArgumentException
+	 *         if the grammar is null, or lexer mode is not known
+	 */
+	public Parser( Grammar grammar, String lexerMode )
 	{
 		if( grammar == null )
 		{
@@ -107,6 +153,23 @@ public final class Parser
 		}
 
 		this.grammar = grammar;
+
+		if( ExpressionEngineConstants.LEXER_MODE_ITERATIVE.equals( lexerMode ) )
+		{
+			this.lexer = new Lexer( grammar );
+		}
+		else if( ExpressionEngineConstants.LEXER_MODE_LONGEST_MATCH.equals( lexerMode ) )
+		{
+			this.lexer = new Lexer( grammar, true );
+		}
+		else if( ExpressionEngineConstants.LEXER_MODE_RECURSIVE.equals( lexerMode ) )
+		{
+			this.lexer = null;
+		}
+		else
+		{
+			throw new IllegalArgumentException( "Unknown lexer mode. lexerMode[" + lexerMode + "]" );
+		}
 	}
 
 	/**
@@ -121,17 +184,205 @@ public final class Parser
 	 */
 	public final List<ExpressionToken> parse( String expression ) throws ExpressionEngineException
 	{
-		if( !StringUtils.isQualifiedString( expression ) )
+		return parse( (CharSequence) expression );
+	}
+
+	/**
+	 * It parses the given expression characters into ExpressionToken objects and returns the list of
+	 * ExpressionTokens.
+	 * 
+	 * In iterative and longest match modes, tokens are created over the given sequence without copying the characters,
+	 * hence it must not be modified while the tokens are in use. In recursive mode, expression is copied to a string
+	 * first.
+	 * 
+	 * @param expression the expression characters to parse
+	 * @return list of ExpressionToken
+	 * @throws ExpressionEngineException if unable to parse, or expression is not a qualified text
+	 */
+	public final List<ExpressionToken> parse( CharSequence expression ) throws ExpressionEngineException
+	{
+		if( !isQualifiedText( expression ) )
 		{
 			throw new ExpressionEngineException( "Passed expression is not a qualified text." );
 		}
 
+		if( lexer != null )
+		{
+			return lexer.tokenize( expression );
+		}
+
 		List<ExpressionToken> tokenList = new ArrayList<ExpressionToken>();
 		// TODO: probably can pass pointer as 1, because it will enable to get first token in first pass
-		parse( expression, tokenList, 0, 0 );
+		parse( expression.toString(), tokenList, 0, 0 );
+		return tokenList;
+	}
+
+	/**
+	 * It parses the expression from given part of character array, like a buffer read from file, into
+	 * ExpressionToken objects and returns the list of ExpressionTokens.
+	 * 
+	 * Characters are not copied in iterative and longest match modes, hence the array must not be modified while the
+	 * tokens are in use. Token indexes are relative to the given offset.
+	 * 
+	 * @param characters the array containing the expression
+	 * @param offset the offset of expression in array
+	 * @param length the length of expression
+	 * @return list of ExpressionToken
+	 * @throws ExpressionEngineException if unable to parse, or expression is not a qualified text
+	 * @throws IndexOutOfBoundsException if offset and length are not in the bounds of array
+	 */
+	public final List<ExpressionToken> parse( char[] characters, int offset, int length )
+			throws ExpressionEngineException
+	{
+		if( characters == null )
+		{
+			throw new ExpressionEngineException( "Passed expression is not a qualified text." );
+		}
+		return parse( CharBuffer.wrap( characters, offset, length ).slice() );
+	}
+
+	/**
+	 * It parses the given part of expression into ExpressionToken objects and returns the list of ExpressionTokens.
+	 * Tokens are created over the expression, and their indexes are moved by the start of part. Hence the tokens are
+	 * same as if the expression was parsed from the start of part.
+	 * 
+	 * @param expression the expression characters to parse
+	 * @param from the start of part, inclusive
+	 * @param to the end of part, exclusive
+	 * @return list of ExpressionToken
+	 * @throws ExpressionEngineException if unable to parse, or part is not a qualified text
+	 * @throws IndexOutOfBoundsException if part is not in the bounds of expression
+	 */
+	public final List<ExpressionToken> parse( CharSequence expression, int from, int to )
+			throws ExpressionEngineException
+	{
+		if( expression == null )
+		{
+			throw new ExpressionEngineException( "Passed expression is not a qualified text." );
+		}
+		if( from == 0 && to == expression.length() )
+		{
+			return parse( expression );
+		}
+
+		List<ExpressionToken> tokenList = parse( CharBuffer.wrap( expression, from, to ) );
+		for( int i = 0, size = tokenList.size(); i < size; i++ )
+		{
+			tokenList.set( i, tokenList.get( i ).relocate( expression, from ) );
+		}
 		return tokenList;
 	}
 
+	/**
+	 * Checks whether given token is a boundary delimiter. Tokens before such delimiter and the delimiter itself are
+	 * not affected by the characters after it, and tokens after it are not affected by the characters before it. So
+	 * the expression can be tokenized in parts, which are separated by boundary delimiters.
+	 * 
+	 * A delimiter is boundary if it is not a right bracket, it is not a part of another delimiter except at its end,
+	 * and no production rule accepts a token starting with it. Boundary delimiters are known only if grammar provides
+	 * the delimiter trie, production rule automaton without fallback rules and compiled view of its symbols.
+	 * 
+	 * @param token the token to check
+	 * @return <code>true</code> if token is a boundary delimiter
+	 */
+	boolean isBoundaryDelimiter( ExpressionToken token )
+	{
+		Set<String> delimiters = boundaryDelimiters;
+		if( delimiters == null )
+		{
+			delimiters = findBoundaryDelimiters();
+			boundaryDelimiters = delimiters;
+		}
+
+		// tokens created over expression are not delimiters, as lexer creates delimiters from grammar strings
+		return token.isMaterialized() && delimiters.contains( token.getValue() );
+	}
+
+	/**
+	 * Finds the boundary delimiters of grammar, see {@link #isBoundaryDelimiter(ExpressionToken)}
+	 * 
+	 * @return the set of boundary delimiters, empty if grammar does not provide the required views
+	 */
+	private Set<String> findBoundaryDelimiters()
+	{
+		CompiledGrammar compiledGrammar = grammar.getCompiledGrammar();
+		ProductionRuleAutomaton automaton = grammar.getProductionRuleAutomaton();
+
+		if( compiledGrammar == null || automaton == null || automaton.hasFallbackRules()
+				|| grammar.getDelimiterTrie() == null )
+		{
+			return Collections.emptySet();
+		}
+
+		List<String> delimiters = new ArrayList<String>();
+		for( int kind = 0; kind < compiledGrammar.getSymbolCount(); kind++ )
+		{
+			if( compiledGrammar.isDelimiter( kind ) )
+			{
+				delimiters.add( compiledGrammar.getSymbol( kind ) );
+			}
+		}
+
+		Set<String> boundaries = new HashSet<String>();
+		int startState = automaton.getStartState();
+		for( String delimiter : delimiters )
+		{
+			if( !isQualifiedText( delimiter ) || compiledGrammar.isRightBracket( compiledGrammar.getKind( delimiter ) )
+					|| automaton.next( startState, delimiter.charAt( 0 ) ) != ProductionRuleAutomaton.DEAD_STATE
+					|| automaton.next( startState, delimiter ) != ProductionRuleAutomaton.DEAD_STATE )
+			{
+				continue;
+			}
+
+			boolean boundary = true;
+			for( String other : delimiters )
+			{
+				int position = other.indexOf( delimiter );
+				while( position >= 0 && boundary )
+				{
+					boundary = position + delimiter.length() == other.length();
+					position = other.indexOf( delimiter, position + 1 );
+				}
+			}
+
+			if( boundary )
+			{
+				boundaries.add( delimiter );
+			}
+		}
+
+		if( LOGGER.isDebugEnabled() )
+		{
+			LOGGER.debug( "boundaryDelimiters[" + boundaries + "]" );
+		}
+		return boundaries;
+	}
+
+	/**
+	 * Checks whether the expression has any character other than blanks, in the same way as
+	 * StringUtils.isQualifiedString
+	 * 
+	 * @param expression the expression to check
+	 * @return <code>true</code> if expression is not null and has some non blank character
+	 */
+	private static boolean isQualifiedText( CharSequence expression )
+	{
+		if( expression instanceof String )
+		{
+			return StringUtils.isQualifiedString( (String) expression );
+		}
+
+		int length = expression == null ? 0 : expression.length();
+		for( int i = 0; i < length; i++ )
+		{
+			if( expression.charAt( i ) > ' ' )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * It parses the expression, break it in list of tokens as per DefaultXMLGrammar rules
 	 * 
@@ -0,0 +1,323 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis;
+
+import java.util.List;
+
+import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.expressions.Expression;
+import org.vedantatree.expressionoasis.expressions.ExpressionFactory;
+import org.vedantatree.expressionoasis.grammar.CompiledGrammar;
+import org.vedantatree.expressionoasis.grammar.ExpressionToken;
+
+
+/**
+ * Builds the expression tree directly from the tokens by precedence climbing, using the kinds and precedences of
+ * compiled grammar. Expressions are created while reading the tokens, in same order as these are created from RPN,
+ * so tokens are not restructured in RPN and no stack of tokens or expressions is needed.
+ * 
+ * Tree is same as the one built from RPN by {@link Compiler}, i.e.
+ * <ul>
+ * <li>an operator is unary in the beginning of expression, after an operator or after a left bracket, and is binary
+ * otherwise</li>
+ * <li>binary operators of same precedence are left associative</li>
+ * <li>operand of unary operator or function contains the following binary operators with higher precedence than its
+ * unary precedence</li>
+ * <li>brackets build the expression of their pair, like '()'. A pair which is binary operator, like '[]', takes the
+ * preceding operand as its left operand</li>
+ * </ul>
+ * 
+ * Unlike the RPN, mismatched brackets like '(a]' are reported as error.
+ * 
+ * Parser is created for one compilation, and is not thread safe.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+final class PrecedenceClimbingParser
+{
+
+	/**
+	 * Compiler which creates and initializes the expressions
+	 */
+	private final Compiler				compiler;
+
+	/**
+	 * Compiled view of grammar
+	 */
+	private final CompiledGrammar		compiledGrammar;
+
+	/**
+	 * Tokens of expression
+	 */
+	private final List<ExpressionToken>	tokens;
+
+	/**
+	 * Number of tokens
+	 */
+	private final int					size;
+
+	/**
+	 * The object which may contain contextual information for expressions
+	 */
+	private final ExpressionContext		expressionContext;
+
+	/**
+	 * Whether to validate the expressions on initialization
+	 */
+	private final boolean				validate;
+
+	/**
+	 * Position of next token to read
+	 */
+	private int							position;
+
+	/**
+	 * Constructs the parser
+	 * 
+	 * @param compiler the compiler which creates the expressions
+	 * @param compiledGrammar the compiled view of grammar
+	 * @param tokens the tokens of expression
+	 * @param expressionContext the object which may contain contextual information for expressions
+	 * @param validate whether to validate the expressions on initialization
+	 */
+	PrecedenceClimbingParser( Compiler compiler, CompiledGrammar compiledGrammar, List<ExpressionToken> tokens,
+			ExpressionContext expressionContext, boolean validate )
+	{
+		this.compiler = compiler;
+		this.compiledGrammar = compiledGrammar;
+		this.tokens = tokens;
+		this.size = tokens.size();
+		this.expressionContext = expressionContext;
+		this.validate = validate;
+	}
+
+	/**
+	 * Builds the expression tree from all the tokens
+	 * 
+	 * @return the tree of expression objects
+	 * @throws ExpressionEngineException if tokens do not form a valid expression
+	 */
+	Expression parse() throws ExpressionEngineException
+	{
+		if( size == 0 )
+		{
+			throw new ExpressionEngineException( "Unable to compile expression, as there is no token in expression." );
+		}
+
+		Expression expression = parseBinary( Integer.MIN_VALUE );
+		if( position < size )
+		{
+			ExpressionToken token = tokens.get( position );
+			if( compiledGrammar.isRightBracket( compiledGrammar.getKind( token ) ) )
+			{
+				throw new ExpressionEngineException( "Left bracket is missing for \"" + token.getValue() + "\" at "
+						+ token.getIndex() );
+			}
+			throw new ExpressionEngineException( "Unexpected token \"" + token.getValue() + "\" at " + token.getIndex() );
+		}
+		return expression;
+	}
+
+	/**
+	 * Parses an operand followed by the binary operators having at least the given precedence, with their right
+	 * operands
+	 * 
+	 * @param minimumPrecedence the minimum precedence of binary operators to take
+	 * @return the expression
+	 * @throws ExpressionEngineException if tokens do not form a valid expression
+	 */
+	private Expression parseBinary( int minimumPrecedence ) throws ExpressionEngineException
+	{
+		Expression left = parseUnary();
+
+		while( position < size )
+		{
+			ExpressionToken token = tokens.get( position );
+			int kind = compiledGrammar.getKind( token );
+
+			// operands and brackets end the operand here, and are reported by the caller if not expected
+			if( !compiledGrammar.isOperator( kind ) )
+			{
+				break;
+			}
+			if( !compiledGrammar.isBinaryOperator( kind ) )
+			{
+				throw new ExpressionEngineException( "Operator \"" + token.getValue()
+						+ "\" can't be used as binary operator at " + token.getIndex() );
+			}
+
+			int precedence = compiledGrammar.getPrecedenceOrder( kind, false );
+			if( precedence < minimumPrecedence )
+			{
+				break;
+			}
+
+			position++;
+			Expression right = parseBinary( precedence + 1 );
+			left = compiler.createExpression( token, ExpressionFactory.BINARY, new Expression[]
+			{ left, right }, expressionContext, validate );
+		}
+		return left;
+	}
+
+	/**
+	 * Parses a unary operator or function with its operand, or an operand with its following binary bracket pairs
+	 * 
+	 * @return the expression
+	 * @throws ExpressionEngineException if tokens do not form a valid expression
+	 */
+	private Expression parseUnary() throws ExpressionEngineException
+	{
+		if( position >= size )
+		{
+			ExpressionToken last = tokens.get( size - 1 );
+			throw new ExpressionEngineException( "Operand is missing after \"" + last.getValue() + "\" at "
+					+ last.getIndex() );
+		}
+
+		ExpressionToken token = tokens.get( position );
+		int kind = compiledGrammar.getKind( token );
+
+		if( compiledGrammar.isOperator( kind ) )
+		{
+			boolean function = compiledGrammar.isFunction( kind );
+			if( !function && !compiledGrammar.isUnary( kind ) )
+			{
+				throw new ExpressionEngineException( "Operator \"" + token.getValue()
+						+ "\" can't be used as unary operator at " + token.getIndex() );
+			}
+
+			position++;
+			Expression operand = parseBinary( compiledGrammar.getPrecedenceOrder( kind, true ) + 1 );
+			return compiler.createExpression( token, function ? ExpressionFactory.FUNCTION : ExpressionFactory.UNARY,
+					operand, expressionContext, validate );
+		}
+
+		Expression operand;
+		if( compiledGrammar.isLeftBracket( kind ) )
+		{
+			int pairKind = getBracketPair( token, kind );
+			if( !compiledGrammar.isUnary( pairKind ) )
+			{
+				throw new ExpressionEngineException( "Operand is missing before \"" + token.getValue() + "\" at "
+						+ token.getIndex() );
+			}
+
+			position++;
+			Expression content = parseBracketContent( token, kind );
+			operand = compiler.createExpression( new ExpressionToken( compiledGrammar.getSymbol( pairKind ), token
+					.getIndex() ), ExpressionFactory.UNARY, content, expressionContext, validate );
+		}
+		else if( compiledGrammar.isRightBracket( kind ) )
+		{
+			throw new ExpressionEngineException( "Operand is missing before \"" + token.getValue() + "\" at "
+					+ token.getIndex() );
+		}
+		else
+		{
+			position++;
+			operand = compiler.createExpression( token, ExpressionFactory.OPERAND, null, expressionContext, validate );
+		}
+
+		// binary bracket pairs, like array index, take the preceding operand as left operand
+		while( position < size )
+		{
+			ExpressionToken bracket = tokens.get( position );
+			int bracketKind = compiledGrammar.getKind( bracket );
+			if( !compiledGrammar.isLeftBracket( bracketKind ) )
+			{
+				break;
+			}
+
+			int pairKind = getBracketPair( bracket, bracketKind );
+			if( !compiledGrammar.isBinaryOperator( pairKind ) )
+			{
+				break;
+			}
+
+			position++;
+			Expression content = parseBracketContent( bracket, bracketKind );
+			if( content == null )
+			{
+				throw new ExpressionEngineException( "Operand is missing in \"" + compiledGrammar.getSymbol( pairKind )
+						+ "\" at " + bracket.getIndex() );
+			}
+			operand = compiler.createExpression( new ExpressionToken( compiledGrammar.getSymbol( pairKind ), bracket
+					.getIndex() ), ExpressionFactory.BINARY, new Expression[]
+			{ operand, content }, expressionContext, validate );
+		}
+		return operand;
+	}
+
+	/**
+	 * Parses the expression inside brackets, and the right bracket
+	 * 
+	 * @param leftBracket the left bracket token, which is already read
+	 * @param kind the kind of left bracket
+	 * @return the expression inside brackets, <code>null</code> if brackets are empty
+	 * @throws ExpressionEngineException if right bracket is missing or does not match the left bracket
+	 */
+	private Expression parseBracketContent( ExpressionToken leftBracket, int kind ) throws ExpressionEngineException
+	{
+		int rightKind = compiledGrammar.getOppositeBracket( kind );
+
+		Expression content = null;
+		if( position < size && !compiledGrammar.isRightBracket( compiledGrammar.getKind( tokens.get( position ) ) ) )
+		{
+			content = parseBinary( Integer.MIN_VALUE );
+		}
+
+		if( position >= size || compiledGrammar.getKind( tokens.get( position ) ) != rightKind )
+		{
+			throw new ExpressionEngineException( "Right bracket is missing for \"" + leftBracket.getValue() + "\" at "
+					+ leftBracket.getIndex() );
+		}
+		position++;
+		return content;
+	}
+
+	/**
+	 * Returns the kind of bracket pair operator for a left bracket
+	 * 
+	 * @param leftBracket the left bracket token
+	 * @param kind the kind of left bracket
+	 * @return the kind of bracket pair
+	 * @throws ExpressionEngineException if bracket pair is not an operator of grammar
+	 */
+	private int getBracketPair( ExpressionToken leftBracket, int kind ) throws ExpressionEngineException
+	{
+		int pairKind = compiledGrammar.getBracketPair( kind );
+		if( !compiledGrammar.isOperator( pairKind ) )
+		{
+			throw new ExpressionEngineException( "Bracket pair is not defined as operator for \""
+					+ leftBracket.getValue() + "\" at " + leftBracket.getIndex() );
+		}
+		return pairKind;
+	}
+}
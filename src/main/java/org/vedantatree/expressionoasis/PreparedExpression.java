@@ -0,0 +1,253 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.expressions.Expression;
+import org.vedantatree.expressionoasis.expressions.ExpressionTypeFinder;
+import org.vedantatree.expressionoasis.expressions.IdentifierExpression;
+import org.vedantatree.expressionoasis.extensions.VariableProvider;
+import org.vedantatree.expressionoasis.types.Type;
+import org.vedantatree.expressionoasis.types.ValueObject;
+
+
+/**
+ * Expression compiled once, which can be evaluated many times and by many threads with different values of variables.
+ * 
+ * Expression objects of a compiled tree bind to the variable providers, function providers and beans of the context
+ * these are initialized with, so a tree compiled with an ExpressionContext can be used only with that context. A
+ * PreparedExpression is compiled with its own context, in which types of variables are declared in advance and values
+ * are read from the {@link Bindings} of the running evaluation. Bindings are passed to the tree in a thread local, so
+ * nothing is changed in the tree after compilation and it can be evaluated concurrently without locks.
+ * 
+ * Variables, which are not declared, can not be used in expression. Function providers are the ones configured in
+ * config.xml.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public final class PreparedExpression
+{
+
+	/**
+	 * Bindings of the evaluation running in current thread
+	 */
+	private static final ThreadLocal<Bindings>	CURRENT_BINDINGS	= new ThreadLocal<Bindings>();
+
+	/**
+	 * The expression
+	 */
+	private final String						expression;
+
+	/**
+	 * Root of compiled tree
+	 */
+	private final Expression					compiledExpression;
+
+	/**
+	 * Names of variables used in expression, in order of their use
+	 */
+	private final Set<String>					variableNames;
+
+	/**
+	 * Type returned by expression
+	 */
+	private final Type							returnType;
+
+	/**
+	 * Compiles the expression with the declared types of variables
+	 * 
+	 * @param compiler the compiler to compile the expression
+	 * @param expression the expression to prepare
+	 * @param variableTypes types of the variables which can be used in expression, keyed by variable name
+	 * @throws ExpressionEngineException if expression is not valid, or uses a variable which is not declared
+	 */
+	PreparedExpression( Compiler compiler, String expression, Map<String, Type> variableTypes )
+			throws ExpressionEngineException
+	{
+		if( expression == null )
+		{
+			throw new IllegalArgumentException( "Expression can't be null." );
+		}
+		if( variableTypes == null )
+		{
+			throw new IllegalArgumentException( "Variable types can't be null." );
+		}
+
+		ExpressionContext expressionContext = new ExpressionContext();
+		expressionContext.addVariableProvider( new BindingsVariableProvider( variableTypes ) );
+
+		this.expression = expression;
+		this.compiledExpression = compiler.compile( expression, expressionContext, true );
+		this.returnType = compiledExpression.getReturnType();
+
+		LinkedHashSet<String> names = new LinkedHashSet<String>();
+		for( Expression identifier : new ExpressionTypeFinder( compiledExpression, IdentifierExpression.class )
+				.getExpressions() )
+		{
+			names.add( ( (IdentifierExpression) identifier ).getIdentifierName() );
+		}
+		this.variableNames = Collections.unmodifiableSet( names );
+	}
+
+	/**
+	 * Evaluates the expression with given values of variables
+	 * 
+	 * @param bindings the values of variables for this evaluation
+	 * @return the result of expression
+	 * @throws ExpressionEngineException if a variable used by expression is not bound, or its value is not of
+	 *         declared type, or evaluation fails
+	 */
+	public Object evaluate( Bindings bindings ) throws ExpressionEngineException
+	{
+		return evaluateValue( bindings ).getValue();
+	}
+
+	/**
+	 * Evaluates the expression with given values of variables, and returns the result with its type
+	 * 
+	 * @param bindings the values of variables for this evaluation
+	 * @return the result of expression with its type
+	 * @throws ExpressionEngineException if a variable used by expression is not bound, or its value is not of
+	 *         declared type, or evaluation fails
+	 */
+	public ValueObject evaluateValue( Bindings bindings ) throws ExpressionEngineException
+	{
+		if( bindings == null )
+		{
+			throw new IllegalArgumentException( "Bindings can't be null." );
+		}
+
+		// previous bindings are restored for the evaluations which run within an evaluation, like from a function
+		Bindings previousBindings = CURRENT_BINDINGS.get();
+		CURRENT_BINDINGS.set( bindings );
+		try
+		{
+			return compiledExpression.getValue();
+		}
+		finally
+		{
+			if( previousBindings == null )
+			{
+				CURRENT_BINDINGS.remove();
+			}
+			else
+			{
+				CURRENT_BINDINGS.set( previousBindings );
+			}
+		}
+	}
+
+	/**
+	 * @return the expression
+	 */
+	public String getExpression()
+	{
+		return expression;
+	}
+
+	/**
+	 * @return names of the variables used in expression
+	 */
+	public Set<String> getVariableNames()
+	{
+		return variableNames;
+	}
+
+	/**
+	 * @return the type returned by expression
+	 */
+	public Type getReturnType()
+	{
+		return returnType;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "PreparedExpression[" + expression + "]";
+	}
+
+	/**
+	 * Variable provider which gives the declared types of variables, and reads the values from Bindings of the running
+	 * evaluation
+	 */
+	private static final class BindingsVariableProvider implements VariableProvider
+	{
+
+		/**
+		 * Declared types of variables
+		 */
+		private final Map<String, Type>	variableTypes;
+
+		private BindingsVariableProvider( Map<String, Type> variableTypes )
+		{
+			this.variableTypes = new HashMap<String, Type>( variableTypes );
+		}
+
+		public void initialize( ExpressionContext expressionContext ) throws ExpressionEngineException
+		{
+			// nothing to initialize
+		}
+
+		public Type getVariableType( String variableName ) throws ExpressionEngineException
+		{
+			return variableTypes.get( variableName );
+		}
+
+		public ValueObject getVariableValue( String variableName ) throws ExpressionEngineException
+		{
+			Bindings bindings = CURRENT_BINDINGS.get();
+			if( bindings == null || !bindings.isBound( variableName ) )
+			{
+				throw new ExpressionEngineException( "Variable is not bound: [" + variableName + "]" );
+			}
+
+			Type variableType = variableTypes.get( variableName );
+			Object value = bindings.getValue( variableName );
+			Class<?> typeClass = variableType.getTypeClass();
+			if( value != null && typeClass != null && !typeClass.isInstance( value ) )
+			{
+				throw new ExpressionEngineException( "Value of variable [" + variableName + "] is not of type ["
+						+ variableType + "]: [" + value.getClass().getName() + "]" );
+			}
+			return new ValueObject( value, variableType );
+		}
+
+		public boolean supportsVariable( String variableName ) throws ExpressionEngineException
+		{
+			return variableTypes.containsKey( variableName );
+		}
+	}
+}
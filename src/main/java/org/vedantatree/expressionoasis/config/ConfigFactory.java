@@ -26,6 +26,8 @@
  */
 package org.vedantatree.expressionoasis.config;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
 
@@ -46,6 +48,13 @@ import org.simpleframework.xml.core.Persister;
  * @author Mohit Gupta
  * @version 1.1
  * @since 3.1
+ * 
+ *          Added startup snapshot. If snapshot file path is set in System Properties, configuration is read from
+ *          snapshot while it is current for config.xml, and is written to it otherwise
+ * 
+ * @author Mohit Gupta
+ * @version 1.2
+ * @since 3.3
  */
 public class ConfigFactory
 {
@@ -55,6 +64,8 @@ public class ConfigFactory
 
 	private static ExpressionOasisConfig	instance;
 
+	private static volatile StartupSnapshot	snapshot;
+
 	public static ExpressionOasisConfig getConfig()
 	{
 		if( instance == null )
@@ -90,7 +101,26 @@ public class ConfigFactory
 					{
 						InputStream stream = externalPathSet ? new FileInputStream( CONFIG_FILE_PATH )
 								: ConfigFactory.class.getClassLoader().getResourceAsStream( CONFIG_FILE_PATH );
-						instance = serializer.read( ExpressionOasisConfig.class, stream );
+
+						ExpressionOasisConfig config = null;
+						String snapshotFilePath = System.getProperty( StartupSnapshot.SNAPSHOT_FILE_PATH_KEY );
+						if( snapshotFilePath != null && snapshotFilePath.trim().length() > 0 )
+						{
+							byte[] source = StartupSnapshot.readFully( stream );
+							snapshot = StartupSnapshot.open( new File( snapshotFilePath ), source );
+							config = snapshot.getConfig();
+							stream = new ByteArrayInputStream( source );
+						}
+
+						if( config == null )
+						{
+							config = serializer.read( ExpressionOasisConfig.class, stream );
+							if( snapshot != null )
+							{
+								snapshot.setConfig( config );
+							}
+						}
+						instance = config;
 					}
 					catch( Exception e )
 					{
@@ -103,4 +133,16 @@ public class ConfigFactory
 		}
 		return instance;
 	}
+
+	/**
+	 * Returns the startup snapshot, if it is enabled by setting the path of snapshot file in System Properties for key
+	 * {@link StartupSnapshot#SNAPSHOT_FILE_PATH_KEY}
+	 * 
+	 * @return the startup snapshot, or <code>null</code> if it is not enabled
+	 */
+	public static StartupSnapshot getStartupSnapshot()
+	{
+		getConfig();
+		return snapshot;
+	}
 }
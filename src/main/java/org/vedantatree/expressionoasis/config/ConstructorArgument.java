@@ -36,6 +36,12 @@ import org.simpleframework.xml.Root;
  * 
  * @author Kris Marwood
  * @version 1.0
+ * 
+ *          Added constructor for the startup snapshot
+ * 
+ * @author Mohit Gupta
+ * @version 1.1
+ * @since 3.3
  */
 
 @Root(name = "constructorArg")
@@ -48,6 +54,22 @@ public class ConstructorArgument
 	@Attribute(name = "value")
 	private String	value;
 
+	/**
+	 * Constructs the argument. It is used by Simple XML framework, which sets the fields from XML.
+	 */
+	public ConstructorArgument()
+	{
+	}
+
+	/**
+	 * Constructs the argument read from startup snapshot
+	 */
+	ConstructorArgument( String className, String value )
+	{
+		this.className = className;
+		this.value = value;
+	}
+
 	/**
 	 * @return the className
 	 */
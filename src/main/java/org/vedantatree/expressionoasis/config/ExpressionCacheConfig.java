@@ -0,0 +1,95 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis.config;
+
+import org.simpleframework.xml.Attribute;
+import org.simpleframework.xml.Root;
+
+
+/**
+ * Represents the configuration of the cache of compiled expressions. It is used only if caching of compiled
+ * expressions is enabled. A bound <= 0 disables that bound.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+@Root(name = "expressionCache")
+public class ExpressionCacheConfig
+{
+
+	@Attribute(name = "maximumEntries", required = false)
+	private int		maximumEntries				= 10000;
+
+	@Attribute(name = "maximumWeight", required = false)
+	private long	maximumWeight				= 16 * 1024 * 1024;
+
+	@Attribute(name = "expireAfterAccessSeconds", required = false)
+	private long	expireAfterAccessSeconds	= 0;
+
+	/**
+	 * Constructs the configuration with default values. It is used by Simple XML framework, which sets the fields from
+	 * XML.
+	 */
+	public ExpressionCacheConfig()
+	{
+	}
+
+	/**
+	 * Constructs the configuration read from startup snapshot
+	 */
+	ExpressionCacheConfig( int maximumEntries, long maximumWeight, long expireAfterAccessSeconds )
+	{
+		this.maximumEntries = maximumEntries;
+		this.maximumWeight = maximumWeight;
+		this.expireAfterAccessSeconds = expireAfterAccessSeconds;
+	}
+
+	/**
+	 * @return maximum number of cached expressions
+	 */
+	public int getMaximumEntries()
+	{
+		return maximumEntries;
+	}
+
+	/**
+	 * @return maximum estimated bytes of cached expressions
+	 */
+	public long getMaximumWeight()
+	{
+		return maximumWeight;
+	}
+
+	/**
+	 * @return seconds after last use when a cached expression expires
+	 */
+	public long getExpireAfterAccessSeconds()
+	{
+		return expireAfterAccessSeconds;
+	}
+}
@@ -28,12 +28,25 @@ package org.vedantatree.expressionoasis.config;
 
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
+import org.vedantatree.expressionoasis.expressions.Expression;
 
 
 /**
  * Represents the configuration for an Expression
  * 
  * @author Kris Marwood
+ * 
+ *          Added constructor and class name accessor for the startup snapshot
+ * 
+ * @author Mohit Gupta
+ * @version 1.1
+ * @since 3.3
+ * 
+ *          Expression class is returned as a subclass of Expression
+ * 
+ * @author Mohit Gupta
+ * @version 1.2
+ * @since 3.3
  */
 @Element(name = "expression")
 public class ExpressionConfig
@@ -48,6 +61,23 @@ public class ExpressionConfig
 	@Attribute(name = "type")
 	private String	expressionType;
 
+	/**
+	 * Constructs the configuration. It is used by Simple XML framework, which sets the fields from XML.
+	 */
+	public ExpressionConfig()
+	{
+	}
+
+	/**
+	 * Constructs the configuration read from startup snapshot
+	 */
+	ExpressionConfig( String expressionName, String className, String expressionType )
+	{
+		this.expressionName = expressionName;
+		this.className = className;
+		this.expressionType = expressionType;
+	}
+
 	/**
 	 * @return the expressionName
 	 */
@@ -56,17 +86,25 @@ public class ExpressionConfig
 		return expressionName;
 	}
 
+	/**
+	 * @return the name of expression class
+	 */
+	String getClassName()
+	{
+		return className;
+	}
+
 	/**
 	 * @return the className
 	 */
-	public Class getExpressionClass()
+	public Class< ? extends Expression> getExpressionClass()
 	{
-		Class expressionClass = null;
+		Class< ? extends Expression> expressionClass = null;
 		try
 		{
-			expressionClass = Class.forName( className );
+			expressionClass = Class.forName( className ).asSubclass( Expression.class );
 		}
-		catch( ClassNotFoundException e )
+		catch( ClassNotFoundException | ClassCastException e )
 		{
 			throw new RuntimeException( "Error loading expression class[" + className + "]", e );
 		}
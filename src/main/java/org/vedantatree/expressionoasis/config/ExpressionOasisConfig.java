@@ -33,6 +33,7 @@ import java.util.List;
 import org.simpleframework.xml.Element;
 import org.simpleframework.xml.ElementList;
 import org.simpleframework.xml.Root;
+import org.vedantatree.expressionoasis.ExpressionEngineConstants;
 import org.vedantatree.expressionoasis.extensions.FunctionProvider;
 import org.vedantatree.expressionoasis.grammar.Grammar;
 
@@ -43,6 +44,55 @@ import org.vedantatree.expressionoasis.grammar.Grammar;
  * 
  * @author Kris Marwood
  * @author 1.0
+ * 
+ *         Added lexerMode setting to choose the tokenization algorithm of Parser
+ * 
+ * @author Mohit Gupta
+ * @version 1.1
+ * @since 3.3
+ * 
+ *         Added constructor and accessors for the startup snapshot, which stores the configuration in binary form
+ *         Added compilationMode setting to choose how Compiler builds the expression tree
+ * 
+ * @author Mohit Gupta
+ * @version 1.2
+ * @since 3.3
+ * 
+ *         Added expressionCache setting for the bounds and expiry of the cache of compiled expressions
+ * 
+ * @author Mohit Gupta
+ * @version 1.3
+ * @since 3.3
+ * 
+ *         Added optimizeExpressions setting to fold the constant parts of compiled expression trees
+ * 
+ * @author Mohit Gupta
+ * @version 1.4
+ * @since 3.3
+ * 
+ *         Added internExpressions setting to share the same sub trees across cached expression trees
+ * 
+ * @author Mohit Gupta
+ * @version 1.5
+ * @since 3.3
+ * 
+ *         Added parameterizeLiterals setting to share one compiled tree by expressions differing only in literals
+ * 
+ * @author Mohit Gupta
+ * @version 1.6
+ * @since 3.3
+ * 
+ *         Added compileToClasses setting to compile the validated expression trees to generated classes
+ * 
+ * @author Mohit Gupta
+ * @version 1.7
+ * @since 3.3
+ * 
+ *         Added compiledExpressionDirectory setting for the directory of persistent store of compiled expressions
+ * 
+ * @author Mohit Gupta
+ * @version 1.8
+ * @since 3.3
  */
 
 @Root(name = "expressionOasisConfig")
@@ -52,12 +102,36 @@ public class ExpressionOasisConfig
 	@Element(name = "cacheCompiledExpressions")
 	private boolean							cacheCompiledExpressions;
 
+	@Element(name = "expressionCache", required = false)
+	private ExpressionCacheConfig			expressionCacheConfig	= new ExpressionCacheConfig();
+
 	@Element(name = "grammarClass")
 	private String							grammarClass;
 
 	@Element(name = "grammarPath")
 	private String							grammarPath;
 
+	@Element(name = "lexerMode", required = false)
+	private String							lexerMode			= ExpressionEngineConstants.LEXER_MODE_RECURSIVE;
+
+	@Element(name = "compilationMode", required = false)
+	private String							compilationMode		= ExpressionEngineConstants.COMPILATION_MODE_RPN;
+
+	@Element(name = "optimizeExpressions", required = false)
+	private boolean							optimizeExpressions;
+
+	@Element(name = "internExpressions", required = false)
+	private boolean							internExpressions;
+
+	@Element(name = "parameterizeLiterals", required = false)
+	private boolean							parameterizeLiterals;
+
+	@Element(name = "compileToClasses", required = false)
+	private boolean							compileToClasses;
+
+	@Element(name = "compiledExpressionDirectory", required = false)
+	private String							compiledExpressionDirectory;
+
 	@ElementList(name = "functionProviders", entry = "functionProvider")
 	private List<FunctionProviderConfig>	functionProviderConfigs;
 
@@ -66,6 +140,37 @@ public class ExpressionOasisConfig
 
 	private final List<FunctionProvider>	functionProviders	= new ArrayList<FunctionProvider>();
 
+	/**
+	 * Constructs the configuration. It is used by Simple XML framework, which sets the fields from XML.
+	 */
+	public ExpressionOasisConfig()
+	{
+	}
+
+	/**
+	 * Constructs the configuration with the settings read from startup snapshot
+	 */
+	ExpressionOasisConfig( boolean cacheCompiledExpressions, ExpressionCacheConfig expressionCacheConfig,
+			String grammarClass, String grammarPath, String lexerMode, String compilationMode,
+			boolean optimizeExpressions, boolean internExpressions, boolean parameterizeLiterals,
+			boolean compileToClasses, String compiledExpressionDirectory,
+			List<FunctionProviderConfig> functionProviderConfigs, List<ExpressionConfig> expressionConfigs )
+	{
+		this.cacheCompiledExpressions = cacheCompiledExpressions;
+		this.expressionCacheConfig = expressionCacheConfig;
+		this.grammarClass = grammarClass;
+		this.grammarPath = grammarPath;
+		this.lexerMode = lexerMode;
+		this.compilationMode = compilationMode;
+		this.optimizeExpressions = optimizeExpressions;
+		this.internExpressions = internExpressions;
+		this.parameterizeLiterals = parameterizeLiterals;
+		this.compileToClasses = compileToClasses;
+		this.compiledExpressionDirectory = compiledExpressionDirectory;
+		this.functionProviderConfigs = functionProviderConfigs;
+		this.expressionConfigs = expressionConfigs;
+	}
+
 	/**
 	 * Determines whether the expression engine should cache RPN token stacks for expression strings
 	 * 
@@ -76,6 +181,62 @@ public class ExpressionOasisConfig
 		return cacheCompiledExpressions;
 	}
 
+	/**
+	 * Determines whether the compiled expression trees should be optimized, by folding their constant parts. See
+	 * {@link org.vedantatree.expressionoasis.expressions.ExpressionOptimizer}.
+	 * 
+	 * @return true if compiled expression trees should be optimized
+	 */
+	public boolean shouldOptimizeExpressions()
+	{
+		return optimizeExpressions;
+	}
+
+	/**
+	 * Determines whether the same sub trees of cached expression trees should be shared. See
+	 * {@link org.vedantatree.expressionoasis.expressions.ExpressionInterner}.
+	 * 
+	 * @return true if cached expression trees should be interned
+	 */
+	public boolean shouldInternExpressions()
+	{
+		return internExpressions;
+	}
+
+	/**
+	 * Determines whether expressions should be compiled with their literals lifted to parameters, so that expressions
+	 * differing only in literals share one cached tree. See
+	 * {@link org.vedantatree.expressionoasis.Compiler#compileParameterized(CharSequence, org.vedantatree.expressionoasis.ExpressionContext, boolean)}.
+	 * 
+	 * @return true if literals of expressions should be parameterized
+	 */
+	public boolean shouldParameterizeLiterals()
+	{
+		return parameterizeLiterals;
+	}
+
+	/**
+	 * Determines whether the validated expression trees should be compiled to generated classes, evaluating these
+	 * without walking the tree. See {@link org.vedantatree.expressionoasis.expressions.ExpressionClassCompiler}.
+	 * 
+	 * @return true if validated expression trees should be compiled to classes
+	 */
+	public boolean shouldCompileToClasses()
+	{
+		return compileToClasses;
+	}
+
+	/**
+	 * Returns the bounds and expiry of the cache of compiled expressions. Default values are returned if these are not
+	 * specified in configuration.
+	 * 
+	 * @return the configuration of expression cache
+	 */
+	public ExpressionCacheConfig getExpressionCacheConfig()
+	{
+		return expressionCacheConfig;
+	}
+
 	/**
 	 * Retieves a list of expressions configured for the expression engine.
 	 * 
@@ -109,6 +270,26 @@ public class ExpressionOasisConfig
 		return Collections.unmodifiableList( functionProviders );
 	}
 
+	/**
+	 * Retrieves a list of function provider configurations
+	 * 
+	 * @return the function provider configurations
+	 */
+	List<FunctionProviderConfig> getFunctionProviderConfigs()
+	{
+		return Collections.unmodifiableList( functionProviderConfigs );
+	}
+
+	/**
+	 * Returns the name of the grammar class
+	 * 
+	 * @return the name of grammar class
+	 */
+	String getGrammarClass()
+	{
+		return grammarClass;
+	}
+
 	public Grammar getGrammar()
 	{
 		try
@@ -127,4 +308,41 @@ public class ExpressionOasisConfig
 	{
 		return grammarPath;
 	}
+
+	/**
+	 * Returns the mode of lexer to be used by Parser to tokenize the expressions. It can be
+	 * {@link ExpressionEngineConstants#LEXER_MODE_RECURSIVE}, {@link ExpressionEngineConstants#LEXER_MODE_ITERATIVE} or
+	 * {@link ExpressionEngineConstants#LEXER_MODE_LONGEST_MATCH}.
+	 * Recursive mode is returned if it is not specified in configuration.
+	 * 
+	 * @return the mode of lexer
+	 */
+	public String getLexerMode()
+	{
+		return lexerMode;
+	}
+
+	/**
+	 * Returns the mode of Compiler to build the expression tree from tokens. It can be
+	 * {@link ExpressionEngineConstants#COMPILATION_MODE_RPN} or
+	 * {@link ExpressionEngineConstants#COMPILATION_MODE_PRECEDENCE_CLIMBING}.
+	 * RPN mode is returned if it is not specified in configuration.
+	 * 
+	 * @return the mode of compilation
+	 */
+	public String getCompilationMode()
+	{
+		return compilationMode;
+	}
+
+	/**
+	 * Returns the path of directory of persistent store of compiled expressions. See
+	 * {@link org.vedantatree.expressionoasis.CompiledExpressionStore}.
+	 * 
+	 * @return the path of store directory, <code>null</code> if store is not used
+	 */
+	public String getCompiledExpressionDirectory()
+	{
+		return compiledExpressionDirectory;
+	}
 }
\ No newline at end of file
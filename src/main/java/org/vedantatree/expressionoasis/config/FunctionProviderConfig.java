@@ -43,6 +43,12 @@ import org.vedantatree.expressionoasis.extensions.FunctionProvider;
  * 
  * @author Kris Marwood
  * @version 1.0
+ * 
+ *          Added accessors for the startup snapshot
+ * 
+ * @author Mohit Gupta
+ * @version 1.1
+ * @since 3.3
  */
 
 @Root(name = "functionProvider")
@@ -127,6 +133,22 @@ public class FunctionProviderConfig
 		return provider;
 	}
 
+	/**
+	 * @return the name of the function provider class
+	 */
+	String getClassName()
+	{
+		return className;
+	}
+
+	/**
+	 * @return the arguments to pass to the constructor, <code>null</code> if there is none
+	 */
+	List<ConstructorArgument> getArgs()
+	{
+		return args;
+	}
+
 	/**
 	 * Gets the parameters required by the function provider class's constructor
 	 * (as defined by the args tags in the XML config).
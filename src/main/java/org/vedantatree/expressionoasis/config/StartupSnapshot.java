@@ -0,0 +1,507 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis.config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+
+/**
+ * Binary snapshot of the configuration and grammar, to start ExpressionOasis without parsing the XML files.
+ * 
+ * Snapshot is enabled by setting the path of snapshot file in System Properties for key
+ * {@link #SNAPSHOT_FILE_PATH_KEY}. At start, snapshot file is mapped in memory and is used only if the checksums of
+ * config.xml and grammar XML stored in it are same as of the current files. Otherwise configuration and grammar are
+ * loaded from XML as before, and snapshot is written again with the loaded settings. So a stale snapshot is never
+ * used, and it is replaced on the first start after any change in XML files.
+ * 
+ * Snapshot writes and reads the configuration section itself. Grammar writes its own section, which is returned to it
+ * as it is, using the methods of this class for strings. Function providers and expression classes are still
+ * instantiated from their class names.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public final class StartupSnapshot
+{
+
+	private static Log				LOGGER					= LogFactory.getLog( StartupSnapshot.class );
+
+	/**
+	 * Key of System Property for the path of snapshot file. Snapshot is not used if it is not set.
+	 */
+	public static final String		SNAPSHOT_FILE_PATH_KEY	= "EXPRESSION_OASIS_SNAPSHOT_FILE";
+
+	/**
+	 * Starting bytes of snapshot file
+	 */
+	private static final int		MAGIC					= 0x454F534E;
+
+	/**
+	 * Version of snapshot format, snapshots of other versions are treated as stale
+	 */
+	private static final int		VERSION					= 8;
+
+	/**
+	 * Snapshot file
+	 */
+	private final File				file;
+
+	/**
+	 * Checksum of current configuration XML
+	 */
+	private final long				configChecksum;
+
+	/**
+	 * Configuration read from snapshot, or loaded from XML to be written in snapshot
+	 */
+	private ExpressionOasisConfig	config;
+
+	/**
+	 * Indicates whether configuration is read from snapshot
+	 */
+	private boolean					configRead;
+
+	/**
+	 * Path of grammar XML of the grammar section
+	 */
+	private String					grammarPath;
+
+	/**
+	 * Checksum of grammar XML of the grammar section
+	 */
+	private long					grammarChecksum;
+
+	/**
+	 * Grammar section, mapped from snapshot file or written last
+	 */
+	private ByteBuffer				grammarSection;
+
+	/**
+	 * Constructs the snapshot
+	 * 
+	 * @param file the snapshot file
+	 * @param configChecksum checksum of current configuration XML
+	 */
+	private StartupSnapshot( File file, long configChecksum )
+	{
+		this.file = file;
+		this.configChecksum = configChecksum;
+	}
+
+	/**
+	 * Opens the snapshot file. If file does not exist, is stale for given configuration or can not be read, snapshot is
+	 * empty and will be written when grammar section is written.
+	 * 
+	 * @param file the snapshot file
+	 * @param configSource the current configuration XML
+	 * @return the snapshot
+	 */
+	public static StartupSnapshot open( File file, byte[] configSource )
+	{
+		StartupSnapshot snapshot = new StartupSnapshot( file, checksum( configSource ) );
+		if( file.isFile() )
+		{
+			snapshot.read();
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Maps the snapshot file and reads the configuration section, if snapshot is for the current configuration
+	 */
+	private void read()
+	{
+		try
+		{
+			ByteBuffer buffer;
+			RandomAccessFile randomAccessFile = new RandomAccessFile( file, "r" );
+			try
+			{
+				FileChannel channel = randomAccessFile.getChannel();
+				buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+			}
+			finally
+			{
+				randomAccessFile.close();
+			}
+
+			if( buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != configChecksum )
+			{
+				LOGGER.info( "Startup snapshot is stale, configuration will be loaded from XML. file[" + file + "]" );
+				return;
+			}
+
+			ExpressionOasisConfig snapshotConfig = readConfig( buffer );
+			String snapshotGrammarPath = readString( buffer );
+			long snapshotGrammarChecksum = buffer.getLong();
+			int length = buffer.getInt();
+
+			ByteBuffer section = buffer.slice();
+			section.limit( length );
+
+			config = snapshotConfig;
+			configRead = true;
+			grammarPath = snapshotGrammarPath;
+			grammarChecksum = snapshotGrammarChecksum;
+			grammarSection = section;
+		}
+		catch( Exception e )
+		{
+			LOGGER.warn( "Unable to read startup snapshot, configuration will be loaded from XML. file[" + file + "]", e );
+		}
+	}
+
+	/**
+	 * Returns the configuration read from snapshot
+	 * 
+	 * @return the configuration, or <code>null</code> if snapshot is not for the current configuration
+	 */
+	public synchronized ExpressionOasisConfig getConfig()
+	{
+		return configRead ? config : null;
+	}
+
+	/**
+	 * Sets the configuration loaded from XML, which is written in snapshot with the grammar section
+	 * 
+	 * @param config the configuration loaded from XML
+	 */
+	public synchronized void setConfig( ExpressionOasisConfig config )
+	{
+		this.config = config;
+	}
+
+	/**
+	 * Returns the grammar section, if it is written for given grammar XML
+	 * 
+	 * @param grammarPath path of grammar XML
+	 * @param grammarSource the current grammar XML
+	 * @return the buffer positioned at the start of grammar section, or <code>null</code> if snapshot is stale for
+	 *         grammar
+	 */
+	public synchronized ByteBuffer getGrammarSection( String grammarPath, byte[] grammarSource )
+	{
+		if( grammarSection == null || !grammarPath.equals( this.grammarPath )
+				|| grammarChecksum != checksum( grammarSource ) )
+		{
+			return null;
+		}
+		return grammarSection.duplicate();
+	}
+
+	/**
+	 * Writes the snapshot file with the configuration and given grammar section. Snapshot is written to a temporary
+	 * file first, and then it replaces the snapshot file. Snapshot is only an optimization, so failure to write it is
+	 * logged and ignored.
+	 * 
+	 * @param grammarPath path of grammar XML
+	 * @param grammarSource the current grammar XML
+	 * @param section the grammar section
+	 */
+	public synchronized void writeGrammarSection( String grammarPath, byte[] grammarSource, byte[] section )
+	{
+		if( config == null )
+		{
+			throw new IllegalStateException( "Configuration must be set before writing the startup snapshot." );
+		}
+
+		long checksum = checksum( grammarSource );
+		try
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream( section.length + 4096 );
+			DataOutputStream output = new DataOutputStream( bytes );
+			output.writeInt( MAGIC );
+			output.writeInt( VERSION );
+			output.writeLong( configChecksum );
+			writeConfig( output, config );
+			writeString( output, grammarPath );
+			output.writeLong( checksum );
+			output.writeInt( section.length );
+			output.write( section );
+			output.flush();
+
+			File parent = file.getAbsoluteFile().getParentFile();
+			if( parent != null )
+			{
+				parent.mkdirs();
+			}
+			File temporaryFile = new File( file.getPath() + ".tmp" );
+			OutputStream stream = new FileOutputStream( temporaryFile );
+			try
+			{
+				bytes.writeTo( stream );
+			}
+			finally
+			{
+				stream.close();
+			}
+			if( !temporaryFile.renameTo( file ) && !( file.delete() && temporaryFile.renameTo( file ) ) )
+			{
+				throw new IOException( "Unable to replace snapshot file with [" + temporaryFile + "]" );
+			}
+			LOGGER.info( "Startup snapshot is written. file[" + file + "]" );
+		}
+		catch( IOException e )
+		{
+			LOGGER.warn( "Unable to write startup snapshot. file[" + file + "]", e );
+		}
+
+		this.grammarPath = grammarPath;
+		this.grammarChecksum = checksum;
+		this.grammarSection = ByteBuffer.wrap( section ).asReadOnlyBuffer();
+	}
+
+	/**
+	 * Writes the configuration section
+	 */
+	private static void writeConfig( DataOutput output, ExpressionOasisConfig config ) throws IOException
+	{
+		output.writeBoolean( config.shouldCacheCompiledExpressions() );
+		ExpressionCacheConfig expressionCacheConfig = config.getExpressionCacheConfig();
+		output.writeInt( expressionCacheConfig.getMaximumEntries() );
+		output.writeLong( expressionCacheConfig.getMaximumWeight() );
+		output.writeLong( expressionCacheConfig.getExpireAfterAccessSeconds() );
+		writeString( output, config.getGrammarClass() );
+		writeString( output, config.getGrammarPath() );
+		writeString( output, config.getLexerMode() );
+		writeString( output, config.getCompilationMode() );
+		output.writeBoolean( config.shouldOptimizeExpressions() );
+		output.writeBoolean( config.shouldInternExpressions() );
+		output.writeBoolean( config.shouldParameterizeLiterals() );
+		output.writeBoolean( config.shouldCompileToClasses() );
+		writeString( output, config.getCompiledExpressionDirectory() );
+
+		List<FunctionProviderConfig> functionProviderConfigs = config.getFunctionProviderConfigs();
+		output.writeInt( functionProviderConfigs.size() );
+		for( FunctionProviderConfig functionProviderConfig : functionProviderConfigs )
+		{
+			writeString( output, functionProviderConfig.getClassName() );
+
+			List<ConstructorArgument> args = functionProviderConfig.getArgs();
+			output.writeInt( args == null ? -1 : args.size() );
+			for( int i = 0; args != null && i < args.size(); i++ )
+			{
+				writeString( output, args.get( i ).getClassName() );
+				writeString( output, args.get( i ).getValue() );
+			}
+		}
+
+		List<ExpressionConfig> expressionConfigs = config.getExpressionConfigs();
+		output.writeInt( expressionConfigs.size() );
+		for( ExpressionConfig expressionConfig : expressionConfigs )
+		{
+			writeString( output, expressionConfig.getExpressionName() );
+			writeString( output, expressionConfig.getClassName() );
+			writeString( output, expressionConfig.getExpressionType() );
+		}
+	}
+
+	/**
+	 * Reads the configuration section
+	 */
+	private static ExpressionOasisConfig readConfig( ByteBuffer buffer )
+	{
+		boolean cacheCompiledExpressions = buffer.get() != 0;
+		ExpressionCacheConfig expressionCacheConfig = new ExpressionCacheConfig( buffer.getInt(), buffer.getLong(),
+				buffer.getLong() );
+		String grammarClass = readString( buffer );
+		String grammarPath = readString( buffer );
+		String lexerMode = readString( buffer );
+		String compilationMode = readString( buffer );
+		boolean optimizeExpressions = buffer.get() != 0;
+		boolean internExpressions = buffer.get() != 0;
+		boolean parameterizeLiterals = buffer.get() != 0;
+		boolean compileToClasses = buffer.get() != 0;
+		String compiledExpressionDirectory = readString( buffer );
+
+		int functionProviderCount = buffer.getInt();
+		List<FunctionProviderConfig> functionProviderConfigs = new ArrayList<FunctionProviderConfig>(
+				functionProviderCount );
+		for( int i = 0; i < functionProviderCount; i++ )
+		{
+			String className = readString( buffer );
+
+			int argCount = buffer.getInt();
+			List<ConstructorArgument> args = argCount < 0 ? null : new ArrayList<ConstructorArgument>( argCount );
+			for( int j = 0; j < argCount; j++ )
+			{
+				args.add( new ConstructorArgument( readString( buffer ), readString( buffer ) ) );
+			}
+			functionProviderConfigs.add( new FunctionProviderConfig( className, args ) );
+		}
+
+		int expressionCount = buffer.getInt();
+		List<ExpressionConfig> expressionConfigs = new ArrayList<ExpressionConfig>( expressionCount );
+		for( int i = 0; i < expressionCount; i++ )
+		{
+			expressionConfigs.add( new ExpressionConfig( readString( buffer ), readString( buffer ),
+					readString( buffer ) ) );
+		}
+
+		return new ExpressionOasisConfig( cacheCompiledExpressions, expressionCacheConfig, grammarClass, grammarPath,
+				lexerMode, compilationMode, optimizeExpressions, internExpressions, parameterizeLiterals,
+				compileToClasses, compiledExpressionDirectory, functionProviderConfigs, expressionConfigs );
+	}
+
+	/**
+	 * Writes a string, which may be <code>null</code>
+	 * 
+	 * @param output the output to write to
+	 * @param value the string to write
+	 * @throws IOException if unable to write
+	 */
+	public static void writeString( DataOutput output, String value ) throws IOException
+	{
+		if( value == null )
+		{
+			output.writeInt( -1 );
+			return;
+		}
+
+		output.writeInt( value.length() );
+		output.writeChars( value );
+	}
+
+	/**
+	 * Reads a string written by {@link #writeString(DataOutput, String)}
+	 * 
+	 * @param buffer the buffer to read from
+	 * @return the string, may be <code>null</code>
+	 */
+	public static String readString( ByteBuffer buffer )
+	{
+		int length = buffer.getInt();
+		if( length < 0 )
+		{
+			return null;
+		}
+
+		char[] characters = new char[length];
+		buffer.asCharBuffer().get( characters );
+		buffer.position( buffer.position() + length * 2 );
+		return new String( characters );
+	}
+
+	/**
+	 * Writes a collection of strings, which may be <code>null</code>
+	 * 
+	 * @param output the output to write to
+	 * @param values the strings to write
+	 * @throws IOException if unable to write
+	 */
+	public static void writeStrings( DataOutput output, Collection<String> values ) throws IOException
+	{
+		if( values == null )
+		{
+			output.writeInt( -1 );
+			return;
+		}
+
+		output.writeInt( values.size() );
+		for( String value : values )
+		{
+			writeString( output, value );
+		}
+	}
+
+	/**
+	 * Reads the strings written by {@link #writeStrings(DataOutput, Collection)}
+	 * 
+	 * @param buffer the buffer to read from
+	 * @return the set of strings, may be <code>null</code>
+	 */
+	public static Set<String> readStrings( ByteBuffer buffer )
+	{
+		int size = buffer.getInt();
+		if( size < 0 )
+		{
+			return null;
+		}
+
+		Set<String> values = new HashSet<String>( size );
+		for( int i = 0; i < size; i++ )
+		{
+			values.add( readString( buffer ) );
+		}
+		return values;
+	}
+
+	/**
+	 * Reads all the bytes of stream, and closes it
+	 * 
+	 * @param stream the stream to read
+	 * @return the bytes read
+	 * @throws IOException if unable to read
+	 */
+	public static byte[] readFully( InputStream stream ) throws IOException
+	{
+		try
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] chunk = new byte[8192];
+			for( int count = stream.read( chunk ); count >= 0; count = stream.read( chunk ) )
+			{
+				bytes.write( chunk, 0, count );
+			}
+			return bytes.toByteArray();
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+
+	/**
+	 * Computes the checksum of source XML
+	 */
+	private static long checksum( byte[] source )
+	{
+		CRC32 crc = new CRC32();
+		crc.update( source, 0, source.length );
+		return crc.getValue();
+	}
+}
@@ -0,0 +1,73 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis.exceptions;
+
+/**
+ * This exception is thrown by primitive evaluation of an expression, like
+ * <code>Expression.evaluateLong()</code>, if expression results in a null value. A null value can not be returned as
+ * primitive, whereas boxed evaluation returns it as it is.
+ * 
+ * Only one instance is used, without stack trace, as null values may be common with nullable operands and the
+ * exception is not meant to be logged. Callers which need the null result should use boxed evaluation.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public final class NullValueException extends ExpressionEngineException
+{
+
+	/**
+	 * This is the serialization version for this class.
+	 */
+	private static final long				serialVersionUID	= 2026101801L;
+
+	/**
+	 * The only instance of exception
+	 */
+	public static final NullValueException	INSTANCE			= new NullValueException();
+
+	/**
+	 * Constructs the NullValueException
+	 */
+	private NullValueException()
+	{
+		super( "Value is null and can not be evaluated as primitive", ErrorCodes.EXPRESSION_EVALUATION_PROBLEM, null,
+				true );
+	}
+
+	/**
+	 * Does not fill the stack trace, as instance is shared
+	 * 
+	 * @see java.lang.Throwable#fillInStackTrace()
+	 */
+	@Override
+	public synchronized Throwable fillInStackTrace()
+	{
+		return this;
+	}
+}
@@ -26,8 +26,8 @@
  */
 package org.vedantatree.expressionoasis.expressions;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.vedantatree.expressionoasis.EOErrorCodes;
 import org.vedantatree.expressionoasis.ExpressionContext;
@@ -50,19 +50,44 @@ import org.vedantatree.expressionoasis.utils.StringUtils;
  * 
  * @author Kris Marwood
  * @version 1.1
+ * 
+ *          Type pair cache and type mappings are concurrent, as many threads compile the expressions at the same time.
+ * 
+ * @author Mohit Gupta
+ * @version 1.2
+ * @since 3.3
+ * 
+ *          Return type of a validated expression is inferred once from the types of its operands and kept, so
+ *          validation of a tree computes the type of every node once rather than again for each ancestor. Type pairs
+ *          are compared and hashed by identity of types, without creating a key string.
+ * 
+ * @author Mohit Gupta
+ * @version 1.3
+ * @since 3.3
+ * 
+ *          Added primitive evaluation. By default value is evaluated by getValue and unboxed, operators override it to
+ *          compute the primitive from primitive values of operands.
+ * 
+ * @author Mohit Gupta
+ * @version 1.4
+ * @since 3.3
+ * 
+ *          Operators can be specialized for the types of their operands, once these are inferred by validation.
+ *          Specialized variants are subclasses of their operator, which compute the value without finding the types
+ *          of operands. Compiler and optimizer know a variant by the class of its operator.
+ * 
+ * @author Mohit Gupta
+ * @version 1.5
+ * @since 3.3
  */
 public abstract class BinaryOperatorExpression implements Expression
 {
 
-	/**
-	 * This is the type pairs cache.
-	 */
-	private static final Map	TYPE_PAIR_CACHE	= new HashMap();
-
 	/**
 	 * This is the type pair mapping for all the binary operators.
 	 */
-	private static Map			typePairMapping	= new HashMap();
+	private static ConcurrentHashMap<Class< ? >, Map<TypePair, Type>>	typePairMapping	=
+		new ConcurrentHashMap<Class< ? >, Map<TypePair, Type>>();
 
 	/**
 	 * Left operand expression for this binary operator expression.
@@ -74,6 +99,27 @@ public abstract class BinaryOperatorExpression implements Expression
 	 */
 	protected Expression		rightOperandExpression;
 
+	/**
+	 * Return type inferred on validation of expression, <code>null</code> if it is not inferred yet
+	 */
+	private Type				returnType;
+
+	/**
+	 * Specifies whether expression is initialized with validation. Types of operands of a validated expression are
+	 * fixed, as tree is compiled again if types of variables change.
+	 */
+	private boolean				validated;
+
+	/**
+	 * Type in which operands are evaluated by primitive evaluation, <code>null</code> if it is not found yet
+	 */
+	private Type				operandType;
+
+	/**
+	 * Specifies whether expression is a specialized variant of its operator
+	 */
+	private boolean				specialized;
+
 	/**
 	 * Initializes the child expressions.
 	 * 
@@ -101,6 +147,9 @@ public abstract class BinaryOperatorExpression implements Expression
 
 		leftOperandExpression = arguments[0];
 		rightOperandExpression = arguments[1];
+		returnType = null;
+		operandType = null;
+		validated = validate;
 
 		if( validate )
 		{
@@ -109,25 +158,173 @@ public abstract class BinaryOperatorExpression implements Expression
 	}
 
 	/**
+	 * Returns the type mapped for the types of operands. Type of a validated expression is inferred once and kept.
+	 * 
 	 * @see org.vedantatree.expressionoasis.expressions.Expression#getReturnType()
 	 */
 	public Type getReturnType() throws ExpressionEngineException
 	{
-		HashMap typeMapping = (HashMap) typePairMapping.get( getClass() );
+		Type type = returnType;
+		if( type != null )
+		{
+			return type;
+		}
 
-		Type type = (Type) typeMapping.get( createTypePair( leftOperandExpression.getReturnType(),
-				rightOperandExpression.getReturnType() ) );
-		if( type == null )
+		Type leftType = leftOperandExpression.getReturnType();
+		Type rightType = rightOperandExpression.getReturnType();
+		if( leftType != null && rightType != null )
 		{
-			if( getLeftOperandExpression().getReturnType() == Type.ANY_TYPE
-					|| getRightOperandExpression().getReturnType() == Type.ANY_TYPE )
-			{
-				type = Type.ANY_TYPE;
-			}
+			Map<TypePair, Type> typeMapping = typePairMapping.get( getOperatorClass() );
+			type = typeMapping.get( createTypePair( leftType, rightType ) );
+		}
+		if( type == null && ( leftType == Type.ANY_TYPE || rightType == Type.ANY_TYPE ) )
+		{
+			type = Type.ANY_TYPE;
+		}
+
+		if( validated )
+		{
+			returnType = type;
+		}
+		return type;
+	}
+
+	/**
+	 * Evaluates the expression by {@link #getValue()} and unboxes the value. Operators which can compute the value
+	 * from primitive values of operands override it.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		return getValue().longValue();
+	}
+
+	/**
+	 * Evaluates the expression by {@link #getValue()} and unboxes the value.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		return getValue().doubleValue();
+	}
+
+	/**
+	 * Evaluates the expression by {@link #getValue()} and unboxes the value.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateBoolean()
+	 */
+	public boolean evaluateBoolean() throws ExpressionEngineException
+	{
+		return getValue().booleanValue();
+	}
+
+	/**
+	 * Returns the common type of operands, in which these can be compared as primitives. It is LONG for integral
+	 * operands, DOUBLE if any operand is decimal and BOOLEAN for boolean operands. Type of a validated expression is
+	 * found once and kept.
+	 * 
+	 * @return the common primitive type of operands, or OBJECT if operands have no such type, like strings or nullable
+	 *         operands which are compared by their boxed values
+	 * @throws ExpressionEngineException if type of an operand can not be found
+	 */
+	protected final Type getOperandType() throws ExpressionEngineException
+	{
+		Type type = operandType;
+		if( type != null )
+		{
+			return type;
+		}
+
+		Type leftType = leftOperandExpression.getReturnType();
+		Type rightType = rightOperandExpression.getReturnType();
+		if( isIntegral( leftType ) && isIntegral( rightType ) )
+		{
+			type = Type.LONG;
+		}
+		else if( ( isIntegral( leftType ) || isDecimal( leftType ) )
+				&& ( isIntegral( rightType ) || isDecimal( rightType ) ) )
+		{
+			type = Type.DOUBLE;
+		}
+		else if( leftType == Type.BOOLEAN && rightType == Type.BOOLEAN )
+		{
+			type = Type.BOOLEAN;
+		}
+		else
+		{
+			type = Type.OBJECT;
+		}
+
+		if( validated )
+		{
+			operandType = type;
 		}
 		return type;
 	}
 
+	private static boolean isIntegral( Type type )
+	{
+		return type == Type.LONG || type == Type.INTEGER;
+	}
+
+	private static boolean isDecimal( Type type )
+	{
+		return type == Type.DOUBLE || type == Type.FLOAT;
+	}
+
+	/**
+	 * Returns a variant of this operator specialized for the types of its operands, which computes the value without
+	 * finding the types. Operators having such variants override it, and create these by {@link #specializeAs}. It is
+	 * called by optimizer for validated expressions only.
+	 * 
+	 * @return the specialized variant, or this expression if operator has no variant for the types of its operands
+	 * @throws ExpressionEngineException if type of an operand can not be found
+	 */
+	protected BinaryOperatorExpression specialize() throws ExpressionEngineException
+	{
+		return this;
+	}
+
+	/**
+	 * Makes the given variant a copy of this expression, with the types inferred for this expression
+	 * 
+	 * @param variant new instance of a subclass of this operator, specialized for the types of its operands
+	 * @return the variant
+	 */
+	protected final BinaryOperatorExpression specializeAs( BinaryOperatorExpression variant )
+	{
+		variant.leftOperandExpression = leftOperandExpression;
+		variant.rightOperandExpression = rightOperandExpression;
+		variant.returnType = returnType;
+		variant.operandType = operandType;
+		variant.validated = validated;
+		variant.specialized = true;
+		return variant;
+	}
+
+	/**
+	 * Checks whether expression is initialized with validation, so types of its operands are fixed
+	 * 
+	 * @return true if expression is validated
+	 */
+	protected final boolean isValidated()
+	{
+		return validated;
+	}
+
+	/**
+	 * Returns the class of operator. It is the class of generic operator for a specialized variant, so type mappings
+	 * and the optimizations known for the operator apply to its variants as well.
+	 * 
+	 * @return the class of operator
+	 */
+	public final Class< ? > getOperatorClass()
+	{
+		return specialized ? getClass().getSuperclass() : getClass();
+	}
+
 	/**
 	 * Gets the value of leftOperandExpression.
 	 * 
@@ -160,7 +357,8 @@ public abstract class BinaryOperatorExpression implements Expression
 	}
 
 	/**
-	 * Creates the type pair for given types pair
+	 * Creates the type pair for given types pair. Pairs are compared by identity of types, so a new pair can be used
+	 * as key to find the mapped type.
 	 * 
 	 * @param leftType
 	 * @param rightType
@@ -168,16 +366,7 @@ public abstract class BinaryOperatorExpression implements Expression
 	 */
 	protected static final TypePair createTypePair( Type leftType, Type rightType )
 	{
-		String key = leftType.getTypeName() + rightType.getTypeName();
-		TypePair typePair = (TypePair) TYPE_PAIR_CACHE.get( key );
-
-		if( typePair == null )
-		{
-			typePair = new TypePair( leftType, rightType );
-			TYPE_PAIR_CACHE.put( key, typePair );
-		}
-
-		return typePair;
+		return new TypePair( leftType, rightType );
 	}
 
 	/**
@@ -193,7 +382,7 @@ public abstract class BinaryOperatorExpression implements Expression
 	 * @param rightType type of right operand
 	 * @param resultType type of result
 	 */
-	protected static final void addTypePair( Class clazz, Type leftType, Type rightType, Type resultType )
+	protected static final void addTypePair( Class< ? > clazz, Type leftType, Type rightType, Type resultType )
 	{
 		if( clazz == null || !BinaryOperatorExpression.class.isAssignableFrom( clazz ) )
 		{
@@ -201,12 +390,13 @@ public abstract class BinaryOperatorExpression implements Expression
 					+ "\" is not a valid binary operator expression class." );
 		}
 
-		HashMap typeMapping = (HashMap) typePairMapping.get( clazz );
+		Map<TypePair, Type> typeMapping = typePairMapping.get( clazz );
 
 		if( typeMapping == null )
 		{
-			typeMapping = new HashMap();
-			typePairMapping.put( clazz, typeMapping );
+			typeMapping = new ConcurrentHashMap<TypePair, Type>();
+			Map<TypePair, Type> existingTypeMapping = typePairMapping.putIfAbsent( clazz, typeMapping );
+			typeMapping = existingTypeMapping == null ? typeMapping : existingTypeMapping;
 		}
 
 		typeMapping.put( createTypePair( leftType, rightType ), resultType );
@@ -234,7 +424,7 @@ public abstract class BinaryOperatorExpression implements Expression
 
 		if( getReturnType() == null )
 		{
-			String prefix = StringUtils.getLastToken( getClass().getName(), "." );
+			String prefix = StringUtils.getLastToken( getOperatorClass().getName(), "." );
 			prefix = prefix.substring( 0, prefix.length() - "Expression".length() );
 			throw new ExpressionEngineException( "Either no type mapping is defined or Operands of types: [\""
 					+ leftOperandExpression.getReturnType() + "\", \"" + rightOperandExpression.getReturnType()
@@ -248,7 +438,7 @@ public abstract class BinaryOperatorExpression implements Expression
 	@Override
 	public String toString()
 	{
-		String prefix = StringUtils.getLastToken( getClass().getName(), "." );
+		String prefix = StringUtils.getLastToken( getOperatorClass().getName(), "." );
 		prefix = prefix.substring( 0, prefix.length() );
 
 		return prefix + "( " + leftOperandExpression + ", " + rightOperandExpression + " )";
@@ -322,7 +512,8 @@ public abstract class BinaryOperatorExpression implements Expression
 		@Override
 		public int hashCode()
 		{
-			return ( leftType.getTypeName() + rightType.getTypeName() ).hashCode();
+			// consistent with equals, which compares the types by identity
+			return 31 * System.identityHashCode( leftType ) + System.identityHashCode( rightType );
 		}
 	}
 
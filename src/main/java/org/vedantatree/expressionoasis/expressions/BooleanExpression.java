@@ -63,6 +63,30 @@ public class BooleanExpression implements Expression
 		return booleanValue;
 	}
 
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		return booleanValue.longValue();
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		return booleanValue.doubleValue();
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateBoolean()
+	 */
+	public boolean evaluateBoolean() throws ExpressionEngineException
+	{
+		return booleanValue.booleanValue();
+	}
+
 	/**
 	 * Returns the boolean type.
 	 * 
@@ -0,0 +1,66 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis.expressions;
+
+import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+
+
+/**
+ * Evaluates an expression tree compiled to a class by {@link ExpressionClassCompiler}. Methods are same as the
+ * primitive evaluation methods of {@link Expression}, and give the same values as the tree.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public interface CompiledEvaluator
+{
+
+	/**
+	 * @return the value of expression as long
+	 * @throws ExpressionEngineException if there is any problem during execution, or NullValueException if a value
+	 *         needed for evaluation is null
+	 * @see Expression#evaluateLong()
+	 */
+	long evaluateLong() throws ExpressionEngineException;
+
+	/**
+	 * @return the value of expression as double
+	 * @throws ExpressionEngineException if there is any problem during execution, or NullValueException if a value
+	 *         needed for evaluation is null
+	 * @see Expression#evaluateDouble()
+	 */
+	double evaluateDouble() throws ExpressionEngineException;
+
+	/**
+	 * @return the value of expression as boolean
+	 * @throws ExpressionEngineException if there is any problem during execution, or NullValueException if a value
+	 *         needed for evaluation is null
+	 * @see Expression#evaluateBoolean()
+	 */
+	boolean evaluateBoolean() throws ExpressionEngineException;
+}
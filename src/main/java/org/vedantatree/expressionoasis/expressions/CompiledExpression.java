@@ -0,0 +1,230 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis.expressions;
+
+import org.vedantatree.expressionoasis.ExpressionContext;
+import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.exceptions.NullValueException;
+import org.vedantatree.expressionoasis.types.Type;
+import org.vedantatree.expressionoasis.types.ValueObject;
+
+
+/**
+ * Expression tree compiled to a generated class by {@link ExpressionClassCompiler}. It is evaluated by the
+ * {@link CompiledEvaluator} of generated class, and is same as the tree otherwise, so visitors see the nodes of tree.
+ * 
+ * Generated class evaluates the primitive values. If it finds a null value, expression is evaluated again by the tree,
+ * so the null values of operators and the functions handling null arguments give the same results as before.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public final class CompiledExpression implements Expression
+{
+
+	/**
+	 * The compiled tree
+	 */
+	private final Expression		expression;
+
+	/**
+	 * The evaluator of generated class
+	 */
+	private final CompiledEvaluator	evaluator;
+
+	/**
+	 * Return type of tree, which is long, double or boolean
+	 */
+	private final Type				returnType;
+
+	/**
+	 * Number of nodes which are evaluated by the tree from generated class, when expression is evaluated as its return
+	 * type
+	 */
+	private final int				interpretedNodeCount;
+
+	/**
+	 * Constructs the CompiledExpression
+	 * 
+	 * @param expression the compiled tree
+	 * @param evaluator the evaluator of generated class
+	 * @param returnType return type of tree
+	 * @param interpretedNodeCount number of nodes which are evaluated by the tree from generated class, when
+	 *        expression is evaluated as its return type
+	 */
+	CompiledExpression( Expression expression, CompiledEvaluator evaluator, Type returnType, int interpretedNodeCount )
+	{
+		this.expression = expression;
+		this.evaluator = evaluator;
+		this.returnType = returnType;
+		this.interpretedNodeCount = interpretedNodeCount;
+	}
+
+	/**
+	 * @return the compiled tree
+	 */
+	public Expression getExpression()
+	{
+		return expression;
+	}
+
+	/**
+	 * @return the evaluator of generated class
+	 */
+	public CompiledEvaluator getEvaluator()
+	{
+		return evaluator;
+	}
+
+	/**
+	 * Returns the number of nodes which generated class could not compile, like identifiers and properties, and
+	 * evaluates by calling these, when expression is evaluated as its return type
+	 * 
+	 * @return number of nodes evaluated by the tree
+	 */
+	public int getInterpretedNodeCount()
+	{
+		return interpretedNodeCount;
+	}
+
+	/**
+	 * Evaluates the primitive value by generated class, and wraps it
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#getValue()
+	 */
+	public ValueObject getValue() throws ExpressionEngineException
+	{
+		try
+		{
+			if( returnType == Type.LONG )
+			{
+				return new ValueObject( Long.valueOf( evaluator.evaluateLong() ), Type.LONG );
+			}
+			if( returnType == Type.DOUBLE )
+			{
+				return new ValueObject( Double.valueOf( evaluator.evaluateDouble() ), Type.DOUBLE );
+			}
+			return new ValueObject( Boolean.valueOf( evaluator.evaluateBoolean() ), Type.BOOLEAN );
+		}
+		catch( NullValueException e )
+		{
+			return expression.getValue();
+		}
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		try
+		{
+			return evaluator.evaluateLong();
+		}
+		catch( NullValueException e )
+		{
+			return expression.evaluateLong();
+		}
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		try
+		{
+			return evaluator.evaluateDouble();
+		}
+		catch( NullValueException e )
+		{
+			return expression.evaluateDouble();
+		}
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateBoolean()
+	 */
+	public boolean evaluateBoolean() throws ExpressionEngineException
+	{
+		try
+		{
+			return evaluator.evaluateBoolean();
+		}
+		catch( NullValueException e )
+		{
+			return expression.evaluateBoolean();
+		}
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#getReturnType()
+	 */
+	public Type getReturnType() throws ExpressionEngineException
+	{
+		return returnType;
+	}
+
+	/**
+	 * Nothing to initialize, as tree is already compiled
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#initialize(org.vedantatree.expressionoasis.ExpressionContext,
+	 *      java.lang.Object, boolean)
+	 */
+	public void initialize( ExpressionContext expressionContext, Object parameters, boolean validate )
+			throws ExpressionEngineException
+	{
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#uninitialize(org.vedantatree.expressionoasis.ExpressionContext)
+	 */
+	public void uninitialize( ExpressionContext expressionContext )
+	{
+		expression.uninitialize( expressionContext );
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return expression.toString();
+	}
+
+	/**
+	 * Visits the nodes of compiled tree
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#accept(org.vedantatree.expressionoasis.expressions.ExpressionVisitor)
+	 */
+	public void accept( ExpressionVisitor visitor )
+	{
+		expression.accept( visitor );
+	}
+}
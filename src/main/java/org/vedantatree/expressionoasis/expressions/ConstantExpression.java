@@ -0,0 +1,148 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis.expressions;
+
+import org.vedantatree.expressionoasis.ExpressionContext;
+import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.types.Type;
+import org.vedantatree.expressionoasis.types.ValueObject;
+
+
+/**
+ * Expression with a value computed at compile time, which replaces a sub tree of constant operands. It keeps the
+ * return type of replaced sub tree, so the expressions using it see the same type as before.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public class ConstantExpression implements Expression
+{
+
+	/**
+	 * The value of expression
+	 */
+	private ValueObject	value;
+
+	/**
+	 * The type returned by expression
+	 */
+	private Type		returnType;
+
+	/**
+	 * Constructs the ConstantExpression
+	 * 
+	 * @param value the value computed at compile time
+	 * @param returnType the return type of the replaced expression
+	 */
+	public ConstantExpression( ValueObject value, Type returnType )
+	{
+		this.value = value;
+		this.returnType = returnType;
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#getValue()
+	 */
+	public ValueObject getValue() throws ExpressionEngineException
+	{
+		return value;
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		return value.longValue();
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		return value.doubleValue();
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateBoolean()
+	 */
+	public boolean evaluateBoolean() throws ExpressionEngineException
+	{
+		return value.booleanValue();
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#getReturnType()
+	 */
+	public Type getReturnType() throws ExpressionEngineException
+	{
+		return returnType;
+	}
+
+	/**
+	 * Initializes the value, if given value object.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#initialize(org.vedantatree.expressionoasis.ExpressionContext,
+	 *      java.lang.Object, boolean)
+	 */
+	public void initialize( ExpressionContext expressionContext, Object parameters, boolean validate )
+			throws ExpressionEngineException
+	{
+		if( parameters instanceof ValueObject )
+		{
+			value = (ValueObject) parameters;
+			returnType = value.getValueType();
+		}
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#uninitialize(org.vedantatree.expressionoasis.ExpressionContext)
+	 */
+	public void uninitialize( ExpressionContext expressionContext )
+	{
+		value = null;
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return value == null ? "null-not-initialized" : "Constant[" + value.getValue() + "]";
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#accept(org.vedantatree.expressionoasis.expressions.ExpressionVisitor)
+	 */
+	public void accept( ExpressionVisitor visitor )
+	{
+		visitor.visit( this );
+	}
+}
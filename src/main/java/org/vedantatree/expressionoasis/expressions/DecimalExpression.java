@@ -43,6 +43,12 @@ import org.vedantatree.expressionoasis.types.ValueObject;
  * 
  * @author Kris Marwood
  * @version 1.1
+ * 
+ *          Value can also be initialized from the Double value parsed by lexer.
+ * 
+ * @author Mohit Gupta
+ * @version 1.2
+ * @since 3.3
  */
 public class DecimalExpression implements Expression
 {
@@ -62,6 +68,30 @@ public class DecimalExpression implements Expression
 		return decimalValue;
 	}
 
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		return decimalValue.longValue();
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		return decimalValue.doubleValue();
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateBoolean()
+	 */
+	public boolean evaluateBoolean() throws ExpressionEngineException
+	{
+		return decimalValue.booleanValue();
+	}
+
 	/**
 	 * Returns the double type.
 	 * 
@@ -73,7 +103,7 @@ public class DecimalExpression implements Expression
 	}
 
 	/**
-	 * Initializes the double value object.
+	 * Initializes the double value object. Parameters can be a Double value or a String.
 	 * 
 	 * @see org.vedantatree.expressionoasis.expressions.Expression#initialize(org.vedantatree.expressionoasis.ExpressionContext,
 	 *      java.lang.Object)
@@ -81,7 +111,7 @@ public class DecimalExpression implements Expression
 	public void initialize( ExpressionContext expressionContext, Object objectInfo, boolean validate )
 			throws ExpressionEngineException
 	{
-		Double value = new Double( (String) objectInfo );
+		Double value = objectInfo instanceof Double ? (Double) objectInfo : new Double( (String) objectInfo );
 		decimalValue = new ValueObject( value, Type.DOUBLE );
 	}
 
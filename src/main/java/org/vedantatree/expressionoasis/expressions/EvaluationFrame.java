@@ -0,0 +1,238 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis.expressions;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+import org.vedantatree.expressionoasis.types.ValueObject;
+
+
+/**
+ * Per thread state of the expressions being evaluated. Evaluation of a compiled tree creates no state of its own, so a
+ * tree can be evaluated by many threads at the same time, and keeps whatever it needs in the frame of current thread:
+ * the slots of {@link SharedExpression}s, the literals bound to {@link ParameterExpression}s and the buffers of
+ * function arguments.
+ * 
+ * Buffers are created on first use for each nesting depth and count of arguments, and are reused by later evaluations,
+ * so a steady state evaluation does not create new arrays. A buffer is cleared on release, so values are not retained
+ * by the frame. Buffers must be released in the reverse order of acquiring, which is ensured by releasing these in a
+ * finally block of the same method.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ * 
+ *          Added buffers of argument expressions, passed to the lazy functions.
+ * 
+ * @author Mohit Gupta
+ * @version 1.1
+ * @since 3.3
+ */
+public final class EvaluationFrame
+{
+
+	/**
+	 * Frame of each thread
+	 */
+	private static final ThreadLocal<EvaluationFrame>	FRAME					= new ThreadLocal<EvaluationFrame>()
+																				{
+
+																					@Override
+																					protected EvaluationFrame initialValue()
+																					{
+																						return new EvaluationFrame();
+																					}
+																				};
+
+	/**
+	 * The scope of shared expressions being evaluated
+	 */
+	SharedExpressionScope								sharedScope;
+
+	/**
+	 * Slots of the shared expressions of current scope
+	 */
+	ValueObject[]										sharedValues;
+
+	/**
+	 * Slots of last evaluation of a scope, to be reused by next one
+	 */
+	ValueObject[]										spareSharedValues;
+
+	/**
+	 * Literals bound by the parameterized expression being evaluated
+	 */
+	ValueObject[]										parameters;
+
+	/**
+	 * Buffers of argument values, passed to function providers
+	 */
+	private final BufferStack							argumentValues			= new BufferStack( ValueObject.class );
+
+	/**
+	 * Buffers of argument objects, passed to the methods of functions
+	 */
+	private final BufferStack							argumentObjects			= new BufferStack( Object.class );
+
+	/**
+	 * Buffers of argument expressions, passed to the providers of lazy functions
+	 */
+	private final BufferStack							argumentExpressions		= new BufferStack( Expression.class );
+
+	private EvaluationFrame()
+	{
+	}
+
+	/**
+	 * Returns the frame of current thread
+	 * 
+	 * @return the frame of current thread
+	 */
+	public static EvaluationFrame get()
+	{
+		return FRAME.get();
+	}
+
+	/**
+	 * Acquires a buffer for the values of function arguments
+	 * 
+	 * @param count the count of arguments
+	 * @return a buffer of given length, having no values
+	 */
+	public ValueObject[] acquireArgumentValues( int count )
+	{
+		return (ValueObject[]) argumentValues.acquire( count );
+	}
+
+	/**
+	 * Releases the buffer acquired last by {@link #acquireArgumentValues(int)}
+	 * 
+	 * @param values the buffer to release
+	 */
+	public void releaseArgumentValues( ValueObject[] values )
+	{
+		argumentValues.release( values );
+	}
+
+	/**
+	 * Acquires a buffer for the objects of function arguments, like to invoke a method
+	 * 
+	 * @param count the count of arguments
+	 * @return a buffer of given length, having no objects
+	 */
+	public Object[] acquireArgumentObjects( int count )
+	{
+		return argumentObjects.acquire( count );
+	}
+
+	/**
+	 * Releases the buffer acquired last by {@link #acquireArgumentObjects(int)}
+	 * 
+	 * @param objects the buffer to release
+	 */
+	public void releaseArgumentObjects( Object[] objects )
+	{
+		argumentObjects.release( objects );
+	}
+
+	/**
+	 * Acquires a buffer for the expressions of function arguments, which are evaluated lazily by the function
+	 * 
+	 * @param count the count of arguments
+	 * @return a buffer of given length, having no expressions
+	 */
+	public Expression[] acquireArgumentExpressions( int count )
+	{
+		return (Expression[]) argumentExpressions.acquire( count );
+	}
+
+	/**
+	 * Releases the buffer acquired last by {@link #acquireArgumentExpressions(int)}
+	 * 
+	 * @param expressions the buffer to release
+	 */
+	public void releaseArgumentExpressions( Expression[] expressions )
+	{
+		argumentExpressions.release( expressions );
+	}
+
+	/**
+	 * Buffers of a type, for each nesting depth and length
+	 */
+	private static final class BufferStack
+	{
+
+		private final Class< ? >	componentType;
+
+		/**
+		 * Buffers by depth and then by length
+		 */
+		private Object[][][]		buffers	= new Object[4][][];
+
+		/**
+		 * Count of buffers acquired and not released
+		 */
+		private int					depth;
+
+		private BufferStack( Class< ? > componentType )
+		{
+			this.componentType = componentType;
+		}
+
+		private Object[] acquire( int length )
+		{
+			if( depth == buffers.length )
+			{
+				buffers = Arrays.copyOf( buffers, depth * 2 );
+			}
+
+			Object[][] buffersOfDepth = buffers[depth];
+			if( buffersOfDepth == null || buffersOfDepth.length <= length )
+			{
+				buffersOfDepth = buffersOfDepth == null ? new Object[length + 1][] : Arrays.copyOf( buffersOfDepth,
+						length + 1 );
+				buffers[depth] = buffersOfDepth;
+			}
+
+			Object[] buffer = buffersOfDepth[length];
+			if( buffer == null )
+			{
+				buffer = (Object[]) Array.newInstance( componentType, length );
+				buffersOfDepth[length] = buffer;
+			}
+			depth++;
+			return buffer;
+		}
+
+		private void release( Object[] buffer )
+		{
+			Arrays.fill( buffer, null );
+			depth--;
+		}
+	}
+}
@@ -56,6 +56,14 @@ import org.vedantatree.expressionoasis.types.ValueObject;
  * 
  * @author Kris Marwood
  * @version 1.1
+ * 
+ *          Added primitive evaluation methods, which evaluate numeric and boolean expressions without boxing the
+ *          intermediate values. getValue remains the general evaluation. A null value can not be returned as
+ *          primitive, so primitive evaluation throws NullValueException for it.
+ * 
+ * @author Mohit Gupta
+ * @version 1.2
+ * @since 3.3
  */
 public interface Expression
 {
@@ -72,6 +80,37 @@ public interface Expression
 	 */
 	ValueObject getValue() throws ExpressionEngineException;
 
+	/**
+	 * Executes the expression and returns its numeric value as long, converting a decimal value like a cast.
+	 * Arithmetic and bitwise expressions evaluate their operands as primitives too, without creating the value
+	 * objects.
+	 * 
+	 * @throws ExpressionEngineException if there is any problem during execution, or NullValueException if value of
+	 *         expression is null
+	 * @return the value of expression as long
+	 */
+	long evaluateLong() throws ExpressionEngineException;
+
+	/**
+	 * Executes the expression and returns its numeric value as double.
+	 * 
+	 * @throws ExpressionEngineException if there is any problem during execution, or NullValueException if value of
+	 *         expression is null
+	 * @return the value of expression as double
+	 * @see #evaluateLong()
+	 */
+	double evaluateDouble() throws ExpressionEngineException;
+
+	/**
+	 * Executes the expression and returns its boolean value. Relational and boolean expressions evaluate their
+	 * operands as primitives.
+	 * 
+	 * @throws ExpressionEngineException if there is any problem during execution, or NullValueException if value of
+	 *         expression is null
+	 * @return the value of expression as boolean
+	 */
+	boolean evaluateBoolean() throws ExpressionEngineException;
+
 	/**
 	 * Gets the return type of the expression.
 	 * 
@@ -0,0 +1,806 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis.expressions;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javassist.ClassClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtField;
+import javassist.CtNewConstructor;
+import javassist.CtNewMethod;
+import javassist.NotFoundException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.exceptions.NullValueException;
+import org.vedantatree.expressionoasis.expressions.arithmatic.AddExpression;
+import org.vedantatree.expressionoasis.expressions.arithmatic.DivideExpression;
+import org.vedantatree.expressionoasis.expressions.arithmatic.MinusExpression;
+import org.vedantatree.expressionoasis.expressions.arithmatic.MultiplyExpression;
+import org.vedantatree.expressionoasis.expressions.arithmatic.ParanthesisExpression;
+import org.vedantatree.expressionoasis.expressions.arithmatic.PlusExpression;
+import org.vedantatree.expressionoasis.expressions.arithmatic.RemainderExpression;
+import org.vedantatree.expressionoasis.expressions.arithmatic.SubtractExpression;
+import org.vedantatree.expressionoasis.expressions.booleanexp.AndExpression;
+import org.vedantatree.expressionoasis.expressions.booleanexp.ConditionTernaryExpression;
+import org.vedantatree.expressionoasis.expressions.booleanexp.NotExpression;
+import org.vedantatree.expressionoasis.expressions.booleanexp.OrExpression;
+import org.vedantatree.expressionoasis.expressions.booleanexp.ResultTernaryExpression;
+import org.vedantatree.expressionoasis.expressions.property.FunctionExpression;
+import org.vedantatree.expressionoasis.expressions.relational.EQExpression;
+import org.vedantatree.expressionoasis.expressions.relational.GTEExpression;
+import org.vedantatree.expressionoasis.expressions.relational.GTExpression;
+import org.vedantatree.expressionoasis.expressions.relational.LTEExpression;
+import org.vedantatree.expressionoasis.expressions.relational.LTExpression;
+import org.vedantatree.expressionoasis.expressions.relational.NEExpression;
+import org.vedantatree.expressionoasis.types.Type;
+import org.vedantatree.expressionoasis.types.ValueObject;
+
+
+/**
+ * Compiles a validated expression tree to a generated class, which evaluates the expression as straight Java code
+ * rather than by calling the nodes of tree one by one. Code of class is generated as Java source and is compiled by
+ * Javassist, like the classes of custom functions.
+ * 
+ * <ul>
+ * <li>Literals and constants become the Java literals.</li>
+ * <li>Arithmetic, relational and boolean operators of ExpressionOasis, and ternary expressions, become the Java
+ * operators on the long, double and boolean values, as resolved by validation. <code>&amp;&amp;</code>,
+ * <code>||</code> and ternary expressions evaluate their operands only if needed, as in the tree.</li>
+ * <li>Functions of {@link org.vedantatree.expressionoasis.extensions.DefaultFunctionProvider} which are public static
+ * methods, taking and returning Long, Double, Boolean or Number, become direct calls of these methods.</li>
+ * <li>A {@link SharedExpression}, made by elimination of common sub expressions, is evaluated once in an evaluation
+ * into the arrays passed to the generated methods, rather than into the evaluation frame.</li>
+ * </ul>
+ * 
+ * Other nodes, like identifiers, properties, strings and functions of other providers, are kept in an array of
+ * generated class and are evaluated by the tree, through their primitive evaluation methods. Trees which are not
+ * numeric or boolean, or whose root can not be compiled, are returned as they are.
+ * 
+ * Generated code evaluates the primitive values like the primitive evaluation methods of tree, so it throws
+ * NullValueException for a null value. {@link CompiledExpression} evaluates the tree again in that case. Every
+ * generated class is defined by its own class loader, so it can be unloaded with its expression.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public final class ExpressionClassCompiler
+{
+
+	private static Log					LOGGER				= LogFactory.getLog( ExpressionClassCompiler.class );
+
+	/**
+	 * Name of generated classes, which is followed by their number
+	 */
+	private static final String			CLASS_NAME			= ExpressionClassCompiler.class.getName() + "$Evaluator";
+
+	/**
+	 * Names of classes used by generated code
+	 */
+	private static final String			EXPRESSION			= Expression.class.getName();
+
+	private static final String			EXCEPTION			= ExpressionEngineException.class.getName();
+
+	private static final String			NULL_VALUE			= NullValueException.class.getName();
+
+	private static final String			VALUE_OBJECT		= ValueObject.class.getName();
+
+	/**
+	 * Parameters and arguments of generated methods, for the values of shared expressions
+	 */
+	private static final String			SLOT_PARAMETERS		= "long[] longs, double[] doubles, boolean[] booleans, "
+																	+ VALUE_OBJECT
+																	+ "[] values, boolean[] evaluated";
+
+	private static final String			SLOT_ARGUMENTS		= "longs, doubles, booleans, values, evaluated";
+
+	/**
+	 * Number of classes generated, to name these
+	 */
+	private static final AtomicLong		generatedClasses	= new AtomicLong();
+
+	/**
+	 * Pool of Javassist, which is not thread safe, so classes are generated one by one
+	 */
+	private static ClassPool			pool;
+
+	/**
+	 * Class being generated
+	 */
+	private final CtClass				evaluatorClass;
+
+	/**
+	 * Whether tree is a scope of shared expressions, whose values are kept in the arrays passed to generated methods
+	 */
+	private final boolean				scoped;
+
+	/**
+	 * Parameters and arguments of generated methods, empty if tree is not scoped
+	 */
+	private final String				parameters;
+
+	private final String				arguments;
+
+	/**
+	 * Nodes evaluated by the tree, and their indexes in the array of generated class
+	 */
+	private final List<Expression>		interpretedExpressions	= new ArrayList<Expression>();
+
+	private final Map<Expression, Integer>	interpretedIndexes		= new IdentityHashMap<Expression, Integer>();
+
+	/**
+	 * Slots of shared expressions
+	 */
+	private final Map<Expression, Integer>	sharedSlots				= new IdentityHashMap<Expression, Integer>();
+
+	/**
+	 * Slot arrays used by shared expressions
+	 */
+	private final Set<String>				slotArrays				= new HashSet<String>();
+
+	/**
+	 * Number of methods generated for function calls
+	 */
+	private int							functionCount;
+
+	/**
+	 * Constructs the compiler of a tree
+	 * 
+	 * @param scoped whether tree is a scope of shared expressions
+	 */
+	private ExpressionClassCompiler( boolean scoped )
+	{
+		this.scoped = scoped;
+		this.parameters = scoped ? SLOT_PARAMETERS : "";
+		this.arguments = scoped ? SLOT_ARGUMENTS : "";
+		evaluatorClass = pool.makeClass( CLASS_NAME + generatedClasses.incrementAndGet() );
+	}
+
+	/**
+	 * Compiles the validated expression tree to a generated class. Tree must not be changed or initialized again once
+	 * compiled.
+	 * 
+	 * @param expression the root of validated tree
+	 * @return the {@link CompiledExpression} evaluating the tree by generated class, or the tree itself if it can not
+	 *         be compiled
+	 * @throws ExpressionEngineException if types of tree can not be found
+	 */
+	public static Expression compile( Expression expression ) throws ExpressionEngineException
+	{
+		if( expression == null || expression instanceof CompiledExpression )
+		{
+			return expression;
+		}
+		Type returnType = expression.getReturnType();
+		if( !isPrimitive( returnType ) )
+		{
+			return expression;
+		}
+
+		synchronized( ExpressionClassCompiler.class )
+		{
+			if( pool == null )
+			{
+				pool = ClassPool.getDefault();
+				pool.insertClassPath( new ClassClassPath( ExpressionClassCompiler.class ) );
+			}
+			ExpressionClassCompiler compiler = new ExpressionClassCompiler(
+					expression instanceof SharedExpressionScope );
+			try
+			{
+				return compiler.compile( expression, returnType );
+			}
+			catch( NotCompilableException e )
+			{
+				return expression;
+			}
+			catch( Exception e )
+			{
+				LOGGER.warn( "Expression is not compiled to class, it is evaluated by the tree. expression["
+						+ expression + "]", e );
+				return expression;
+			}
+			finally
+			{
+				compiler.evaluatorClass.detach();
+			}
+		}
+	}
+
+	/**
+	 * Generates the class for tree, and creates its evaluator
+	 */
+	private Expression compile( Expression expression, Type returnType ) throws Exception
+	{
+		Expression root = scoped ? ( (SharedExpressionScope) expression ).getExpression() : expression;
+
+		evaluatorClass.addInterface( pool.get( CompiledEvaluator.class.getName() ) );
+		evaluatorClass.addField( CtField.make( "private final " + EXPRESSION + "[] nodes;", evaluatorClass ) );
+		addMethod( "private static long longValue( Object value ) { if( value == null ) { throw " + NULL_VALUE
+				+ ".INSTANCE; } return ( (Number) value ).longValue(); }" );
+		addMethod( "private static double doubleValue( Object value ) { if( value == null ) { throw " + NULL_VALUE
+				+ ".INSTANCE; } return ( (Number) value ).doubleValue(); }" );
+		addMethod( "private static boolean booleanValue( Object value ) { if( value == null ) { throw " + NULL_VALUE
+				+ ".INSTANCE; } return ( (Boolean) value ).booleanValue(); }" );
+
+		// nothing is gained if root itself is evaluated by the tree
+		String rootCode = generate( root, returnType );
+		if( interpretedIndexes.containsKey( root ) )
+		{
+			return expression;
+		}
+		int interpretedNodeCount = interpretedExpressions.size();
+		Type[] types =
+		{ Type.LONG, Type.DOUBLE, Type.BOOLEAN };
+		for( Type type : types )
+		{
+			String name = getMethodName( type );
+			String header = "public " + getJavaType( type ) + " " + name + "()";
+			String code = rootCode;
+			if( type != returnType )
+			{
+				try
+				{
+					code = generate( root, type );
+				}
+				catch( NotCompilableException e )
+				{
+					// root is evaluated by its scope, which keeps the values of shared expressions in evaluation frame
+					addMethod( header + " throws " + EXCEPTION + " { return nodes[" + getInterpretedIndex( expression )
+							+ "]." + name + "(); }" );
+					continue;
+				}
+			}
+			if( scoped )
+			{
+				// slot arrays are created for every evaluation, so evaluator can be used by many threads
+				addMethod( "private " + getJavaType( type ) + " " + name + "( " + parameters + " ) throws " + EXCEPTION
+						+ " { return " + code + "; }" );
+				code = name + "( " + createSlotArray( "long", "longs" ) + ", " + createSlotArray( "double", "doubles" )
+						+ ", " + createSlotArray( "boolean", "booleans" ) + ", "
+						+ createSlotArray( VALUE_OBJECT, "values" ) + ", new boolean[" + sharedSlots.size() + "] )";
+			}
+			addMethod( header + " throws " + EXCEPTION + " { return " + code + "; }" );
+		}
+		evaluatorClass.addConstructor( CtNewConstructor.make( "public Evaluator( " + EXPRESSION
+				+ "[] nodes ) { this.nodes = nodes; }", evaluatorClass ) );
+
+		byte[] bytecode = evaluatorClass.toBytecode();
+		Class< ? > generatedClass = new EvaluatorClassLoader( ExpressionClassCompiler.class.getClassLoader() )
+				.define( evaluatorClass.getName(), bytecode );
+		Expression[] nodes = interpretedExpressions.toArray( new Expression[interpretedExpressions.size()] );
+		CompiledEvaluator evaluator = (CompiledEvaluator) generatedClass.getConstructor( Expression[].class )
+				.newInstance( (Object) nodes );
+		if( LOGGER.isDebugEnabled() )
+		{
+			LOGGER.debug( "Expression is compiled to class. expression[" + expression + "] class["
+					+ generatedClass.getName() + "] interpretedNodes[" + interpretedNodeCount + "] sharedSlots["
+					+ sharedSlots.size() + "]" );
+		}
+		return new CompiledExpression( expression, evaluator, returnType, interpretedNodeCount );
+	}
+
+	/**
+	 * Generates the Java code evaluating the expression as the given primitive type, same as its primitive evaluation
+	 * method
+	 * 
+	 * @param expression the expression to generate the code for
+	 * @param type the type of value, long, double or boolean
+	 * @return the code of a Java expression
+	 */
+	private String generate( Expression expression, Type type ) throws ExpressionEngineException,
+			NotCompilableException
+	{
+		Class< ? > expressionClass = ExpressionOptimizer.getExpressionClass( expression );
+		if( expressionClass == ConstantExpression.class || expressionClass == NumericExpression.class
+				|| expressionClass == DecimalExpression.class || expressionClass == BooleanExpression.class )
+		{
+			return generateLiteral( expression, type );
+		}
+		if( expressionClass == ParanthesisExpression.class || expressionClass == PlusExpression.class )
+		{
+			Expression operand = ( (UnaryOperatorExpression) expression ).getOperandExpression();
+			return operand == null ? interpret( expression, type ) : generate( operand, type );
+		}
+		if( expressionClass == MinusExpression.class )
+		{
+			return generateArithmetic( expression, "-", expression.getReturnType(), type );
+		}
+		if( expressionClass == AddExpression.class )
+		{
+			return generateArithmetic( expression, "+", expression.getReturnType(), type );
+		}
+		if( expressionClass == SubtractExpression.class )
+		{
+			return generateArithmetic( expression, "-", expression.getReturnType(), type );
+		}
+		if( expressionClass == MultiplyExpression.class )
+		{
+			return generateArithmetic( expression, "*", expression.getReturnType(), type );
+		}
+		if( expressionClass == DivideExpression.class )
+		{
+			return generateArithmetic( expression, "/", Type.DOUBLE, type );
+		}
+		if( expressionClass == RemainderExpression.class )
+		{
+			return generateArithmetic( expression, "%", Type.LONG, type );
+		}
+		if( expressionClass == LTEExpression.class )
+		{
+			return generateComparison( expression, "<=", false, type );
+		}
+		if( expressionClass == GTEExpression.class )
+		{
+			return generateComparison( expression, ">=", false, type );
+		}
+		if( expressionClass == GTExpression.class )
+		{
+			return generateComparison( expression, "<=", true, type );
+		}
+		if( expressionClass == LTExpression.class )
+		{
+			return generateComparison( expression, ">=", true, type );
+		}
+		if( expressionClass == EQExpression.class )
+		{
+			return generateComparison( expression, "==", false, type );
+		}
+		if( expressionClass == NEExpression.class )
+		{
+			return generateComparison( expression, "==", true, type );
+		}
+		if( expressionClass == AndExpression.class || expressionClass == OrExpression.class )
+		{
+			if( type != Type.BOOLEAN )
+			{
+				return interpret( expression, type );
+			}
+			BinaryOperatorExpression binaryExpression = (BinaryOperatorExpression) expression;
+			return "(" + generate( binaryExpression.leftOperandExpression, Type.BOOLEAN )
+					+ ( expressionClass == AndExpression.class ? " && " : " || " )
+					+ generate( binaryExpression.rightOperandExpression, Type.BOOLEAN ) + ")";
+		}
+		if( expressionClass == NotExpression.class )
+		{
+			if( type != Type.BOOLEAN )
+			{
+				return interpret( expression, type );
+			}
+			return "(!" + generate( ( (UnaryOperatorExpression) expression ).getOperandExpression(), Type.BOOLEAN )
+					+ ")";
+		}
+		if( expressionClass == ResultTernaryExpression.class )
+		{
+			return generateTernary( (ResultTernaryExpression) expression, type );
+		}
+		if( expressionClass == FunctionExpression.class )
+		{
+			return generateFunction( (FunctionExpression) expression, type );
+		}
+		if( expressionClass == SharedExpression.class && scoped )
+		{
+			return generateShared( (SharedExpression) expression, type );
+		}
+		return interpret( expression, type );
+	}
+
+	/**
+	 * Generates the literal for the value of a constant expression
+	 */
+	private String generateLiteral( Expression expression, Type type ) throws NotCompilableException
+	{
+		try
+		{
+			if( type == Type.LONG )
+			{
+				long value = expression.evaluateLong();
+				return value == Long.MIN_VALUE ? "Long.MIN_VALUE" : "(" + value + "L)";
+			}
+			if( type == Type.DOUBLE )
+			{
+				double value = expression.evaluateDouble();
+				if( Double.isNaN( value ) )
+				{
+					return "Double.NaN";
+				}
+				if( Double.isInfinite( value ) )
+				{
+					return value > 0 ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY";
+				}
+				return "(" + value + ")";
+			}
+			return expression.evaluateBoolean() ? "true" : "false";
+		}
+		catch( Exception e )
+		{
+			// null values and values of other types fail on evaluation, as in the tree
+			return interpret( expression, type );
+		}
+	}
+
+	/**
+	 * Generates the arithmetic operation, which is evaluated in the type of its result and then converted to the
+	 * given type, as done by primitive evaluation methods of arithmetic operators
+	 */
+	private String generateArithmetic( Expression expression, String operator, Type resultType, Type type )
+			throws ExpressionEngineException, NotCompilableException
+	{
+		if( type == Type.BOOLEAN || ( resultType != Type.LONG && resultType != Type.DOUBLE ) )
+		{
+			return interpret( expression, type );
+		}
+		String code;
+		if( expression instanceof BinaryOperatorExpression )
+		{
+			BinaryOperatorExpression binaryExpression = (BinaryOperatorExpression) expression;
+			code = "(" + generate( binaryExpression.leftOperandExpression, resultType ) + " " + operator + " "
+					+ generate( binaryExpression.rightOperandExpression, resultType ) + ")";
+		}
+		else
+		{
+			code = "(" + operator + generate( ( (UnaryOperatorExpression) expression ).getOperandExpression(),
+					resultType ) + ")";
+		}
+		return convert( code, resultType, type );
+	}
+
+	/**
+	 * Generates the comparison of operands of given type, which is negated for the operators evaluated as negation of
+	 * another, like > as negation of <=
+	 */
+	private String generateComparison( Expression expression, String operator, boolean negated, Type type )
+			throws ExpressionEngineException, NotCompilableException
+	{
+		BinaryOperatorExpression binaryExpression = (BinaryOperatorExpression) expression;
+		Type operandType = binaryExpression.getOperandType();
+		if( type != Type.BOOLEAN
+				|| ( operandType != Type.LONG && operandType != Type.DOUBLE && !( operator.equals( "==" ) && operandType == Type.BOOLEAN ) ) )
+		{
+			return interpret( expression, type );
+		}
+		String code = "(" + generate( binaryExpression.leftOperandExpression, operandType ) + " " + operator + " "
+				+ generate( binaryExpression.rightOperandExpression, operandType ) + ")";
+		return negated ? "(!" + code + ")" : code;
+	}
+
+	/**
+	 * Generates the ternary expression. Ternary expressions whose branches differ in type are evaluated by the tree, as
+	 * the type of their value depends on the branch chosen.
+	 */
+	private String generateTernary( ResultTernaryExpression expression, Type type ) throws ExpressionEngineException,
+			NotCompilableException
+	{
+		Expression condition = expression.getLeftOperandExpression();
+		Expression falseExpression = expression.getRightOperandExpression();
+		if( !( condition instanceof ConditionTernaryExpression ) )
+		{
+			return interpret( expression, type );
+		}
+		Expression trueExpression = ( (ConditionTernaryExpression) condition ).getRightOperandExpression();
+		Type returnType = expression.getReturnType();
+		if( trueExpression.getReturnType() != returnType || falseExpression.getReturnType() != returnType )
+		{
+			return interpret( expression, type );
+		}
+		return "(" + generate( ( (ConditionTernaryExpression) condition ).getLeftOperandExpression(), Type.BOOLEAN )
+				+ " ? " + generate( trueExpression, type ) + " : " + generate( falseExpression, type ) + ")";
+	}
+
+	/**
+	 * Generates the direct call of method of function. Arguments are evaluated before calling the method, and the
+	 * exceptions of method are wrapped as by its function provider.
+	 */
+	private String generateFunction( FunctionExpression expression, Type type ) throws ExpressionEngineException,
+			NotCompilableException
+	{
+		Method method = expression.getMethod();
+		if( method == null || expression.isLazy() || !isCallable( method ) )
+		{
+			return interpret( expression, type );
+		}
+		Expression[] argumentExpressions = expression.getArgumentExpressions();
+		Class< ? >[] parameterTypes = method.getParameterTypes();
+		if( argumentExpressions.length != parameterTypes.length )
+		{
+			return interpret( expression, type );
+		}
+
+		String name = "function" + functionCount++;
+		StringBuilder body = new StringBuilder();
+		StringBuilder call = new StringBuilder();
+		for( int i = 0; i < argumentExpressions.length; i++ )
+		{
+			String argument = generateArgument( argumentExpressions[i], parameterTypes[i] );
+			if( argument == null )
+			{
+				return interpret( expression, type );
+			}
+			body.append( "Object argument" ).append( i ).append( " = " ).append( argument ).append( "; " );
+			call.append( i == 0 ? "(" : ", (" ).append( parameterTypes[i].getName() ).append( ") argument" ).append(
+					i );
+		}
+		addMethod( "private Object " + name + "( " + parameters + " ) throws " + EXCEPTION + " { " + body
+				+ "try { return " + method.getDeclaringClass().getName() + "." + method.getName() + "( " + call
+				+ " ); } catch( Exception e ) { throw new " + EXCEPTION
+				+ "( \"Error occured while executing method.\", e ); } }" );
+		return getJavaType( type ) + "Value( " + name + "( " + arguments + " ) )";
+	}
+
+	/**
+	 * Generates the boxed value of argument for the parameter of method. Arguments evaluated by the tree, like
+	 * variables, are passed as their values are, so null values and the values not of the type of argument are passed
+	 * to method as by function provider.
+	 * 
+	 * @return the code of argument, <code>null</code> if type of argument does not match the parameter
+	 */
+	private String generateArgument( Expression argument, Class< ? > parameterType )
+			throws ExpressionEngineException, NotCompilableException
+	{
+		Type type = argument.getReturnType();
+		String boxType;
+		if( type == Type.LONG && ( parameterType == Long.class || parameterType == Number.class ) )
+		{
+			boxType = "Long";
+		}
+		else if( type == Type.DOUBLE && ( parameterType == Double.class || parameterType == Number.class ) )
+		{
+			boxType = "Double";
+		}
+		else if( type == Type.BOOLEAN && parameterType == Boolean.class )
+		{
+			boxType = "Boolean";
+		}
+		else
+		{
+			return null;
+		}
+
+		String code = generate( argument, type );
+		Integer index = interpretedIndexes.get( argument );
+		if( index != null && code.equals( "nodes[" + index + "]." + getMethodName( type ) + "()" ) )
+		{
+			return "nodes[" + index + "].getValue().getValue()";
+		}
+		return boxType + ".valueOf( " + code + " )";
+	}
+
+	/**
+	 * Checks whether method can be called directly from generated class, being a public static method of a public top
+	 * level class visible to generated class, and returning Long, Double or Boolean
+	 */
+	private static boolean isCallable( Method method )
+	{
+		Class< ? > declaringClass = method.getDeclaringClass();
+		Class< ? > returnType = method.getReturnType();
+		if( !Modifier.isStatic( method.getModifiers() ) || !Modifier.isPublic( method.getModifiers() )
+				|| !Modifier.isPublic( declaringClass.getModifiers() ) || declaringClass.isMemberClass()
+				|| ( returnType != Long.class && returnType != Double.class && returnType != Boolean.class ) )
+		{
+			return false;
+		}
+		try
+		{
+			pool.get( declaringClass.getName() );
+			return Class.forName( declaringClass.getName(), false, ExpressionClassCompiler.class.getClassLoader() ) == declaringClass;
+		}
+		catch( NotFoundException e )
+		{
+			return false;
+		}
+		catch( ClassNotFoundException e )
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Generates the value of shared expression, which is evaluated once in an evaluation. Sub trees of long, double
+	 * and boolean types are compiled, others are evaluated by the tree.
+	 */
+	private String generateShared( SharedExpression expression, Type type ) throws ExpressionEngineException,
+			NotCompilableException
+	{
+		Expression sharedExpression = expression.getExpression();
+		Type sharedType = sharedExpression.getReturnType();
+		boolean primitive = isPrimitive( sharedType );
+		if( primitive && ( sharedType == Type.BOOLEAN ) != ( type == Type.BOOLEAN ) )
+		{
+			throw NotCompilableException.INSTANCE;
+		}
+
+		Integer slot = sharedSlots.get( expression );
+		if( slot == null )
+		{
+			slot = sharedSlots.size();
+			sharedSlots.put( expression, slot );
+			String array = primitive ? getJavaType( sharedType ) + "s" : "values";
+			slotArrays.add( array );
+			String code = primitive ? generate( sharedExpression, sharedType ) : interpretValue( sharedExpression );
+			addMethod( "private " + ( primitive ? getJavaType( sharedType ) : VALUE_OBJECT ) + " shared" + slot + "( "
+					+ parameters + " ) throws " + EXCEPTION + " { if( !evaluated[" + slot + "] ) { " + array + "["
+					+ slot + "] = " + code + "; evaluated[" + slot + "] = true; } return " + array + "[" + slot
+					+ "]; }" );
+		}
+
+		String code = "shared" + slot + "( " + arguments + " )";
+		if( !primitive )
+		{
+			return code + "." + getJavaType( type ) + "Value()";
+		}
+		return convert( code, sharedType, type );
+	}
+
+	/**
+	 * Generates the creation of slot array, or <code>null</code> if no shared expression uses the array
+	 */
+	private String createSlotArray( String javaType, String array )
+	{
+		return slotArrays.contains( array ) ? "new " + javaType + "[" + sharedSlots.size() + "]" : "null";
+	}
+
+	/**
+	 * Generates the call of primitive evaluation method of node, which is evaluated by the tree
+	 */
+	private String interpret( Expression expression, Type type ) throws NotCompilableException
+	{
+		checkInterpretable( expression );
+		return "nodes[" + getInterpretedIndex( expression ) + "]." + getMethodName( type ) + "()";
+	}
+
+	/**
+	 * Generates the call of getValue of node, which is evaluated by the tree
+	 */
+	private String interpretValue( Expression expression ) throws NotCompilableException
+	{
+		checkInterpretable( expression );
+		return "nodes[" + getInterpretedIndex( expression ) + "].getValue()";
+	}
+
+	/**
+	 * Checks whether node of a scoped tree can be evaluated by the tree. Nodes having shared expressions can not be, as
+	 * values of these are not kept in evaluation frame by generated class.
+	 */
+	private void checkInterpretable( Expression expression ) throws NotCompilableException
+	{
+		if( scoped && !interpretedIndexes.containsKey( expression )
+				&& !new ExpressionTypeFinder( expression, SharedExpression.class ).getExpressions().isEmpty() )
+		{
+			throw NotCompilableException.INSTANCE;
+		}
+	}
+
+	/**
+	 * Returns the index of node in the array of generated class, adding it if not added already
+	 */
+	private int getInterpretedIndex( Expression expression )
+	{
+		Integer index = interpretedIndexes.get( expression );
+		if( index == null )
+		{
+			index = interpretedExpressions.size();
+			interpretedExpressions.add( expression );
+			interpretedIndexes.put( expression, index );
+		}
+		return index;
+	}
+
+	/**
+	 * Adds the method to generated class
+	 */
+	private void addMethod( String source ) throws NotCompilableException
+	{
+		try
+		{
+			evaluatorClass.addMethod( CtNewMethod.make( source, evaluatorClass ) );
+		}
+		catch( Exception e )
+		{
+			LOGGER.warn( "Generated method is not compiled. method[" + source + "]", e );
+			throw NotCompilableException.INSTANCE;
+		}
+	}
+
+	/**
+	 * Converts the code of a numeric value to the given numeric type
+	 */
+	private static String convert( String code, Type fromType, Type toType )
+	{
+		if( fromType == toType )
+		{
+			return code;
+		}
+		return "((" + getJavaType( toType ) + ") " + code + ")";
+	}
+
+	/**
+	 * @return the primitive Java type for the type of expression
+	 */
+	private static String getJavaType( Type type )
+	{
+		return type == Type.LONG ? "long" : type == Type.DOUBLE ? "double" : "boolean";
+	}
+
+	/**
+	 * @return the name of primitive evaluation method for the type
+	 */
+	private static String getMethodName( Type type )
+	{
+		return type == Type.LONG ? "evaluateLong" : type == Type.DOUBLE ? "evaluateDouble" : "evaluateBoolean";
+	}
+
+	private static boolean isPrimitive( Type type )
+	{
+		return type == Type.LONG || type == Type.DOUBLE || type == Type.BOOLEAN;
+	}
+
+	/**
+	 * Thrown when tree can not be compiled at all, like a scoped tree whose shared expressions are needed by the nodes
+	 * evaluated by the tree
+	 */
+	private static final class NotCompilableException extends Exception
+	{
+
+		private static final long						serialVersionUID	= 1L;
+
+		private static final NotCompilableException	INSTANCE			= new NotCompilableException();
+
+		private NotCompilableException()
+		{
+			super( null, null, false, false );
+		}
+	}
+
+	/**
+	 * Loader of a generated class
+	 */
+	private static final class EvaluatorClassLoader extends ClassLoader
+	{
+
+		EvaluatorClassLoader( ClassLoader parent )
+		{
+			super( parent );
+		}
+
+		Class< ? > define( String name, byte[] bytecode )
+		{
+			return defineClass( name, bytecode, 0, bytecode.length );
+		}
+	}
+}
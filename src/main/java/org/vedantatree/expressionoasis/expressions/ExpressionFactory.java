@@ -26,18 +26,20 @@
  */
 package org.vedantatree.expressionoasis.expressions;
 
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.junit.Assert;
 import org.vedantatree.expressionoasis.config.ConfigFactory;
 import org.vedantatree.expressionoasis.config.ExpressionConfig;
 import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
 import org.vedantatree.expressionoasis.expressions.property.FunctionExpression;
+import org.vedantatree.expressionoasis.grammar.ExpressionToken;
+import org.vedantatree.expressionoasis.grammar.rules.IProductionRule;
+import org.vedantatree.expressionoasis.grammar.rules.ProductionRule;
 
 
 /**
@@ -71,10 +73,26 @@ import org.vedantatree.expressionoasis.expressions.property.FunctionExpression;
  * @author Mohit Gupta
  * @version 1.2
  * @since 3.1
+ * 
+ *          Operand expressions are numbered by their order in config.xml, called operand kind. Lexer resolves the kind
+ *          of operand token from the production rule which allowed it, see {@link #getOperandKind(IProductionRule)}.
+ *          Hence operand is created by one array lookup instead of matching all operand patterns. Operand patterns are
+ *          still matched for the tokens without kind, like tokens of recursive parser, literal operands first and
+ *          then the rest in order of config.xml. Removed the use of JUnit assertion from expression creation.
+ * 
+ * @author Mohit Gupta
+ * @version 1.3
+ * @since 3.3
  */
 public class ExpressionFactory
 {
 
+	/**
+	 * Pattern of operand regular expressions which match only one token, i.e. made of literal characters or character
+	 * classes of single character. It is initialized before the shared instance, which uses it.
+	 */
+	private static final Pattern			LITERAL_PATTERN				= Pattern.compile( "(\\[[^\\\\\\[\\]^]\\]|[A-Za-z0-9_])+" );
+
 	/**
 	 * This is the static singleton SHARED_INSTANCE of expression factory.
 	 */
@@ -124,6 +142,22 @@ public class ExpressionFactory
 	 */
 	private Map<String, Pattern>			operandRegExCache			= new HashMap<String, Pattern>();
 
+	/**
+	 * Regular expressions of operand expressions, indexed by operand kind
+	 */
+	private String[]						operandPatterns;
+
+	/**
+	 * Classes of operand expressions, indexed by operand kind
+	 */
+	private List<Class< ? extends Expression>>	operandClasses;
+
+	/**
+	 * Literals of operand expressions which match only one token, like 'true', indexed by operand kind. It is
+	 * <code>null</code> for other operand expressions.
+	 */
+	private String[]						operandLiterals;
+
 	/**
 	 * Constructs the ExpressionFactory
 	 */
@@ -165,12 +199,14 @@ public class ExpressionFactory
 		expressionTypeClassMapping.put( OPERAND, new HashMap() );
 
 		List<ExpressionConfig> expressions = ConfigFactory.getConfig().getExpressionConfigs();
+		List<String> patterns = new ArrayList<String>();
+		List<Class< ? extends Expression>> classes = new ArrayList<Class< ? extends Expression>>();
 
 		for( ExpressionConfig expression : expressions )
 		{
 			String expressionType = expression.getExpressionType();
 			String expressionToken = expression.getExpressionName();
-			Class expressionClass = expression.getExpressionClass();
+			Class< ? extends Expression> expressionClass = expression.getExpressionClass();
 
 			// add expression class to the cache to reuse while creating Expression Object
 			// expressionClassCache.put( expressionClass.getName(), expressionClass );
@@ -193,6 +229,19 @@ public class ExpressionFactory
 			{
 				Pattern pattern = Pattern.compile( expressionToken );
 				operandRegExCache.put( expressionToken, pattern );
+				patterns.add( expressionToken );
+				classes.add( expressionClass );
+			}
+		}
+
+		operandPatterns = patterns.toArray( new String[patterns.size()] );
+		operandClasses = classes;
+		operandLiterals = new String[operandPatterns.length];
+		for( int kind = 0; kind < operandPatterns.length; kind++ )
+		{
+			if( LITERAL_PATTERN.matcher( operandPatterns[kind] ).matches() )
+			{
+				operandLiterals[kind] = operandPatterns[kind].replace( "[", "" ).replace( "]", "" );
 			}
 		}
 
@@ -204,6 +253,143 @@ public class ExpressionFactory
 
 	}
 
+	/**
+	 * Returns the kind of operand expression for the tokens allowed by given production rule. It is the operand
+	 * expression whose regular expression is same as the allowed pattern of rule. Tokens of the rule which are also
+	 * literal operands, like 'true' for identifier rule, must be resolved by {@link #getLiteralKinds(IProductionRule)}
+	 * first.
+	 * 
+	 * @param rule the production rule of grammar
+	 * @return the operand kind, -1 if operand of the rule is not known without matching the token
+	 */
+	public int getOperandKind( IProductionRule rule )
+	{
+		if( !( rule instanceof ProductionRule ) )
+		{
+			return -1;
+		}
+
+		String allowedPattern = ( (ProductionRule) rule ).getAllowedPattern();
+		for( int kind = 0; kind < operandPatterns.length; kind++ )
+		{
+			if( operandPatterns[kind].equals( allowedPattern ) )
+			{
+				return kind;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the kinds of literal operands, like 'true' or 'null', which are allowed by given production rule
+	 * 
+	 * @param rule the production rule of grammar
+	 * @return the literal operand kinds, empty if there are none
+	 */
+	public int[] getLiteralKinds( IProductionRule rule )
+	{
+		int count = 0;
+		int[] kinds = new int[operandLiterals.length];
+		for( int kind = 0; kind < operandLiterals.length; kind++ )
+		{
+			if( operandLiterals[kind] != null && rule.isAllowed( operandLiterals[kind] ) )
+			{
+				kinds[count++] = kind;
+			}
+		}
+		int[] literalKinds = new int[count];
+		System.arraycopy( kinds, 0, literalKinds, 0, count );
+		return literalKinds;
+	}
+
+	/**
+	 * Checks whether the characters of token are the literal of given literal operand kind
+	 * 
+	 * @param kind the literal operand kind
+	 * @param characters the characters of token
+	 * @return <code>true</code> if token is the literal
+	 */
+	public boolean isLiteral( int kind, CharSequence characters )
+	{
+		String literal = operandLiterals[kind];
+		if( literal == null || literal.length() != characters.length() )
+		{
+			return false;
+		}
+		for( int i = 0; i < literal.length(); i++ )
+		{
+			if( literal.charAt( i ) != characters.charAt( i ) )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parses the value of numeric literal for given operand kind, so it need not be parsed while compiling
+	 * 
+	 * @param kind the operand kind
+	 * @param characters the characters of token
+	 * @return Long value for numeric expressions, Double value for decimal expressions, <code>null</code> for other
+	 *         operands or if characters can not be parsed
+	 */
+	public Object parseLiteralValue( int kind, CharSequence characters )
+	{
+		try
+		{
+			if( operandClasses.get( kind ) == NumericExpression.class )
+			{
+				return NumericExpression.parseLong( characters );
+			}
+			if( operandClasses.get( kind ) == DecimalExpression.class )
+			{
+				return Double.valueOf( characters.toString() );
+			}
+		}
+		catch( NumberFormatException e )
+		{
+			// let the expression report it while compiling, as earlier
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the class of operand expression for given token. If lexer has resolved the operand kind of token, it is
+	 * found without matching the operand patterns.
+	 * 
+	 * @param token the token of expression
+	 * @return the class of operand expression, <code>null</code> if token does not match any operand
+	 */
+	public Class< ? extends Expression> getOperandClass( ExpressionToken token )
+	{
+		int kind = token.getOperandKind();
+		if( kind < 0 )
+		{
+			kind = matchOperandKind( token.getText() );
+		}
+		return kind < 0 ? null : operandClasses.get( kind );
+	}
+
+	/**
+	 * Creates the expression object for given token and expression type. If lexer has resolved the operand kind of
+	 * token, operand expression is created without matching the operand patterns.
+	 * 
+	 * @param token the token of expression
+	 * @param type the type of expression i.e. operand, operator etc
+	 * @return the expression object
+	 * @throws ExpressionEngineException if anything goes wrong
+	 */
+	public Expression createExpression( ExpressionToken token, String type ) throws ExpressionEngineException
+	{
+		int kind = token.getOperandKind();
+		if( kind < 0 || !OPERAND.equals( type ) )
+		{
+			return createExpression( token.getText(), type );
+		}
+		return newInstance( operandClasses.get( kind ), token.getText(), type );
+	}
+
 	/**
 	 * Creates the expression object for given expression token and expression
 	 * type
@@ -214,6 +400,20 @@ public class ExpressionFactory
 	 * @throws ExpressionEngineException if anything goes wrong
 	 */
 	public Expression createExpression( String expressionToken, String type ) throws ExpressionEngineException
+	{
+		return createExpression( (CharSequence) expressionToken, type );
+	}
+
+	/**
+	 * Creates the expression object for given characters of expression token and expression type. Operand patterns
+	 * are matched against the characters directly, so a string is not needed for operand tokens.
+	 * 
+	 * @param expressionToken the characters of token of expression
+	 * @param type the type of expression i.e. operand, operator etc
+	 * @return the expression object
+	 * @throws ExpressionEngineException if anything goes wrong
+	 */
+	public Expression createExpression( CharSequence expressionToken, String type ) throws ExpressionEngineException
 	{
 		Class expressionClass = null;
 		Map<String, Class> expressionTokenClassMap = expressionTypeClassMapping.get( type );
@@ -227,27 +427,21 @@ public class ExpressionFactory
 		}
 		else if( OPERAND.equals( type ) )
 		{
-			for( Iterator<Map.Entry<String, Pattern>> iterator = operandRegExCache.entrySet().iterator(); iterator
-					.hasNext(); )
+			int kind = matchOperandKind( expressionToken );
+			expressionClass = kind < 0 ? null : operandClasses.get( kind );
+			if( expressionClass == null )
 			{
-				Map.Entry<String, Pattern> operandTokenRegEx = iterator.next();
-				Matcher operandMatcher = operandTokenRegEx.getValue().matcher( expressionToken );
-				if( operandMatcher.matches() )
-				{
-					expressionClass = expressionTokenClassMap.get( operandTokenRegEx.getKey() );
-					break;
-				}
+				throw new ExpressionEngineException(
+						"If expression token is of Operand type, corresponding regular expression must be defined in "
+								+ "config.xml. No regular expression, hence no expression class found for ["
+								+ expressionToken + "]" );
 			}
-			Assert.assertNotNull(
-					"If expression token is of Operand type, corresponding regular expression must be defined in "
-							+ "config.xml. No regular expression, hence no expression class found for ["
-							+ expressionToken + "]", expressionClass );
-
 		}
 		else
 		{
 			// get the expression class mapping for give Expression type
-			expressionClass = ( expressionTokenClassMap == null ? null : expressionTokenClassMap.get( expressionToken ) );
+			expressionClass = ( expressionTokenClassMap == null ? null : expressionTokenClassMap.get( expressionToken
+					.toString() ) );
 
 		}
 
@@ -257,6 +451,52 @@ public class ExpressionFactory
 					+ expressionToken + "\" in type \"" + type + "\"" );
 		}
 
+		return newInstance( expressionClass, expressionToken, type );
+	}
+
+	/**
+	 * Finds the operand kind by matching the operand patterns with token. Literal operands are matched first, so
+	 * 'true' is not taken as an identifier, and then the rest in order of config.xml.
+	 * 
+	 * @param expressionToken the characters of token
+	 * @return the operand kind, -1 if no pattern matches
+	 */
+	private int matchOperandKind( CharSequence expressionToken )
+	{
+		for( int kind = 0; kind < operandLiterals.length; kind++ )
+		{
+			if( isLiteral( kind, expressionToken ) )
+			{
+				return kind;
+			}
+		}
+
+		for( int kind = 0; kind < operandPatterns.length; kind++ )
+		{
+			if( operandLiterals[kind] == null )
+			{
+				Matcher operandMatcher = operandRegExCache.get( operandPatterns[kind] ).matcher( expressionToken );
+				if( operandMatcher.matches() )
+				{
+					return kind;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Instantiates the expression class
+	 * 
+	 * @param expressionClass the class of expression
+	 * @param expressionToken the characters of token of expression, for error message
+	 * @param type the type of expression, for error message
+	 * @return the expression object
+	 * @throws ExpressionEngineException if expression can not be instantiated
+	 */
+	private Expression newInstance( Class< ? > expressionClass, CharSequence expressionToken, String type )
+			throws ExpressionEngineException
+	{
 		try
 		{
 			return (Expression) expressionClass.newInstance();
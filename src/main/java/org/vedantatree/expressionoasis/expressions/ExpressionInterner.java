@@ -0,0 +1,451 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis.expressions;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.vedantatree.expressionoasis.expressions.property.FunctionExpression;
+import org.vedantatree.expressionoasis.types.ValueObject;
+
+
+/**
+ * Shares the structurally same sub trees across the expression trees compiled with an expression context, like the
+ * identifiers of same variable, same literals and same property chains. First tree having a sub tree keeps it as the
+ * canonical one, and later trees refer to it rather than to their own copy, so only one copy stays in memory.
+ * 
+ * Trees are interned bottom up. A node is looked up by its class, its own attribute like identifier name or literal
+ * value, and the identity of its operands which are already canonical. So lookup does not compare the sub trees.
+ * 
+ * Only the expressions of ExpressionOasis, which are not changed after compilation, are interned. Expressions
+ * configured by application and their parents are left as they are, as these may keep their own state. Shared
+ * expressions of {@link ExpressionOptimizer} belong to their tree, so only their operands are interned. Nodes are
+ * bound to the variable and function providers of the context which compiled these, so an interner must be used only
+ * for the trees of one context while its signature is same. Interned trees must not be uninitialized.
+ * 
+ * Number of canonical nodes is bounded. Once the bound is reached, interner starts afresh, and the trees interned
+ * earlier keep their nodes.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public final class ExpressionInterner
+{
+
+	/**
+	 * Estimated bytes of object header
+	 */
+	private static final int						HEADER_BYTES	= 12;
+
+	/**
+	 * Estimated bytes of object reference
+	 */
+	private static final int						REFERENCE_BYTES	= 4;
+
+	/**
+	 * Estimated shallow bytes of objects by class
+	 */
+	private static final Map<Class< ? >, Long>		SHALLOW_SIZES	= new ConcurrentHashMap<Class< ? >, Long>();
+
+	/**
+	 * Canonical nodes by their keys
+	 */
+	private final ConcurrentHashMap<NodeKey, Expression>	nodes			= new ConcurrentHashMap<NodeKey, Expression>();
+
+	/**
+	 * Maximum number of canonical nodes, 0 if not bounded
+	 */
+	private final int								maximumNodes;
+
+	/**
+	 * Number of nodes replaced by canonical nodes
+	 */
+	private final AtomicLong						internedNodes	= new AtomicLong();
+
+	/**
+	 * Estimated bytes of the nodes replaced by canonical nodes
+	 */
+	private final AtomicLong						savedBytes		= new AtomicLong();
+
+	/**
+	 * Constructs the ExpressionInterner
+	 * 
+	 * @param maximumNodes maximum number of canonical nodes, 0 if not bounded
+	 */
+	public ExpressionInterner( int maximumNodes )
+	{
+		this.maximumNodes = maximumNodes;
+	}
+
+	/**
+	 * Replaces the sub trees of expression by the canonical sub trees, which are structurally same. Sub trees not seen
+	 * earlier become canonical. Tree must be newly compiled, and not shared with other threads yet.
+	 * 
+	 * @param expression the root of tree
+	 * @param validated whether tree is validated on initialization. Nodes of validated and not validated trees are not
+	 *        shared, as validation resolves the function providers.
+	 * @return the root of interned tree, which may be the canonical node for given root
+	 */
+	public Expression intern( Expression expression, boolean validated )
+	{
+		if( maximumNodes > 0 && nodes.size() >= maximumNodes )
+		{
+			nodes.clear();
+		}
+		return intern( expression, validated, new boolean[1], new IdentityHashMap<Expression, Boolean>() );
+	}
+
+	/**
+	 * Interns the operands of expression, and then expression itself
+	 * 
+	 * @param canonical set to true if returned expression is canonical
+	 * @param visitedSharedExpressions shared expressions of tree whose operands are already interned
+	 */
+	private Expression intern( Expression expression, boolean validated, boolean[] canonical,
+			Map<Expression, Boolean> visitedSharedExpressions )
+	{
+		canonical[0] = false;
+		if( expression instanceof SharedExpression )
+		{
+			if( visitedSharedExpressions.put( expression, Boolean.TRUE ) == null )
+			{
+				internOperands( ( (SharedExpression) expression ).getExpression(), validated, canonical,
+						visitedSharedExpressions );
+				canonical[0] = false;
+			}
+			return expression;
+		}
+		if( expression instanceof SharedExpressionScope )
+		{
+			internOperands( ( (SharedExpressionScope) expression ).getExpression(), validated, canonical,
+					visitedSharedExpressions );
+			canonical[0] = false;
+			return expression;
+		}
+
+		boolean operandsCanonical = internOperands( expression, validated, canonical, visitedSharedExpressions );
+		canonical[0] = false;
+		if( !operandsCanonical || !isInternable( expression ) )
+		{
+			return expression;
+		}
+
+		NodeKey key = createKey( expression, validated );
+		if( key == null )
+		{
+			return expression;
+		}
+
+		Expression canonicalExpression = nodes.putIfAbsent( key, expression );
+		canonical[0] = true;
+		if( canonicalExpression == null )
+		{
+			return expression;
+		}
+
+		internedNodes.incrementAndGet();
+		savedBytes.addAndGet( estimateSize( expression ) );
+		return canonicalExpression;
+	}
+
+	/**
+	 * Interns the operands of expression, replacing these by the canonical ones
+	 * 
+	 * @return true if all operands are canonical
+	 */
+	private boolean internOperands( Expression expression, boolean validated, boolean[] canonical,
+			Map<Expression, Boolean> visitedSharedExpressions )
+	{
+		boolean operandsCanonical = true;
+		if( expression instanceof BinaryOperatorExpression )
+		{
+			BinaryOperatorExpression binaryExpression = (BinaryOperatorExpression) expression;
+			if( binaryExpression.leftOperandExpression != null )
+			{
+				binaryExpression.leftOperandExpression = intern( binaryExpression.leftOperandExpression, validated,
+						canonical, visitedSharedExpressions );
+				operandsCanonical &= canonical[0];
+			}
+			if( binaryExpression.rightOperandExpression != null )
+			{
+				binaryExpression.rightOperandExpression = intern( binaryExpression.rightOperandExpression, validated,
+						canonical, visitedSharedExpressions );
+				operandsCanonical &= canonical[0];
+			}
+		}
+		else if( expression instanceof UnaryOperatorExpression )
+		{
+			UnaryOperatorExpression unaryExpression = (UnaryOperatorExpression) expression;
+			if( unaryExpression.getOperandExpression() != null )
+			{
+				unaryExpression.setOperandExpression( intern( unaryExpression.getOperandExpression(), validated,
+						canonical, visitedSharedExpressions ) );
+				operandsCanonical &= canonical[0];
+			}
+		}
+		return operandsCanonical;
+	}
+
+	private static boolean isInternable( Expression expression )
+	{
+		Class< ? > expressionClass = ExpressionOptimizer.getExpressionClass( expression );
+		return ExpressionOptimizer.PURE_OPERATORS.contains( expressionClass )
+				|| ExpressionOptimizer.STRUCTURAL_EXPRESSIONS.contains( expressionClass )
+				|| ExpressionOptimizer.LITERALS.contains( expressionClass ) || expressionClass == FunctionExpression.class
+				|| expressionClass == IdentifierExpression.class;
+	}
+
+	/**
+	 * Creates the key of node, from its class, own attribute and its canonical operands
+	 * 
+	 * @return the key, or <code>null</code> if attribute of node can not be found
+	 */
+	private static NodeKey createKey( Expression expression, boolean validated )
+	{
+		Object attribute = null;
+		Expression firstOperand = null;
+		Expression secondOperand = null;
+		if( expression instanceof BinaryOperatorExpression )
+		{
+			firstOperand = ( (BinaryOperatorExpression) expression ).leftOperandExpression;
+			secondOperand = ( (BinaryOperatorExpression) expression ).rightOperandExpression;
+		}
+		else if( expression instanceof UnaryOperatorExpression )
+		{
+			firstOperand = ( (UnaryOperatorExpression) expression ).getOperandExpression();
+			if( expression instanceof FunctionExpression )
+			{
+				attribute = ( (FunctionExpression) expression ).getFunctionName();
+			}
+		}
+		else if( expression instanceof IdentifierExpression )
+		{
+			attribute = ( (IdentifierExpression) expression ).getIdentifierName();
+		}
+		else
+		{
+			try
+			{
+				ValueObject value = expression.getValue();
+				attribute = Arrays.asList( value.getValueType(), value.getValue(), expression.getReturnType() );
+			}
+			catch( Exception e )
+			{
+				return null;
+			}
+		}
+		return new NodeKey( expression.getClass(), attribute, firstOperand, secondOperand, validated );
+	}
+
+	/**
+	 * Estimates the bytes of node, with the name or value owned by it
+	 */
+	private static long estimateSize( Expression expression )
+	{
+		long size = getShallowSize( expression.getClass() );
+		if( expression instanceof IdentifierExpression )
+		{
+			size += estimateSize( ( (IdentifierExpression) expression ).getIdentifierName() );
+		}
+		else if( expression instanceof FunctionExpression )
+		{
+			size += estimateSize( ( (FunctionExpression) expression ).getFunctionName() );
+		}
+		else if( ExpressionOptimizer.LITERALS.contains( expression.getClass() ) )
+		{
+			try
+			{
+				ValueObject value = expression.getValue();
+				size += getShallowSize( ValueObject.class ) + estimateSize( value.getValue() );
+			}
+			catch( Exception e )
+			{
+				// size of value is not known
+			}
+		}
+		return size;
+	}
+
+	private static long estimateSize( Object value )
+	{
+		if( value == null )
+		{
+			return 0;
+		}
+		if( value instanceof String )
+		{
+			// Latin-1 characters in byte array
+			return getShallowSize( String.class ) + align( HEADER_BYTES + 4 + ( (String) value ).length() );
+		}
+		return getShallowSize( value.getClass() );
+	}
+
+	/**
+	 * Estimates the bytes of an object of class, with compressed references
+	 */
+	private static long getShallowSize( Class< ? > objectClass )
+	{
+		Long size = SHALLOW_SIZES.get( objectClass );
+		if( size == null )
+		{
+			long bytes = HEADER_BYTES;
+			for( Class< ? > type = objectClass; type != null; type = type.getSuperclass() )
+			{
+				for( Field field : type.getDeclaredFields() )
+				{
+					if( !Modifier.isStatic( field.getModifiers() ) )
+					{
+						bytes += getFieldSize( field.getType() );
+					}
+				}
+			}
+			size = align( bytes );
+			SHALLOW_SIZES.put( objectClass, size );
+		}
+		return size;
+	}
+
+	private static int getFieldSize( Class< ? > fieldType )
+	{
+		if( fieldType == long.class || fieldType == double.class )
+		{
+			return 8;
+		}
+		if( fieldType == int.class || fieldType == float.class )
+		{
+			return 4;
+		}
+		if( fieldType == short.class || fieldType == char.class )
+		{
+			return 2;
+		}
+		if( fieldType == byte.class || fieldType == boolean.class )
+		{
+			return 1;
+		}
+		return REFERENCE_BYTES;
+	}
+
+	private static long align( long bytes )
+	{
+		return ( bytes + 7 ) & ~7L;
+	}
+
+	/**
+	 * @return number of canonical nodes
+	 */
+	public int getCanonicalNodeCount()
+	{
+		return nodes.size();
+	}
+
+	/**
+	 * @return number of nodes replaced by canonical nodes
+	 */
+	public long getInternedNodeCount()
+	{
+		return internedNodes.get();
+	}
+
+	/**
+	 * @return estimated bytes of the nodes replaced by canonical nodes, with their names and literal values
+	 */
+	public long getSavedBytes()
+	{
+		return savedBytes.get();
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return "canonical-nodes[" + getCanonicalNodeCount() + "] interned-nodes[" + getInternedNodeCount()
+				+ "] saved-bytes[" + getSavedBytes() + "]";
+	}
+
+	/**
+	 * Key of node. Operands are compared by identity, as these are canonical.
+	 */
+	private static final class NodeKey
+	{
+
+		private final Class< ? >	expressionClass;
+
+		private final Object		attribute;
+
+		private final Expression	firstOperand;
+
+		private final Expression	secondOperand;
+
+		private final boolean		validated;
+
+		private final int			hashCode;
+
+		private NodeKey( Class< ? > expressionClass, Object attribute, Expression firstOperand,
+				Expression secondOperand, boolean validated )
+		{
+			this.expressionClass = expressionClass;
+			this.attribute = attribute;
+			this.firstOperand = firstOperand;
+			this.secondOperand = secondOperand;
+			this.validated = validated;
+
+			int hash = expressionClass.hashCode();
+			hash = 31 * hash + ( attribute == null ? 0 : attribute.hashCode() );
+			hash = 31 * hash + System.identityHashCode( firstOperand );
+			hash = 31 * hash + System.identityHashCode( secondOperand );
+			this.hashCode = 31 * hash + ( validated ? 1 : 0 );
+		}
+
+		@Override
+		public boolean equals( Object object )
+		{
+			if( !( object instanceof NodeKey ) )
+			{
+				return false;
+			}
+			NodeKey key = (NodeKey) object;
+			return expressionClass == key.expressionClass && firstOperand == key.firstOperand
+					&& secondOperand == key.secondOperand && validated == key.validated
+					&& ( attribute == null ? key.attribute == null : attribute.equals( key.attribute ) );
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hashCode;
+		}
+	}
+}
@@ -0,0 +1,841 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis.expressions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.vedantatree.expressionoasis.expressions.arithmatic.AddExpression;
+import org.vedantatree.expressionoasis.expressions.arithmatic.ArrayIndexExpression;
+import org.vedantatree.expressionoasis.expressions.arithmatic.DivideExpression;
+import org.vedantatree.expressionoasis.expressions.arithmatic.MinusExpression;
+import org.vedantatree.expressionoasis.expressions.arithmatic.MultiplyExpression;
+import org.vedantatree.expressionoasis.expressions.arithmatic.ParanthesisExpression;
+import org.vedantatree.expressionoasis.expressions.arithmatic.PlusExpression;
+import org.vedantatree.expressionoasis.expressions.arithmatic.RemainderExpression;
+import org.vedantatree.expressionoasis.expressions.arithmatic.SubtractExpression;
+import org.vedantatree.expressionoasis.expressions.bitwise.BWAndExpression;
+import org.vedantatree.expressionoasis.expressions.bitwise.BWComplementExpression;
+import org.vedantatree.expressionoasis.expressions.bitwise.BWOrExpression;
+import org.vedantatree.expressionoasis.expressions.bitwise.BWSignedLeftShiftExpression;
+import org.vedantatree.expressionoasis.expressions.bitwise.BWSignedRightShiftExpression;
+import org.vedantatree.expressionoasis.expressions.bitwise.BWUnsignedRightShiftExpression;
+import org.vedantatree.expressionoasis.expressions.bitwise.BWXorExpression;
+import org.vedantatree.expressionoasis.expressions.booleanexp.AndExpression;
+import org.vedantatree.expressionoasis.expressions.booleanexp.ConditionTernaryExpression;
+import org.vedantatree.expressionoasis.expressions.booleanexp.NotExpression;
+import org.vedantatree.expressionoasis.expressions.booleanexp.OrExpression;
+import org.vedantatree.expressionoasis.expressions.booleanexp.ResultTernaryExpression;
+import org.vedantatree.expressionoasis.expressions.property.ArgumentExpression;
+import org.vedantatree.expressionoasis.expressions.property.FunctionExpression;
+import org.vedantatree.expressionoasis.expressions.property.PropertyExpression;
+import org.vedantatree.expressionoasis.expressions.property.UnaryPropertyExpression;
+import org.vedantatree.expressionoasis.expressions.relational.EQExpression;
+import org.vedantatree.expressionoasis.expressions.relational.GTEExpression;
+import org.vedantatree.expressionoasis.expressions.relational.GTExpression;
+import org.vedantatree.expressionoasis.expressions.relational.LTEExpression;
+import org.vedantatree.expressionoasis.expressions.relational.LTExpression;
+import org.vedantatree.expressionoasis.expressions.relational.NEExpression;
+import org.vedantatree.expressionoasis.expressions.string.ContainsExpression;
+import org.vedantatree.expressionoasis.expressions.string.EndsWithExpression;
+import org.vedantatree.expressionoasis.expressions.string.StartsWithExpression;
+import org.vedantatree.expressionoasis.types.Type;
+import org.vedantatree.expressionoasis.types.ValueObject;
+
+
+/**
+ * Optimizes a compiled expression tree, so the parts which do not depend on variables are not evaluated on every
+ * evaluation. Tree is changed in place, bottom up.
+ * 
+ * <ul>
+ * <li>Operators of ExpressionOasis, whose operands are all literals or constants, are evaluated once and are replaced
+ * by a {@link ConstantExpression}. So are the calls of {@link FunctionExpression#isDeterministic() deterministic}
+ * functions. Operands are not reordered, so in <code>radius * 2 * 3.14</code> the constants are not folded, as the
+ * expression is evaluated as <code>(radius * 2) * 3.14</code>. Operators configured by application are not folded, as
+ * these may not be deterministic.</li>
+ * <li>Ternary expressions with a constant condition are replaced by the branch which is chosen, if the branch returns
+ * same type as ternary expression.</li>
+ * <li><code>x &amp;&amp; true</code>, <code>x || false</code> and <code>!!x</code> are replaced by <code>x</code>, if
+ * <code>x</code> is boolean. <code>x &amp;&amp; false</code> and <code>x || true</code> are not simplified, as
+ * operators of ExpressionOasis return null if any operand is null.</li>
+ * <li>Parentheses are removed, except the ones of function arguments.</li>
+ * </ul>
+ * 
+ * Sub trees, which fail to evaluate at compile time, like division by zero, are left as they are, so these fail at
+ * evaluation as before.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ * 
+ *          Added elimination of common sub expressions. Sub trees which are structurally same and free of side
+ *          effects, i.e. made of variables, literals, operators of ExpressionOasis, properties and deterministic
+ *          functions, are replaced by one {@link SharedExpression}, which is evaluated once in an evaluation of tree.
+ *          Functions marked with <code>@Deterministic(false)</code>, like <code>random()</code>, and functions of
+ *          other providers are never shared.
+ * 
+ * @author Mohit Gupta
+ * @version 1.1
+ * @since 3.3
+ * 
+ *          Added specialization of operators. Operators of a validated tree are replaced by their variants
+ *          specialized for the types of operands, like addition of longs or concatenation of strings, which do not
+ *          find the types on evaluation. Operands of OBJECT or ANY type are left to generic operators.
+ * 
+ * @author Mohit Gupta
+ * @version 1.2
+ * @since 3.3
+ * 
+ *          <code>false &amp;&amp; x</code> and <code>true || x</code> are replaced by their constant value, as right
+ *          operand is not evaluated by short circuit operators.
+ * 
+ * @author Mohit Gupta
+ * @version 1.3
+ * @since 3.3
+ */
+public final class ExpressionOptimizer
+{
+
+	private static Log							LOGGER				= LogFactory.getLog( ExpressionOptimizer.class );
+
+	/**
+	 * Operators which always return same value for same operands, and do not have any side effect
+	 */
+	static final Set<Class< ? >>			PURE_OPERATORS		= new HashSet<Class< ? >>( Arrays
+																			.<Class< ? >> asList( AddExpression.class,
+																					SubtractExpression.class,
+																					MultiplyExpression.class,
+																					DivideExpression.class,
+																					RemainderExpression.class,
+																					PlusExpression.class,
+																					MinusExpression.class,
+																					BWAndExpression.class,
+																					BWOrExpression.class,
+																					BWXorExpression.class,
+																					BWComplementExpression.class,
+																					BWSignedLeftShiftExpression.class,
+																					BWSignedRightShiftExpression.class,
+																					BWUnsignedRightShiftExpression.class,
+																					AndExpression.class,
+																					OrExpression.class,
+																					NotExpression.class,
+																					EQExpression.class,
+																					NEExpression.class,
+																					GTExpression.class,
+																					GTEExpression.class,
+																					LTExpression.class,
+																					LTEExpression.class,
+																					StartsWithExpression.class,
+																					EndsWithExpression.class,
+																					ContainsExpression.class ) );
+
+	/**
+	 * Expressions which are constant by themselves
+	 */
+	static final Set<Class< ? >>			LITERALS			= new HashSet<Class< ? >>( Arrays
+																			.<Class< ? >> asList(
+																					ConstantExpression.class,
+																					NumericExpression.class,
+																					DecimalExpression.class,
+																					StringExpression.class,
+																					BooleanExpression.class,
+																					NullExpression.class ) );
+
+	/**
+	 * Expressions, other than pure operators, which can be shared if their operands can be. Argument, parenthesis and
+	 * condition of ternary are not shared themselves, as their parents need these as such.
+	 */
+	static final Set<Class< ? >>			STRUCTURAL_EXPRESSIONS	= new HashSet<Class< ? >>( Arrays
+																			.<Class< ? >> asList(
+																					ArgumentExpression.class,
+																					ParanthesisExpression.class,
+																					ConditionTernaryExpression.class,
+																					ResultTernaryExpression.class,
+																					ArrayIndexExpression.class,
+																					PropertyExpression.class,
+																					UnaryPropertyExpression.class ) );
+
+	/**
+	 * Constructor made private, as it is a utility class
+	 */
+	private ExpressionOptimizer()
+	{
+	}
+
+	/**
+	 * Optimizes the expression tree
+	 * 
+	 * @param expression the root of expression tree
+	 * @param report the report to add the counts of optimization to, <code>null</code> if not required
+	 * @return the root of optimized tree, which may be another expression than given root
+	 */
+	public static Expression optimize( Expression expression, Report report )
+	{
+		if( expression == null )
+		{
+			return null;
+		}
+
+		long nodes = report == null ? 0 : countNodes( expression );
+		Expression optimizedExpression = optimize( expression, false, report );
+		optimizedExpression = new CommonExpressions( report ).share( optimizedExpression );
+		if( report != null )
+		{
+			report.nodesBefore.addAndGet( nodes );
+			report.nodesAfter.addAndGet( countNodes( optimizedExpression ) );
+		}
+		return optimizedExpression;
+	}
+
+	/**
+	 * Optimizes the sub trees of expression, and then the expression itself
+	 * 
+	 * @param keep true if expression itself must not be replaced, like the parentheses of function arguments
+	 */
+	private static Expression optimize( Expression expression, boolean keep, Report report )
+	{
+		if( expression instanceof BinaryOperatorExpression )
+		{
+			BinaryOperatorExpression binaryExpression = (BinaryOperatorExpression) expression;
+			binaryExpression.leftOperandExpression = optimize( binaryExpression.leftOperandExpression, false, report );
+			binaryExpression.rightOperandExpression = optimize( binaryExpression.rightOperandExpression, false,
+					report );
+		}
+		else if( expression instanceof UnaryOperatorExpression )
+		{
+			UnaryOperatorExpression unaryExpression = (UnaryOperatorExpression) expression;
+			if( unaryExpression.getOperandExpression() != null )
+			{
+				unaryExpression.setOperandExpression( optimize( unaryExpression.getOperandExpression(),
+						expression instanceof FunctionExpression, report ) );
+			}
+		}
+
+		if( keep )
+		{
+			return expression;
+		}
+
+		try
+		{
+			if( isFoldable( expression ) )
+			{
+				Type returnType = expression.getReturnType();
+				if( returnType != null )
+				{
+					Expression constantExpression = new ConstantExpression( expression.getValue(), returnType );
+					count( report == null ? null : report.folded );
+					return constantExpression;
+				}
+			}
+
+			if( expression instanceof ParanthesisExpression )
+			{
+				Expression operandExpression = ( (ParanthesisExpression) expression ).getOperandExpression();
+				return operandExpression == null ? expression : operandExpression;
+			}
+
+			if( expression instanceof ResultTernaryExpression )
+			{
+				Expression branch = getChosenBranch( (ResultTernaryExpression) expression );
+				if( branch != null )
+				{
+					count( report == null ? null : report.pruned );
+					return branch;
+				}
+			}
+
+			Expression simplifiedExpression = simplify( expression );
+			if( simplifiedExpression != null )
+			{
+				count( report == null ? null : report.simplified );
+				return simplifiedExpression;
+			}
+
+			if( expression instanceof BinaryOperatorExpression
+					&& ( (BinaryOperatorExpression) expression ).isValidated() )
+			{
+				Expression specializedExpression = ( (BinaryOperatorExpression) expression ).specialize();
+				if( specializedExpression != expression )
+				{
+					count( report == null ? null : report.specialized );
+					return specializedExpression;
+				}
+			}
+		}
+		catch( Exception e )
+		{
+			// left to fail at evaluation, as it would have without optimization
+			if( LOGGER.isDebugEnabled() )
+			{
+				LOGGER.debug( "Expression is not optimized. expression[" + expression + "] cause[" + e + "]" );
+			}
+		}
+		return expression;
+	}
+
+	/**
+	 * Checks whether the expression is a pure operator or deterministic function, with constant operands
+	 */
+	private static boolean isFoldable( Expression expression ) throws Exception
+	{
+		if( PURE_OPERATORS.contains( getExpressionClass( expression ) ) )
+		{
+			if( expression instanceof BinaryOperatorExpression )
+			{
+				BinaryOperatorExpression binaryExpression = (BinaryOperatorExpression) expression;
+				return isConstant( binaryExpression.leftOperandExpression )
+						&& isConstant( binaryExpression.rightOperandExpression );
+			}
+			return isConstant( ( (UnaryOperatorExpression) expression ).getOperandExpression() );
+		}
+
+		if( expression instanceof FunctionExpression )
+		{
+			FunctionExpression functionExpression = (FunctionExpression) expression;
+			ParanthesisExpression argsExpression = (ParanthesisExpression) functionExpression.getOperandExpression();
+			return areConstantArguments( argsExpression.getOperandExpression() ) && functionExpression.isDeterministic();
+		}
+		return false;
+	}
+
+	private static boolean areConstantArguments( Expression expression )
+	{
+		if( expression instanceof ArgumentExpression )
+		{
+			ArgumentExpression argumentExpression = (ArgumentExpression) expression;
+			return areConstantArguments( argumentExpression.leftOperandExpression )
+					&& areConstantArguments( argumentExpression.rightOperandExpression );
+		}
+		return expression == null || isConstant( expression );
+	}
+
+	private static boolean isConstant( Expression expression )
+	{
+		return expression != null && LITERALS.contains( expression.getClass() );
+	}
+
+	/**
+	 * Returns the class by which expression is known to optimizer, which is the class of generic operator for a
+	 * specialized one
+	 */
+	static Class< ? > getExpressionClass( Expression expression )
+	{
+		return expression instanceof BinaryOperatorExpression ? ( (BinaryOperatorExpression) expression )
+				.getOperatorClass() : expression.getClass();
+	}
+
+	/**
+	 * Returns the branch of ternary expression which is chosen by its constant condition
+	 * 
+	 * @return the chosen branch, or <code>null</code> if condition is not constant, or chosen branch does not return
+	 *         the type of ternary expression
+	 */
+	private static Expression getChosenBranch( ResultTernaryExpression ternaryExpression ) throws Exception
+	{
+		if( !( ternaryExpression.leftOperandExpression instanceof ConditionTernaryExpression ) )
+		{
+			return null;
+		}
+
+		ConditionTernaryExpression conditionExpression = (ConditionTernaryExpression) ternaryExpression.leftOperandExpression;
+		if( !isConstant( conditionExpression.leftOperandExpression ) )
+		{
+			return null;
+		}
+
+		Object condition = conditionExpression.leftOperandExpression.getValue().getValue();
+		if( Boolean.FALSE.equals( condition ) )
+		{
+			return ternaryExpression.rightOperandExpression;
+		}
+
+		Expression branch = conditionExpression.rightOperandExpression;
+		if( Boolean.TRUE.equals( condition ) && isSameType( branch.getReturnType(), ternaryExpression.getReturnType() ) )
+		{
+			return branch;
+		}
+		return null;
+	}
+
+	/**
+	 * Simplifies the boolean identities, which do not change the value even if operand is null
+	 * 
+	 * @return the simplified expression, or <code>null</code> if it can not be simplified
+	 */
+	private static Expression simplify( Expression expression ) throws Exception
+	{
+		if( expression instanceof AndExpression || expression instanceof OrExpression )
+		{
+			BinaryOperatorExpression binaryExpression = (BinaryOperatorExpression) expression;
+			Boolean identity = expression instanceof AndExpression ? Boolean.TRUE : Boolean.FALSE;
+			Boolean absorbing = identity.booleanValue() ? Boolean.FALSE : Boolean.TRUE;
+			if( isConstantValue( binaryExpression.leftOperandExpression, absorbing ) )
+			{
+				return new ConstantExpression( new ValueObject( absorbing, Type.BOOLEAN ), Type.BOOLEAN );
+			}
+			if( isConstantValue( binaryExpression.rightOperandExpression, identity )
+					&& isSameType( binaryExpression.leftOperandExpression.getReturnType(), Type.BOOLEAN ) )
+			{
+				return binaryExpression.leftOperandExpression;
+			}
+			if( isConstantValue( binaryExpression.leftOperandExpression, identity )
+					&& isSameType( binaryExpression.rightOperandExpression.getReturnType(), Type.BOOLEAN ) )
+			{
+				return binaryExpression.rightOperandExpression;
+			}
+		}
+		else if( expression instanceof NotExpression )
+		{
+			Expression operandExpression = ( (NotExpression) expression ).getOperandExpression();
+			if( operandExpression instanceof NotExpression )
+			{
+				Expression innerExpression = ( (NotExpression) operandExpression ).getOperandExpression();
+				if( isSameType( innerExpression.getReturnType(), Type.BOOLEAN ) )
+				{
+					return innerExpression;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static boolean isConstantValue( Expression expression, Object value ) throws Exception
+	{
+		return isConstant( expression ) && value.equals( expression.getValue().getValue() );
+	}
+
+	private static boolean isSameType( Type type, Type otherType )
+	{
+		return type != null && type.equals( otherType );
+	}
+
+	private static void count( AtomicLong counter )
+	{
+		if( counter != null )
+		{
+			counter.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Counts the distinct nodes of expression tree, other than the ones added to share the sub trees
+	 */
+	private static long countNodes( Expression expression )
+	{
+		final Map<Expression, Boolean> nodes = new IdentityHashMap<Expression, Boolean>();
+		expression.accept( new ExpressionVisitor()
+		{
+
+			public void visit( Expression visitedExpression )
+			{
+				if( !( visitedExpression instanceof SharedExpression )
+						&& !( visitedExpression instanceof SharedExpressionScope ) )
+				{
+					nodes.put( visitedExpression, Boolean.TRUE );
+				}
+			}
+		} );
+		return nodes.size();
+	}
+
+	/**
+	 * Finds the sub trees which occur more than once in a tree, and replaces these by shared expressions.
+	 * 
+	 * Every sub tree free of side effects gets an id, same for structurally same sub trees, built from its class and the
+	 * ids of its operands. Occurrences of ids are counted without descending in the repeated occurrences, as these are
+	 * replaced as a whole. First occurrence of every repeated sub tree becomes the shared expression, after sharing its
+	 * own sub trees.
+	 */
+	private static final class CommonExpressions
+	{
+
+		private final Report							report;
+
+		/**
+		 * Ids of sub trees free of side effects
+		 */
+		private final Map<Expression, Integer>			ids				= new IdentityHashMap<Expression, Integer>();
+
+		/**
+		 * Ids by the structural keys of sub trees
+		 */
+		private final Map<String, Integer>				idsByKey		= new HashMap<String, Integer>();
+
+		/**
+		 * Occurrences of each id
+		 */
+		private final List<Integer>						occurrences		= new ArrayList<Integer>();
+
+		/**
+		 * Shared expressions by id
+		 */
+		private final Map<Integer, SharedExpression>	sharedExpressions	= new HashMap<Integer, SharedExpression>();
+
+		private final SharedExpressionScope				scope			= new SharedExpressionScope();
+
+		private CommonExpressions( Report report )
+		{
+			this.report = report;
+		}
+
+		/**
+		 * Shares the repeated sub trees of tree
+		 * 
+		 * @return the scope with the tree, or the tree itself if nothing is repeated
+		 */
+		private Expression share( Expression root )
+		{
+			identify( root );
+			countOccurrences( root );
+			Expression sharedRoot = share( root, false );
+			if( sharedExpressions.isEmpty() )
+			{
+				return root;
+			}
+
+			scope.setExpression( sharedRoot, sharedExpressions.size() );
+			return scope;
+		}
+
+		/**
+		 * Assigns the ids to sub trees free of side effects
+		 * 
+		 * @return id of expression, or -1 if it can not be shared
+		 */
+		private int identify( Expression expression )
+		{
+			String key;
+			if( expression == null )
+			{
+				return -1;
+			}
+			else if( expression instanceof BinaryOperatorExpression )
+			{
+				BinaryOperatorExpression binaryExpression = (BinaryOperatorExpression) expression;
+				int leftId = binaryExpression.leftOperandExpression == null ? -2
+						: identify( binaryExpression.leftOperandExpression );
+				int rightId = binaryExpression.rightOperandExpression == null ? -2
+						: identify( binaryExpression.rightOperandExpression );
+				if( leftId == -1 || rightId == -1 || !isStructural( expression ) )
+				{
+					return -1;
+				}
+				key = expression.getClass().getName() + "(" + leftId + "," + rightId + ")";
+			}
+			else if( expression instanceof UnaryOperatorExpression )
+			{
+				Expression operandExpression = ( (UnaryOperatorExpression) expression ).getOperandExpression();
+				int operandId = operandExpression == null ? -2 : identify( operandExpression );
+				if( operandId == -1 )
+				{
+					return -1;
+				}
+				if( expression instanceof FunctionExpression )
+				{
+					if( !isDeterministic( (FunctionExpression) expression ) )
+					{
+						return -1;
+					}
+					key = "function:" + ( (FunctionExpression) expression ).getFunctionName() + "(" + operandId + ")";
+				}
+				else if( isStructural( expression ) )
+				{
+					key = expression.getClass().getName() + "(" + operandId + ")";
+				}
+				else
+				{
+					return -1;
+				}
+			}
+			else if( expression instanceof IdentifierExpression )
+			{
+				key = "identifier:" + ( (IdentifierExpression) expression ).getIdentifierName();
+			}
+			else if( expression instanceof ParameterExpression )
+			{
+				// bound literal is same throughout an evaluation
+				key = "parameter:" + ( (ParameterExpression) expression ).getSlot();
+			}
+			else if( isConstant( expression ) )
+			{
+				try
+				{
+					ValueObject value = expression.getValue();
+					key = "literal:" + value.getValueType() + ":" + value.getValue();
+				}
+				catch( Exception e )
+				{
+					return -1;
+				}
+			}
+			else
+			{
+				return -1;
+			}
+
+			Integer id = idsByKey.get( key );
+			if( id == null )
+			{
+				id = idsByKey.size();
+				idsByKey.put( key, id );
+				occurrences.add( 0 );
+			}
+			ids.put( expression, id );
+			return id;
+		}
+
+		/**
+		 * Counts the occurrences of ids, not descending in repeated occurrences of shareable sub trees
+		 */
+		private void countOccurrences( Expression expression )
+		{
+			if( expression == null )
+			{
+				return;
+			}
+
+			Integer id = ids.get( expression );
+			if( id != null )
+			{
+				int count = occurrences.get( id ) + 1;
+				occurrences.set( id, count );
+				if( count > 1 && isShareable( expression ) )
+				{
+					return;
+				}
+			}
+
+			if( expression instanceof BinaryOperatorExpression )
+			{
+				countOccurrences( ( (BinaryOperatorExpression) expression ).leftOperandExpression );
+				countOccurrences( ( (BinaryOperatorExpression) expression ).rightOperandExpression );
+			}
+			else if( expression instanceof UnaryOperatorExpression )
+			{
+				countOccurrences( ( (UnaryOperatorExpression) expression ).getOperandExpression() );
+			}
+		}
+
+		/**
+		 * Replaces the repeated sub trees by shared expressions, top down
+		 * 
+		 * @return the shared expression for given sub tree, or the sub tree itself if it is not repeated
+		 */
+		private Expression share( Expression expression, boolean keep )
+		{
+			if( expression == null )
+			{
+				return null;
+			}
+
+			Integer id = ids.get( expression );
+			boolean repeated = !keep && id != null && occurrences.get( id ) > 1 && isShareable( expression );
+			if( repeated )
+			{
+				SharedExpression sharedExpression = sharedExpressions.get( id );
+				if( sharedExpression != null )
+				{
+					count( report == null ? null : report.shared );
+					return sharedExpression;
+				}
+			}
+
+			if( expression instanceof BinaryOperatorExpression )
+			{
+				BinaryOperatorExpression binaryExpression = (BinaryOperatorExpression) expression;
+				binaryExpression.leftOperandExpression = share( binaryExpression.leftOperandExpression, false );
+				binaryExpression.rightOperandExpression = share( binaryExpression.rightOperandExpression, false );
+			}
+			else if( expression instanceof UnaryOperatorExpression )
+			{
+				UnaryOperatorExpression unaryExpression = (UnaryOperatorExpression) expression;
+				if( unaryExpression.getOperandExpression() != null )
+				{
+					unaryExpression.setOperandExpression( share( unaryExpression.getOperandExpression(),
+							expression instanceof FunctionExpression ) );
+				}
+			}
+
+			if( !repeated )
+			{
+				return expression;
+			}
+			SharedExpression sharedExpression = new SharedExpression( scope, sharedExpressions.size(), expression );
+			sharedExpressions.put( id, sharedExpression );
+			return sharedExpression;
+		}
+
+		private static boolean isStructural( Expression expression )
+		{
+			Class< ? > expressionClass = getExpressionClass( expression );
+			return PURE_OPERATORS.contains( expressionClass ) || STRUCTURAL_EXPRESSIONS.contains( expressionClass );
+		}
+
+		/**
+		 * Checks whether expression can be replaced by shared expression. Leaves are cheap to evaluate, and parents
+		 * of argument, parenthesis and condition of ternary need these as such.
+		 */
+		private static boolean isShareable( Expression expression )
+		{
+			return ( expression instanceof BinaryOperatorExpression || expression instanceof UnaryOperatorExpression )
+					&& !( expression instanceof ArgumentExpression ) && !( expression instanceof ParanthesisExpression )
+					&& !( expression instanceof ConditionTernaryExpression );
+		}
+
+		private static boolean isDeterministic( FunctionExpression functionExpression )
+		{
+			try
+			{
+				return functionExpression.isDeterministic();
+			}
+			catch( Exception e )
+			{
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Counts of the optimizations done on expression trees. Counts can be added by many threads.
+	 */
+	public static final class Report
+	{
+
+		private final AtomicLong	nodesBefore	= new AtomicLong();
+
+		private final AtomicLong	nodesAfter	= new AtomicLong();
+
+		private final AtomicLong	folded		= new AtomicLong();
+
+		private final AtomicLong	pruned		= new AtomicLong();
+
+		private final AtomicLong	simplified	= new AtomicLong();
+
+		private final AtomicLong	shared		= new AtomicLong();
+
+		private final AtomicLong	specialized	= new AtomicLong();
+
+		/**
+		 * Adds the counts of other report to this report
+		 * 
+		 * @param report the report to add
+		 */
+		public void add( Report report )
+		{
+			nodesBefore.addAndGet( report.getNodesBefore() );
+			nodesAfter.addAndGet( report.getNodesAfter() );
+			folded.addAndGet( report.getFoldedCount() );
+			pruned.addAndGet( report.getPrunedCount() );
+			simplified.addAndGet( report.getSimplifiedCount() );
+			shared.addAndGet( report.getSharedCount() );
+			specialized.addAndGet( report.getSpecializedCount() );
+		}
+
+		/**
+		 * @return number of nodes of trees before optimization
+		 */
+		public long getNodesBefore()
+		{
+			return nodesBefore.get();
+		}
+
+		/**
+		 * @return number of nodes of trees after optimization
+		 */
+		public long getNodesAfter()
+		{
+			return nodesAfter.get();
+		}
+
+		/**
+		 * @return number of nodes removed by optimization
+		 */
+		public long getRemovedNodes()
+		{
+			return getNodesBefore() - getNodesAfter();
+		}
+
+		/**
+		 * @return number of sub trees replaced by constants
+		 */
+		public long getFoldedCount()
+		{
+			return folded.get();
+		}
+
+		/**
+		 * @return number of ternary expressions replaced by their chosen branch
+		 */
+		public long getPrunedCount()
+		{
+			return pruned.get();
+		}
+
+		/**
+		 * @return number of boolean identities simplified
+		 */
+		public long getSimplifiedCount()
+		{
+			return simplified.get();
+		}
+
+		/**
+		 * @return number of repeated occurrences of sub trees replaced by shared expressions
+		 */
+		public long getSharedCount()
+		{
+			return shared.get();
+		}
+
+		/**
+		 * @return number of operators replaced by their variants specialized for the types of operands
+		 */
+		public long getSpecializedCount()
+		{
+			return specialized.get();
+		}
+
+		@Override
+		public String toString()
+		{
+			return "nodes[" + getNodesBefore() + " -> " + getNodesAfter() + "] removed[" + getRemovedNodes()
+					+ "] folded[" + getFoldedCount() + "] pruned[" + getPrunedCount() + "] simplified["
+					+ getSimplifiedCount() + "] shared[" + getSharedCount() + "] specialized[" + getSpecializedCount()
+					+ "]";
+		}
+	}
+}
@@ -39,6 +39,12 @@ import java.util.LinkedHashSet;
  * 
  * @author Kris Marwood
  * @version 1.0
+ * 
+ *          Variants of operators specialized by optimizer are found by the class of their operator.
+ * 
+ * @author Mohit Gupta
+ * @version 1.1
+ * @since 3.3
  */
 public class ExpressionTypeFinder implements ExpressionVisitor
 {
@@ -87,7 +93,7 @@ public class ExpressionTypeFinder implements ExpressionVisitor
 	 */
 	public void visit( Expression expression )
 	{
-		if( expression.getClass().equals( expressionTypeToFind ) )
+		if( ExpressionOptimizer.getExpressionClass( expression ).equals( expressionTypeToFind ) )
 		{
 			foundExpressions.add( expression );
 		}
@@ -48,6 +48,13 @@ import org.vedantatree.expressionoasis.utils.StringUtils;
  * 
  * @author Kris Marwood
  * @version 1.1
+ * 
+ *          Exposed the variable provider of identifier, so Compiler can tell whether the changes of variable types
+ *          are tracked for cached expression trees
+ * 
+ * @author Mohit Gupta
+ * @version 1.2
+ * @since 3.3
  */
 public class IdentifierExpression implements Expression
 {
@@ -83,6 +90,30 @@ public class IdentifierExpression implements Expression
 		return variableProvider.getVariableValue( getIdentifierName() );
 	}
 
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		return getValue().longValue();
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		return getValue().doubleValue();
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateBoolean()
+	 */
+	public boolean evaluateBoolean() throws ExpressionEngineException
+	{
+		return getValue().booleanValue();
+	}
+
 	/**
 	 * Initializes the identifier name
 	 * 
@@ -123,6 +154,16 @@ public class IdentifierExpression implements Expression
 		return identifierName;
 	}
 
+	/**
+	 * Gets the variable provider which provides the value of identifier
+	 * 
+	 * @return the variable provider, <code>null</code> if no provider supports the identifier
+	 */
+	public VariableProvider getVariableProvider()
+	{
+		return variableProvider;
+	}
+
 	/**
 	 * @see org.vedantatree.expressionoasis.expressions.Expression#uninitialize(org.vedantatree.expressionoasis.ExpressionContext)
 	 */
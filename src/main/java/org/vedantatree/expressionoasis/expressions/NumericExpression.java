@@ -43,6 +43,13 @@ import org.vedantatree.expressionoasis.types.ValueObject;
  * 
  * @author Kris Marwood
  * @version 1.1
+ * 
+ *          Value can be initialized from any CharSequence, like characters of a token, without creating a string, or
+ *          from the Long value parsed by lexer.
+ * 
+ * @author Mohit Gupta
+ * @version 1.2
+ * @since 3.3
  */
 public class NumericExpression implements Expression
 {
@@ -62,6 +69,30 @@ public class NumericExpression implements Expression
 		return longValue;
 	}
 
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		return longValue.longValue();
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		return longValue.doubleValue();
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateBoolean()
+	 */
+	public boolean evaluateBoolean() throws ExpressionEngineException
+	{
+		return longValue.booleanValue();
+	}
+
 	/**
 	 * Returns the long type.
 	 * 
@@ -73,7 +104,7 @@ public class NumericExpression implements Expression
 	}
 
 	/**
-	 * Initializes the numeric value object.
+	 * Initializes the numeric value object. Parameters can be a Long value, a String or any other CharSequence.
 	 * 
 	 * @see org.vedantatree.expressionoasis.expressions.Expression#initialize(org.vedantatree.expressionoasis.ExpressionContext,
 	 *      java.lang.Object)
@@ -81,10 +112,42 @@ public class NumericExpression implements Expression
 	public void initialize( ExpressionContext expressionContext, Object parameters, boolean validate )
 			throws ExpressionEngineException
 	{
-		Long value = new Long( (String) parameters );
+		Long value = parameters instanceof Long ? (Long) parameters : parameters instanceof String ? new Long(
+				(String) parameters ) : parseLong( (CharSequence) parameters );
 		longValue = new ValueObject( value, Type.LONG );
 	}
 
+	/**
+	 * Parses the decimal digits into long value, without creating a string. Characters which can not be read this way,
+	 * like signs or too many digits, are parsed by Long itself.
+	 * 
+	 * @param characters the characters to parse
+	 * @return the long value
+	 * @throws NumberFormatException if characters do not represent a long value
+	 */
+	static Long parseLong( CharSequence characters )
+	{
+		int length = characters.length();
+
+		// 18 digits can not overflow long
+		if( length == 0 || length > 18 )
+		{
+			return new Long( characters.toString() );
+		}
+
+		long value = 0;
+		for( int i = 0; i < length; i++ )
+		{
+			char character = characters.charAt( i );
+			if( character < '0' || character > '9' )
+			{
+				return new Long( characters.toString() );
+			}
+			value = value * 10 + ( character - '0' );
+		}
+		return Long.valueOf( value );
+	}
+
 	/**
 	 * Uninitaizes the expression
 	 * 
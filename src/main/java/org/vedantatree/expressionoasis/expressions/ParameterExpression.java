@@ -0,0 +1,153 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis.expressions;
+
+import org.vedantatree.expressionoasis.ExpressionContext;
+import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.types.Type;
+import org.vedantatree.expressionoasis.types.ValueObject;
+
+
+/**
+ * Expression which takes the place of a literal in a parameterized tree. Its value is the literal bound to its slot by
+ * the {@link ParameterizedExpression} being evaluated in current thread, and its return type is the type of the
+ * literals of that place, which is same for all expressions sharing the tree.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public final class ParameterExpression implements Expression
+{
+
+	/**
+	 * The slot of literal in the parameters of expression
+	 */
+	private final int	slot;
+
+	/**
+	 * The type of literals of this place
+	 */
+	private final Type	returnType;
+
+	/**
+	 * Constructs the ParameterExpression
+	 * 
+	 * @param slot the slot of literal in the parameters of expression
+	 * @param returnType the type of literals of this place
+	 */
+	ParameterExpression( int slot, Type returnType )
+	{
+		this.slot = slot;
+		this.returnType = returnType;
+	}
+
+	/**
+	 * @return the slot of literal in the parameters of expression
+	 */
+	public int getSlot()
+	{
+		return slot;
+	}
+
+	/**
+	 * Returns the literal bound to the slot of this parameter
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#getValue()
+	 */
+	public ValueObject getValue() throws ExpressionEngineException
+	{
+		return ParameterizedExpression.getParameter( slot );
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		return ParameterizedExpression.getParameter( slot ).longValue();
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		return ParameterizedExpression.getParameter( slot ).doubleValue();
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateBoolean()
+	 */
+	public boolean evaluateBoolean() throws ExpressionEngineException
+	{
+		return ParameterizedExpression.getParameter( slot ).booleanValue();
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#getReturnType()
+	 */
+	public Type getReturnType() throws ExpressionEngineException
+	{
+		return returnType;
+	}
+
+	/**
+	 * Nothing to initialize, as parameter is created for a compiled tree
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#initialize(org.vedantatree.expressionoasis.ExpressionContext,
+	 *      java.lang.Object, boolean)
+	 */
+	public void initialize( ExpressionContext expressionContext, Object parameters, boolean validate )
+			throws ExpressionEngineException
+	{
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#uninitialize(org.vedantatree.expressionoasis.ExpressionContext)
+	 */
+	public void uninitialize( ExpressionContext expressionContext )
+	{
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return "Parameter[" + slot + "]";
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#accept(org.vedantatree.expressionoasis.expressions.ExpressionVisitor)
+	 */
+	public void accept( ExpressionVisitor visitor )
+	{
+		visitor.visit( this );
+	}
+}
@@ -0,0 +1,336 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis.expressions;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.vedantatree.expressionoasis.ExpressionContext;
+import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.types.Type;
+import org.vedantatree.expressionoasis.types.ValueObject;
+
+
+/**
+ * Expression compiled with its literals lifted to parameters, like a statement of SQL with bind variables. It is
+ * made of a tree shared by all the expressions which differ only in literals, like 'amount > 500' and 'amount > 750',
+ * and the literals of this expression. Literals are bound to the {@link ParameterExpression}s of tree for each
+ * evaluation.
+ * 
+ * Literals are kept in the {@link EvaluationFrame} of current thread while the tree is evaluated, so the tree can be
+ * evaluated by many threads at the same time. Nested evaluations, like of an expression evaluated by a function, bind
+ * their own literals.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public final class ParameterizedExpression implements Expression
+{
+
+	/**
+	 * Literal expressions which are lifted to parameters. Null literal is kept in tree, as it has no type of its own.
+	 */
+	private static final Set<Class< ? >>				PARAMETERIZED_LITERALS	= new HashSet<Class< ? >>( Arrays
+																					.<Class< ? >> asList(
+																							NumericExpression.class,
+																							DecimalExpression.class,
+																							StringExpression.class,
+																							BooleanExpression.class ) );
+
+	/**
+	 * The tree shared by expressions of same shape
+	 */
+	private final Expression							template;
+
+	/**
+	 * The literals of this expression, in the order of their slots
+	 */
+	private final ValueObject[]							parameters;
+
+	/**
+	 * Constructs the ParameterizedExpression
+	 * 
+	 * @param template the tree shared by expressions of same shape, created by
+	 *        {@link #parameterize(Expression, ValueObject[])}
+	 * @param parameters the literals of expression, in the order of their slots
+	 */
+	public ParameterizedExpression( Expression template, ValueObject[] parameters )
+	{
+		this.template = template;
+		this.parameters = parameters;
+	}
+
+	/**
+	 * Checks whether the literals of given operand expression are lifted to parameters
+	 * 
+	 * @param operandClass the class of operand expression
+	 * @return <code>true</code> if literals are lifted
+	 */
+	public static boolean isParameterized( Class< ? > operandClass )
+	{
+		return PARAMETERIZED_LITERALS.contains( operandClass );
+	}
+
+	/**
+	 * Replaces the literals of tree by parameters, so it can be shared by other expressions of same shape. Literals are
+	 * given slots in the order these appear in expression, which is the order of tree from left to right.
+	 * 
+	 * @param expression the tree compiled from expression
+	 * @param parameters the literals of expression, in the order these appear in expression
+	 * @return the tree having parameters in place of literals, or <code>null</code> if literals of tree are not same as
+	 *         given literals. Given tree is changed in either case, so it must not be used later.
+	 */
+	public static Expression parameterize( Expression expression, ValueObject[] parameters )
+	{
+		Parameterizer parameterizer = new Parameterizer( parameters );
+		Expression template = parameterizer.parameterize( expression );
+		return parameterizer.matched && parameterizer.nextSlot == parameters.length ? template : null;
+	}
+
+	/**
+	 * Returns the literal bound to given slot in current thread
+	 * 
+	 * @param slot the slot of parameter
+	 * @return the bound literal
+	 * @throws ExpressionEngineException if no literals are bound, like if tree is evaluated without its parameterized
+	 *         expression
+	 */
+	static ValueObject getParameter( int slot ) throws ExpressionEngineException
+	{
+		ValueObject[] boundParameters = EvaluationFrame.get().parameters;
+		if( boundParameters == null || slot >= boundParameters.length )
+		{
+			throw new ExpressionEngineException( "Parameter is not bound. Parameterized tree must be evaluated by its "
+					+ "ParameterizedExpression. slot[" + slot + "]" );
+		}
+		return boundParameters[slot];
+	}
+
+	/**
+	 * @return the tree shared by expressions of same shape
+	 */
+	public Expression getTemplate()
+	{
+		return template;
+	}
+
+	/**
+	 * @return the literals of this expression, in the order of their slots
+	 */
+	public ValueObject[] getParameters()
+	{
+		return parameters.clone();
+	}
+
+	/**
+	 * Evaluates the tree with literals of this expression bound to its parameters
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#getValue()
+	 */
+	public ValueObject getValue() throws ExpressionEngineException
+	{
+		EvaluationFrame frame = EvaluationFrame.get();
+		ValueObject[] previousParameters = frame.parameters;
+		frame.parameters = parameters;
+		try
+		{
+			return template.getValue();
+		}
+		finally
+		{
+			frame.parameters = previousParameters;
+		}
+	}
+
+	/**
+	 * Evaluates the tree with literals of this expression bound to its parameters
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		EvaluationFrame frame = EvaluationFrame.get();
+		ValueObject[] previousParameters = frame.parameters;
+		frame.parameters = parameters;
+		try
+		{
+			return template.evaluateLong();
+		}
+		finally
+		{
+			frame.parameters = previousParameters;
+		}
+	}
+
+	/**
+	 * Evaluates the tree with literals of this expression bound to its parameters
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		EvaluationFrame frame = EvaluationFrame.get();
+		ValueObject[] previousParameters = frame.parameters;
+		frame.parameters = parameters;
+		try
+		{
+			return template.evaluateDouble();
+		}
+		finally
+		{
+			frame.parameters = previousParameters;
+		}
+	}
+
+	/**
+	 * Evaluates the tree with literals of this expression bound to its parameters
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateBoolean()
+	 */
+	public boolean evaluateBoolean() throws ExpressionEngineException
+	{
+		EvaluationFrame frame = EvaluationFrame.get();
+		ValueObject[] previousParameters = frame.parameters;
+		frame.parameters = parameters;
+		try
+		{
+			return template.evaluateBoolean();
+		}
+		finally
+		{
+			frame.parameters = previousParameters;
+		}
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#getReturnType()
+	 */
+	public Type getReturnType() throws ExpressionEngineException
+	{
+		return template.getReturnType();
+	}
+
+	/**
+	 * Nothing to initialize, as tree is already compiled
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#initialize(org.vedantatree.expressionoasis.ExpressionContext,
+	 *      java.lang.Object, boolean)
+	 */
+	public void initialize( ExpressionContext expressionContext, Object parameters, boolean validate )
+			throws ExpressionEngineException
+	{
+	}
+
+	/**
+	 * Tree is not uninitialized, as it is shared by other expressions
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#uninitialize(org.vedantatree.expressionoasis.ExpressionContext)
+	 */
+	public void uninitialize( ExpressionContext expressionContext )
+	{
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return template + " " + Arrays.toString( parameters );
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#accept(org.vedantatree.expressionoasis.expressions.ExpressionVisitor)
+	 */
+	public void accept( ExpressionVisitor visitor )
+	{
+		visitor.visit( this );
+		template.accept( visitor );
+	}
+
+	/**
+	 * Replaces the literals of a tree by parameters, from left to right
+	 */
+	private static final class Parameterizer
+	{
+
+		private final ValueObject[]	parameters;
+
+		private int					nextSlot;
+
+		private boolean				matched	= true;
+
+		private Parameterizer( ValueObject[] parameters )
+		{
+			this.parameters = parameters;
+		}
+
+		private Expression parameterize( Expression expression )
+		{
+			if( expression instanceof BinaryOperatorExpression )
+			{
+				BinaryOperatorExpression binaryExpression = (BinaryOperatorExpression) expression;
+				binaryExpression.leftOperandExpression = parameterize( binaryExpression.leftOperandExpression );
+				binaryExpression.rightOperandExpression = parameterize( binaryExpression.rightOperandExpression );
+			}
+			else if( expression instanceof UnaryOperatorExpression )
+			{
+				UnaryOperatorExpression unaryExpression = (UnaryOperatorExpression) expression;
+				if( unaryExpression.getOperandExpression() != null )
+				{
+					unaryExpression.setOperandExpression( parameterize( unaryExpression.getOperandExpression() ) );
+				}
+			}
+			else if( expression != null && isParameterized( expression.getClass() ) )
+			{
+				int slot = nextSlot++;
+				try
+				{
+					ValueObject value = expression.getValue();
+					if( slot < parameters.length && isSame( value, parameters[slot] ) )
+					{
+						return new ParameterExpression( slot, expression.getReturnType() );
+					}
+				}
+				catch( ExpressionEngineException e )
+				{
+					// not matched
+				}
+				matched = false;
+			}
+			return expression;
+		}
+
+		private static boolean isSame( ValueObject value, ValueObject parameter )
+		{
+			return parameter != null && value.getValueType().equals( parameter.getValueType() )
+					&& value.getValue().equals( parameter.getValue() );
+		}
+	}
+}
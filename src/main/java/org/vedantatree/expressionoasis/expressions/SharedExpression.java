@@ -0,0 +1,160 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis.expressions;
+
+import org.vedantatree.expressionoasis.ExpressionContext;
+import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.types.Type;
+import org.vedantatree.expressionoasis.types.ValueObject;
+
+
+/**
+ * Sub tree which occurs more than once in an expression tree. All occurrences refer to same SharedExpression, which
+ * evaluates the sub tree once in an evaluation of its {@link SharedExpressionScope}, and returns the same value to
+ * other occurrences.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public final class SharedExpression implements Expression
+{
+
+	/**
+	 * The scope having the slot of value
+	 */
+	private final SharedExpressionScope	scope;
+
+	/**
+	 * Index of the slot of value in scope
+	 */
+	private final int					slot;
+
+	/**
+	 * The sub tree which is shared
+	 */
+	private final Expression			expression;
+
+	/**
+	 * Constructs the SharedExpression
+	 * 
+	 * @param scope the scope having the slot of value
+	 * @param slot index of the slot of value in scope
+	 * @param expression the sub tree which is shared
+	 */
+	SharedExpression( SharedExpressionScope scope, int slot, Expression expression )
+	{
+		this.scope = scope;
+		this.slot = slot;
+		this.expression = expression;
+	}
+
+	/**
+	 * @return the sub tree which is shared
+	 */
+	public Expression getExpression()
+	{
+		return expression;
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#getValue()
+	 */
+	public ValueObject getValue() throws ExpressionEngineException
+	{
+		return scope.getValue( slot, expression );
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		return scope.getValue( slot, expression ).longValue();
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		return scope.getValue( slot, expression ).doubleValue();
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateBoolean()
+	 */
+	public boolean evaluateBoolean() throws ExpressionEngineException
+	{
+		return scope.getValue( slot, expression ).booleanValue();
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#getReturnType()
+	 */
+	public Type getReturnType() throws ExpressionEngineException
+	{
+		return expression.getReturnType();
+	}
+
+	/**
+	 * Nothing to initialize, as sub tree is already compiled
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#initialize(org.vedantatree.expressionoasis.ExpressionContext,
+	 *      java.lang.Object, boolean)
+	 */
+	public void initialize( ExpressionContext expressionContext, Object parameters, boolean validate )
+			throws ExpressionEngineException
+	{
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#uninitialize(org.vedantatree.expressionoasis.ExpressionContext)
+	 */
+	public void uninitialize( ExpressionContext expressionContext )
+	{
+		expression.uninitialize( expressionContext );
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return "Shared" + slot + "[" + expression + "]";
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#accept(org.vedantatree.expressionoasis.expressions.ExpressionVisitor)
+	 */
+	public void accept( ExpressionVisitor visitor )
+	{
+		visitor.visit( this );
+		expression.accept( visitor );
+	}
+}
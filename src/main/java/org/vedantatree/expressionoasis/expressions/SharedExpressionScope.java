@@ -0,0 +1,277 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis.expressions;
+
+import java.util.Arrays;
+
+import org.vedantatree.expressionoasis.ExpressionContext;
+import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.types.Type;
+import org.vedantatree.expressionoasis.types.ValueObject;
+
+
+/**
+ * Root of an expression tree which has {@link SharedExpression}s. Every evaluation of the tree gets its own slots for
+ * the values of shared expressions, so each shared expression is evaluated at most once in an evaluation.
+ * 
+ * Slots are kept in the {@link EvaluationFrame} of current thread, so the tree can be evaluated by many threads at the
+ * same time. The array of slots is reused by later evaluations on same thread, and slots are cleared after each
+ * evaluation so values are not retained. Nested evaluations, like of an expression evaluated by a function, get their
+ * own slots.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public final class SharedExpressionScope implements Expression
+{
+
+	/**
+	 * The root of tree
+	 */
+	private Expression						expression;
+
+	/**
+	 * Number of shared expressions in tree
+	 */
+	private int								slotCount;
+
+	/**
+	 * Constructs the scope. Tree is set once its shared expressions are created.
+	 */
+	SharedExpressionScope()
+	{
+	}
+
+	/**
+	 * Sets the tree of scope
+	 * 
+	 * @param expression the root of tree
+	 * @param slotCount number of shared expressions in tree
+	 */
+	void setExpression( Expression expression, int slotCount )
+	{
+		this.expression = expression;
+		this.slotCount = slotCount;
+	}
+
+	/**
+	 * @return the root of tree
+	 */
+	public Expression getExpression()
+	{
+		return expression;
+	}
+
+	/**
+	 * Evaluates the tree with empty slots for the shared expressions
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#getValue()
+	 */
+	public ValueObject getValue() throws ExpressionEngineException
+	{
+		EvaluationFrame frame = EvaluationFrame.get();
+		SharedExpressionScope previousScope = frame.sharedScope;
+		ValueObject[] previousValues = frame.sharedValues;
+		ValueObject[] values = enter( frame );
+		try
+		{
+			return expression.getValue();
+		}
+		finally
+		{
+			exit( frame, previousScope, previousValues, values );
+		}
+	}
+
+	/**
+	 * Evaluates the tree with empty slots for the shared expressions
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		EvaluationFrame frame = EvaluationFrame.get();
+		SharedExpressionScope previousScope = frame.sharedScope;
+		ValueObject[] previousValues = frame.sharedValues;
+		ValueObject[] values = enter( frame );
+		try
+		{
+			return expression.evaluateLong();
+		}
+		finally
+		{
+			exit( frame, previousScope, previousValues, values );
+		}
+	}
+
+	/**
+	 * Evaluates the tree with empty slots for the shared expressions
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		EvaluationFrame frame = EvaluationFrame.get();
+		SharedExpressionScope previousScope = frame.sharedScope;
+		ValueObject[] previousValues = frame.sharedValues;
+		ValueObject[] values = enter( frame );
+		try
+		{
+			return expression.evaluateDouble();
+		}
+		finally
+		{
+			exit( frame, previousScope, previousValues, values );
+		}
+	}
+
+	/**
+	 * Evaluates the tree with empty slots for the shared expressions
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateBoolean()
+	 */
+	public boolean evaluateBoolean() throws ExpressionEngineException
+	{
+		EvaluationFrame frame = EvaluationFrame.get();
+		SharedExpressionScope previousScope = frame.sharedScope;
+		ValueObject[] previousValues = frame.sharedValues;
+		ValueObject[] values = enter( frame );
+		try
+		{
+			return expression.evaluateBoolean();
+		}
+		finally
+		{
+			exit( frame, previousScope, previousValues, values );
+		}
+	}
+
+	/**
+	 * Makes this scope current in given frame, with empty slots
+	 * 
+	 * @param frame the frame of current thread
+	 * @return the slots of this evaluation
+	 */
+	private ValueObject[] enter( EvaluationFrame frame )
+	{
+		ValueObject[] values = frame.spareSharedValues != null && frame.spareSharedValues.length >= slotCount ? frame.spareSharedValues
+				: new ValueObject[slotCount];
+		frame.spareSharedValues = null;
+		frame.sharedScope = this;
+		frame.sharedValues = values;
+		return values;
+	}
+
+	/**
+	 * Clears the slots of this evaluation and restores the scope which was current before it
+	 * 
+	 * @param frame the frame of current thread
+	 * @param previousScope the scope current before this evaluation
+	 * @param previousValues the slots of previous scope
+	 * @param values the slots of this evaluation
+	 */
+	private void exit( EvaluationFrame frame, SharedExpressionScope previousScope, ValueObject[] previousValues,
+			ValueObject[] values )
+	{
+		Arrays.fill( values, 0, slotCount, null );
+		frame.sharedScope = previousScope;
+		frame.sharedValues = previousValues;
+		frame.spareSharedValues = values;
+	}
+
+	/**
+	 * Returns the value of shared expression, evaluating it only if it is not yet evaluated in current evaluation of
+	 * tree. If shared expression is evaluated outside the evaluation of tree, it is evaluated every time.
+	 * 
+	 * @param slot the slot of shared expression
+	 * @param sharedExpression the expression which is shared
+	 * @return the value of shared expression
+	 * @throws ExpressionEngineException if shared expression fails to evaluate
+	 */
+	ValueObject getValue( int slot, Expression sharedExpression ) throws ExpressionEngineException
+	{
+		EvaluationFrame frame = EvaluationFrame.get();
+		if( frame.sharedScope != this )
+		{
+			return sharedExpression.getValue();
+		}
+
+		ValueObject value = frame.sharedValues[slot];
+		if( value == null )
+		{
+			value = sharedExpression.getValue();
+			frame.sharedValues[slot] = value;
+		}
+		return value;
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#getReturnType()
+	 */
+	public Type getReturnType() throws ExpressionEngineException
+	{
+		return expression.getReturnType();
+	}
+
+	/**
+	 * Nothing to initialize, as tree is already compiled
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#initialize(org.vedantatree.expressionoasis.ExpressionContext,
+	 *      java.lang.Object, boolean)
+	 */
+	public void initialize( ExpressionContext expressionContext, Object parameters, boolean validate )
+			throws ExpressionEngineException
+	{
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#uninitialize(org.vedantatree.expressionoasis.ExpressionContext)
+	 */
+	public void uninitialize( ExpressionContext expressionContext )
+	{
+		expression.uninitialize( expressionContext );
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return String.valueOf( expression );
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#accept(org.vedantatree.expressionoasis.expressions.ExpressionVisitor)
+	 */
+	public void accept( ExpressionVisitor visitor )
+	{
+		visitor.visit( this );
+		expression.accept( visitor );
+	}
+}
@@ -26,8 +26,8 @@
  */
 package org.vedantatree.expressionoasis.expressions;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.vedantatree.expressionoasis.EOErrorCodes;
 import org.vedantatree.expressionoasis.ExpressionContext;
@@ -48,6 +48,30 @@ import org.vedantatree.expressionoasis.utils.StringUtils;
  * 
  * @author Kris Marwood
  * @version 1.1
+ * 
+ *          Operand can be replaced by the optimizer of expression tree.
+ * 
+ * @author Mohit Gupta
+ * @version 1.2
+ * @since 3.3
+ * 
+ *          Type mappings are concurrent, as many threads compile the expressions at the same time.
+ * 
+ * @author Mohit Gupta
+ * @version 1.3
+ * @since 3.3
+ * 
+ *          Return type of a validated expression is inferred once from the type of its operand and kept.
+ * 
+ * @author Mohit Gupta
+ * @version 1.4
+ * @since 3.3
+ * 
+ *          Added primitive evaluation. By default value is evaluated by getValue and unboxed.
+ * 
+ * @author Mohit Gupta
+ * @version 1.5
+ * @since 3.3
  */
 public abstract class UnaryOperatorExpression implements Expression
 {
@@ -55,7 +79,8 @@ public abstract class UnaryOperatorExpression implements Expression
 	/**
 	 * This is the type pair mapping for all the unary operators.
 	 */
-	private static Map	typePairMapping	= new HashMap();
+	private static ConcurrentHashMap<Class< ? >, Map<Type, Type>>	typePairMapping	=
+		new ConcurrentHashMap<Class< ? >, Map<Type, Type>>();
 
 	/**
 	 * This is the operand expression for this unary operator expression. There
@@ -63,6 +88,16 @@ public abstract class UnaryOperatorExpression implements Expression
 	 */
 	private Expression	operandExpression;
 
+	/**
+	 * Return type inferred on validation of expression, <code>null</code> if it is not inferred yet
+	 */
+	private Type		returnType;
+
+	/**
+	 * Specifies whether expression is initialized with validation, so type of its operand is fixed
+	 */
+	private boolean		validated;
+
 	/**
 	 * Initializes the operand expression.
 	 * 
@@ -73,6 +108,8 @@ public abstract class UnaryOperatorExpression implements Expression
 			throws ExpressionEngineException
 	{
 		this.operandExpression = (Expression) parameters;
+		this.returnType = null;
+		this.validated = validate;
 		/*
 		 * Earlier operandExpression was asserted to be not-null, but it can be null
 		 * for function expression having zero arguments.
@@ -96,13 +133,78 @@ public abstract class UnaryOperatorExpression implements Expression
 	}
 
 	/**
+	 * Evaluates the expression by {@link #getValue()} and unboxes the value. Operators which can compute the value
+	 * from primitive value of operand override it.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		return getValue().longValue();
+	}
+
+	/**
+	 * Evaluates the expression by {@link #getValue()} and unboxes the value.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		return getValue().doubleValue();
+	}
+
+	/**
+	 * Evaluates the expression by {@link #getValue()} and unboxes the value.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateBoolean()
+	 */
+	public boolean evaluateBoolean() throws ExpressionEngineException
+	{
+		return getValue().booleanValue();
+	}
+
+	/**
+	 * Replaces the operand expression with an equivalent expression. It is used by {@link ExpressionOptimizer}.
+	 * 
+	 * @param operandExpression the new operand expression
+	 */
+	void setOperandExpression( Expression operandExpression )
+	{
+		this.operandExpression = operandExpression;
+	}
+
+	/**
+	 * Checks whether expression is initialized with validation. Types of operands of a validated expression are fixed,
+	 * as tree is compiled again if types of variables change, so types inferred from these can be kept.
+	 * 
+	 * @return <code>true</code> if expression is validated
+	 */
+	protected final boolean isValidated()
+	{
+		return validated;
+	}
+
+	/**
+	 * Returns the type mapped for the type of operand. Type of a validated expression is inferred once and kept.
+	 * 
 	 * @see org.vedantatree.expressionoasis.expressions.Expression#getReturnType()
 	 */
 	public Type getReturnType() throws ExpressionEngineException
 	{
-		HashMap typeMapping = (HashMap) typePairMapping.get( getClass() );
+		Type type = returnType;
+		if( type != null )
+		{
+			return type;
+		}
 
-		return (Type) typeMapping.get( operandExpression.getReturnType() );
+		Map<Type, Type> typeMapping = typePairMapping.get( getClass() );
+		Type operandType = operandExpression.getReturnType();
+		type = operandType == null ? null : typeMapping.get( operandType );
+		if( validated )
+		{
+			returnType = type;
+		}
+		return type;
 	}
 
 	/**
@@ -123,14 +225,15 @@ public abstract class UnaryOperatorExpression implements Expression
 	 */
 	protected void validate( ExpressionContext expressionContext ) throws ExpressionEngineException
 	{
-		HashMap typeMapping = (HashMap) typePairMapping.get( getClass() );
+		Map<Type, Type> typeMapping = typePairMapping.get( getClass() );
 
 		if( typeMapping == null )
 		{
 			throw new ExpressionEngineException( "No type mapping specified for class \"" + getClass().getName() + "\"" );
 		}
 
-		if( typeMapping.get( operandExpression.getReturnType() ) == null )
+		Type operandType = operandExpression.getReturnType();
+		if( operandType == null || typeMapping.get( operandType ) == null )
 		{
 			String prefix = StringUtils.getLastToken( getClass().getName(), "." );
 			prefix = prefix.substring( 0, prefix.length() - "Expression".length() );
@@ -147,7 +250,7 @@ public abstract class UnaryOperatorExpression implements Expression
 	 * @param operandType type of operand
 	 * @param resultType type of the result
 	 */
-	protected static final void addTypePair( Class clazz, Type operandType, Type resultType )
+	protected static final void addTypePair( Class< ? > clazz, Type operandType, Type resultType )
 	{
 		if( clazz == null || !UnaryOperatorExpression.class.isAssignableFrom( clazz ) )
 		{
@@ -155,12 +258,13 @@ public abstract class UnaryOperatorExpression implements Expression
 					+ "\" is not a valid unary operator expression class." );
 		}
 
-		HashMap typeMapping = (HashMap) typePairMapping.get( clazz );
+		Map<Type, Type> typeMapping = typePairMapping.get( clazz );
 
 		if( typeMapping == null )
 		{
-			typeMapping = new HashMap();
-			typePairMapping.put( clazz, typeMapping );
+			typeMapping = new ConcurrentHashMap<Type, Type>();
+			Map<Type, Type> existingTypeMapping = typePairMapping.putIfAbsent( clazz, typeMapping );
+			typeMapping = existingTypeMapping == null ? typeMapping : existingTypeMapping;
 		}
 
 		typeMapping.put( operandType, resultType );
@@ -187,6 +291,10 @@ public abstract class UnaryOperatorExpression implements Expression
 	public void accept( ExpressionVisitor visitor )
 	{
 		visitor.visit( this );
-		operandExpression.accept( visitor );
+		// function without arguments does not have any operand
+		if( operandExpression != null )
+		{
+			operandExpression.accept( visitor );
+		}
 	}
 }
\ No newline at end of file
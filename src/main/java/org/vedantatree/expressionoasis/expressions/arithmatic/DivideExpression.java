@@ -100,4 +100,22 @@ public class DivideExpression extends BinaryOperatorExpression
 
 		return new ValueObject( result, returnType );
 	}
+
+	/**
+	 * Divides the primitive values of operands. Result is always decimal.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		return leftOperandExpression.evaluateDouble() / rightOperandExpression.evaluateDouble();
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		return (long) evaluateDouble();
+	}
 }
\ No newline at end of file
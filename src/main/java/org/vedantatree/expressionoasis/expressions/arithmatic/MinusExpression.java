@@ -79,4 +79,44 @@ public class MinusExpression extends UnaryOperatorExpression
 
 		return new ValueObject( value, resultType );
 	}
+
+	/**
+	 * Negates the primitive value of operand, if result is numeric.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	@Override
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		Type resultType = getReturnType();
+		if( resultType == Type.LONG )
+		{
+			return -getOperandExpression().evaluateLong();
+		}
+		if( resultType == Type.DOUBLE )
+		{
+			return (long) evaluateDouble();
+		}
+		return super.evaluateLong();
+	}
+
+	/**
+	 * Negates the primitive value of operand, if result is numeric.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	@Override
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		Type resultType = getReturnType();
+		if( resultType == Type.DOUBLE )
+		{
+			return -getOperandExpression().evaluateDouble();
+		}
+		if( resultType == Type.LONG )
+		{
+			return evaluateLong();
+		}
+		return super.evaluateDouble();
+	}
 }
\ No newline at end of file
@@ -42,6 +42,12 @@ import org.vedantatree.expressionoasis.types.ValueObject;
  * 
  * @author Kris Marwood
  * @version 1.1
+ * 
+ *          Added the variants specialized for the types of operands, which are chosen by optimizer once the types are inferred.
+ * 
+ * @author Mohit Gupta
+ * @version 1.2
+ * @since 3.3
  */
 public class MultiplyExpression extends BinaryOperatorExpression
 {
@@ -87,4 +93,121 @@ public class MultiplyExpression extends BinaryOperatorExpression
 
 		return new ValueObject( result, returnType );
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Multiplies the primitive values of operands, if result is numeric.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		Type returnType = getReturnType();
+		if( returnType == Type.LONG )
+		{
+			return leftOperandExpression.evaluateLong() * rightOperandExpression.evaluateLong();
+		}
+		if( returnType == Type.DOUBLE )
+		{
+			return (long) evaluateDouble();
+		}
+		return super.evaluateLong();
+	}
+
+	/**
+	 * Multiplies the primitive values of operands, if result is numeric.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		Type returnType = getReturnType();
+		if( returnType == Type.DOUBLE )
+		{
+			return leftOperandExpression.evaluateDouble() * rightOperandExpression.evaluateDouble();
+		}
+		if( returnType == Type.LONG )
+		{
+			return evaluateLong();
+		}
+		return super.evaluateDouble();
+	}
+
+	/**
+	 * Specializes the c of numbers, if no operand is of OBJECT or ANY type.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.BinaryOperatorExpression#specialize()
+	 */
+	@Override
+	protected BinaryOperatorExpression specialize() throws ExpressionEngineException
+	{
+		Type returnType = getReturnType();
+		Type operandType = getOperandType();
+		if( returnType == Type.LONG && operandType == Type.LONG )
+		{
+			return specializeAs( new LongMultiplyExpression() );
+		}
+		if( returnType == Type.DOUBLE && operandType == Type.DOUBLE )
+		{
+			return specializeAs( new DoubleMultiplyExpression() );
+		}
+		return this;
+	}
+
+	/**
+	 * C of integral operands
+	 */
+	private static final class LongMultiplyExpression extends MultiplyExpression
+	{
+
+		@Override
+		public ValueObject getValue() throws ExpressionEngineException
+		{
+			Object leftValue = leftOperandExpression.getValue().getValue();
+			Object rightValue = rightOperandExpression.getValue().getValue();
+			Long result = leftValue == null || rightValue == null ? null : Long.valueOf( ( (Number) leftValue )
+					.longValue() * ( (Number) rightValue ).longValue() );
+			return new ValueObject( result, Type.LONG );
+		}
+
+		@Override
+		public long evaluateLong() throws ExpressionEngineException
+		{
+			return leftOperandExpression.evaluateLong() * rightOperandExpression.evaluateLong();
+		}
+
+		@Override
+		public double evaluateDouble() throws ExpressionEngineException
+		{
+			return evaluateLong();
+		}
+	}
+
+	/**
+	 * C of numeric operands, one of which at least is decimal
+	 */
+	private static final class DoubleMultiplyExpression extends MultiplyExpression
+	{
+
+		@Override
+		public ValueObject getValue() throws ExpressionEngineException
+		{
+			Object leftValue = leftOperandExpression.getValue().getValue();
+			Object rightValue = rightOperandExpression.getValue().getValue();
+			Double result = leftValue == null || rightValue == null ? null : Double.valueOf( ( (Number) leftValue )
+					.doubleValue() * ( (Number) rightValue ).doubleValue() );
+			return new ValueObject( result, Type.DOUBLE );
+		}
+
+		@Override
+		public long evaluateLong() throws ExpressionEngineException
+		{
+			return (long) evaluateDouble();
+		}
+
+		@Override
+		public double evaluateDouble() throws ExpressionEngineException
+		{
+			return leftOperandExpression.evaluateDouble() * rightOperandExpression.evaluateDouble();
+		}
+	}
+}
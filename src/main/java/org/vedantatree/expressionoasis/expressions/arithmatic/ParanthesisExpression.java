@@ -53,6 +53,39 @@ public class ParanthesisExpression extends UnaryOperatorExpression
 		return getOperandExpression().getValue();
 	}
 
+	/**
+	 * Returns primitive value of child expression.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	@Override
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		return getOperandExpression().evaluateLong();
+	}
+
+	/**
+	 * Returns primitive value of child expression.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	@Override
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		return getOperandExpression().evaluateDouble();
+	}
+
+	/**
+	 * Returns primitive value of child expression.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateBoolean()
+	 */
+	@Override
+	public boolean evaluateBoolean() throws ExpressionEngineException
+	{
+		return getOperandExpression().evaluateBoolean();
+	}
+
 	/**
 	 * Retrusn the type of child expression
 	 * 
@@ -64,4 +64,37 @@ public class PlusExpression extends UnaryOperatorExpression
 	{
 		return getOperandExpression().getValue();
 	}
+
+	/**
+	 * Returns the primitive value of operand as it is.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	@Override
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		return getOperandExpression().evaluateLong();
+	}
+
+	/**
+	 * Returns the primitive value of operand as it is.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	@Override
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		return getOperandExpression().evaluateDouble();
+	}
+
+	/**
+	 * Returns the primitive value of operand as it is.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateBoolean()
+	 */
+	@Override
+	public boolean evaluateBoolean() throws ExpressionEngineException
+	{
+		return getOperandExpression().evaluateBoolean();
+	}
 }
\ No newline at end of file
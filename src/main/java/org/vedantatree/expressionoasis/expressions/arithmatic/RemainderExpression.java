@@ -74,4 +74,22 @@ public class RemainderExpression extends BinaryOperatorExpression
 
 		return new ValueObject( result, getReturnType() );
 	}
+
+	/**
+	 * Performs the modulus of primitive values of operands.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		return leftOperandExpression.evaluateLong() % rightOperandExpression.evaluateLong();
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		return evaluateLong();
+	}
 }
\ No newline at end of file
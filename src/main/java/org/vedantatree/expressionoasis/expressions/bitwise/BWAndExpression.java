@@ -77,4 +77,22 @@ public class BWAndExpression extends BinaryOperatorExpression
 		return new ValueObject( result, getReturnType() );
 	}
 
+	/**
+	 * Performs the bitwise and of primitive values of operands.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		return leftOperandExpression.evaluateLong() & rightOperandExpression.evaluateLong();
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		return evaluateLong();
+	}
+
 }
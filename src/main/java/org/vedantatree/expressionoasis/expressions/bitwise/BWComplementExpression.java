@@ -69,4 +69,24 @@ public class BWComplementExpression extends UnaryOperatorExpression
 		return new ValueObject( result, getReturnType() );
 	}
 
+	/**
+	 * Performs the complement of primitive value of operand.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	@Override
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		return ~getOperandExpression().evaluateLong();
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	@Override
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		return evaluateLong();
+	}
+
 }
@@ -76,4 +76,22 @@ public class BWOrExpression extends BinaryOperatorExpression
 
 		return new ValueObject( result, getReturnType() );
 	}
+
+	/**
+	 * Performs the bitwise or of primitive values of operands.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		return leftOperandExpression.evaluateLong() | rightOperandExpression.evaluateLong();
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		return evaluateLong();
+	}
 }
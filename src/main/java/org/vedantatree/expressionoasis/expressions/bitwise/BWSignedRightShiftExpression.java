@@ -77,4 +77,22 @@ public class BWSignedRightShiftExpression extends BinaryOperatorExpression
 
 		return new ValueObject( result, getReturnType() );
 	}
+
+	/**
+	 * Shifts the primitive value of left operand.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		return leftOperandExpression.evaluateLong() >> rightOperandExpression.evaluateLong();
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		return evaluateLong();
+	}
 }
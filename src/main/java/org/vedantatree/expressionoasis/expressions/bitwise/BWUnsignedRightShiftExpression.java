@@ -76,4 +76,22 @@ public class BWUnsignedRightShiftExpression extends BinaryOperatorExpression
 
 		return new ValueObject( result, getReturnType() );
 	}
+
+	/**
+	 * Shifts the primitive value of left operand.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		return leftOperandExpression.evaluateLong() >>> rightOperandExpression.evaluateLong();
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		return evaluateLong();
+	}
 }
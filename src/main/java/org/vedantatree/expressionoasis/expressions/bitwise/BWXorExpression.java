@@ -91,4 +91,40 @@ public class BWXorExpression extends BinaryOperatorExpression
 
 		return new ValueObject( result, returnType );
 	}
+
+	/**
+	 * Performs the bitwise xor of primitive values of operands.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		if( getReturnType() == Type.BOOLEAN )
+		{
+			return super.evaluateLong();
+		}
+		return leftOperandExpression.evaluateLong() ^ rightOperandExpression.evaluateLong();
+	}
+
+	/**
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		return evaluateLong();
+	}
+
+	/**
+	 * Performs the xor of primitive values of boolean operands.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateBoolean()
+	 */
+	public boolean evaluateBoolean() throws ExpressionEngineException
+	{
+		if( getReturnType() == Type.BOOLEAN )
+		{
+			return leftOperandExpression.evaluateBoolean() ^ rightOperandExpression.evaluateBoolean();
+		}
+		return super.evaluateBoolean();
+	}
 }
@@ -43,6 +43,13 @@ import org.vedantatree.expressionoasis.types.ValueObject;
  * 
  * @author Kris Marwood
  * @version 1.1
+ * 
+ *          Evaluation is short circuit. Right operand is not evaluated if left operand is false, which gives false, or
+ *          null, which gives null. Otherwise value is null if right operand is null.
+ * 
+ * @author Mohit Gupta
+ * @version 1.2
+ * @since 3.3
  */
 public class AndExpression extends BinaryOperatorExpression
 {
@@ -58,23 +65,41 @@ public class AndExpression extends BinaryOperatorExpression
 	}
 
 	/**
-	 * Gets the value of this operator.
+	 * Gets the value of this operator. Right operand is evaluated only if left operand is true.
 	 * 
 	 * @see org.vedantatree.expressionoasis.expressions.Expression#getValue()
 	 */
 	public ValueObject getValue() throws ExpressionEngineException
 	{
 		Object leftValue = leftOperandExpression.getValue().getValue();
-		Object rightValue = rightOperandExpression.getValue().getValue();
 
 		Boolean value = null;
 
-		if( leftValue != null && rightValue != null )
+		if( Boolean.FALSE.equals( leftValue ) )
 		{
-			value = ( (Boolean) leftValue ).booleanValue() && ( (Boolean) rightValue ).booleanValue() ? Boolean.TRUE
-					: Boolean.FALSE;
+			value = Boolean.FALSE;
+		}
+		else if( leftValue != null )
+		{
+			Object rightValue = rightOperandExpression.getValue().getValue();
+			if( rightValue != null )
+			{
+				value = ( (Boolean) rightValue ).booleanValue() ? Boolean.TRUE : Boolean.FALSE;
+			}
 		}
 
 		return new ValueObject( value, Type.BOOLEAN );
 	}
+
+	/**
+	 * Performs the and of primitive values of operands. Right operand is evaluated only if left operand is true, like
+	 * getValue.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateBoolean()
+	 */
+	@Override
+	public boolean evaluateBoolean() throws ExpressionEngineException
+	{
+		return leftOperandExpression.evaluateBoolean() && rightOperandExpression.evaluateBoolean();
+	}
 }
\ No newline at end of file
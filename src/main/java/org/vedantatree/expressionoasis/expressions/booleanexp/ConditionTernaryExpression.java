@@ -68,4 +68,15 @@ public class ConditionTernaryExpression extends BinaryOperatorExpression
 		return new ValueObject( ( (Boolean) leftValue ).booleanValue(), getReturnType() );
 	}
 
+	/**
+	 * Returns the primitive value of condition.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateBoolean()
+	 */
+	@Override
+	public boolean evaluateBoolean() throws ExpressionEngineException
+	{
+		return leftOperandExpression.evaluateBoolean();
+	}
+
 }
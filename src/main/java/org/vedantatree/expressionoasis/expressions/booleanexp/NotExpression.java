@@ -72,4 +72,15 @@ public class NotExpression extends UnaryOperatorExpression
 
 		return new ValueObject( result, Type.BOOLEAN );
 	}
+
+	/**
+	 * Returns the negation of primitive value of operand.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateBoolean()
+	 */
+	@Override
+	public boolean evaluateBoolean() throws ExpressionEngineException
+	{
+		return !getOperandExpression().evaluateBoolean();
+	}
 }
\ No newline at end of file
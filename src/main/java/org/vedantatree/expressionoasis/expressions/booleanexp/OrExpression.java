@@ -42,6 +42,13 @@ import org.vedantatree.expressionoasis.types.ValueObject;
  * 
  * @author Kris Marwood
  * @version 1.1
+ * 
+ *          Evaluation is short circuit. Right operand is not evaluated if left operand is true, which gives true, or
+ *          null, which gives null. Otherwise value is null if right operand is null.
+ * 
+ * @author Mohit Gupta
+ * @version 1.2
+ * @since 3.3
  */
 public class OrExpression extends BinaryOperatorExpression
 {
@@ -57,23 +64,41 @@ public class OrExpression extends BinaryOperatorExpression
 	}
 
 	/**
-	 * Performs the or operation.
+	 * Performs the or operation. Right operand is evaluated only if left operand is false.
 	 * 
 	 * @see org.vedantatree.expressionoasis.expressions.Expression#getValue()
 	 */
 	public ValueObject getValue() throws ExpressionEngineException
 	{
 		Object leftValue = leftOperandExpression.getValue().getValue();
-		Object rightValue = rightOperandExpression.getValue().getValue();
 
 		Boolean value = null;
 
-		if( leftValue != null && rightValue != null )
+		if( Boolean.TRUE.equals( leftValue ) )
 		{
-			value = ( (Boolean) leftValue ).booleanValue() || ( (Boolean) rightValue ).booleanValue() ? Boolean.TRUE
-					: Boolean.FALSE;
+			value = Boolean.TRUE;
+		}
+		else if( leftValue != null )
+		{
+			Object rightValue = rightOperandExpression.getValue().getValue();
+			if( rightValue != null )
+			{
+				value = ( (Boolean) rightValue ).booleanValue() ? Boolean.TRUE : Boolean.FALSE;
+			}
 		}
 
 		return new ValueObject( value, Type.BOOLEAN );
 	}
+
+	/**
+	 * Performs the or of primitive values of operands. Right operand is evaluated only if left operand is false, like
+	 * getValue.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateBoolean()
+	 */
+	@Override
+	public boolean evaluateBoolean() throws ExpressionEngineException
+	{
+		return leftOperandExpression.evaluateBoolean() || rightOperandExpression.evaluateBoolean();
+	}
 }
\ No newline at end of file
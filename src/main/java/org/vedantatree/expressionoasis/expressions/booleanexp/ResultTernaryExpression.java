@@ -62,6 +62,45 @@ public class ResultTernaryExpression extends BinaryOperatorExpression
 				: getRightOperandExpression().getValue();
 	}
 
+	/**
+	 * Evaluates the chosen result as primitive.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	@Override
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		BinaryOperatorExpression leftBinaryExp = (BinaryOperatorExpression) leftOperandExpression;
+		return leftBinaryExp.getLeftOperandExpression().evaluateBoolean() ? leftBinaryExp.getRightOperandExpression()
+				.evaluateLong() : getRightOperandExpression().evaluateLong();
+	}
+
+	/**
+	 * Evaluates the chosen result as primitive.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	@Override
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		BinaryOperatorExpression leftBinaryExp = (BinaryOperatorExpression) leftOperandExpression;
+		return leftBinaryExp.getLeftOperandExpression().evaluateBoolean() ? leftBinaryExp.getRightOperandExpression()
+				.evaluateDouble() : getRightOperandExpression().evaluateDouble();
+	}
+
+	/**
+	 * Evaluates the chosen result as primitive.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateBoolean()
+	 */
+	@Override
+	public boolean evaluateBoolean() throws ExpressionEngineException
+	{
+		BinaryOperatorExpression leftBinaryExp = (BinaryOperatorExpression) leftOperandExpression;
+		return leftBinaryExp.getLeftOperandExpression().evaluateBoolean() ? leftBinaryExp.getRightOperandExpression()
+				.evaluateBoolean() : getRightOperandExpression().evaluateBoolean();
+	}
+
 	protected void validate( ExpressionContext expressionContext ) throws ExpressionEngineException
 	{
 		// can call super validate later when we shall implement the getReturnType method properly
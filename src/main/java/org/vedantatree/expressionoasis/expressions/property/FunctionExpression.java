@@ -26,16 +26,22 @@
  */
 package org.vedantatree.expressionoasis.expressions.property;
 
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
 import org.vedantatree.expressionoasis.ExpressionContext;
 import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.exceptions.NullValueException;
+import org.vedantatree.expressionoasis.expressions.EvaluationFrame;
 import org.vedantatree.expressionoasis.expressions.Expression;
 import org.vedantatree.expressionoasis.expressions.UnaryOperatorExpression;
 import org.vedantatree.expressionoasis.expressions.arithmatic.ParanthesisExpression;
+import org.vedantatree.expressionoasis.extensions.DefaultFunctionProvider;
 import org.vedantatree.expressionoasis.extensions.FunctionProvider;
+import org.vedantatree.expressionoasis.extensions.LazyFunctionProvider;
 import org.vedantatree.expressionoasis.types.MethodKey;
 import org.vedantatree.expressionoasis.types.Type;
 import org.vedantatree.expressionoasis.types.ValueObject;
@@ -52,6 +58,44 @@ import org.vedantatree.expressionoasis.types.ValueObject;
  * 
  * @author Kris Marwood
  * @version 1.1
+ * 
+ *          Validation reads only the types of arguments, and does not evaluate these. So expressions can be validated
+ *          before their variables have values.
+ * 
+ *          Added check of determinism of function, used to evaluate the calls with constant arguments at compile time.
+ *          Added accessor of function name.
+ * 
+ * @author Mohit Gupta
+ * @version 1.2
+ * @since 3.3
+ * 
+ *          Types of arguments are found once on validation, and return type of a validated function is asked from
+ *          its provider once and kept.
+ * 
+ * @author Mohit Gupta
+ * @version 1.3
+ * @since 3.3
+ * 
+ *          Arguments are evaluated into the buffers of evaluation frame of current thread, rather than a new list and
+ *          array for each call. Method of a function of DefaultFunctionProvider is resolved once on validation and
+ *          invoked directly, and primitive evaluation does not wrap its result.
+ * 
+ * @author Mohit Gupta
+ * @version 1.4
+ * @since 3.3
+ * 
+ *          Lazy functions of a {@link LazyFunctionProvider} are given the expressions of their arguments, rather than
+ *          the values, so arguments are evaluated only if function needs these.
+ * 
+ * @author Mohit Gupta
+ * @version 1.5
+ * @since 3.3
+ * 
+ *          Exposed the resolved method and the expressions of arguments, for compiling the function to a direct call.
+ * 
+ * @author Mohit Gupta
+ * @version 1.6
+ * @since 3.3
  */
 public class FunctionExpression extends UnaryOperatorExpression
 {
@@ -66,18 +110,162 @@ public class FunctionExpression extends UnaryOperatorExpression
 	 */
 	private FunctionProvider	functionProvider;
 
+	/**
+	 * Types of arguments found on validation, <code>null</code> if function is not validated
+	 */
+	private Type[]				parameterTypes;
+
+	/**
+	 * Return type of validated function, <code>null</code> if it is not asked from provider yet
+	 */
+	private Type				returnType;
+
+	/**
+	 * Method of function resolved on validation, if function is provided by {@link DefaultFunctionProvider}
+	 */
+	private Method				method;
+
+	/**
+	 * Specifies whether function takes its arguments lazily, as found on validation
+	 */
+	private boolean				lazy;
+
 	/**
 	 * @see org.vedantatree.expressionoasis.expressions.Expression#getValue(java.lang.Object)
 	 */
 	public ValueObject getValue() throws ExpressionEngineException
 	{
-		List<ValueObject> values = new ArrayList<ValueObject>();
-		ParanthesisExpression argsExpression = (ParanthesisExpression) getOperandExpression();
-		populateTypesAndValues( argsExpression.getOperandExpression(), null, values );
+		if( lazy )
+		{
+			return getLazyValue();
+		}
+		if( method != null )
+		{
+			return new ValueObject( invokeMethod(), getReturnType() );
+		}
+
+		Expression arguments = getArguments();
+		EvaluationFrame frame = EvaluationFrame.get();
+		ValueObject[] parameters = frame.acquireArgumentValues( parameterTypes != null ? parameterTypes.length
+				: countArguments( arguments ) );
+		try
+		{
+			populateValues( arguments, parameters, 0, false );
+			return functionProvider.getFunctionValue( functionName, parameters );
+		}
+		finally
+		{
+			frame.releaseArgumentValues( parameters );
+		}
+	}
+
+	/**
+	 * Invokes the method of function and unboxes the result, without wrapping it in a value object.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateLong()
+	 */
+	@Override
+	public long evaluateLong() throws ExpressionEngineException
+	{
+		if( method == null || lazy )
+		{
+			return super.evaluateLong();
+		}
+		Object result = invokeMethod();
+		if( result == null )
+		{
+			throw NullValueException.INSTANCE;
+		}
+		return ( (Number) result ).longValue();
+	}
+
+	/**
+	 * Invokes the method of function and unboxes the result, without wrapping it in a value object.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateDouble()
+	 */
+	@Override
+	public double evaluateDouble() throws ExpressionEngineException
+	{
+		if( method == null || lazy )
+		{
+			return super.evaluateDouble();
+		}
+		Object result = invokeMethod();
+		if( result == null )
+		{
+			throw NullValueException.INSTANCE;
+		}
+		return ( (Number) result ).doubleValue();
+	}
+
+	/**
+	 * Invokes the method of function and unboxes the result, without wrapping it in a value object.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateBoolean()
+	 */
+	@Override
+	public boolean evaluateBoolean() throws ExpressionEngineException
+	{
+		if( method == null || lazy )
+		{
+			return super.evaluateBoolean();
+		}
+		Object result = invokeMethod();
+		if( result == null )
+		{
+			throw NullValueException.INSTANCE;
+		}
+		return ( (Boolean) result ).booleanValue();
+	}
 
-		ValueObject[] parameters = (ValueObject[]) values.toArray( new ValueObject[values.size()] );
+	/**
+	 * Returns the value of lazy function, giving the expressions of arguments to its provider
+	 */
+	private ValueObject getLazyValue() throws ExpressionEngineException
+	{
+		EvaluationFrame frame = EvaluationFrame.get();
+		Expression[] arguments = frame.acquireArgumentExpressions( parameterTypes.length );
+		try
+		{
+			populateExpressions( getArguments(), arguments, 0 );
+			if( method != null )
+			{
+				return ( (DefaultFunctionProvider) functionProvider ).getFunctionValue( method, arguments );
+			}
+			return ( (LazyFunctionProvider) functionProvider ).getFunctionValue( functionName, parameterTypes,
+					arguments );
+		}
+		finally
+		{
+			frame.releaseArgumentExpressions( arguments );
+		}
+	}
 
-		return functionProvider.getFunctionValue( functionName, parameters );
+	/**
+	 * Invokes the method of function resolved on validation, with the objects of arguments
+	 */
+	private Object invokeMethod() throws ExpressionEngineException
+	{
+		EvaluationFrame frame = EvaluationFrame.get();
+		Object[] arguments = frame.acquireArgumentObjects( parameterTypes.length );
+		try
+		{
+			populateValues( getArguments(), arguments, 0, true );
+			return ( (DefaultFunctionProvider) functionProvider ).invokeFunction( method, arguments );
+		}
+		finally
+		{
+			frame.releaseArgumentObjects( arguments );
+		}
+	}
+
+	/**
+	 * Returns the arguments expression, <code>null</code> if function has no arguments
+	 */
+	private Expression getArguments()
+	{
+		return ( (ParanthesisExpression) getOperandExpression() ).getOperandExpression();
 	}
 
 	/**
@@ -86,13 +274,31 @@ public class FunctionExpression extends UnaryOperatorExpression
 	@Override
 	public Type getReturnType() throws ExpressionEngineException
 	{
-		List<Type> types = new ArrayList<Type>();
-		ParanthesisExpression argsExpression = (ParanthesisExpression) getOperandExpression();
-		populateTypesAndValues( argsExpression.getOperandExpression(), types, null );
+		Type type = returnType;
+		if( type == null )
+		{
+			type = functionProvider.getFunctionType( functionName, getParameterTypes() );
+			if( isValidated() )
+			{
+				returnType = type;
+			}
+		}
+		return type;
+	}
 
-		Type[] parameterTypes = (Type[]) types.toArray( new Type[types.size()] );
+	/**
+	 * Returns the types of arguments, which are found again unless function is validated
+	 */
+	private Type[] getParameterTypes() throws ExpressionEngineException
+	{
+		if( parameterTypes != null )
+		{
+			return parameterTypes;
+		}
 
-		return functionProvider.getFunctionType( functionName, parameterTypes );
+		List<Type> types = new ArrayList<Type>();
+		populateTypes( getArguments(), types );
+		return (Type[]) types.toArray( new Type[types.size()] );
 	}
 
 	/**
@@ -104,9 +310,75 @@ public class FunctionExpression extends UnaryOperatorExpression
 			throws ExpressionEngineException
 	{
 		functionName = (String) expressionContext.getContextProperty( "TOKEN" );
+		parameterTypes = null;
+		returnType = null;
+		method = null;
+		lazy = false;
 		super.initialize( expressionContext, parameters, validate );
 	}
 
+	/**
+	 * Returns the name of function
+	 * 
+	 * @return the name of function
+	 */
+	public String getFunctionName()
+	{
+		return functionName;
+	}
+
+	/**
+	 * Returns the method of function resolved on validation. It is resolved only for the functions of
+	 * {@link DefaultFunctionProvider} whose argument types are known.
+	 * 
+	 * @return the method of function, <code>null</code> if it is not resolved
+	 */
+	public Method getMethod()
+	{
+		return method;
+	}
+
+	/**
+	 * Checks whether function takes the expressions of its arguments rather than the values, as found on validation
+	 * 
+	 * @return <code>true</code> if function is lazy
+	 */
+	public boolean isLazy()
+	{
+		return lazy;
+	}
+
+	/**
+	 * Returns the expressions of arguments, in the order of arguments
+	 * 
+	 * @return the expressions of arguments, empty if function has no arguments
+	 */
+	public Expression[] getArgumentExpressions()
+	{
+		Expression arguments = getArguments();
+		Expression[] expressions = new Expression[countArguments( arguments )];
+		populateExpressions( arguments, expressions, 0 );
+		return expressions;
+	}
+
+	/**
+	 * Checks whether the function always returns same value for same arguments. Only the functions of
+	 * {@link DefaultFunctionProvider} marked as deterministic are known to be such.
+	 * 
+	 * @return <code>true</code> if function is deterministic, <code>false</code> if it is not or function provider is
+	 *         not resolved by validation
+	 * @throws ExpressionEngineException if types of arguments can not be found
+	 */
+	public boolean isDeterministic() throws ExpressionEngineException
+	{
+		if( !( functionProvider instanceof DefaultFunctionProvider ) )
+		{
+			return false;
+		}
+
+		return ( (DefaultFunctionProvider) functionProvider ).isDeterministic( functionName, getParameterTypes() );
+	}
+
 	/**
 	 * @see org.vedantatree.expressionoasis.expressions.UnaryOperatorExpression#validate()
 	 */
@@ -114,12 +386,7 @@ public class FunctionExpression extends UnaryOperatorExpression
 	protected void validate( ExpressionContext expressionContext ) throws ExpressionEngineException
 	{
 		// Initializes the function provider.
-		ParanthesisExpression argsExpression = (ParanthesisExpression) getOperandExpression();
-		List<Type> types = new ArrayList<Type>();
-		List values = new ArrayList();
-		populateTypesAndValues( argsExpression.getOperandExpression(), types, values );
-
-		Type[] parameterTypes = (Type[]) types.toArray( new Type[types.size()] );
+		Type[] parameterTypes = getParameterTypes();
 
 		for( Iterator functionProviders = expressionContext.getFunctionProviders().iterator(); functionProviders
 				.hasNext(); )
@@ -139,24 +406,32 @@ public class FunctionExpression extends UnaryOperatorExpression
 			throw new ExpressionEngineException( "No Function Provider exists for function: ["
 					+ MethodKey.generateKey( functionName, parameterTypes ) + "]" );
 		}
+		this.parameterTypes = parameterTypes;
+
+		// types of arguments are fixed for a validated tree, unless these are known only on evaluation
+		if( functionProvider instanceof DefaultFunctionProvider
+				&& !Arrays.asList( parameterTypes ).contains( Type.ANY_TYPE ) )
+		{
+			method = ( (DefaultFunctionProvider) functionProvider ).getFunction( functionName, parameterTypes );
+		}
+		lazy = functionProvider instanceof LazyFunctionProvider
+				&& ( (LazyFunctionProvider) functionProvider ).isLazyFunction( functionName, parameterTypes );
 	}
 
 	/**
-	 * Populates the types and values of argument/paranthesis
+	 * Populates the types of argument/paranthesis
 	 * 
 	 * @param expression
 	 * @param types
-	 * @param values
 	 * @throws ExpressionEngineException
 	 */
-	private void populateTypesAndValues( Expression expression, List types, List values )
-			throws ExpressionEngineException
+	private void populateTypes( Expression expression, List types ) throws ExpressionEngineException
 	{
 		if( expression instanceof ArgumentExpression )
 		{
 			ArgumentExpression argExp = (ArgumentExpression) expression;
-			populateTypesAndValues( argExp.getLeftOperandExpression(), types, values );
-			populateTypesAndValues( argExp.getRightOperandExpression(), types, values );
+			populateTypes( argExp.getLeftOperandExpression(), types );
+			populateTypes( argExp.getRightOperandExpression(), types );
 		}
 		/*
 		 * Argument express can be null.
@@ -165,15 +440,68 @@ public class FunctionExpression extends UnaryOperatorExpression
 		 */
 		else if( expression != null )
 		{
-			if( types != null )
-			{
-				types.add( expression.getReturnType() );
-			}
+			types.add( expression.getReturnType() );
+		}
+	}
 
-			if( values != null )
-			{
-				values.add( expression.getValue() );
-			}
+	/**
+	 * Populates the values of argument/paranthesis into given buffer
+	 * 
+	 * @param expression
+	 * @param values buffer of values, or of objects of values if unwrapped
+	 * @param index index of buffer for the first value
+	 * @param unwrap whether to populate the objects of values rather than value objects
+	 * @return index of buffer after the populated values
+	 * @throws ExpressionEngineException
+	 */
+	private static int populateValues( Expression expression, Object[] values, int index, boolean unwrap )
+			throws ExpressionEngineException
+	{
+		if( expression instanceof ArgumentExpression )
+		{
+			ArgumentExpression argExp = (ArgumentExpression) expression;
+			index = populateValues( argExp.getLeftOperandExpression(), values, index, unwrap );
+			return populateValues( argExp.getRightOperandExpression(), values, index, unwrap );
+		}
+		if( expression != null )
+		{
+			ValueObject value = expression.getValue();
+			values[index++] = unwrap ? value.getValue() : value;
+		}
+		return index;
+	}
+
+	/**
+	 * Populates the expressions of argument/paranthesis into given buffer, without evaluating these
+	 * 
+	 * @return index of buffer after the populated expressions
+	 */
+	private static int populateExpressions( Expression expression, Expression[] expressions, int index )
+	{
+		if( expression instanceof ArgumentExpression )
+		{
+			ArgumentExpression argExp = (ArgumentExpression) expression;
+			index = populateExpressions( argExp.getLeftOperandExpression(), expressions, index );
+			return populateExpressions( argExp.getRightOperandExpression(), expressions, index );
+		}
+		if( expression != null )
+		{
+			expressions[index++] = expression;
+		}
+		return index;
+	}
+
+	/**
+	 * Counts the arguments of argument/paranthesis
+	 */
+	private static int countArguments( Expression expression )
+	{
+		if( expression instanceof ArgumentExpression )
+		{
+			ArgumentExpression argExp = (ArgumentExpression) expression;
+			return countArguments( argExp.getLeftOperandExpression() )
+					+ countArguments( argExp.getRightOperandExpression() );
 		}
+		return expression == null ? 0 : 1;
 	}
 }
\ No newline at end of file
@@ -131,4 +131,27 @@ public class EQExpression extends BinaryOperatorExpression
 
 		return result;
 	}
+
+	/**
+	 * Compares the primitive values of numeric or boolean operands.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateBoolean()
+	 */
+	public boolean evaluateBoolean() throws ExpressionEngineException
+	{
+		Type operandType = getOperandType();
+		if( operandType == Type.LONG )
+		{
+			return leftOperandExpression.evaluateLong() == rightOperandExpression.evaluateLong();
+		}
+		if( operandType == Type.DOUBLE )
+		{
+			return leftOperandExpression.evaluateDouble() == rightOperandExpression.evaluateDouble();
+		}
+		if( operandType == Type.BOOLEAN )
+		{
+			return leftOperandExpression.evaluateBoolean() == rightOperandExpression.evaluateBoolean();
+		}
+		return super.evaluateBoolean();
+	}
 }
\ No newline at end of file
@@ -27,6 +27,7 @@
 package org.vedantatree.expressionoasis.expressions.relational;
 
 import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.expressions.BinaryOperatorExpression;
 import org.vedantatree.expressionoasis.types.Type;
 import org.vedantatree.expressionoasis.types.ValueObject;
 
@@ -42,6 +43,12 @@ import org.vedantatree.expressionoasis.types.ValueObject;
  * 
  * @author Kris Marwood
  * @version 1.1
+ * 
+ *          Added the variants specialized for numeric operands, which are chosen by optimizer once the types are inferred.
+ * 
+ * @author Mohit Gupta
+ * @version 1.2
+ * @since 3.3
  */
 public class GTExpression extends LTEExpression
 {
@@ -88,4 +95,87 @@ public class GTExpression extends LTEExpression
 
 		return result;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Returns the negation of less than equal to, like getValue.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateBoolean()
+	 */
+	@Override
+	public boolean evaluateBoolean() throws ExpressionEngineException
+	{
+		Type operandType = getOperandType();
+		if( operandType == Type.LONG || operandType == Type.DOUBLE )
+		{
+			return !super.evaluateBoolean();
+		}
+		return getValue().booleanValue();
+	}
+
+	/**
+	 * Specializes the comparison of numbers, if no operand is of OBJECT type.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.BinaryOperatorExpression#specialize()
+	 */
+	@Override
+	protected BinaryOperatorExpression specialize() throws ExpressionEngineException
+	{
+		Type operandType = getOperandType();
+		if( operandType == Type.LONG )
+		{
+			return specializeAs( new LongGTExpression() );
+		}
+		if( operandType == Type.DOUBLE )
+		{
+			return specializeAs( new DoubleGTExpression() );
+		}
+		return this;
+	}
+
+	/**
+	 * Greater than comparison of integral operands
+	 */
+	private static final class LongGTExpression extends GTExpression
+	{
+
+		@Override
+		public ValueObject getValue() throws ExpressionEngineException
+		{
+			Object leftValue = leftOperandExpression.getValue().getValue();
+			Object rightValue = rightOperandExpression.getValue().getValue();
+			Boolean result = leftValue == null || rightValue == null ? null : Boolean
+					.valueOf( ( (Number) leftValue ).longValue() > ( (Number) rightValue ).longValue() );
+			return new ValueObject( result, Type.BOOLEAN );
+		}
+
+		@Override
+		public boolean evaluateBoolean() throws ExpressionEngineException
+		{
+			return leftOperandExpression.evaluateLong() > rightOperandExpression.evaluateLong();
+		}
+	}
+
+	/**
+	 * Greater than comparison of numeric operands, one of which at least is decimal. It is the negation of inverse
+	 * comparison, like the generic operator, so NaN compares same.
+	 */
+	private static final class DoubleGTExpression extends GTExpression
+	{
+
+		@Override
+		public ValueObject getValue() throws ExpressionEngineException
+		{
+			Object leftValue = leftOperandExpression.getValue().getValue();
+			Object rightValue = rightOperandExpression.getValue().getValue();
+			Boolean result = leftValue == null || rightValue == null ? null : Boolean
+					.valueOf( !( ( (Number) leftValue ).doubleValue() <= ( (Number) rightValue ).doubleValue() ) );
+			return new ValueObject( result, Type.BOOLEAN );
+		}
+
+		@Override
+		public boolean evaluateBoolean() throws ExpressionEngineException
+		{
+			return !( leftOperandExpression.evaluateDouble() <= rightOperandExpression.evaluateDouble() );
+		}
+	}
+}
@@ -43,6 +43,12 @@ import org.vedantatree.expressionoasis.types.ValueObject;
  * 
  * @author Kris Marwood
  * @version 1.1
+ * 
+ *          Added the variants specialized for numeric operands, which are chosen by optimizer once the types are inferred.
+ * 
+ * @author Mohit Gupta
+ * @version 1.2
+ * @since 3.3
  */
 public class LTEExpression extends BinaryOperatorExpression
 {
@@ -119,4 +125,89 @@ public class LTEExpression extends BinaryOperatorExpression
 
 		return result;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Compares the primitive values of numeric operands.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateBoolean()
+	 */
+	public boolean evaluateBoolean() throws ExpressionEngineException
+	{
+		Type operandType = getOperandType();
+		if( operandType == Type.LONG )
+		{
+			return leftOperandExpression.evaluateLong() <= rightOperandExpression.evaluateLong();
+		}
+		if( operandType == Type.DOUBLE )
+		{
+			return leftOperandExpression.evaluateDouble() <= rightOperandExpression.evaluateDouble();
+		}
+		return super.evaluateBoolean();
+	}
+
+	/**
+	 * Specializes the comparison of numbers, if no operand is of OBJECT type.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.BinaryOperatorExpression#specialize()
+	 */
+	@Override
+	protected BinaryOperatorExpression specialize() throws ExpressionEngineException
+	{
+		Type operandType = getOperandType();
+		if( operandType == Type.LONG )
+		{
+			return specializeAs( new LongLTEExpression() );
+		}
+		if( operandType == Type.DOUBLE )
+		{
+			return specializeAs( new DoubleLTEExpression() );
+		}
+		return this;
+	}
+
+	/**
+	 * Less than equal to comparison of integral operands
+	 */
+	private static final class LongLTEExpression extends LTEExpression
+	{
+
+		@Override
+		public ValueObject getValue() throws ExpressionEngineException
+		{
+			Object leftValue = leftOperandExpression.getValue().getValue();
+			Object rightValue = rightOperandExpression.getValue().getValue();
+			Boolean result = leftValue == null || rightValue == null ? null : Boolean
+					.valueOf( ( (Number) leftValue ).longValue() <= ( (Number) rightValue ).longValue() );
+			return new ValueObject( result, Type.BOOLEAN );
+		}
+
+		@Override
+		public boolean evaluateBoolean() throws ExpressionEngineException
+		{
+			return leftOperandExpression.evaluateLong() <= rightOperandExpression.evaluateLong();
+		}
+	}
+
+	/**
+	 * Less than equal to comparison of numeric operands, one of which at least is decimal
+	 */
+	private static final class DoubleLTEExpression extends LTEExpression
+	{
+
+		@Override
+		public ValueObject getValue() throws ExpressionEngineException
+		{
+			Object leftValue = leftOperandExpression.getValue().getValue();
+			Object rightValue = rightOperandExpression.getValue().getValue();
+			Boolean result = leftValue == null || rightValue == null ? null : Boolean
+					.valueOf( ( (Number) leftValue ).doubleValue() <= ( (Number) rightValue ).doubleValue() );
+			return new ValueObject( result, Type.BOOLEAN );
+		}
+
+		@Override
+		public boolean evaluateBoolean() throws ExpressionEngineException
+		{
+			return leftOperandExpression.evaluateDouble() <= rightOperandExpression.evaluateDouble();
+		}
+	}
+}
@@ -74,4 +74,20 @@ public class NEExpression extends EQExpression
 
 		return new ValueObject( value.booleanValue() ? Boolean.FALSE : Boolean.TRUE, Type.BOOLEAN );
 	}
+
+	/**
+	 * Returns the negation of equality, like getValue.
+	 * 
+	 * @see org.vedantatree.expressionoasis.expressions.Expression#evaluateBoolean()
+	 */
+	@Override
+	public boolean evaluateBoolean() throws ExpressionEngineException
+	{
+		Type operandType = getOperandType();
+		if( operandType == Type.LONG || operandType == Type.DOUBLE || operandType == Type.BOOLEAN )
+		{
+			return !super.evaluateBoolean();
+		}
+		return getValue().booleanValue();
+	}
 }
\ No newline at end of file
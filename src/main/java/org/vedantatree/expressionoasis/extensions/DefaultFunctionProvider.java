@@ -38,6 +38,8 @@ import org.apache.commons.logging.LogFactory;
 import org.vedantatree.expressionoasis.ExpressionContext;
 import org.vedantatree.expressionoasis.ExpressionEngine;
 import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.expressions.EvaluationFrame;
+import org.vedantatree.expressionoasis.expressions.Expression;
 import org.vedantatree.expressionoasis.expressions.ExpressionFactory;
 import org.vedantatree.expressionoasis.grammar.Grammar;
 import org.vedantatree.expressionoasis.types.MethodKey;
@@ -62,8 +64,29 @@ import org.vedantatree.expressionoasis.types.ValueObject;
  * 
  * @author Kris Marwood
  * @version 1.1
+ * 
+ *          Functions can be marked {@link Deterministic}, so their calls with constant arguments are evaluated at
+ *          compile time.
+ * 
+ * @author Mohit Gupta
+ * @version 1.2
+ * @since 3.3
+ * 
+ *          Method of function can be resolved once and then invoked directly. Argument objects are passed through a
+ *          buffer of the evaluation frame of current thread, rather than a new array for each call.
+ * 
+ * @author Mohit Gupta
+ * @version 1.3
+ * @since 3.3
+ * 
+ *          Functions marked {@link Conditional}, like <code>iif</code>, are provided as lazy functions, which evaluate
+ *          only the argument chosen by their condition.
+ * 
+ * @author Mohit Gupta
+ * @version 1.4
+ * @since 3.3
  */
-public class DefaultFunctionProvider implements FunctionProvider
+public class DefaultFunctionProvider implements LazyFunctionProvider
 {
 
 	private static Log				LOGGER		= LogFactory.getLog( DefaultFunctionProvider.class );
@@ -162,30 +185,142 @@ public class DefaultFunctionProvider implements FunctionProvider
 			throw new ExpressionEngineException( "Function provider is not initialized by now." );
 		}
 		Method method = getMethod( functionName, parameters );
-		ValueObject value = null;
+		return method == null ? null : getFunctionValue( method, parameters );
+	}
 
-		if( method != null )
+	/**
+	 * Returns the method of function for given types of arguments. It can be resolved once, like on validation of a
+	 * function expression, and then used for each evaluation without finding the method again.
+	 * 
+	 * @param functionName name of the function
+	 * @param parameterTypes types of the arguments
+	 * @return the method of function, <code>null</code> if function is not supported for given types
+	 */
+	public Method getFunction( String functionName, Type[] parameterTypes )
+	{
+		return getMethod( functionName, parameterTypes );
+	}
+
+	/**
+	 * Returns the value of function given by its method
+	 * 
+	 * @param method the method of function, returned by {@link #getFunction(String, Type[])}
+	 * @param parameters values of the arguments
+	 * @return the value returned by function
+	 * @throws ExpressionEngineException if function fails
+	 */
+	public ValueObject getFunctionValue( Method method, ValueObject[] parameters ) throws ExpressionEngineException
+	{
+		int length = parameters == null ? 0 : parameters.length;
+		EvaluationFrame frame = EvaluationFrame.get();
+		Object[] arguments = frame.acquireArgumentObjects( length );
+		try
 		{
-			try
+			for( int i = 0; i < length; i++ )
 			{
-				int length = parameters == null ? 0 : parameters.length;
-				Object[] params = new Object[length];
+				arguments[i] = parameters[i].getValue();
+			}
+			return new ValueObject( invokeFunction( method, arguments ), Type.createType( method.getReturnType() ) );
+		}
+		finally
+		{
+			frame.releaseArgumentObjects( arguments );
+		}
+	}
 
-				for( int i = 0; i < params.length; i++ )
-				{
-					params[i] = parameters[i].getValue();
-				}
+	/**
+	 * Checks whether the function is marked {@link Conditional}, so the arguments not chosen by its condition are not
+	 * evaluated
+	 * 
+	 * @see org.vedantatree.expressionoasis.extensions.LazyFunctionProvider#isLazyFunction(java.lang.String,
+	 *      org.vedantatree.expressionoasis.types.Type[])
+	 */
+	public boolean isLazyFunction( String functionName, Type[] parameterTypes )
+	{
+		Method method = getMethod( functionName, parameterTypes );
+		int parameterCount = method == null ? 0 : method.getParameterTypes().length;
+		return parameterCount > 1 && parameterCount <= 3 && method.getAnnotation( Conditional.class ) != null;
+	}
 
-				Object result = method.invoke( functionProviderObject, params );
-				value = new ValueObject( result, Type.createType( method.getReturnType() ) );
-			}
-			catch( Exception ex )
-			{
-				throw new ExpressionEngineException( "Error occured while executing method.", ex );
-			}
+	/**
+	 * @see org.vedantatree.expressionoasis.extensions.LazyFunctionProvider#getFunctionValue(java.lang.String,
+	 *      org.vedantatree.expressionoasis.types.Type[], org.vedantatree.expressionoasis.expressions.Expression[])
+	 */
+	public ValueObject getFunctionValue( String functionName, Type[] parameterTypes, Expression[] arguments )
+			throws ExpressionEngineException
+	{
+		if( !isInitialized() )
+		{
+			throw new ExpressionEngineException( "Function provider is not initialized by now." );
 		}
+		Method method = getMethod( functionName, parameterTypes );
+		return method == null ? null : getFunctionValue( method, arguments );
+	}
 
-		return value;
+	/**
+	 * Returns the value of conditional function given by its method. Condition is evaluated first, and then only the
+	 * argument chosen by it, which is the value of function. Method itself is not invoked, as it would choose again.
+	 * 
+	 * @param method the method of a function marked {@link Conditional}, returned by
+	 *        {@link #getFunction(String, Type[])}
+	 * @param arguments expressions of the arguments
+	 * @return the value of chosen argument, with the return type of function
+	 * @throws ExpressionEngineException if an evaluated argument fails
+	 */
+	public ValueObject getFunctionValue( Method method, Expression[] arguments ) throws ExpressionEngineException
+	{
+		int chosen = Boolean.TRUE.equals( arguments[0].getValue().getValue() ) ? 1 : 2;
+		Object value = chosen < arguments.length ? arguments[chosen].getValue().getValue() : null;
+		return new ValueObject( value, Type.createType( method.getReturnType() ) );
+	}
+
+	/**
+	 * Invokes the method of function with given argument objects. It is used by primitive evaluation of function
+	 * expressions, which need not wrap the result in a value object.
+	 * 
+	 * @param method the method of function, returned by {@link #getFunction(String, Type[])}
+	 * @param arguments objects of the arguments, which are not kept by function provider
+	 * @return the object returned by function
+	 * @throws ExpressionEngineException if function fails
+	 */
+	public Object invokeFunction( Method method, Object[] arguments ) throws ExpressionEngineException
+	{
+		if( !isInitialized() )
+		{
+			throw new ExpressionEngineException( "Function provider is not initialized by now." );
+		}
+
+		try
+		{
+			return method.invoke( functionProviderObject, arguments );
+		}
+		catch( Exception ex )
+		{
+			throw new ExpressionEngineException( "Error occured while executing method.", ex );
+		}
+	}
+
+	/**
+	 * Checks whether the function is marked {@link Deterministic}, on its method or on its class
+	 * 
+	 * @param functionName name of the function
+	 * @param parameterTypes types of the arguments
+	 * @return <code>true</code> if function always returns same value for same arguments
+	 */
+	public boolean isDeterministic( String functionName, Type[] parameterTypes )
+	{
+		Method method = getMethod( functionName, parameterTypes );
+		if( method == null )
+		{
+			return false;
+		}
+
+		Deterministic deterministic = method.getAnnotation( Deterministic.class );
+		if( deterministic == null )
+		{
+			deterministic = method.getDeclaringClass().getAnnotation( Deterministic.class );
+		}
+		return deterministic != null && deterministic.value();
 	}
 
 	/**
@@ -49,6 +49,13 @@ import org.vedantatree.expressionoasis.utils.StringUtils;
  * 
  * @author Kris Marwood
  * @version 1.1
+ * 
+ *          Added type version, which changes when a variable is added or removed or its type changes. Changing only
+ *          the value of a variable keeps the version, so expression trees cached with the context remain valid.
+ * 
+ * @author Mohit Gupta
+ * @version 1.2
+ * @since 3.3
  */
 public class DefaultVariableProvider implements VariableProvider
 {
@@ -58,6 +65,11 @@ public class DefaultVariableProvider implements VariableProvider
 	 */
 	private Map<String, ValueObject>	variableValues	= new HashMap<String, ValueObject>();
 
+	/**
+	 * Version of variable names and types, incremented on every change of these
+	 */
+	private volatile int				typeVersion;
+
 	/**
 	 * It initialize the Function provider with expression context and also
 	 * gives a chance to pre-initialize any internal states for operations
@@ -81,7 +93,11 @@ public class DefaultVariableProvider implements VariableProvider
 			throw new IllegalArgumentException( "Passed parameters are not valid." );
 		}
 
-		variableValues.put( variableName, valueObject );
+		ValueObject previousValue = variableValues.put( variableName, valueObject );
+		if( previousValue == null || !equals( previousValue.getValueType(), valueObject.getValueType() ) )
+		{
+			typeVersion++;
+		}
 	}
 
 	/**
@@ -91,7 +107,10 @@ public class DefaultVariableProvider implements VariableProvider
 	 */
 	public void removeVariable( String variableName )
 	{
-		variableValues.remove( variableName );
+		if( variableValues.remove( variableName ) != null )
+		{
+			typeVersion++;
+		}
 	}
 
 	/**
@@ -100,6 +119,23 @@ public class DefaultVariableProvider implements VariableProvider
 	public void clear()
 	{
 		variableValues.clear();
+		typeVersion++;
+	}
+
+	/**
+	 * Returns the version of variable names and types of this provider. It changes when a variable is added or
+	 * removed, or the type of a variable changes. It does not change if only the value of a variable is changed.
+	 * 
+	 * @return the type version
+	 */
+	public int getTypeVersion()
+	{
+		return typeVersion;
+	}
+
+	private static boolean equals( Type first, Type second )
+	{
+		return first == null ? second == null : first.equals( second );
 	}
 
 	/**
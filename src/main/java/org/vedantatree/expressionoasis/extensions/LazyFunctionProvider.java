@@ -0,0 +1,73 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis.extensions;
+
+import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.expressions.Expression;
+import org.vedantatree.expressionoasis.types.Type;
+import org.vedantatree.expressionoasis.types.ValueObject;
+
+
+/**
+ * Function provider some of whose functions may not need the values of all of their arguments, like
+ * <code>iif(condition, whenTrue, whenFalse)</code> which needs only one of its branches. Arguments of such lazy
+ * functions are given to provider as expressions, and provider evaluates only the ones it needs. So costly arguments,
+ * like lookups guarded by a condition, are not evaluated unless used.
+ * 
+ * It is an opt-in contract. Functions which are not lazy get the values of their arguments by
+ * {@link FunctionProvider#getFunctionValue(String, ValueObject[])}, as those of other providers do.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public interface LazyFunctionProvider extends FunctionProvider
+{
+
+	/**
+	 * Checks whether the function takes its arguments lazily
+	 * 
+	 * @param functionName the name of the function
+	 * @param parameterTypes the types of the parameters
+	 * @return <code>true</code> if arguments of function are to be given as expressions
+	 * @throws ExpressionEngineException if anything goes wrong
+	 */
+	boolean isLazyFunction( String functionName, Type[] parameterTypes ) throws ExpressionEngineException;
+
+	/**
+	 * Gets the return value of lazy function, evaluating only the arguments it needs.
+	 * 
+	 * @param functionName the name of the function
+	 * @param parameterTypes the types of the parameters
+	 * @param arguments the expressions of arguments, to be evaluated by their getValue() if needed. Array is reused
+	 *        by engine, so it must not be kept by provider.
+	 * @return the return value of the function
+	 * @throws ExpressionEngineException if anything goes wrong
+	 */
+	ValueObject getFunctionValue( String functionName, Type[] parameterTypes, Expression[] arguments )
+			throws ExpressionEngineException;
+}
@@ -40,7 +40,14 @@ import org.vedantatree.expressionoasis.ExpressionContext;
  * 
  * @author Kris Marwood
  * @version 2.3
+ * 
+ *          Marked the functions {@link Deterministic}, except random.
+ * 
+ * @author Mohit Gupta
+ * @version 2.4
+ * @since 3.3
  */
+@Deterministic
 public class MathFunctions
 {
 
@@ -316,6 +323,7 @@ public class MathFunctions
 	 * @return a pseudorandom <code>double</code> greater than or equal to <code>0.0</code> and less than
 	 *         <code>1.0</code>.
 	 */
+	@Deterministic(false)
 	public static Double random()
 	{
 		return Math.random();
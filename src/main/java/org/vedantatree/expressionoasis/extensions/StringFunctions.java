@@ -34,7 +34,13 @@ import org.vedantatree.expressionoasis.ExpressionContext;
  * 
  * @author Mohit Gupta
  * 
+ *          Marked the functions {@link Deterministic}.
+ * 
+ * @author Mohit Gupta
+ * @version 1.1
+ * @since 3.3
  */
+@Deterministic
 public class StringFunctions
 {
 
@@ -27,6 +27,8 @@
 package org.vedantatree.expressionoasis.extensions.customfunctions;
 
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javassist.CannotCompileException;
 import javassist.ClassClassPath;
@@ -36,9 +38,15 @@ import javassist.CtConstructor;
 import javassist.CtMethod;
 import javassist.CtNewConstructor;
 import javassist.CtNewMethod;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.annotation.Annotation;
+import javassist.bytecode.annotation.BooleanMemberValue;
 
 import org.vedantatree.expressionoasis.ExpressionContext;
 import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.extensions.Conditional;
+import org.vedantatree.expressionoasis.extensions.Deterministic;
 
 
 /**
@@ -51,10 +59,24 @@ import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
  * 
  * @author Kris Marwood
  * @version 1.0
+ * 
+ *          Source of a method can start with the annotations {@link Deterministic} and {@link Conditional}, like
+ *          <code>@Conditional public Object iif( Boolean condition, Object whenTrue, Object whenFalse ) {...}</code>.
+ *          Javassist does not compile annotations, so these are added to the generated method by the factory.
+ * 
+ * @author Mohit Gupta
+ * @version 1.1
+ * @since 3.3
  */
 public class CustomFunctionsClassFactory
 {
 
+	/**
+	 * Pattern of an annotation leading the source of a method, with its optional boolean value
+	 */
+	private static final Pattern					ANNOTATION_PATTERN		= Pattern
+																				.compile( "\\s*@([\\w.]+)\\s*(?:\\((true|false)\\))?" );
+
 	/**
 	 * Hard coded class name for Dynamic Class, which will contain Dynamic Methods.
 	 * 
@@ -136,8 +158,7 @@ public class CustomFunctionsClassFactory
 			List<String> methodSources = sourceProvider.getFunctionSources();
 			for( String methodSource : methodSources )
 			{
-				CtMethod methodDef = CtNewMethod.make( methodSource, classDef );
-				classDef.addMethod( methodDef );
+				addMethod( classDef, methodSource );
 			}
 
 			// generate the bytecode
@@ -149,4 +170,54 @@ public class CustomFunctionsClassFactory
 		}
 		return customFunctionsClass;
 	}
+
+	/**
+	 * Adds the method made from given source to the class, with the annotations leading its source
+	 * 
+	 * @param classDef the class to add method to
+	 * @param methodSource the source code of method, which may start with annotations
+	 * @throws CannotCompileException if source can not be compiled
+	 */
+	private static void addMethod( CtClass classDef, String methodSource ) throws CannotCompileException
+	{
+		ConstPool constPool = classDef.getClassFile().getConstPool();
+		AnnotationsAttribute annotations = new AnnotationsAttribute( constPool, AnnotationsAttribute.visibleTag );
+
+		Matcher matcher = ANNOTATION_PATTERN.matcher( methodSource );
+		int start = 0;
+		while( matcher.region( start, methodSource.length() ).lookingAt() )
+		{
+			Annotation annotation = new Annotation( getAnnotationClass( matcher.group( 1 ) ).getName(), constPool );
+			if( matcher.group( 2 ) != null )
+			{
+				annotation.addMemberValue( "value", new BooleanMemberValue( Boolean.parseBoolean( matcher.group( 2 ) ),
+						constPool ) );
+			}
+			annotations.addAnnotation( annotation );
+			start = matcher.end();
+		}
+
+		CtMethod methodDef = CtNewMethod.make( methodSource.substring( start ), classDef );
+		if( annotations.numAnnotations() > 0 )
+		{
+			methodDef.getMethodInfo().addAttribute( annotations );
+		}
+		classDef.addMethod( methodDef );
+	}
+
+	/**
+	 * Returns the class of annotation supported on custom functions, by its simple or qualified name
+	 */
+	private static Class< ? > getAnnotationClass( String name )
+	{
+		if( name.equals( Deterministic.class.getSimpleName() ) || name.equals( Deterministic.class.getName() ) )
+		{
+			return Deterministic.class;
+		}
+		if( name.equals( Conditional.class.getSimpleName() ) || name.equals( Conditional.class.getName() ) )
+		{
+			return Conditional.class;
+		}
+		throw new IllegalArgumentException( "Annotation is not supported on custom functions: @" + name );
+	}
 }
@@ -0,0 +1,571 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis.grammar;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+
+/**
+ * Immutable view of the symbols of a grammar, i.e. operators, functions, delimiters and brackets, compiled for fast
+ * lookup by compiler.
+ * 
+ * Every symbol gets a dense int id, called its kind. Flags, precedences and opposite brackets of symbols are kept in
+ * primitive arrays indexed by kind. Kind of a token is resolved once, and is stamped on token. Hence Compiler does not
+ * look up the string sets of grammar for same token again and again. Tokens which are not symbols have kind
+ * {@link #OPERAND}.
+ * 
+ * Kinds are stable for a grammar. If a function is added to grammar, a new view is created by
+ * {@link #withFunction(String, int)}, which keeps the kinds of existing symbols. Tokens stamped by previous view are
+ * still valid with new view, except the operands which are resolved again as these may be the new function. Kind is
+ * stamped together with the view in one immutable object, so tokens shared by threads, like the cached RPN tokens, can
+ * be stamped by different views at the same time.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ * 
+ *          Added fingerprint of the view, which identifies the tokens and RPN of expressions stored by one version of
+ *          grammar, so these are not used with another version.
+ * 
+ * @author Mohit Gupta
+ * @version 1.1
+ * @since 3.3
+ */
+public final class CompiledGrammar
+{
+
+	/**
+	 * Kind of token which is not resolved yet
+	 */
+	public static final int			UNRESOLVED		= -2;
+
+	/**
+	 * Kind of token which is not a symbol of grammar
+	 */
+	public static final int			OPERAND			= -1;
+
+	private static final int		DELIMITER		= 1;
+
+	private static final int		BINARY_OPERATOR	= 2;
+
+	private static final int		UNARY_OPERATOR	= 4;
+
+	private static final int		FUNCTION		= 8;
+
+	private static final int		LEFT_BRACKET	= 16;
+
+	private static final int		RIGHT_BRACKET	= 32;
+
+	/**
+	 * Precedence of symbols for which it is not defined
+	 */
+	private static final int		NO_PRECEDENCE	= Integer.MIN_VALUE;
+
+	/**
+	 * Characters below this value are looked up in table of first characters of symbols
+	 */
+	private static final int		TABLE_SIZE		= 128;
+
+	/**
+	 * Object shared by all the views of same grammar, as these share the kinds
+	 */
+	private final Object			lineage;
+
+	/**
+	 * Symbol as key, and its kind as value
+	 */
+	private final Map<String, Integer>	kinds;
+
+	/**
+	 * Symbols indexed by kind
+	 */
+	private final String[]			symbols;
+
+	/**
+	 * Flags of symbols indexed by kind
+	 */
+	private final int[]				flags;
+
+	/**
+	 * Precedence of symbols as binary operator, indexed by kind
+	 */
+	private final int[]				binaryPrecedences;
+
+	/**
+	 * Precedence of symbols as unary operator or function, indexed by kind
+	 */
+	private final int[]				unaryPrecedences;
+
+	/**
+	 * Kind of opposite bracket, indexed by kind of bracket
+	 */
+	private final int[]				oppositeBrackets;
+
+	/**
+	 * Kind of symbol formed by a left bracket followed by its opposite bracket, like '()', indexed by kind of left
+	 * bracket. It is OPERAND if grammar does not have such symbol.
+	 */
+	private final int[]				bracketPairs;
+
+	/**
+	 * Table of first characters of symbols, indexed by character
+	 */
+	private final boolean[]			firstCharacters;
+
+	/**
+	 * Stamps of this view for each kind, indexed by kind + 1 so the stamp of operand is at 0
+	 */
+	private final KindStamp[]		stamps;
+
+	/**
+	 * Compiles the view of given grammar symbols. Any of the collections can be null.
+	 * 
+	 * @param delimiters delimiters of grammar
+	 * @param binaryOperators binary operators of grammar
+	 * @param unaryOperators unary operators of grammar
+	 * @param functions functions of grammar
+	 * @param brackets the bracket pairs of grammar, left bracket at index 0 and right bracket at index 1
+	 * @param binaryPrecedences precedence of binary operators
+	 * @param unaryPrecedences precedence of unary operators and functions
+	 */
+	public CompiledGrammar( Collection<String> delimiters, Collection<String> binaryOperators,
+			Collection<String> unaryOperators, Collection<String> functions, String[][] brackets,
+			Map<String, Integer> binaryPrecedences, Map<String, Integer> unaryPrecedences )
+	{
+		// symbols are sorted, so kinds are same for the grammars loaded from same configuration
+		TreeSet<String> allSymbols = new TreeSet<String>();
+		addAll( allSymbols, delimiters );
+		addAll( allSymbols, binaryOperators );
+		addAll( allSymbols, unaryOperators );
+		addAll( allSymbols, functions );
+		int bracketCount = brackets == null ? 0 : brackets.length;
+		for( int i = 0; i < bracketCount; i++ )
+		{
+			addSymbol( allSymbols, brackets[i][0] );
+			addSymbol( allSymbols, brackets[i][1] );
+		}
+
+		int size = allSymbols.size();
+		this.lineage = new Object();
+		this.kinds = new HashMap<String, Integer>( size * 2 );
+		this.symbols = allSymbols.toArray( new String[size] );
+		this.flags = new int[size];
+		this.binaryPrecedences = new int[size];
+		this.unaryPrecedences = new int[size];
+		this.oppositeBrackets = new int[size];
+		this.bracketPairs = new int[size];
+		this.firstCharacters = new boolean[TABLE_SIZE];
+
+		Arrays.fill( this.binaryPrecedences, NO_PRECEDENCE );
+		Arrays.fill( this.unaryPrecedences, NO_PRECEDENCE );
+		Arrays.fill( oppositeBrackets, OPERAND );
+		Arrays.fill( bracketPairs, OPERAND );
+
+		for( int kind = 0; kind < size; kind++ )
+		{
+			kinds.put( symbols[kind], Integer.valueOf( kind ) );
+			addFirstCharacter( symbols[kind] );
+		}
+		this.stamps = createStamps( size );
+
+		setFlag( delimiters, DELIMITER );
+		setFlag( binaryOperators, BINARY_OPERATOR );
+		setFlag( unaryOperators, UNARY_OPERATOR );
+		setFlag( functions, FUNCTION );
+		setPrecedences( binaryPrecedences, this.binaryPrecedences );
+		setPrecedences( unaryPrecedences, this.unaryPrecedences );
+
+		for( int i = 0; i < bracketCount; i++ )
+		{
+			int left = getKind( brackets[i][0] );
+			int right = getKind( brackets[i][1] );
+			if( left < 0 || right < 0 )
+			{
+				continue;
+			}
+
+			flags[left] |= LEFT_BRACKET;
+			flags[right] |= RIGHT_BRACKET;
+
+			// first pair of bracket decides its opposite bracket, as in grammar
+			if( oppositeBrackets[left] == OPERAND )
+			{
+				oppositeBrackets[left] = right;
+				bracketPairs[left] = getKind( brackets[i][0] + brackets[i][1] );
+			}
+			if( oppositeBrackets[right] == OPERAND )
+			{
+				oppositeBrackets[right] = left;
+			}
+		}
+	}
+
+	/**
+	 * Creates the view with a new function, keeping the kinds of existing symbols
+	 * 
+	 * @param source the view to extend
+	 * @param function the function name
+	 * @param precedence the precedence of function
+	 */
+	private CompiledGrammar( CompiledGrammar source, String function, int precedence )
+	{
+		Integer existingKind = source.kinds.get( function );
+		int size = existingKind == null ? source.symbols.length + 1 : source.symbols.length;
+		int kind = existingKind == null ? size - 1 : existingKind.intValue();
+
+		this.lineage = source.lineage;
+		this.kinds = new HashMap<String, Integer>( source.kinds );
+		this.symbols = Arrays.copyOf( source.symbols, size );
+		this.flags = Arrays.copyOf( source.flags, size );
+		this.binaryPrecedences = Arrays.copyOf( source.binaryPrecedences, size );
+		this.unaryPrecedences = Arrays.copyOf( source.unaryPrecedences, size );
+		this.oppositeBrackets = Arrays.copyOf( source.oppositeBrackets, size );
+		this.bracketPairs = Arrays.copyOf( source.bracketPairs, size );
+		this.firstCharacters = source.firstCharacters.clone();
+
+		if( existingKind == null )
+		{
+			kinds.put( function, Integer.valueOf( kind ) );
+			symbols[kind] = function;
+			binaryPrecedences[kind] = NO_PRECEDENCE;
+			oppositeBrackets[kind] = OPERAND;
+			bracketPairs[kind] = OPERAND;
+			addFirstCharacter( function );
+		}
+		flags[kind] |= FUNCTION;
+		unaryPrecedences[kind] = precedence;
+		this.stamps = createStamps( size );
+	}
+
+	/**
+	 * Creates the stamps of this view for all kinds
+	 * 
+	 * @param size number of symbols
+	 * @return the stamps indexed by kind + 1
+	 */
+	private KindStamp[] createStamps( int size )
+	{
+		KindStamp[] kindStamps = new KindStamp[size + 1];
+		for( int i = 0; i <= size; i++ )
+		{
+			kindStamps[i] = new KindStamp( this, i - 1 );
+		}
+		return kindStamps;
+	}
+
+	/**
+	 * Returns the view of grammar with given function added
+	 * 
+	 * @param function the function name
+	 * @param precedence the precedence of function
+	 * @return the new view, kinds of existing symbols are same in it
+	 */
+	public CompiledGrammar withFunction( String function, int precedence )
+	{
+		return new CompiledGrammar( this, function, precedence );
+	}
+
+	/**
+	 * Returns the kind of token, and stamps it on token if not already stamped. Tokens which are created over
+	 * expression are checked by their first character before creating their string value.
+	 * 
+	 * @param token the token
+	 * @return the kind of symbol, or {@link #OPERAND} if token is not a symbol of grammar
+	 */
+	public int getKind( ExpressionToken token )
+	{
+		KindStamp stamp = token.getKindStamp();
+		if( stamp != null )
+		{
+			CompiledGrammar stampedBy = stamp.grammar;
+			// operands are resolved again by a view with more or less symbols, as these may be the new functions
+			if( stampedBy == this
+					|| ( stampedBy.lineage == lineage && ( stamp.kind == OPERAND ? stampedBy.symbols.length == symbols.length
+							: stamp.kind < symbols.length ) ) )
+			{
+				return stamp.kind;
+			}
+		}
+
+		int kind;
+
+		if( token.isMaterialized() || token.length() == 0 )
+		{
+			kind = getKind( token.getValue() );
+		}
+		else
+		{
+			char character = token.charAt( 0 );
+			kind = character < TABLE_SIZE && !firstCharacters[character] ? OPERAND : getKind( token.getValue() );
+		}
+
+		token.setKindStamp( stamps[kind + 1] );
+		return kind;
+	}
+
+	/**
+	 * Returns the kind of symbol
+	 * 
+	 * @param symbol the symbol
+	 * @return the kind of symbol, or {@link #OPERAND} if it is not a symbol of grammar
+	 */
+	public int getKind( String symbol )
+	{
+		Integer kind = symbol == null ? null : kinds.get( symbol );
+		return kind == null ? OPERAND : kind.intValue();
+	}
+
+	/**
+	 * Returns the symbol of given kind
+	 * 
+	 * @param kind the kind of symbol
+	 * @return the symbol
+	 * @throws ArrayIndexOutOfBoundsException if kind is not of a symbol
+	 */
+	public String getSymbol( int kind )
+	{
+		return symbols[kind];
+	}
+
+	/**
+	 * Returns the number of symbols, kinds are from 0 to this number - 1
+	 * 
+	 * @return the number of symbols
+	 */
+	public int getSymbolCount()
+	{
+		return symbols.length;
+	}
+
+	/**
+	 * Returns the checksum of symbols with their flags and precedences. Views with same fingerprint tokenize and
+	 * restructure the expressions in same way. Symbols are taken in sorted order, not by kind, as the kinds of functions
+	 * added to view depend on the order in which these are registered.
+	 * 
+	 * @return the fingerprint of this view
+	 */
+	public long getFingerprint()
+	{
+		String[] sortedSymbols = symbols.clone();
+		Arrays.sort( sortedSymbols );
+
+		CRC32 crc = new CRC32();
+		for( String symbol : sortedSymbols )
+		{
+			int kind = kinds.get( symbol ).intValue();
+			update( crc, symbol.length() );
+			for( int i = 0; i < symbol.length(); i++ )
+			{
+				update( crc, symbol.charAt( i ) );
+			}
+			update( crc, flags[kind] );
+			update( crc, binaryPrecedences[kind] );
+			update( crc, unaryPrecedences[kind] );
+		}
+		return crc.getValue();
+	}
+
+	private static void update( CRC32 crc, int value )
+	{
+		crc.update( value >>> 24 );
+		crc.update( value >>> 16 );
+		crc.update( value >>> 8 );
+		crc.update( value );
+	}
+
+	public boolean isDelimiter( int kind )
+	{
+		return hasFlag( kind, DELIMITER );
+	}
+
+	public boolean isOperator( int kind )
+	{
+		return hasFlag( kind, BINARY_OPERATOR | UNARY_OPERATOR | FUNCTION );
+	}
+
+	public boolean isBinaryOperator( int kind )
+	{
+		return hasFlag( kind, BINARY_OPERATOR );
+	}
+
+	/**
+	 * Checks whether the symbol is an unary operator or a function, as in grammar
+	 * 
+	 * @param kind the kind of symbol
+	 * @return <code>true</code> if the symbol can be used as unary
+	 */
+	public boolean isUnary( int kind )
+	{
+		return hasFlag( kind, UNARY_OPERATOR | FUNCTION );
+	}
+
+	public boolean isFunction( int kind )
+	{
+		return hasFlag( kind, FUNCTION );
+	}
+
+	public boolean isLeftBracket( int kind )
+	{
+		return hasFlag( kind, LEFT_BRACKET );
+	}
+
+	public boolean isRightBracket( int kind )
+	{
+		return hasFlag( kind, RIGHT_BRACKET );
+	}
+
+	public boolean isBracket( int kind )
+	{
+		return hasFlag( kind, LEFT_BRACKET | RIGHT_BRACKET );
+	}
+
+	/**
+	 * Returns the kind of opposite bracket
+	 * 
+	 * @param kind the kind of bracket
+	 * @return the kind of opposite bracket, or {@link #OPERAND} if given symbol is not a bracket
+	 */
+	public int getOppositeBracket( int kind )
+	{
+		return kind < 0 ? OPERAND : oppositeBrackets[kind];
+	}
+
+	/**
+	 * Returns the kind of symbol formed by left bracket followed by its opposite bracket, like '()' or '[]'
+	 * 
+	 * @param kind the kind of left bracket
+	 * @return the kind of bracket pair, or {@link #OPERAND} if grammar does not have such symbol
+	 */
+	public int getBracketPair( int kind )
+	{
+		return kind < 0 ? OPERAND : bracketPairs[kind];
+	}
+
+	/**
+	 * Gets the precedence order of the operator
+	 * 
+	 * @param kind the kind of operator
+	 * @param isUnary true if the operator is used as unary
+	 * @return the precedence order of the operator
+	 * @throws IllegalArgumentException if precedence is not defined for the operator. Callers check the operator by
+	 *         {@link #isUnary(int)} or {@link #isBinaryOperator(int)} first, and report the expression as malformed.
+	 */
+	public int getPrecedenceOrder( int kind, boolean isUnary )
+	{
+		int precedence = kind < 0 ? NO_PRECEDENCE : isUnary ? unaryPrecedences[kind] : binaryPrecedences[kind];
+		if( precedence == NO_PRECEDENCE )
+		{
+			throw new IllegalArgumentException( "Precedence is not defined for operator. operator["
+					+ ( kind < 0 ? null : symbols[kind] ) + "] unary[" + isUnary + "]" );
+		}
+		return precedence;
+	}
+
+	private boolean hasFlag( int kind, int flag )
+	{
+		return kind >= 0 && ( flags[kind] & flag ) != 0;
+	}
+
+	private void setFlag( Collection<String> symbolsToFlag, int flag )
+	{
+		if( symbolsToFlag != null )
+		{
+			for( String symbol : symbolsToFlag )
+			{
+				int kind = getKind( symbol );
+				if( kind >= 0 )
+				{
+					flags[kind] |= flag;
+				}
+			}
+		}
+	}
+
+	private void setPrecedences( Map<String, Integer> precedences, int[] target )
+	{
+		if( precedences != null )
+		{
+			for( Map.Entry<String, Integer> entry : precedences.entrySet() )
+			{
+				int kind = getKind( entry.getKey() );
+				if( kind >= 0 && entry.getValue() != null )
+				{
+					target[kind] = entry.getValue().intValue();
+				}
+			}
+		}
+	}
+
+	private void addFirstCharacter( String symbol )
+	{
+		if( symbol.length() > 0 && symbol.charAt( 0 ) < TABLE_SIZE )
+		{
+			firstCharacters[symbol.charAt( 0 )] = true;
+		}
+	}
+
+	private static void addAll( Collection<String> target, Collection<String> source )
+	{
+		if( source != null )
+		{
+			for( String symbol : source )
+			{
+				addSymbol( target, symbol );
+			}
+		}
+	}
+
+	private static void addSymbol( Collection<String> target, String symbol )
+	{
+		if( symbol != null && symbol.length() > 0 )
+		{
+			target.add( symbol );
+		}
+	}
+
+	/**
+	 * Kind of a token with the view which resolved it. It is immutable, so it is stamped on token in one write.
+	 */
+	static final class KindStamp
+	{
+
+		private final CompiledGrammar	grammar;
+
+		private final int				kind;
+
+		private KindStamp( CompiledGrammar grammar, int kind )
+		{
+			this.grammar = grammar;
+			this.kind = kind;
+		}
+	}
+}
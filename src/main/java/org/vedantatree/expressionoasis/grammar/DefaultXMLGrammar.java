@@ -26,8 +26,17 @@
  */
 package org.vedantatree.expressionoasis.grammar;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -37,8 +46,10 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.vedantatree.expressionoasis.config.ConfigFactory;
+import org.vedantatree.expressionoasis.config.StartupSnapshot;
 import org.vedantatree.expressionoasis.grammar.rules.IProductionRule;
 import org.vedantatree.expressionoasis.grammar.rules.ProductionRule;
+import org.vedantatree.expressionoasis.grammar.rules.ProductionRuleAutomaton;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -72,6 +83,26 @@ import org.w3c.dom.NodeList;
  * @author Mohit Gupta
  * @version 1.2
  * @since 3.1
+ * 
+ *          Production rules are compiled in one automaton at load time, which is used to check the approachable and
+ *          allowed tokens. Rules which can not be compiled are still checked by their own implementation.
+ *          Delimiters are also built in a prefix tree at load time, for longest match of delimiters by lexer.
+ *          Symbols are compiled in an immutable view with int kinds, which is used to check the tokens. Kind of
+ *          token is stamped on it, so same token is not looked up in string sets again.
+ *          Functions are kept in an immutable snapshot with the unary precedences and compiled view, which is
+ *          replaced as a whole when a function is added. So threads parse with the grammar without locks while
+ *          function providers add the functions.
+ * 
+ * @author Mohit Gupta
+ * @version 1.3
+ * @since 3.3
+ * 
+ *          Grammar is written in startup snapshot after loading it from XML, with the tables of production rule
+ *          automaton. It is read from snapshot on later starts, while snapshot is current for grammar XML.
+ * 
+ * @author Mohit Gupta
+ * @version 1.4
+ * @since 3.3
  */
 public class DefaultXMLGrammar implements Grammar
 {
@@ -173,11 +204,32 @@ public class DefaultXMLGrammar implements Grammar
 	 */
 	public static final String		ALLOWED_PATTERN			= "allowedPattern";
 
+	/**
+	 * Precedence of the functions added using {@link #addFunction(String)}
+	 */
+	private static final int		FUNCTION_PRECEDENCE		= 13;
+
 	/**
 	 * Set of production rules of this grammar.
 	 */
 	private Set<IProductionRule>	productionRules;
 
+	/**
+	 * Automaton compiled from production rules
+	 */
+	private ProductionRuleAutomaton	productionRuleAutomaton;
+
+	/**
+	 * Prefix tree of delimiters
+	 */
+	private DelimiterTrie			delimiterTrie;
+
+	/**
+	 * Functions with the unary precedences and compiled view of symbols. It is replaced as a whole when a function is
+	 * added.
+	 */
+	private volatile FunctionSnapshot	functionSnapshot;
+
 	/**
 	 * Set of unary operators.
 	 */
@@ -188,11 +240,6 @@ public class DefaultXMLGrammar implements Grammar
 	 */
 	private Set<String>				binaryOperators;
 
-	/**
-	 * Set of of functions.
-	 */
-	private Set<String>				functions;
-
 	/**
 	 * Set of of delimiters.
 	 */
@@ -209,12 +256,6 @@ public class DefaultXMLGrammar implements Grammar
 	 */
 	private Map<String, Integer>	binaryPrecedences;
 
-	/**
-	 * Map container for precedence of unary operators, unary operator as key and
-	 * precedence as value.
-	 */
-	private Map<String, Integer>	unaryPrecedences;
-
 	/**
 	 * This is the indicator whether to ignore the blank or not during parsing.
 	 */
@@ -224,11 +265,45 @@ public class DefaultXMLGrammar implements Grammar
 	 * Constructs the grammar
 	 */
 	public DefaultXMLGrammar()
+	{
+		this( ConfigFactory.getStartupSnapshot() );
+	}
+
+	/**
+	 * Constructs the grammar using the startup snapshot. Grammar is read from snapshot if snapshot is current for
+	 * grammar XML, otherwise it is loaded from XML and is written in snapshot.
+	 * 
+	 * @param snapshot the startup snapshot, or <code>null</code> to load the grammar from XML only
+	 */
+	public DefaultXMLGrammar( StartupSnapshot snapshot )
 	{
 		String grammarPath = ConfigFactory.getConfig().getGrammarPath();
 		FILE_PATH = ( grammarPath != null && grammarPath.trim().length() > 0 ) ? grammarPath : "grammar.xml";
 
-		configure();
+		LOGGER.debug( "resourcePath[" + getClass().getClassLoader().getResource( "" ) );
+		InputStream stream = getClass().getClassLoader().getResourceAsStream( FILE_PATH );
+		if( snapshot == null )
+		{
+			configure( stream );
+			return;
+		}
+
+		byte[] source;
+		try
+		{
+			source = StartupSnapshot.readFully( stream );
+		}
+		catch( Exception ex )
+		{
+			throw new RuntimeException( "Error while loading the configurations.", ex );
+		}
+
+		ByteBuffer section = snapshot.getGrammarSection( FILE_PATH, source );
+		if( section == null || !readSnapshot( section ) )
+		{
+			configure( new ByteArrayInputStream( source ) );
+			snapshot.writeGrammarSection( FILE_PATH, source, writeSnapshot() );
+		}
 	}
 
 	/**
@@ -239,7 +314,8 @@ public class DefaultXMLGrammar implements Grammar
 	 */
 	public boolean isDelimiter( ExpressionToken token )
 	{
-		return isDelimiter( token.getValue() );
+		CompiledGrammar compiled = functionSnapshot.compiledGrammar;
+		return compiled.isDelimiter( compiled.getKind( token ) );
 	}
 
 	/**
@@ -270,16 +346,7 @@ public class DefaultXMLGrammar implements Grammar
 	 */
 	public boolean isApproachable( String token )
 	{
-		boolean result = false;
-		for( IProductionRule productionRule : productionRules )
-		{
-			if( productionRule.isApproaching( token ) )
-			{
-				result = true;
-				break;
-			}
-		}
-		return result;
+		return productionRuleAutomaton.isApproachable( token );
 	}
 
 	/**
@@ -294,16 +361,37 @@ public class DefaultXMLGrammar implements Grammar
 	 */
 	public boolean isAllowed( String token )
 	{
-		boolean result = false;
-		for( IProductionRule productionRule : productionRules )
-		{
-			if( productionRule.isAllowed( token ) )
-			{
-				result = true;
-				break;
-			}
-		}
-		return result;
+		return productionRuleAutomaton.isAllowed( token );
+	}
+
+	/**
+	 * Returns the automaton compiled from production rules of this grammar
+	 * 
+	 * @return the production rule automaton
+	 */
+	public ProductionRuleAutomaton getProductionRuleAutomaton()
+	{
+		return productionRuleAutomaton;
+	}
+
+	/**
+	 * Returns the prefix tree of delimiters of this grammar
+	 * 
+	 * @return the delimiter trie
+	 */
+	public DelimiterTrie getDelimiterTrie()
+	{
+		return delimiterTrie;
+	}
+
+	/**
+	 * Returns the compiled view of symbols of this grammar. A new view is returned after a function is added.
+	 * 
+	 * @return the compiled grammar
+	 */
+	public CompiledGrammar getCompiledGrammar()
+	{
+		return functionSnapshot.compiledGrammar;
 	}
 
 	/**
@@ -325,7 +413,8 @@ public class DefaultXMLGrammar implements Grammar
 	 */
 	public boolean isOperator( ExpressionToken token )
 	{
-		return isOperator( token.getValue() );
+		CompiledGrammar compiled = functionSnapshot.compiledGrammar;
+		return compiled.isOperator( compiled.getKind( token ) );
 	}
 
 	/**
@@ -347,7 +436,8 @@ public class DefaultXMLGrammar implements Grammar
 	 */
 	public boolean isBinaryOperator( ExpressionToken token )
 	{
-		return isBinaryOperator( token.getValue() );
+		CompiledGrammar compiled = functionSnapshot.compiledGrammar;
+		return compiled.isBinaryOperator( compiled.getKind( token ) );
 	}
 
 	/**
@@ -367,13 +457,28 @@ public class DefaultXMLGrammar implements Grammar
 	 * TODO: should probably look up function precedence from grammar config file
 	 * rather than hard coding it to 13.
 	 * 
+	 * Functions are copied with the new function and published at once, so threads which are parsing with this
+	 * grammar do not wait for it and never see a partly added function. Function providers add the same functions
+	 * for every context, so nothing is copied if function is already added.
+	 * 
 	 * @param name name of the function to add
 	 */
-	public void addFunction( String functionName )
+	public synchronized void addFunction( String functionName )
 	{
+		FunctionSnapshot snapshot = functionSnapshot;
+		if( snapshot.functions.contains( functionName )
+				&& Integer.valueOf( FUNCTION_PRECEDENCE ).equals( snapshot.unaryPrecedences.get( functionName ) ) )
+		{
+			return;
+		}
+
+		Set<String> functions = new HashSet<String>( snapshot.functions );
 		functions.add( functionName );
-		unaryPrecedences.put( functionName, 13 );
+		Map<String, Integer> unaryPrecedences = new HashMap<String, Integer>( snapshot.unaryPrecedences );
+		unaryPrecedences.put( functionName, FUNCTION_PRECEDENCE );
 
+		functionSnapshot = new FunctionSnapshot( functions, unaryPrecedences, snapshot.compiledGrammar.withFunction(
+				functionName, FUNCTION_PRECEDENCE ) );
 	}
 
 	/**
@@ -384,7 +489,8 @@ public class DefaultXMLGrammar implements Grammar
 	 */
 	public boolean isFunction( ExpressionToken token )
 	{
-		return isFunction( token.getValue() );
+		CompiledGrammar compiled = functionSnapshot.compiledGrammar;
+		return compiled.isFunction( compiled.getKind( token ) );
 	}
 
 	/**
@@ -395,7 +501,7 @@ public class DefaultXMLGrammar implements Grammar
 	 */
 	public boolean isFunction( String token )
 	{
-		return functions.contains( token );
+		return functionSnapshot.functions.contains( token );
 	}
 
 	/**
@@ -406,7 +512,8 @@ public class DefaultXMLGrammar implements Grammar
 	 */
 	public boolean isUnary( ExpressionToken operator )
 	{
-		return isUnary( operator.getValue() );
+		CompiledGrammar compiled = functionSnapshot.compiledGrammar;
+		return compiled.isUnary( compiled.getKind( operator ) );
 	}
 
 	/**
@@ -428,7 +535,8 @@ public class DefaultXMLGrammar implements Grammar
 	 */
 	public boolean isLeftBracket( ExpressionToken token )
 	{
-		return isLeftBracket( token.getValue() );
+		CompiledGrammar compiled = functionSnapshot.compiledGrammar;
+		return compiled.isLeftBracket( compiled.getKind( token ) );
 	}
 
 	/**
@@ -463,7 +571,8 @@ public class DefaultXMLGrammar implements Grammar
 	 */
 	public boolean isRightBracket( ExpressionToken token )
 	{
-		return isRightBracket( token.getValue() );
+		CompiledGrammar compiled = functionSnapshot.compiledGrammar;
+		return compiled.isRightBracket( compiled.getKind( token ) );
 	}
 
 	/**
@@ -498,7 +607,8 @@ public class DefaultXMLGrammar implements Grammar
 	 */
 	public boolean isBracket( ExpressionToken token )
 	{
-		return isBracket( token.getValue() );
+		CompiledGrammar compiled = functionSnapshot.compiledGrammar;
+		return compiled.isBracket( compiled.getKind( token ) );
 	}
 
 	/**
@@ -548,7 +658,8 @@ public class DefaultXMLGrammar implements Grammar
 	 */
 	public int getPrecedenceOrder( ExpressionToken operator, boolean isUnary )
 	{
-		return getPrecedenceOrder( operator.getValue(), isUnary );
+		CompiledGrammar compiled = functionSnapshot.compiledGrammar;
+		return compiled.getPrecedenceOrder( compiled.getKind( operator ), isUnary );
 	}
 
 	/**
@@ -561,14 +672,16 @@ public class DefaultXMLGrammar implements Grammar
 	 */
 	public int getPrecedenceOrder( String operator, boolean isUnary )
 	{
-		return isUnary ? ( (Integer) unaryPrecedences.get( operator ) ).intValue() : ( (Integer) binaryPrecedences
-				.get( operator ) ).intValue();
+		return isUnary ? ( (Integer) functionSnapshot.unaryPrecedences.get( operator ) ).intValue()
+				: ( (Integer) binaryPrecedences.get( operator ) ).intValue();
 	}
 
 	/**
 	 * Configures the grammar object with specified XML file
+	 * 
+	 * @param stream the stream of grammar XML
 	 */
-	private void configure()
+	private void configure( InputStream stream )
 	{
 
 		// ExpressionOasisConfig config = ConfigFactory.getConfig();
@@ -577,13 +690,15 @@ public class DefaultXMLGrammar implements Grammar
 
 		try
 		{
+			Set<String> functions = null;
+			Map<String, Integer> unaryPrecedences = new HashMap<String, Integer>();
+
 			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
 			factory.setValidating( true );
 
 			DocumentBuilder builder = factory.newDocumentBuilder();
 
-			LOGGER.debug( "resourcePath[" + getClass().getClassLoader().getResource( "" ) );
-			Document document = builder.parse( getClass().getClassLoader().getResourceAsStream( FILE_PATH ) );
+			Document document = builder.parse( stream );
 			Element root = document.getDocumentElement();
 
 			// Extracting production rules
@@ -609,12 +724,12 @@ public class DefaultXMLGrammar implements Grammar
 					else if( UNARY_OPERATORS.equals( nodeName ) )
 					{
 						buildUnaryOperators( (Element) childNode );
-						loadUnaryPrecedence( (Element) childNode );
+						loadUnaryPrecedence( (Element) childNode, unaryPrecedences );
 					}
 					else if( FUNCTIONS.equals( nodeName ) )
 					{
-						buildFunctions( (Element) childNode );
-						loadFunctionPrecedence( (Element) childNode );
+						functions = buildFunctions( (Element) childNode );
+						loadFunctionPrecedence( (Element) childNode, unaryPrecedences );
 					}
 					else if( DELIMITERS.equals( nodeName ) )
 					{
@@ -630,6 +745,13 @@ public class DefaultXMLGrammar implements Grammar
 					}
 				}
 			}
+
+			if( productionRules == null )
+			{
+				productionRules = new LinkedHashSet<IProductionRule>();
+			}
+			productionRuleAutomaton = ProductionRuleAutomaton.compile( productionRules );
+			compile( functions, unaryPrecedences );
 		}
 		catch( Exception ex )
 		{
@@ -637,6 +759,160 @@ public class DefaultXMLGrammar implements Grammar
 		}
 	}
 
+	/**
+	 * Builds the delimiter trie and compiled view of symbols, after loading the grammar
+	 * 
+	 * @param functions the functions of grammar, may be <code>null</code>
+	 * @param unaryPrecedences the precedences of unary operators and functions
+	 */
+	private void compile( Set<String> functions, Map<String, Integer> unaryPrecedences )
+	{
+		delimiterTrie = new DelimiterTrie( delimiters == null ? new HashSet<String>() : delimiters );
+		if( functions == null )
+		{
+			functions = new HashSet<String>();
+		}
+		functionSnapshot = new FunctionSnapshot( functions, unaryPrecedences, new CompiledGrammar( delimiters,
+				binaryOperators, unaryOperators, functions, brackets, binaryPrecedences, unaryPrecedences ) );
+	}
+
+	/**
+	 * Writes the grammar loaded from XML, to be stored in startup snapshot
+	 * 
+	 * @return the grammar section of snapshot
+	 */
+	private byte[] writeSnapshot()
+	{
+		try
+		{
+			FunctionSnapshot snapshot = functionSnapshot;
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream output = new DataOutputStream( bytes );
+
+			output.writeBoolean( ignoreBlank );
+			StartupSnapshot.writeStrings( output, delimiters );
+			StartupSnapshot.writeStrings( output, binaryOperators );
+			writePrecedences( output, binaryPrecedences );
+			StartupSnapshot.writeStrings( output, unaryOperators );
+			StartupSnapshot.writeStrings( output, snapshot.functions );
+			writePrecedences( output, snapshot.unaryPrecedences );
+
+			output.writeInt( brackets == null ? -1 : brackets.length );
+			for( int i = 0; brackets != null && i < brackets.length; i++ )
+			{
+				StartupSnapshot.writeString( output, brackets[i][0] );
+				StartupSnapshot.writeString( output, brackets[i][1] );
+			}
+
+			// rules loaded from XML are always regular expression based production rules
+			output.writeInt( productionRules.size() );
+			for( IProductionRule rule : productionRules )
+			{
+				ProductionRule productionRule = (ProductionRule) rule;
+				StartupSnapshot.writeString( output, productionRule.getName() );
+				StartupSnapshot.writeString( output, productionRule.getApproachablePattern() );
+				StartupSnapshot.writeString( output, productionRule.getAllowedPattern() );
+			}
+			productionRuleAutomaton.write( output, productionRules );
+
+			output.flush();
+			return bytes.toByteArray();
+		}
+		catch( IOException ex )
+		{
+			throw new RuntimeException( "Error while writing the grammar in snapshot.", ex );
+		}
+	}
+
+	/**
+	 * Reads the grammar from startup snapshot
+	 * 
+	 * @param section the grammar section of snapshot
+	 * @return <code>true</code> if grammar is read, <code>false</code> if snapshot could not be read
+	 */
+	private boolean readSnapshot( ByteBuffer section )
+	{
+		try
+		{
+			boolean snapshotIgnoreBlank = section.get() != 0;
+			Set<String> snapshotDelimiters = StartupSnapshot.readStrings( section );
+			Set<String> snapshotBinaryOperators = StartupSnapshot.readStrings( section );
+			Map<String, Integer> snapshotBinaryPrecedences = readPrecedences( section );
+			Set<String> snapshotUnaryOperators = StartupSnapshot.readStrings( section );
+			Set<String> functions = StartupSnapshot.readStrings( section );
+			Map<String, Integer> unaryPrecedences = readPrecedences( section );
+
+			int bracketCount = section.getInt();
+			String[][] snapshotBrackets = bracketCount < 0 ? null : new String[bracketCount][2];
+			for( int i = 0; i < bracketCount; i++ )
+			{
+				snapshotBrackets[i][0] = StartupSnapshot.readString( section );
+				snapshotBrackets[i][1] = StartupSnapshot.readString( section );
+			}
+
+			int ruleCount = section.getInt();
+			Set<IProductionRule> snapshotRules = new LinkedHashSet<IProductionRule>( ruleCount );
+			for( int i = 0; i < ruleCount; i++ )
+			{
+				snapshotRules.add( new ProductionRule( StartupSnapshot.readString( section ),
+						StartupSnapshot.readString( section ), StartupSnapshot.readString( section ) ) );
+			}
+			ProductionRuleAutomaton automaton = ProductionRuleAutomaton.read( section, snapshotRules );
+
+			ignoreBlank = snapshotIgnoreBlank;
+			delimiters = snapshotDelimiters;
+			binaryOperators = snapshotBinaryOperators;
+			binaryPrecedences = snapshotBinaryPrecedences;
+			unaryOperators = snapshotUnaryOperators;
+			brackets = snapshotBrackets;
+			productionRules = snapshotRules;
+			productionRuleAutomaton = automaton;
+			compile( functions, unaryPrecedences == null ? new HashMap<String, Integer>() : unaryPrecedences );
+			return true;
+		}
+		catch( RuntimeException ex )
+		{
+			LOGGER.warn( "Unable to read grammar from startup snapshot, it will be loaded from XML. path[" + FILE_PATH
+					+ "]", ex );
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the map of precedences, which may be <code>null</code>
+	 */
+	private static void writePrecedences( DataOutput output, Map<String, Integer> precedences ) throws IOException
+	{
+		output.writeInt( precedences == null ? -1 : precedences.size() );
+		if( precedences != null )
+		{
+			for( Map.Entry<String, Integer> precedence : precedences.entrySet() )
+			{
+				StartupSnapshot.writeString( output, precedence.getKey() );
+				output.writeInt( precedence.getValue() );
+			}
+		}
+	}
+
+	/**
+	 * Reads the map of precedences written by {@link #writePrecedences(DataOutput, Map)}
+	 */
+	private static Map<String, Integer> readPrecedences( ByteBuffer buffer )
+	{
+		int size = buffer.getInt();
+		if( size < 0 )
+		{
+			return null;
+		}
+
+		Map<String, Integer> precedences = new HashMap<String, Integer>( size );
+		for( int i = 0; i < size; i++ )
+		{
+			precedences.put( StartupSnapshot.readString( buffer ), buffer.getInt() );
+		}
+		return precedences;
+	}
+
 	/**
 	 * Loads the brackets from the XML configuration
 	 * 
@@ -675,14 +951,10 @@ public class DefaultXMLGrammar implements Grammar
 	 * Loads the precedence of the unary operators
 	 * 
 	 * @param childNode
+	 * @param unaryPrecedences the map of unary precedences to load in
 	 */
-	private void loadUnaryPrecedence( Element childNode )
+	private void loadUnaryPrecedence( Element childNode, Map<String, Integer> unaryPrecedences )
 	{
-		if( unaryPrecedences == null )
-		{
-			unaryPrecedences = new HashMap<String, Integer>();
-		}
-
 		loadPrecedence( childNode, unaryPrecedences );
 	}
 
@@ -690,14 +962,10 @@ public class DefaultXMLGrammar implements Grammar
 	 * Loads the precedence of the functions
 	 * 
 	 * @param childNode
+	 * @param unaryPrecedences the map of unary precedences to load in
 	 */
-	private void loadFunctionPrecedence( Element childNode )
+	private void loadFunctionPrecedence( Element childNode, Map<String, Integer> unaryPrecedences )
 	{
-		if( unaryPrecedences == null )
-		{
-			unaryPrecedences = new HashMap<String, Integer>();
-		}
-
 		loadPrecedence( childNode, unaryPrecedences );
 	}
 
@@ -761,10 +1029,11 @@ public class DefaultXMLGrammar implements Grammar
 	 * 
 	 * @param childNode
 	 *        the node for unary operators
+	 * @return the set of functions
 	 */
-	private void buildFunctions( Element childNode )
+	private Set<String> buildFunctions( Element childNode )
 	{
-		functions = buildSetByAttribute( childNode, OPERATOR, NAME );
+		return buildSetByAttribute( childNode, OPERATOR, NAME );
 	}
 
 	/**
@@ -777,7 +1046,7 @@ public class DefaultXMLGrammar implements Grammar
 	{
 		NodeList childList = childNode.getElementsByTagName( PRODUCTION_RULE );
 		int childLength = childList.getLength();
-		productionRules = new HashSet<IProductionRule>( childLength );
+		productionRules = new LinkedHashSet<IProductionRule>( childLength );
 
 		for( int j = 0; j < childLength; j++ )
 		{
@@ -856,4 +1125,26 @@ public class DefaultXMLGrammar implements Grammar
 		grammar.isOperator( "+" );
 	}
 
-}
\ No newline at end of file
+
+	/**
+	 * Functions of grammar with the precedences of unary operators and functions, and the compiled view of symbols
+	 * having these functions. It is immutable, so readers get a consistent state with one volatile read.
+	 */
+	private static final class FunctionSnapshot
+	{
+
+		private final Set<String>			functions;
+
+		private final Map<String, Integer>	unaryPrecedences;
+
+		private final CompiledGrammar		compiledGrammar;
+
+		private FunctionSnapshot( Set<String> functions, Map<String, Integer> unaryPrecedences,
+				CompiledGrammar compiledGrammar )
+		{
+			this.functions = Collections.unmodifiableSet( functions );
+			this.unaryPrecedences = Collections.unmodifiableMap( unaryPrecedences );
+			this.compiledGrammar = compiledGrammar;
+		}
+	}
+}
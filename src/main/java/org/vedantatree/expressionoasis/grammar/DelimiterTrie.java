@@ -0,0 +1,235 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis.grammar;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+
+/**
+ * Prefix tree of the delimiters of a grammar.
+ * 
+ * It is used by lexer to find the longest delimiter starting at a position of expression, directly from the
+ * expression characters. Matched delimiters are returned as the same String instances which were used to build the
+ * trie, so no string is created while matching.
+ * 
+ * Trie is immutable, and can be used by multiple threads.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public final class DelimiterTrie
+{
+
+	/**
+	 * Characters below this value are looked up in table at root
+	 */
+	private static final int	TABLE_SIZE	= 128;
+
+	/**
+	 * Root node, representing the empty prefix
+	 */
+	private final Node			root		= new Node();
+
+	/**
+	 * Children of root for characters below TABLE_SIZE
+	 */
+	private final Node[]		rootTable	= new Node[TABLE_SIZE];
+
+	/**
+	 * Length of the longest delimiter
+	 */
+	private final int			maximumLength;
+
+	/**
+	 * Builds the trie for given delimiters
+	 * 
+	 * @param delimiters the delimiters
+	 */
+	public DelimiterTrie( Collection<String> delimiters )
+	{
+		int maximum = 0;
+
+		for( String delimiter : delimiters )
+		{
+			if( delimiter == null || delimiter.length() == 0 )
+			{
+				continue;
+			}
+
+			Node node = root;
+			for( int i = 0; i < delimiter.length(); i++ )
+			{
+				node = node.addChild( delimiter.charAt( i ) );
+			}
+			node.delimiter = delimiter;
+			maximum = Math.max( maximum, delimiter.length() );
+		}
+
+		for( int i = 0; i < root.keys.length; i++ )
+		{
+			if( root.keys[i] < TABLE_SIZE )
+			{
+				rootTable[root.keys[i]] = root.children[i];
+			}
+		}
+		this.maximumLength = maximum;
+	}
+
+	/**
+	 * Finds the longest delimiter which starts at given position of text
+	 * 
+	 * @param text the text to search in
+	 * @param from the position where delimiter should start
+	 * @return the delimiter, or <code>null</code> if no delimiter starts at the position
+	 */
+	public String longestMatch( CharSequence text, int from )
+	{
+		String match = null;
+		Node node = root;
+		int length = text.length();
+
+		for( int i = from; i < length; i++ )
+		{
+			char character = text.charAt( i );
+			node = node == root && character < TABLE_SIZE ? rootTable[character] : node.getChild( character );
+
+			if( node == null )
+			{
+				break;
+			}
+			if( node.delimiter != null )
+			{
+				match = node.delimiter;
+			}
+		}
+		return match;
+	}
+
+	/**
+	 * Finds the delimiter which is exactly the given part of text
+	 * 
+	 * @param text the text to search in
+	 * @param from the start of part, inclusive
+	 * @param to the end of part, exclusive
+	 * @return the delimiter, or <code>null</code> if the part is not a delimiter
+	 */
+	public String match( CharSequence text, int from, int to )
+	{
+		Node node = root;
+		for( int i = from; i < to && node != null; i++ )
+		{
+			char character = text.charAt( i );
+			node = node == root && character < TABLE_SIZE ? rootTable[character] : node.getChild( character );
+		}
+		return node == null ? null : node.delimiter;
+	}
+
+	/**
+	 * Returns the delimiter formed by appending a character to given delimiter
+	 * 
+	 * @param delimiter the delimiter to extend
+	 * @param character the character to append
+	 * @return the extended delimiter, or <code>null</code> if it is not a delimiter
+	 */
+	public String extend( String delimiter, char character )
+	{
+		Node node = root;
+		for( int i = 0; i < delimiter.length() && node != null; i++ )
+		{
+			node = node.getChild( delimiter.charAt( i ) );
+		}
+
+		node = node == null ? null : node.getChild( character );
+		return node == null ? null : node.delimiter;
+	}
+
+	/**
+	 * Checks whether the character is a delimiter in itself
+	 * 
+	 * @param character the character to check
+	 * @return <code>true</code> if character is a delimiter
+	 */
+	public boolean isDelimiter( char character )
+	{
+		Node node = character < TABLE_SIZE ? rootTable[character] : root.getChild( character );
+		return node != null && node.delimiter != null;
+	}
+
+	/**
+	 * Returns the length of the longest delimiter
+	 * 
+	 * @return the maximum length of delimiters
+	 */
+	public int getMaximumLength()
+	{
+		return maximumLength;
+	}
+
+	/**
+	 * Node of trie, children are kept in small arrays as delimiters share few prefixes
+	 */
+	private static final class Node
+	{
+
+		private char[]	keys		= new char[0];
+
+		private Node[]	children	= new Node[0];
+
+		/**
+		 * The delimiter ending at this node, <code>null</code> if the prefix is not a delimiter
+		 */
+		private String	delimiter;
+
+		private Node getChild( char character )
+		{
+			for( int i = 0; i < keys.length; i++ )
+			{
+				if( keys[i] == character )
+				{
+					return children[i];
+				}
+			}
+			return null;
+		}
+
+		private Node addChild( char character )
+		{
+			Node child = getChild( character );
+			if( child == null )
+			{
+				child = new Node();
+				keys = Arrays.copyOf( keys, keys.length + 1 );
+				children = Arrays.copyOf( children, children.length + 1 );
+				keys[keys.length - 1] = character;
+				children[children.length - 1] = child;
+			}
+			return child;
+		}
+	}
+}
@@ -39,19 +39,75 @@ package org.vedantatree.expressionoasis.grammar;
  * @author Mohit Gupta
  * 
  * @version 1.0
+ * 
+ *          Token can be created over a part of the expression source, without copying its characters. The string value
+ *          of such token is created only when it is asked for, and it is kept thereafter. Characters of token can be
+ *          read using {@link #charAt(int)} and {@link #getText()} without creating the string value.
+ * 
+ *          Source of such token must not be modified while the token is in use. Parser takes care of it for the
+ *          expressions which are cached.
+ * 
+ *          Token also keeps its kind, i.e. the symbol of grammar it represents, once it is resolved by
+ *          {@link CompiledGrammar}.
+ * 
+ *          Token can be relocated to an edited version of its source, so the unchanged tokens of an edited expression
+ *          are not created from characters again.
+ * 
+ * @author Mohit Gupta
+ * @version 1.1
+ * @since 3.3
+ * 
+ *          Token also keeps the kind of operand expression, as resolved by lexer from the production rule which
+ *          allowed it, and the value of numeric literals parsed while lexing. So compiler creates the operands without
+ *          matching the token with operand patterns again.
+ * 
+ * @author Mohit Gupta
+ * @version 1.2
+ * @since 3.3
  */
 public class ExpressionToken
 {
 
 	/**
-	 * Value of this token
+	 * Value of this token, created lazily if token is created over a source
+	 */
+	private String				value;
+
+	/**
+	 * Source of the characters of this token
+	 */
+	private final CharSequence	source;
+
+	/**
+	 * Offset of this token in source
+	 */
+	private final int			offset;
+
+	/**
+	 * Number of characters in this token
 	 */
-	private String	value;
+	private final int			length;
 
 	/**
 	 * Index of this token in expression string
 	 */
-	private int		index;
+	private int					index;
+
+	/**
+	 * Kind of this token with the compiled grammar which stamped it, <code>null</code> if not stamped. Both are kept in
+	 * one immutable object, so a thread never sees the kind stamped by one grammar with another grammar.
+	 */
+	private CompiledGrammar.KindStamp	kindStamp;
+
+	/**
+	 * Kind of operand expression for this token, as per ExpressionFactory. It is -1 if not resolved by lexer.
+	 */
+	private int					operandKind	= -1;
+
+	/**
+	 * Value of literal parsed while lexing, like Long or Double value of a number, <code>null</code> if not parsed
+	 */
+	private Object				literalValue;
 
 	/**
 	 * Constructs the ExpressionToken
@@ -62,9 +118,98 @@ public class ExpressionToken
 	public ExpressionToken( String value, int index )
 	{
 		this.value = value;
+		this.source = value;
+		this.offset = 0;
+		this.length = value == null ? 0 : value.length();
 		this.index = index;
 	}
 
+	/**
+	 * Constructs the ExpressionToken over given part of source, without copying the characters
+	 * 
+	 * @param source the source of characters, generally the expression
+	 * @param offset offset of the token in source
+	 * @param length number of characters in the token
+	 * @param index index of this token in expression string
+	 * @throws IllegalArgumentException if the part is not inside the source
+	 */
+	public ExpressionToken( CharSequence source, int offset, int length, int index )
+	{
+		if( source == null || offset < 0 || length < 0 || offset + length > source.length() )
+		{
+			throw new IllegalArgumentException( "Token must be a part of source. offset[" + offset + "] length["
+					+ length + "] sourceLength[" + ( source == null ? -1 : source.length() ) + "]" );
+		}
+
+		this.source = source;
+		this.offset = offset;
+		this.length = length;
+		this.index = index;
+	}
+
+	/**
+	 * Constructs the ExpressionToken as copy of given token, including its kind
+	 * 
+	 * @param token the token to copy
+	 */
+	protected ExpressionToken( ExpressionToken token )
+	{
+		this.value = token.value;
+		this.source = token.source;
+		this.offset = token.offset;
+		this.length = token.length;
+		this.index = token.index;
+		this.kindStamp = token.kindStamp;
+		this.operandKind = token.operandKind;
+		this.literalValue = token.literalValue;
+	}
+
+	/**
+	 * Constructs the ExpressionToken as copy of given token, over another source and at another place
+	 * 
+	 * @param token the token to copy
+	 * @param source the source of characters
+	 * @param offset offset of the token in source
+	 * @param index index of this token in expression string
+	 */
+	private ExpressionToken( ExpressionToken token, CharSequence source, int offset, int index )
+	{
+		this.value = token.value;
+		this.source = source;
+		this.offset = offset;
+		this.length = token.length;
+		this.index = index;
+		this.kindStamp = token.kindStamp;
+		this.operandKind = token.operandKind;
+		this.literalValue = token.literalValue;
+	}
+
+	/**
+	 * Creates a copy of this token for another version of its source, like an edited expression, in which the
+	 * characters of this token are moved by given distance. Value and kind of token are kept, so characters are not
+	 * read again. Token created with a value keeps the value as its source, and only its index is moved.
+	 * 
+	 * @param newSource the source in which characters of this token are moved
+	 * @param distance number of characters by which token is moved, negative if moved towards the start
+	 * @return the moved token
+	 * @throws IllegalArgumentException if moved token is not inside the new source
+	 */
+	public ExpressionToken relocate( CharSequence newSource, int distance )
+	{
+		if( source == value )
+		{
+			return new ExpressionToken( this, source, offset, index + distance );
+		}
+
+		int newOffset = offset + distance;
+		if( newSource == null || newOffset < 0 || newOffset + length > newSource.length() )
+		{
+			throw new IllegalArgumentException( "Token must be a part of source. offset[" + newOffset + "] length["
+					+ length + "] sourceLength[" + ( newSource == null ? -1 : newSource.length() ) + "]" );
+		}
+		return new ExpressionToken( this, newSource, newOffset, index + distance );
+	}
+
 	/**
 	 * Gets the value of index.
 	 * 
@@ -76,21 +221,199 @@ public class ExpressionToken
 	}
 
 	/**
-	 * Gets the value of value.
+	 * Gets the value of value. It is created from source on first call, if token is created over a source.
 	 * 
 	 * @return Returns the value.
 	 */
 	public String getValue()
 	{
+		if( value == null && source != null )
+		{
+			value = source.subSequence( offset, offset + length ).toString();
+		}
 		return value;
 	}
 
 	/**
+	 * Returns the characters of this token, without creating the string value if it is not created yet. Returned
+	 * sequence reads the source of token, hence it should not be kept beyond the life of token.
+	 * 
+	 * @return the characters of token
+	 */
+	public CharSequence getText()
+	{
+		return value != null || source == null ? value : new Text( 0, length );
+	}
+
+	/**
+	 * Checks whether the string value of this token is created
+	 * 
+	 * @return <code>true</code> if string value is created, <code>false</code> if token still refers to its source
+	 */
+	public boolean isMaterialized()
+	{
+		return value != null;
+	}
+
+	/**
+	 * Returns the number of characters in this token
+	 * 
+	 * @return the length of token
+	 */
+	public int length()
+	{
+		return length;
+	}
+
+	/**
+	 * Returns the character of this token at given position
+	 * 
+	 * @param position the position of character in token
+	 * @return the character
+	 * @throws IndexOutOfBoundsException if position is not in token
+	 */
+	public char charAt( int position )
+	{
+		if( position < 0 || position >= length )
+		{
+			throw new IndexOutOfBoundsException( "position[" + position + "] length[" + length + "]" );
+		}
+		return value != null ? value.charAt( position ) : source.charAt( offset + position );
+	}
+
+	/**
+	 * Returns the source of characters of this token
+	 * 
+	 * @return the source, it is the value itself if token is created with a value
+	 */
+	public CharSequence getSource()
+	{
+		return source;
+	}
+
+	/**
+	 * Returns the offset of this token in its source
+	 * 
+	 * @return the offset
+	 */
+	public int getOffset()
+	{
+		return offset;
+	}
+
+	/**
+	 * Returns the kind of this token with the compiled grammar which stamped it. Use
+	 * {@link CompiledGrammar#getKind(ExpressionToken)} to get the kind which is valid for a grammar.
+	 * 
+	 * @return the stamp, <code>null</code> if kind is not stamped
+	 */
+	CompiledGrammar.KindStamp getKindStamp()
+	{
+		return kindStamp;
+	}
+
+	/**
+	 * Stamps the kind of this token
+	 * 
+	 * @param kindStamp the kind with compiled grammar which resolved it
+	 */
+	void setKindStamp( CompiledGrammar.KindStamp kindStamp )
+	{
+		this.kindStamp = kindStamp;
+	}
+
+	/**
+	 * Returns the kind of operand expression for this token, as resolved by lexer from the production rule which
+	 * allowed the token
+	 * 
+	 * @return the operand kind as per ExpressionFactory, -1 if not resolved
+	 */
+	public int getOperandKind()
+	{
+		return operandKind;
+	}
+
+	/**
+	 * Returns the value of literal parsed while lexing
+	 * 
+	 * @return the literal value, <code>null</code> if not parsed
+	 */
+	public Object getLiteralValue()
+	{
+		return literalValue;
+	}
+
+	/**
+	 * Sets the kind of operand expression for this token, and the value of literal if lexer has parsed it
+	 * 
+	 * @param operandKind the operand kind as per ExpressionFactory
+	 * @param literalValue the literal value, <code>null</code> if not parsed
+	 */
+	public void setOperandKind( int operandKind, Object literalValue )
+	{
+		this.operandKind = operandKind;
+		this.literalValue = literalValue;
+	}
+
+	/**
+	 * It does not create the string value of token, so logging the tokens does not change them.
+	 * 
 	 * @see java.lang.Object#toString()
 	 */
 	@Override
 	public String toString()
 	{
-		return "{" + value + ", " + index + "}";
+		StringBuilder builder = new StringBuilder( length + 16 ).append( '{' );
+		if( value != null || source == null )
+		{
+			builder.append( value );
+		}
+		else
+		{
+			builder.append( source, offset, offset + length );
+		}
+		return builder.append( ", " ).append( index ).append( '}' ).toString();
+	}
+
+	/**
+	 * View of the characters of token, reading these from source of token
+	 */
+	private final class Text implements CharSequence
+	{
+
+		private final int	start;
+
+		private final int	end;
+
+		private Text( int start, int end )
+		{
+			this.start = start;
+			this.end = end;
+		}
+
+		public int length()
+		{
+			return end - start;
+		}
+
+		public char charAt( int position )
+		{
+			return ExpressionToken.this.charAt( start + position );
+		}
+
+		public CharSequence subSequence( int from, int to )
+		{
+			if( from < 0 || to > length() || from > to )
+			{
+				throw new IndexOutOfBoundsException( "from[" + from + "] to[" + to + "] length[" + length() + "]" );
+			}
+			return new Text( start + from, start + to );
+		}
+
+		@Override
+		public String toString()
+		{
+			return start == 0 && end == length ? getValue() : getValue().substring( start, end );
+		}
 	}
 }
\ No newline at end of file
@@ -26,6 +26,8 @@
  */
 package org.vedantatree.expressionoasis.grammar;
 
+import org.vedantatree.expressionoasis.grammar.rules.ProductionRuleAutomaton;
+
 /**
  * Object of this class provides the grammar rules for parsing the expression.
  * Parser uses this class to parse the string expression in list of Expression
@@ -34,6 +36,13 @@ package org.vedantatree.expressionoasis.grammar;
  * @author Mohit Gupta
  * @author Parmod Kamboj
  * @version 1.0
+ * 
+ *          Added methods to get the automaton compiled from production rules, the prefix tree of delimiters and the
+ *          compiled view of symbols
+ * 
+ * @author Mohit Gupta
+ * @version 1.1
+ * @since 3.3
  */
 public interface Grammar
 {
@@ -83,6 +92,34 @@ public interface Grammar
 	 */
 	boolean isAllowed( String token );
 
+	/**
+	 * Returns the automaton compiled from production rules of grammar. Parser uses it to track the tokens character
+	 * by character, instead of calling {@link #isApproachable(String)} and {@link #isAllowed(String)} with the token
+	 * collected so far.
+	 * 
+	 * @return the production rule automaton, or <code>null</code> if grammar does not compile its rules. Parser uses
+	 *         {@link #isApproachable(String)} and {@link #isAllowed(String)} in this case.
+	 */
+	ProductionRuleAutomaton getProductionRuleAutomaton();
+
+	/**
+	 * Returns the prefix tree of delimiters of grammar. Parser uses it to identify the multiple character delimiters
+	 * directly from the expression.
+	 * 
+	 * @return the delimiter trie, or <code>null</code> if grammar does not build it. Parser uses
+	 *         {@link #isDelimiter(String)} in this case, and longest match lexer mode is not available.
+	 */
+	DelimiterTrie getDelimiterTrie();
+
+	/**
+	 * Returns the compiled view of symbols of grammar, with int kinds and precedences. Compiler uses it to restructure
+	 * the tokens and to build the expression tree, without looking up the symbols by string.
+	 * 
+	 * @return the compiled grammar, or <code>null</code> if grammar does not build it. Compiler uses the other methods
+	 *         of grammar in this case.
+	 */
+	CompiledGrammar getCompiledGrammar();
+
 	/**
 	 * Checks whether the given token is an operator or not.
 	 * 
@@ -122,6 +159,9 @@ public interface Grammar
 	 * in case of DefaultXMLGrammar implementation, it is loaded from grammar.xml. However, developer may opt to add
 	 * functions using API also.
 	 * 
+	 * Functions may be added while other threads are parsing with the grammar, so implementation should publish the
+	 * added function at once, and should not make the readers wait for it.
+	 * 
 	 * @param functionName name of the function to add
 	 */
 	void addFunction( String functionName );
@@ -44,6 +44,12 @@ import org.vedantatree.expressionoasis.utils.StringUtils;
  * 
  * @author Kris Marwood
  * @version 1.1
+ * 
+ *          Exposed the regular expressions, so that these can be compiled in grammar level automaton
+ * 
+ * @author Mohit Gupta
+ * @version 1.2
+ * @since 3.3
  */
 public class ProductionRule implements IProductionRule
 {
@@ -108,6 +114,26 @@ public class ProductionRule implements IProductionRule
 		return name;
 	}
 
+	/**
+	 * Returns the regular expression used to identify the approachable tokens
+	 * 
+	 * @return the approachable regular expression
+	 */
+	public String getApproachablePattern()
+	{
+		return approachableRegexPattern.pattern();
+	}
+
+	/**
+	 * Returns the regular expression used to identify the allowed tokens
+	 * 
+	 * @return the allowed regular expression
+	 */
+	public String getAllowedPattern()
+	{
+		return allowedRegexPattern.pattern();
+	}
+
 	/**
 	 * @see org.vedantatree.expressionoasis.grammar.rules.IProductionRule#isApproaching(java.lang.String)
 	 */
@@ -0,0 +1,679 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis.grammar.rules;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.vedantatree.expressionoasis.grammar.rules.RegularExpressionParser.Fragment;
+import org.vedantatree.expressionoasis.grammar.rules.RegularExpressionParser.Node;
+import org.vedantatree.expressionoasis.grammar.rules.RegularExpressionParser.State;
+
+
+/**
+ * Deterministic automaton compiled from the approachable and allowed patterns of production rules.
+ * 
+ * All the rules are combined in one automaton, so that checking whether a token is approachable or allowed by any
+ * rule costs one table lookup per character, instead of one regular expression match per rule. Automaton can also be
+ * driven character by character using {@link #next(int, char)}, so that a lexer can track the state of a growing
+ * token without creating the token string for every character.
+ * 
+ * Rules which can not be compiled, i.e. custom implementations of {@link IProductionRule} or production rules using
+ * regular expression features which are not supported by automaton, are kept as fallback rules. These are checked
+ * with their own implementation after the automaton. Callers which drive the automaton by states must check
+ * {@link #hasFallbackRules()} and use the String methods if there are any.
+ * 
+ * Automaton is immutable, and can be used by multiple threads.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ * 
+ *        Added writing and reading of automaton tables, so that automaton can be loaded from startup snapshot
+ *        without compiling the rules again
+ * 
+ * @author Mohit Gupta
+ * @version 1.1
+ * @since 3.3
+ * 
+ *        Added lookup of the rule which allows a token, so lexer can tell the kind of operand it has accepted
+ * 
+ * @author Mohit Gupta
+ * @version 1.2
+ * @since 3.3
+ */
+public final class ProductionRuleAutomaton
+{
+
+	private static Log						LOGGER		= LogFactory.getLog( ProductionRuleAutomaton.class );
+
+	/**
+	 * State from where no token can be approached or allowed
+	 */
+	public static final int					DEAD_STATE	= 0;
+
+	/**
+	 * Maximum number of rules which can be compiled in automaton, as rules are tracked by bits of long
+	 */
+	private static final int				MAX_RULES	= 64;
+
+	/**
+	 * Maximum number of deterministic states, rest of the rules are left as fallback rules beyond this
+	 */
+	private static final int				MAX_STATES	= 4096;
+
+	/**
+	 * Characters below this value are mapped to character classes by table, rest by binary search
+	 */
+	private static final int				TABLE_SIZE	= 128;
+
+	/**
+	 * Rules compiled in automaton, index of rule is its bit in masks
+	 */
+	private final List<IProductionRule>		compiledRules;
+
+	/**
+	 * Rules which could not be compiled
+	 */
+	private final List<IProductionRule>		fallbackRules;
+
+	/**
+	 * Start state of automaton, for empty token
+	 */
+	private final int						startState;
+
+	/**
+	 * Number of character classes. Characters of a class have same transitions in all states.
+	 */
+	private final int						classCount;
+
+	/**
+	 * Lower bound of each character class, sorted
+	 */
+	private final int[]						classBoundaries;
+
+	/**
+	 * Character class of characters below TABLE_SIZE
+	 */
+	private final int[]						asciiClasses;
+
+	/**
+	 * Transition table, next state for state s and class c is at s * classCount + c
+	 */
+	private final int[]						transitions;
+
+	/**
+	 * Rules for which the token, reaching a state, is approachable
+	 */
+	private final long[]					approachableMasks;
+
+	/**
+	 * Rules for which the token, reaching a state, is allowed
+	 */
+	private final long[]					allowedMasks;
+
+	/**
+	 * Compiles the production rules in automaton. If the automaton grows too large, all the rules are kept as
+	 * fallback rules.
+	 * 
+	 * @param rules the production rules, in order of their priority
+	 * @return the automaton for rules
+	 */
+	public static ProductionRuleAutomaton compile( Collection<IProductionRule> rules )
+	{
+		try
+		{
+			return new ProductionRuleAutomaton( rules, true );
+		}
+		catch( IllegalStateException e )
+		{
+			LOGGER.warn( "Production rules will be checked using regular expressions. reason[" + e.getMessage() + "]" );
+			return new ProductionRuleAutomaton( rules, false );
+		}
+	}
+
+	/**
+	 * Compiles the production rules in automaton
+	 * 
+	 * @param rules the production rules, in order of their priority
+	 * @param compile whether to compile the rules, if <code>false</code> all the rules are kept as fallback rules
+	 * @throws IllegalStateException if automaton exceeds the maximum number of states
+	 */
+	private ProductionRuleAutomaton( Collection<IProductionRule> rules, boolean compile )
+	{
+		List<IProductionRule> compiled = new ArrayList<IProductionRule>();
+		List<IProductionRule> fallback = new ArrayList<IProductionRule>();
+		List<Node[]> patterns = new ArrayList<Node[]>();
+
+		for( IProductionRule rule : rules )
+		{
+			Node[] rulePatterns = compile && compiled.size() < MAX_RULES ? parsePatterns( rule ) : null;
+			if( rulePatterns == null )
+			{
+				fallback.add( rule );
+			}
+			else
+			{
+				compiled.add( rule );
+				patterns.add( rulePatterns );
+			}
+		}
+
+		// build one non deterministic automaton for all patterns
+		List<State> states = new ArrayList<State>();
+		State root = new State( states );
+		for( int i = 0; i < patterns.size(); i++ )
+		{
+			Fragment approachable = patterns.get( i )[0].build( states );
+			Fragment allowed = patterns.get( i )[1].build( states );
+
+			root.epsilonTransitions.add( approachable.start );
+			root.epsilonTransitions.add( allowed.start );
+			approachable.end.approachableMask |= 1L << i;
+			allowed.end.allowedMask |= 1L << i;
+		}
+
+		// character classes, split at the bounds of all the ranges used in transitions
+		TreeSet<Integer> bounds = new TreeSet<Integer>();
+		bounds.add( 0 );
+		for( State state : states )
+		{
+			for( int i = 0; state.ranges != null && i < state.ranges.length; i += 2 )
+			{
+				bounds.add( state.ranges[i] );
+				if( state.ranges[i + 1] < RegularExpressionParser.MAX_CHARACTER )
+				{
+					bounds.add( state.ranges[i + 1] + 1 );
+				}
+			}
+		}
+
+		classCount = bounds.size();
+		classBoundaries = new int[classCount];
+		int index = 0;
+		for( Integer bound : bounds )
+		{
+			classBoundaries[index++] = bound;
+		}
+
+		asciiClasses = new int[TABLE_SIZE];
+		for( char character = 0; character < TABLE_SIZE; character++ )
+		{
+			asciiClasses[character] = searchClass( character );
+		}
+
+		// subset construction, state 0 is the dead state represented by empty set
+		List<BitSet> deterministicStates = new ArrayList<BitSet>();
+		Map<BitSet, Integer> stateIds = new HashMap<BitSet, Integer>();
+		List<int[]> transitionRows = new ArrayList<int[]>();
+
+		BitSet dead = new BitSet();
+		deterministicStates.add( dead );
+		stateIds.put( dead, DEAD_STATE );
+
+		BitSet start = new BitSet();
+		start.set( root.id );
+		closure( start, states );
+		deterministicStates.add( start );
+		stateIds.put( start, 1 );
+
+		for( int current = 0; current < deterministicStates.size(); current++ )
+		{
+			if( deterministicStates.size() > MAX_STATES )
+			{
+				throw new IllegalStateException( "Production rules result in too many automaton states. rules["
+						+ compiled + "]" );
+			}
+
+			BitSet[] moves = new BitSet[classCount];
+			BitSet set = deterministicStates.get( current );
+
+			for( int id = set.nextSetBit( 0 ); id >= 0; id = set.nextSetBit( id + 1 ) )
+			{
+				State state = states.get( id );
+				for( int i = 0; state.ranges != null && i < state.ranges.length; i += 2 )
+				{
+					int lastClass = searchClass( state.ranges[i + 1] );
+					for( int characterClass = searchClass( state.ranges[i] ); characterClass <= lastClass; characterClass++ )
+					{
+						if( moves[characterClass] == null )
+						{
+							moves[characterClass] = new BitSet();
+						}
+						moves[characterClass].set( state.target.id );
+					}
+				}
+			}
+
+			int[] row = new int[classCount];
+			for( int characterClass = 0; characterClass < classCount; characterClass++ )
+			{
+				if( moves[characterClass] == null )
+				{
+					row[characterClass] = DEAD_STATE;
+					continue;
+				}
+
+				closure( moves[characterClass], states );
+				Integer next = stateIds.get( moves[characterClass] );
+				if( next == null )
+				{
+					next = deterministicStates.size();
+					deterministicStates.add( moves[characterClass] );
+					stateIds.put( moves[characterClass], next );
+				}
+				row[characterClass] = next;
+			}
+			transitionRows.add( row );
+		}
+
+		int stateCount = deterministicStates.size();
+		transitions = new int[stateCount * classCount];
+		approachableMasks = new long[stateCount];
+		allowedMasks = new long[stateCount];
+
+		for( int state = 0; state < stateCount; state++ )
+		{
+			System.arraycopy( transitionRows.get( state ), 0, transitions, state * classCount, classCount );
+
+			BitSet set = deterministicStates.get( state );
+			for( int id = set.nextSetBit( 0 ); id >= 0; id = set.nextSetBit( id + 1 ) )
+			{
+				approachableMasks[state] |= states.get( id ).approachableMask;
+				allowedMasks[state] |= states.get( id ).allowedMask;
+			}
+		}
+
+		this.startState = 1;
+		this.compiledRules = Collections.unmodifiableList( compiled );
+		this.fallbackRules = Collections.unmodifiableList( fallback );
+
+		if( LOGGER.isDebugEnabled() )
+		{
+			LOGGER.debug( "automaton-compiled states[" + stateCount + "] characterClasses[" + classCount
+					+ "] compiledRules[" + compiled.size() + "] fallbackRules[" + fallback.size() + "]" );
+		}
+	}
+
+	/**
+	 * Constructs the automaton from the tables read from snapshot
+	 */
+	private ProductionRuleAutomaton( List<IProductionRule> compiledRules, List<IProductionRule> fallbackRules,
+			int startState, int[] classBoundaries, int[] transitions, long[] approachableMasks, long[] allowedMasks )
+	{
+		this.compiledRules = Collections.unmodifiableList( compiledRules );
+		this.fallbackRules = Collections.unmodifiableList( fallbackRules );
+		this.startState = startState;
+		this.classCount = classBoundaries.length;
+		this.classBoundaries = classBoundaries;
+		this.transitions = transitions;
+		this.approachableMasks = approachableMasks;
+		this.allowedMasks = allowedMasks;
+
+		asciiClasses = new int[TABLE_SIZE];
+		for( char character = 0; character < TABLE_SIZE; character++ )
+		{
+			asciiClasses[character] = searchClass( character );
+		}
+	}
+
+	/**
+	 * Writes the tables of automaton, to be read by {@link #read(ByteBuffer, Collection)}. Rules are not written, only
+	 * whether each of the given rules is compiled in automaton.
+	 * 
+	 * @param output the output to write to
+	 * @param rules the rules from which automaton is compiled, in same order
+	 * @throws IOException if unable to write
+	 */
+	public void write( DataOutput output, Collection<IProductionRule> rules ) throws IOException
+	{
+		output.writeInt( rules.size() );
+		for( IProductionRule rule : rules )
+		{
+			output.writeBoolean( compiledRules.contains( rule ) );
+		}
+
+		output.writeInt( startState );
+		writeInts( output, classBoundaries );
+		writeInts( output, transitions );
+		writeLongs( output, approachableMasks );
+		writeLongs( output, allowedMasks );
+	}
+
+	/**
+	 * Reads the automaton written by {@link #write(DataOutput, Collection)}
+	 * 
+	 * @param buffer the buffer to read from
+	 * @param rules the rules from which automaton was compiled, in same order
+	 * @return the automaton
+	 * @throws IllegalArgumentException if the tables do not belong to given rules
+	 */
+	public static ProductionRuleAutomaton read( ByteBuffer buffer, Collection<IProductionRule> rules )
+	{
+		if( buffer.getInt() != rules.size() )
+		{
+			throw new IllegalArgumentException( "Automaton tables are not compiled from given rules. rules[" + rules
+					+ "]" );
+		}
+
+		List<IProductionRule> compiled = new ArrayList<IProductionRule>();
+		List<IProductionRule> fallback = new ArrayList<IProductionRule>();
+		for( IProductionRule rule : rules )
+		{
+			if( buffer.get() != 0 )
+			{
+				compiled.add( rule );
+			}
+			else
+			{
+				fallback.add( rule );
+			}
+		}
+
+		int startState = buffer.getInt();
+		int[] classBoundaries = readInts( buffer );
+		int[] transitions = readInts( buffer );
+		long[] approachableMasks = readLongs( buffer );
+		long[] allowedMasks = readLongs( buffer );
+
+		if( classBoundaries.length == 0 || transitions.length != approachableMasks.length * classBoundaries.length
+				|| allowedMasks.length != approachableMasks.length || startState >= approachableMasks.length )
+		{
+			throw new IllegalArgumentException( "Automaton tables are not consistent." );
+		}
+		for( int i = 0; i < transitions.length; i++ )
+		{
+			if( transitions[i] < 0 || transitions[i] >= approachableMasks.length )
+			{
+				throw new IllegalArgumentException( "Automaton tables are not consistent." );
+			}
+		}
+
+		return new ProductionRuleAutomaton( compiled, fallback, startState, classBoundaries, transitions,
+				approachableMasks, allowedMasks );
+	}
+
+	private static void writeInts( DataOutput output, int[] values ) throws IOException
+	{
+		output.writeInt( values.length );
+		for( int i = 0; i < values.length; i++ )
+		{
+			output.writeInt( values[i] );
+		}
+	}
+
+	private static void writeLongs( DataOutput output, long[] values ) throws IOException
+	{
+		output.writeInt( values.length );
+		for( int i = 0; i < values.length; i++ )
+		{
+			output.writeLong( values[i] );
+		}
+	}
+
+	private static int[] readInts( ByteBuffer buffer )
+	{
+		int[] values = new int[buffer.getInt()];
+		buffer.asIntBuffer().get( values );
+		buffer.position( buffer.position() + values.length * 4 );
+		return values;
+	}
+
+	private static long[] readLongs( ByteBuffer buffer )
+	{
+		long[] values = new long[buffer.getInt()];
+		buffer.asLongBuffer().get( values );
+		buffer.position( buffer.position() + values.length * 8 );
+		return values;
+	}
+
+	/**
+	 * Parses the patterns of a rule, if it is a regular expression based production rule
+	 * 
+	 * @param rule the rule to parse
+	 * @return approachable and allowed patterns, or <code>null</code> if rule can not be compiled
+	 */
+	private static Node[] parsePatterns( IProductionRule rule )
+	{
+		if( !( rule instanceof ProductionRule ) )
+		{
+			return null;
+		}
+
+		ProductionRule productionRule = (ProductionRule) rule;
+		try
+		{
+			return new Node[]
+			{ RegularExpressionParser.parse( productionRule.getApproachablePattern() ),
+					RegularExpressionParser.parse( productionRule.getAllowedPattern() ) };
+		}
+		catch( IllegalArgumentException e )
+		{
+			LOGGER.info( "Production rule will be checked using regular expression. rule[" + rule.getName()
+					+ "] reason[" + e.getMessage() + "]" );
+			return null;
+		}
+	}
+
+	/**
+	 * Adds all the states reachable by epsilon transitions to the given set
+	 */
+	private static void closure( BitSet set, List<State> states )
+	{
+		int[] pending = new int[states.size()];
+		int size = 0;
+		for( int id = set.nextSetBit( 0 ); id >= 0; id = set.nextSetBit( id + 1 ) )
+		{
+			pending[size++] = id;
+		}
+
+		while( size > 0 )
+		{
+			State state = states.get( pending[--size] );
+			for( State next : state.epsilonTransitions )
+			{
+				if( !set.get( next.id ) )
+				{
+					set.set( next.id );
+					pending[size++] = next.id;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the character class of a character by searching the class boundaries
+	 */
+	private int searchClass( int character )
+	{
+		int index = Arrays.binarySearch( classBoundaries, character );
+		return index >= 0 ? index : -index - 2;
+	}
+
+	/**
+	 * Returns the start state, i.e. the state for empty token
+	 * 
+	 * @return the start state
+	 */
+	public int getStartState()
+	{
+		return startState;
+	}
+
+	/**
+	 * Returns the state reached by appending a character to the token of given state
+	 * 
+	 * @param state the current state
+	 * @param character the character to append
+	 * @return the next state, {@link #DEAD_STATE} if no rule can approach the token now
+	 */
+	public int next( int state, char character )
+	{
+		int characterClass = character < TABLE_SIZE ? asciiClasses[character] : searchClass( character );
+		return transitions[state * classCount + characterClass];
+	}
+
+	/**
+	 * Returns the state reached by appending characters to the token of given state
+	 * 
+	 * @param state the current state
+	 * @param characters the characters to append
+	 * @return the next state, {@link #DEAD_STATE} if no rule can approach the token now
+	 */
+	public int next( int state, CharSequence characters )
+	{
+		int length = characters.length();
+		for( int i = 0; i < length && state != DEAD_STATE; i++ )
+		{
+			state = next( state, characters.charAt( i ) );
+		}
+		return state;
+	}
+
+	/**
+	 * Checks whether the token reaching the given state is approachable by any compiled rule
+	 * 
+	 * @param state the state of token
+	 * @return <code>true</code> if token is approachable
+	 */
+	public boolean isApproachable( int state )
+	{
+		return approachableMasks[state] != 0;
+	}
+
+	/**
+	 * Checks whether the token reaching the given state is allowed by any compiled rule
+	 * 
+	 * @param state the state of token
+	 * @return <code>true</code> if token is allowed
+	 */
+	public boolean isAllowed( int state )
+	{
+		return allowedMasks[state] != 0;
+	}
+
+	/**
+	 * Returns the compiled rule which allows the token reaching the given state. If more than one rule allow it, the
+	 * rule with highest priority, i.e. the one coming first, is returned.
+	 * 
+	 * @param state the state of token
+	 * @return the index of rule in {@link #getCompiledRules()}, -1 if no compiled rule allows the token
+	 */
+	public int getAllowedRule( int state )
+	{
+		long mask = allowedMasks[state];
+		return mask == 0 ? -1 : Long.numberOfTrailingZeros( mask );
+	}
+
+	/**
+	 * Checks whether the token is approachable by any rule, compiled or fallback
+	 * 
+	 * @param token the token to check
+	 * @return <code>true</code> if token is approachable
+	 */
+	public boolean isApproachable( CharSequence token )
+	{
+		if( isApproachable( next( startState, token ) ) )
+		{
+			return true;
+		}
+
+		for( int i = 0; i < fallbackRules.size(); i++ )
+		{
+			if( fallbackRules.get( i ).isApproaching( token.toString() ) )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether the token is allowed by any rule, compiled or fallback
+	 * 
+	 * @param token the token to check
+	 * @return <code>true</code> if token is allowed
+	 */
+	public boolean isAllowed( CharSequence token )
+	{
+		if( isAllowed( next( startState, token ) ) )
+		{
+			return true;
+		}
+
+		for( int i = 0; i < fallbackRules.size(); i++ )
+		{
+			if( fallbackRules.get( i ).isAllowed( token.toString() ) )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether there are rules which are not compiled in automaton
+	 * 
+	 * @return <code>true</code> if some rules must be checked outside the automaton
+	 */
+	public boolean hasFallbackRules()
+	{
+		return !fallbackRules.isEmpty();
+	}
+
+	/**
+	 * Returns the rules compiled in automaton
+	 * 
+	 * @return unmodifiable list of compiled rules
+	 */
+	public List<IProductionRule> getCompiledRules()
+	{
+		return compiledRules;
+	}
+
+	/**
+	 * Returns the rules which are checked outside the automaton
+	 * 
+	 * @return unmodifiable list of fallback rules
+	 */
+	public List<IProductionRule> getFallbackRules()
+	{
+		return fallbackRules;
+	}
+}
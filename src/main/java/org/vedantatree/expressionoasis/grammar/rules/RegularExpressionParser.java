@@ -0,0 +1,703 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis.grammar.rules;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Parses a regular expression into a non deterministic automaton, so that production rules can be compiled into a
+ * deterministic automaton by {@link ProductionRuleAutomaton}.
+ * 
+ * Only the subset of java.util.regex syntax which describes a regular language is supported. It includes
+ * alternation, groups, greedy and reluctant quantifiers, character classes with ranges and negation, '.', and the
+ * predefined classes \d, \w, \s and their negations. Anchors, back references, look arounds, flags, possessive
+ * quantifiers and class intersections are not supported, and {@link IllegalArgumentException} is thrown for these,
+ * so that the caller can keep using java.util.regex for the pattern.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+final class RegularExpressionParser
+{
+
+	/**
+	 * Maximum character value handled by automaton, supplementary characters are seen as surrogate pairs
+	 */
+	static final int			MAX_CHARACTER		= 0xFFFF;
+
+	/**
+	 * Limit for the counted repetitions, to restrict the size of automaton
+	 */
+	private static final int	MAX_REPETITION		= 64;
+
+	/**
+	 * Characters not matched by '.' as per java.util.regex
+	 */
+	private static final int[]	LINE_TERMINATORS	= new int[]
+													{ '\n', '\n', '\r', '\r', '\u0085', '\u0085', '\u2028', '\u2029' };
+
+	private static final int[]	DIGITS				= new int[]
+													{ '0', '9' };
+
+	private static final int[]	WORD_CHARACTERS		= new int[]
+													{ '0', '9', 'A', 'Z', '_', '_', 'a', 'z' };
+
+	private static final int[]	SPACES				= new int[]
+													{ '\t', '\r', ' ', ' ' };
+
+	/**
+	 * The pattern being parsed
+	 */
+	private final String		pattern;
+
+	/**
+	 * Current position in pattern
+	 */
+	private int					position;
+
+	/**
+	 * Constructs the parser for a pattern
+	 * 
+	 * @param pattern the regular expression
+	 */
+	private RegularExpressionParser( String pattern )
+	{
+		this.pattern = pattern;
+	}
+
+	/**
+	 * Parses the pattern
+	 * 
+	 * @param pattern the regular expression to parse
+	 * @return the parsed regular expression, which can be built as automaton
+	 * @throws IllegalArgumentException if pattern is not valid or not supported
+	 */
+	static Node parse( String pattern )
+	{
+		RegularExpressionParser parser = new RegularExpressionParser( pattern );
+		Node node = parser.parseAlternation();
+
+		if( parser.position != pattern.length() )
+		{
+			throw parser.unsupported( "unexpected character" );
+		}
+
+		return node;
+	}
+
+	/**
+	 * Parses alternatives separated by '|'
+	 */
+	private Node parseAlternation()
+	{
+		List<Node> alternatives = new ArrayList<Node>();
+		alternatives.add( parseConcatenation() );
+
+		while( position < pattern.length() && pattern.charAt( position ) == '|' )
+		{
+			position++;
+			alternatives.add( parseConcatenation() );
+		}
+
+		return alternatives.size() == 1 ? alternatives.get( 0 ) : new Node( Node.ALTERNATION, alternatives );
+	}
+
+	/**
+	 * Parses sequence of repeated atoms
+	 */
+	private Node parseConcatenation()
+	{
+		List<Node> sequence = new ArrayList<Node>();
+
+		while( position < pattern.length() && pattern.charAt( position ) != '|' && pattern.charAt( position ) != ')' )
+		{
+			sequence.add( parseRepetition() );
+		}
+
+		return new Node( Node.CONCATENATION, sequence );
+	}
+
+	/**
+	 * Parses an atom followed by optional quantifiers
+	 */
+	private Node parseRepetition()
+	{
+		Node node = parseAtom();
+
+		while( position < pattern.length() )
+		{
+			char character = pattern.charAt( position );
+			int minimum;
+			int maximum;
+
+			if( character == '*' )
+			{
+				minimum = 0;
+				maximum = -1;
+				position++;
+			}
+			else if( character == '+' )
+			{
+				minimum = 1;
+				maximum = -1;
+				position++;
+			}
+			else if( character == '?' )
+			{
+				minimum = 0;
+				maximum = 1;
+				position++;
+			}
+			else if( character == '{' )
+			{
+				position++;
+				minimum = parseNumber();
+				maximum = minimum;
+
+				if( position < pattern.length() && pattern.charAt( position ) == ',' )
+				{
+					position++;
+					maximum = position < pattern.length() && pattern.charAt( position ) == '}' ? -1 : parseNumber();
+				}
+
+				expect( '}' );
+
+				if( maximum != -1 && maximum < minimum )
+				{
+					throw unsupported( "invalid repetition range" );
+				}
+			}
+			else
+			{
+				break;
+			}
+
+			if( position < pattern.length() )
+			{
+				// reluctant quantifier matches the same language, possessive one may not
+				if( pattern.charAt( position ) == '?' )
+				{
+					position++;
+				}
+				else if( pattern.charAt( position ) == '+' )
+				{
+					throw unsupported( "possessive quantifier" );
+				}
+			}
+
+			node = new Node( node, minimum, maximum );
+		}
+
+		return node;
+	}
+
+	/**
+	 * Parses a group, a character class, an escape sequence or a literal character
+	 */
+	private Node parseAtom()
+	{
+		char character = pattern.charAt( position++ );
+
+		switch( character )
+		{
+			case '(':
+				if( position < pattern.length() && pattern.charAt( position ) == '?' )
+				{
+					if( position + 1 < pattern.length() && pattern.charAt( position + 1 ) == ':' )
+					{
+						position += 2;
+					}
+					else
+					{
+						throw unsupported( "special group" );
+					}
+				}
+
+				Node group = parseAlternation();
+				expect( ')' );
+				return group;
+
+			case '[':
+				return new Node( parseCharacterClass() );
+
+			case '.':
+				return new Node( complement( LINE_TERMINATORS ) );
+
+			case '\\':
+				return new Node( parseEscape( false ) );
+
+			case '^':
+			case '$':
+			case '{':
+			case '*':
+			case '+':
+			case '?':
+				throw unsupported( "unexpected '" + character + "'" );
+
+			default:
+				return new Node( new int[]
+				{ character, character } );
+		}
+	}
+
+	/**
+	 * Parses a character class, after the opening '['
+	 * 
+	 * @return ranges of the class
+	 */
+	private int[] parseCharacterClass()
+	{
+		boolean negated = false;
+
+		if( position < pattern.length() && pattern.charAt( position ) == '^' )
+		{
+			negated = true;
+			position++;
+		}
+
+		if( position < pattern.length() && pattern.charAt( position ) == ']' )
+		{
+			throw unsupported( "empty character class" );
+		}
+
+		int[] ranges = new int[0];
+
+		while( true )
+		{
+			if( position >= pattern.length() )
+			{
+				throw unsupported( "unclosed character class" );
+			}
+
+			char character = pattern.charAt( position++ );
+
+			if( character == ']' )
+			{
+				break;
+			}
+			else if( character == '[' || ( character == '&' && position < pattern.length() && pattern.charAt( position ) == '&' ) )
+			{
+				throw unsupported( "nested character class" );
+			}
+
+			int[] item;
+			if( character == '\\' )
+			{
+				item = parseEscape( true );
+			}
+			else
+			{
+				item = new int[]
+				{ character, character };
+			}
+
+			// range like a-z, '-' is literal if it ends the class
+			if( item.length == 2 && item[0] == item[1] && position + 1 < pattern.length()
+					&& pattern.charAt( position ) == '-' && pattern.charAt( position + 1 ) != ']' )
+			{
+				position++;
+				char end = pattern.charAt( position++ );
+				int[] endItem;
+
+				if( end == '\\' )
+				{
+					endItem = parseEscape( true );
+				}
+				else if( end == '[' )
+				{
+					throw unsupported( "nested character class" );
+				}
+				else
+				{
+					endItem = new int[]
+					{ end, end };
+				}
+
+				if( endItem.length != 2 || endItem[0] != endItem[1] || endItem[0] < item[0] )
+				{
+					throw unsupported( "invalid range" );
+				}
+
+				item = new int[]
+				{ item[0], endItem[0] };
+			}
+
+			ranges = union( ranges, item );
+		}
+
+		return negated ? complement( ranges ) : ranges;
+	}
+
+	/**
+	 * Parses an escape sequence, after the '\'
+	 * 
+	 * @param inClass whether the escape is inside a character class
+	 * @return the ranges matched by escape sequence
+	 */
+	private int[] parseEscape( boolean inClass )
+	{
+		if( position >= pattern.length() )
+		{
+			throw unsupported( "incomplete escape sequence" );
+		}
+
+		char character = pattern.charAt( position++ );
+
+		switch( character )
+		{
+			case 'd':
+				return DIGITS;
+			case 'D':
+				return complement( DIGITS );
+			case 'w':
+				return WORD_CHARACTERS;
+			case 'W':
+				return complement( WORD_CHARACTERS );
+			case 's':
+				return SPACES;
+			case 'S':
+				return complement( SPACES );
+			case 't':
+				return new int[]
+				{ '\t', '\t' };
+			case 'n':
+				return new int[]
+				{ '\n', '\n' };
+			case 'r':
+				return new int[]
+				{ '\r', '\r' };
+			case 'f':
+				return new int[]
+				{ '\f', '\f' };
+			default:
+				if( Character.isLetterOrDigit( character ) )
+				{
+					throw unsupported( "escape sequence \\" + character );
+				}
+				return new int[]
+				{ character, character };
+		}
+	}
+
+	/**
+	 * Parses a decimal number for counted repetition
+	 */
+	private int parseNumber()
+	{
+		int start = position;
+		while( position < pattern.length() && Character.isDigit( pattern.charAt( position ) ) )
+		{
+			position++;
+		}
+
+		if( start == position || position - start > 3 )
+		{
+			throw unsupported( "invalid repetition count" );
+		}
+
+		int number = Integer.parseInt( pattern.substring( start, position ) );
+		if( number > MAX_REPETITION )
+		{
+			throw unsupported( "repetition count is too large" );
+		}
+		return number;
+	}
+
+	private void expect( char character )
+	{
+		if( position >= pattern.length() || pattern.charAt( position ) != character )
+		{
+			throw unsupported( "'" + character + "' expected" );
+		}
+		position++;
+	}
+
+	private IllegalArgumentException unsupported( String reason )
+	{
+		return new IllegalArgumentException( "Regular expression can not be compiled to automaton, " + reason
+				+ ". pattern[" + pattern + "] position[" + position + "]" );
+	}
+
+	/**
+	 * Returns the union of two sorted range arrays
+	 * 
+	 * @param first ranges as pairs of inclusive bounds
+	 * @param second ranges as pairs of inclusive bounds
+	 * @return sorted and merged ranges
+	 */
+	static int[] union( int[] first, int[] second )
+	{
+		int[] all = Arrays.copyOf( first, first.length + second.length );
+		System.arraycopy( second, 0, all, first.length, second.length );
+
+		// sort pairs by lower bound
+		int pairs = all.length / 2;
+		long[] sorted = new long[pairs];
+		for( int i = 0; i < pairs; i++ )
+		{
+			sorted[i] = ( (long) all[2 * i] << 32 ) | all[2 * i + 1];
+		}
+		Arrays.sort( sorted );
+
+		int[] result = new int[all.length];
+		int size = 0;
+		for( int i = 0; i < pairs; i++ )
+		{
+			int low = (int) ( sorted[i] >>> 32 );
+			int high = (int) sorted[i];
+
+			if( size > 0 && low <= result[size - 1] + 1 )
+			{
+				result[size - 1] = Math.max( result[size - 1], high );
+			}
+			else
+			{
+				result[size++] = low;
+				result[size++] = high;
+			}
+		}
+		return Arrays.copyOf( result, size );
+	}
+
+	/**
+	 * Returns the complement of sorted ranges
+	 * 
+	 * @param ranges ranges to complement
+	 * @return ranges of characters not in given ranges
+	 */
+	static int[] complement( int[] ranges )
+	{
+		ranges = union( ranges, new int[0] );
+		int[] result = new int[ranges.length + 2];
+		int size = 0;
+		int next = 0;
+
+		for( int i = 0; i < ranges.length; i += 2 )
+		{
+			if( ranges[i] > next )
+			{
+				result[size++] = next;
+				result[size++] = ranges[i] - 1;
+			}
+			next = ranges[i + 1] + 1;
+		}
+
+		if( next <= MAX_CHARACTER )
+		{
+			result[size++] = next;
+			result[size++] = MAX_CHARACTER;
+		}
+		return Arrays.copyOf( result, size );
+	}
+
+	/**
+	 * State of non deterministic automaton
+	 */
+	static final class State
+	{
+
+		/**
+		 * Index of state in list of states
+		 */
+		final int			id;
+
+		/**
+		 * States reachable without consuming any character
+		 */
+		final List<State>	epsilonTransitions	= new ArrayList<State>( 2 );
+
+		/**
+		 * Ranges of characters for the transition to target, <code>null</code> if there is no such transition
+		 */
+		int[]				ranges;
+
+		/**
+		 * State reached after consuming a character in ranges
+		 */
+		State				target;
+
+		/**
+		 * Bit mask of rules for which this state accepts the approachable pattern
+		 */
+		long				approachableMask;
+
+		/**
+		 * Bit mask of rules for which this state accepts the allowed pattern
+		 */
+		long				allowedMask;
+
+		State( List<State> states )
+		{
+			this.id = states.size();
+			states.add( this );
+		}
+	}
+
+	/**
+	 * Part of automaton with one start and one end state
+	 */
+	static final class Fragment
+	{
+
+		final State	start;
+
+		final State	end;
+
+		Fragment( State start, State end )
+		{
+			this.start = start;
+			this.end = end;
+		}
+	}
+
+	/**
+	 * Node of parsed regular expression
+	 */
+	static final class Node
+	{
+
+		static final int		CHARACTERS		= 0;
+
+		static final int		CONCATENATION	= 1;
+
+		static final int		ALTERNATION		= 2;
+
+		static final int		REPETITION		= 3;
+
+		private final int		type;
+
+		private final int[]		ranges;
+
+		private final List<Node>	children;
+
+		private final int		minimum;
+
+		private final int		maximum;
+
+		Node( int[] ranges )
+		{
+			this( CHARACTERS, ranges, null, 0, 0 );
+		}
+
+		Node( int type, List<Node> children )
+		{
+			this( type, null, children, 0, 0 );
+		}
+
+		Node( Node repeated, int minimum, int maximum )
+		{
+			this( REPETITION, null, new ArrayList<Node>( Arrays.asList( repeated ) ), minimum, maximum );
+		}
+
+		private Node( int type, int[] ranges, List<Node> children, int minimum, int maximum )
+		{
+			this.type = type;
+			this.ranges = ranges;
+			this.children = children;
+			this.minimum = minimum;
+			this.maximum = maximum;
+		}
+
+		/**
+		 * Builds a new automaton fragment for this node. A repeated node is built once for each repetition.
+		 */
+		Fragment build( List<State> states )
+		{
+			State start = new State( states );
+			State end;
+
+			switch( type )
+			{
+				case CHARACTERS:
+					end = new State( states );
+					start.ranges = ranges;
+					start.target = end;
+					break;
+
+				case CONCATENATION:
+					end = start;
+					for( Node child : children )
+					{
+						Fragment fragment = child.build( states );
+						end.epsilonTransitions.add( fragment.start );
+						end = fragment.end;
+					}
+					break;
+
+				case ALTERNATION:
+					end = new State( states );
+					for( Node child : children )
+					{
+						Fragment fragment = child.build( states );
+						start.epsilonTransitions.add( fragment.start );
+						fragment.end.epsilonTransitions.add( end );
+					}
+					break;
+
+				default:
+					Node repeated = children.get( 0 );
+					end = start;
+					for( int i = 0; i < minimum; i++ )
+					{
+						Fragment fragment = repeated.build( states );
+						end.epsilonTransitions.add( fragment.start );
+						end = fragment.end;
+					}
+
+					if( maximum == -1 )
+					{
+						Fragment fragment = repeated.build( states );
+						State loopEnd = new State( states );
+						end.epsilonTransitions.add( fragment.start );
+						end.epsilonTransitions.add( loopEnd );
+						fragment.end.epsilonTransitions.add( fragment.start );
+						fragment.end.epsilonTransitions.add( loopEnd );
+						end = loopEnd;
+					}
+					else
+					{
+						State optionalEnd = new State( states );
+						for( int i = minimum; i < maximum; i++ )
+						{
+							Fragment fragment = repeated.build( states );
+							end.epsilonTransitions.add( fragment.start );
+							end.epsilonTransitions.add( optionalEnd );
+							end = fragment.end;
+						}
+						end.epsilonTransitions.add( optionalEnd );
+						end = optionalEnd;
+					}
+			}
+
+			return new Fragment( start, end );
+		}
+	}
+}
@@ -26,8 +26,8 @@
  */
 package org.vedantatree.expressionoasis.types;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.vedantatree.expressionoasis.utils.JavaUtils;
 import org.vedantatree.expressionoasis.utils.StringUtils;
@@ -58,6 +58,12 @@ import org.vedantatree.expressionoasis.utils.Utilities;
  * @author Mohit Gupta
  * @version 1.2
  * @since June 2014
+ * 
+ *          Cache of types is concurrent, as it is read without lock while other threads create types.
+ * 
+ * @author Mohit Gupta
+ * @version 1.3
+ * @since 3.3
  */
 public class Type
 {
@@ -65,7 +71,7 @@ public class Type
 	/**
 	 * An in memory cache for storing the generated types.
 	 */
-	private static final Map<String, Type>	TYPE_CACHE	= new HashMap<>();
+	private static final Map<String, Type>	TYPE_CACHE	= new ConcurrentHashMap<>();
 
 	/**
 	 * This is the byte type.
@@ -26,6 +26,10 @@
  */
 package org.vedantatree.expressionoasis.types;
 
+import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.exceptions.NullValueException;
+
+
 /**
  * This is the value wrapper for any object.
  * Also contains the type information for the ibject.
@@ -33,6 +37,11 @@ package org.vedantatree.expressionoasis.types;
  * @author Parmod Kamboj
  * @version 1.0
  * 
+ *          Added primitive accessors of value, used by primitive evaluation of expressions.
+ * 
+ * @author Mohit Gupta
+ * @version 1.1
+ * @since 3.3
  */
 public class ValueObject
 {
@@ -83,6 +92,51 @@ public class ValueObject
 		return valueType;
 	}
 
+	/**
+	 * Gets the value as long
+	 * 
+	 * @return the numeric value converted to long
+	 * @throws NullValueException if value is null
+	 */
+	public long longValue() throws ExpressionEngineException
+	{
+		if( value == null )
+		{
+			throw NullValueException.INSTANCE;
+		}
+		return ( (Number) value ).longValue();
+	}
+
+	/**
+	 * Gets the value as double
+	 * 
+	 * @return the numeric value converted to double
+	 * @throws NullValueException if value is null
+	 */
+	public double doubleValue() throws ExpressionEngineException
+	{
+		if( value == null )
+		{
+			throw NullValueException.INSTANCE;
+		}
+		return ( (Number) value ).doubleValue();
+	}
+
+	/**
+	 * Gets the value as boolean
+	 * 
+	 * @return the boolean value
+	 * @throws NullValueException if value is null
+	 */
+	public boolean booleanValue() throws ExpressionEngineException
+	{
+		if( value == null )
+		{
+			throw NullValueException.INSTANCE;
+		}
+		return ( (Boolean) value ).booleanValue();
+	}
+
 	public String toString()
 	{
 		return "ValueObject@" + hashCode() + ": value[" + value + "] type[" + valueType + "]";
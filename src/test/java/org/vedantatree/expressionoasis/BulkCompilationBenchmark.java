@@ -0,0 +1,126 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.extensions.DefaultVariableProvider;
+import org.vedantatree.expressionoasis.types.Type;
+import org.vedantatree.expressionoasis.types.ValueObject;
+
+
+/**
+ * Measures the loading of a repository of 100,000 rules, compiled one by one in a loop and by bulk compilation with 1,
+ * 2, 4 and 8 threads. Every load uses a new Compiler and context, so nothing is reused from earlier loads. One of
+ * every ten rules repeats an earlier rule, as in real repositories.
+ * 
+ * It is not a test case, run it from command line.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public class BulkCompilationBenchmark
+{
+
+	private static final int	RULE_COUNT	= 100000;
+
+	public static void main( String[] args ) throws Exception
+	{
+		Logger.getLogger( "org.vedantatree" ).setLevel( Level.INFO );
+
+		Map<String, String> rules = new LinkedHashMap<String, String>();
+		for( int i = 0; i < RULE_COUNT; i++ )
+		{
+			int seed = i % 10 == 9 ? i / 2 : i;
+			rules.put( "rule" + i, "(balance * " + seed + " + limit) / max(" + ( seed % 13 ) + ".5, rate) >= " + seed
+					+ " && sqrt(balance) < limit * " + ( seed % 7 ) );
+		}
+
+		for( int run = 0; run < 2; run++ )
+		{
+			// first run includes warm up
+			long sequentialNanos = loadSequentially( rules );
+			report( "sequential", 1, sequentialNanos, sequentialNanos );
+			for( int threadCount = 1; threadCount <= 8; threadCount *= 2 )
+			{
+				report( "bulk", threadCount, loadInBulk( rules, threadCount ), sequentialNanos );
+			}
+		}
+	}
+
+	private static long loadSequentially( Map<String, String> rules ) throws ExpressionEngineException
+	{
+		Compiler compiler = new Compiler( ExpressionEngine.getGrammar() );
+		ExpressionContext expressionContext = createContext();
+		long start = System.nanoTime();
+		for( String rule : rules.values() )
+		{
+			compiler.compile( rule, expressionContext, true );
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static long loadInBulk( Map<String, String> rules, int threadCount ) throws ExpressionEngineException
+	{
+		Compiler compiler = new Compiler( ExpressionEngine.getGrammar() );
+		ExpressionContext expressionContext = createContext();
+		ForkJoinPool pool = new ForkJoinPool( threadCount );
+		try
+		{
+			long start = System.nanoTime();
+			compiler.compileAllNamed( rules, expressionContext, true, pool );
+			return System.nanoTime() - start;
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	private static ExpressionContext createContext() throws ExpressionEngineException
+	{
+		ExpressionContext expressionContext = new ExpressionContext();
+		DefaultVariableProvider dvp = new DefaultVariableProvider();
+		dvp.addVariable( "balance", new ValueObject( 2500.0, Type.DOUBLE ) );
+		dvp.addVariable( "limit", new ValueObject( 1000.0, Type.DOUBLE ) );
+		dvp.addVariable( "rate", new ValueObject( 4.5, Type.DOUBLE ) );
+		expressionContext.addVariableProvider( dvp );
+		return expressionContext;
+	}
+
+	private static void report( String mode, int threadCount, long nanos, long sequentialNanos )
+	{
+		System.out.println( String.format( "%-10s threads[%d] millis[%6d] rules/s[%8.0f] speedup[%.2f]", mode,
+				threadCount, nanos / 1000000, RULE_COUNT * 1e9 / nanos, (double) sequentialNanos / nanos ) );
+	}
+}
@@ -0,0 +1,176 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.expressions.CompiledExpression;
+import org.vedantatree.expressionoasis.expressions.Expression;
+import org.vedantatree.expressionoasis.expressions.ExpressionClassCompiler;
+import org.vedantatree.expressionoasis.extensions.VariableProvider;
+import org.vedantatree.expressionoasis.types.Type;
+import org.vedantatree.expressionoasis.types.ValueObject;
+
+
+/**
+ * Measures the evaluation of formulas by the tree, by the class generated for tree, and by the same formula written
+ * in Java, which is the reference. Formulas are evaluated as primitives, with the variables changing in every
+ * evaluation.
+ * 
+ * It is not a test case, run it from command line.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public class ClassCompilationBenchmark
+{
+
+	private static final int		DURATION_MILLIS	= 2000;
+
+	private static final String[]	FORMULAS		= new String[]
+	{ "x * 3.5 + y * y - (x - y) / 4", "x > 10 && y < 5 || x * y > 100", "sqrt(x * x + y * y) + max(x, y) * 2",
+			"(x + y) * (x + y) - (x + y)" };
+
+	/**
+	 * Variables of current evaluation
+	 */
+	private static double			x;
+
+	private static double			y;
+
+	public static void main( String[] args ) throws ExpressionEngineException
+	{
+		Logger.getLogger( "org.vedantatree" ).setLevel( Level.INFO );
+
+		ExpressionContext expressionContext = new ExpressionContext();
+		expressionContext.addVariableProvider( new VariablesProvider() );
+		Compiler compiler = new Compiler( ExpressionEngine.getGrammar() );
+
+		// first round includes warm up
+		for( int round = 0; round < 2; round++ )
+		{
+			for( int i = 0; i < FORMULAS.length; i++ )
+			{
+				Expression tree = compiler.compile( FORMULAS[i], expressionContext, true );
+				Expression compiled = ExpressionClassCompiler.compile( tree );
+				double treeNanos = run( tree, -1 );
+				double compiledNanos = run( compiled, -1 );
+				double javaNanos = run( null, i );
+				System.out.println( String.format(
+						"%-40s ns/evaluation tree[%6.1f] class[%6.1f] java[%6.1f] interpretedNodes[%d]", FORMULAS[i],
+						treeNanos, compiledNanos, javaNanos, compiled instanceof CompiledExpression
+								? ( (CompiledExpression) compiled ).getInterpretedNodeCount() : -1 ) );
+			}
+		}
+	}
+
+	/**
+	 * Evaluates the expression, or the formula in Java if expression is null, and returns the nanoseconds per
+	 * evaluation
+	 */
+	private static double run( Expression expression, int formula ) throws ExpressionEngineException
+	{
+		double sum = 0;
+		long evaluations = 0;
+		long start = System.nanoTime();
+		long deadline = start + DURATION_MILLIS * 1000000L;
+		while( System.nanoTime() < deadline )
+		{
+			for( int i = 0; i < 1000; i++ )
+			{
+				x = i % 20;
+				y = i % 7;
+				if( expression == null )
+				{
+					sum += evaluate( formula );
+				}
+				else if( expression.getReturnType() == Type.BOOLEAN )
+				{
+					sum += expression.evaluateBoolean() ? 1 : 0;
+				}
+				else
+				{
+					sum += expression.evaluateDouble();
+				}
+			}
+			evaluations += 1000;
+		}
+		long elapsed = System.nanoTime() - start;
+		if( sum == 42 )
+		{
+			System.out.println( "sum[" + sum + "]" );
+		}
+		return (double) elapsed / evaluations;
+	}
+
+	/**
+	 * Evaluates the formula written in Java
+	 */
+	private static double evaluate( int formula )
+	{
+		switch( formula )
+		{
+			case 0:
+				return x * 3.5 + y * y - ( x - y ) / 4;
+			case 1:
+				return x > 10 && y < 5 || x * y > 100 ? 1 : 0;
+			case 2:
+				return Math.sqrt( x * x + y * y ) + Math.max( x, y ) * 2;
+			default:
+				double sum = x + y;
+				return sum * sum - sum;
+		}
+	}
+
+	/**
+	 * Provides the variables of current evaluation
+	 */
+	private static final class VariablesProvider implements VariableProvider
+	{
+
+		public void initialize( ExpressionContext expressionContext ) throws ExpressionEngineException
+		{
+		}
+
+		public Type getVariableType( String variableName ) throws ExpressionEngineException
+		{
+			return Type.DOUBLE;
+		}
+
+		public ValueObject getVariableValue( String variableName ) throws ExpressionEngineException
+		{
+			return new ValueObject( "x".equals( variableName ) ? x : y, Type.DOUBLE );
+		}
+
+		public boolean supportsVariable( String variableName ) throws ExpressionEngineException
+		{
+			return "x".equals( variableName ) || "y".equals( variableName );
+		}
+	}
+}
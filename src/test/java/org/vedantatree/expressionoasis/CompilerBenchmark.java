@@ -0,0 +1,96 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.grammar.Grammar;
+
+
+/**
+ * Measures the compilation throughput of Compiler in RPN and precedence climbing modes. Every compiled expression is
+ * different, so that cache of compiled expressions does not hide the cost of building the tree.
+ * 
+ * It is not a test case, run it from command line.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public class CompilerBenchmark
+{
+
+	private static final String	SEGMENT	= "-(12 * 3 + 4 / 2) % 5 >= 2.5 == !(1 << 3 > 7 || 8 >>> 1 != 4) ? max(3, 4) : ";
+
+	public static void main( String[] args ) throws ExpressionEngineException
+	{
+		Logger.getLogger( "org.vedantatree" ).setLevel( Level.INFO );
+
+		Grammar grammar = ExpressionEngine.getGrammar();
+		int[] segments = new int[]
+		{ 1, 10, 100 };
+
+		// modes are run alternately few times, as the first runs include warm up of the shared code
+		for( int i = 0; i < segments.length; i++ )
+		{
+			for( int round = 0; round < 3; round++ )
+			{
+				run( new Compiler( grammar, ExpressionEngineConstants.COMPILATION_MODE_RPN ), "rpn", segments[i] );
+				run( new Compiler( grammar, ExpressionEngineConstants.COMPILATION_MODE_PRECEDENCE_CLIMBING ),
+						"climbing", segments[i] );
+			}
+		}
+	}
+
+	private static void run( Compiler compiler, String mode, int segments ) throws ExpressionEngineException
+	{
+		ExpressionContext expressionContext = new ExpressionContext();
+		int iterations = Math.max( 100, 20000 / segments );
+		StringBuilder prefix = new StringBuilder();
+		for( int i = 0; i < segments; i++ )
+		{
+			prefix.append( SEGMENT );
+		}
+
+		// warm up
+		for( int i = 0; i < iterations; i++ )
+		{
+			compiler.compile( prefix + "-" + i, expressionContext, false );
+		}
+
+		long start = System.nanoTime();
+		for( int i = 0; i < iterations; i++ )
+		{
+			compiler.compile( prefix + String.valueOf( i ), expressionContext, false );
+		}
+		long elapsed = System.nanoTime() - start;
+
+		System.out.println( String.format( "%-10s chars[%6d] ms/compile[%10.4f]", mode, prefix.length(), elapsed
+				/ 1e6 / iterations ) );
+	}
+}
@@ -0,0 +1,127 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.vedantatree.expressionoasis.config.ConfigFactory;
+import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+
+
+/**
+ * Measures the compilation throughput of one Compiler shared by 1, 8 and 32 threads, with the cache of compiled
+ * expressions. Expressions are picked from a pool twice as large as the entry bound of cache in config.xml, with a
+ * skew towards few expressions like in real use, so the cache keeps evicting while threads read it.
+ * 
+ * It is not a test case, run it from command line.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public class ExpressionCacheBenchmark
+{
+
+	private static final int	DURATION_MILLIS	= 3000;
+
+	public static void main( String[] args ) throws Exception
+	{
+		Logger.getLogger( "org.vedantatree" ).setLevel( Level.INFO );
+
+		int poolSize = 2 * ConfigFactory.getConfig().getExpressionCacheConfig().getMaximumEntries();
+		String[] pool = new String[Math.max( poolSize, 1000 )];
+		for( int i = 0; i < pool.length; i++ )
+		{
+			pool[i] = "(" + i + " + 12 * 3.5) / max(4, " + ( i % 17 ) + ") >= 2 && 'a' != 'b'";
+		}
+
+		int[] threadCounts = new int[]
+		{ 1, 8, 32, 1, 8, 32 };
+		for( int i = 0; i < threadCounts.length; i++ )
+		{
+			// first runs include warm up
+			run( new Compiler( ExpressionEngine.getGrammar() ), pool, threadCounts[i] );
+		}
+	}
+
+	private static void run( final Compiler compiler, final String[] pool, int threadCount ) throws Exception
+	{
+		final AtomicLong compileCount = new AtomicLong();
+		final AtomicLong failureCount = new AtomicLong();
+		final CountDownLatch start = new CountDownLatch( 1 );
+		final CountDownLatch done = new CountDownLatch( threadCount );
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( DURATION_MILLIS );
+
+		for( int t = 0; t < threadCount; t++ )
+		{
+			final Random random = new Random( t );
+			new Thread()
+			{
+
+				@Override
+				public void run()
+				{
+					long count = 0;
+					try
+					{
+						ExpressionContext expressionContext = new ExpressionContext();
+						start.await();
+						while( System.nanoTime() < deadline )
+						{
+							// cube of uniform value makes low indexes much more frequent
+							double uniform = random.nextDouble();
+							compiler.compile( pool[(int) ( uniform * uniform * uniform * pool.length )],
+									expressionContext, false );
+							count++;
+						}
+					}
+					catch( ExpressionEngineException e )
+					{
+						failureCount.incrementAndGet();
+					}
+					catch( InterruptedException e )
+					{
+						Thread.currentThread().interrupt();
+					}
+					compileCount.addAndGet( count );
+					done.countDown();
+				}
+			}.start();
+		}
+
+		start.countDown();
+		done.await();
+
+		System.out.println( String.format( "threads[%2d] compiles/s[%10.0f] failures[%d] %s", threadCount,
+				compileCount.get() * 1000.0 / DURATION_MILLIS, failureCount.get(), compiler.getCacheStatistics() ) );
+	}
+}
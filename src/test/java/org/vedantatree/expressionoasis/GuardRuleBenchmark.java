@@ -0,0 +1,171 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.expressions.Expression;
+import org.vedantatree.expressionoasis.expressions.ExpressionFactory;
+import org.vedantatree.expressionoasis.extensions.FunctionProvider;
+import org.vedantatree.expressionoasis.extensions.VariableProvider;
+import org.vedantatree.expressionoasis.types.Type;
+import org.vedantatree.expressionoasis.types.ValueObject;
+
+
+/**
+ * Measures the evaluation of guard style rules, where a cheap check guards a costly lookup with <code>&amp;&amp;</code>,
+ * <code>||</code>, ternary and <code>iif</code>. Guard lets one in ten evaluations reach the lookup, so the count of
+ * lookups per evaluation shows whether the guarded operand is skipped. An unguarded rule is the reference for the cost
+ * of lookup.
+ * 
+ * It is not a test case, run it from command line.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public class GuardRuleBenchmark
+{
+
+	private static final int		DURATION_MILLIS	= 2000;
+
+	private static final String[]	RULES			= new String[]
+	{ "lookup(amount) > 100", "amount >= 900 && lookup(amount) > 100", "amount < 900 || lookup(amount) > 100",
+			"amount >= 900 ? lookup(amount) : 0.0", "iif(amount >= 900, lookup(amount), 0.0)" };
+
+	/**
+	 * Amount of current evaluation
+	 */
+	private static double			amount;
+
+	private static final AtomicLong	lookups			= new AtomicLong();
+
+	public static void main( String[] args ) throws ExpressionEngineException
+	{
+		Logger.getLogger( "org.vedantatree" ).setLevel( Level.INFO );
+
+		ExpressionContext expressionContext = new ExpressionContext();
+		expressionContext.addVariableProvider( new AmountProvider() );
+		expressionContext.addFunctionProvider( new LookupProvider() );
+		Compiler compiler = new Compiler( ExpressionEngine.getGrammar() );
+
+		// first round includes warm up
+		for( int round = 0; round < 2; round++ )
+		{
+			for( int i = 0; i < RULES.length; i++ )
+			{
+				run( compiler.compile( RULES[i], expressionContext, true ), RULES[i] );
+			}
+		}
+	}
+
+	private static void run( Expression expression, String rule ) throws ExpressionEngineException
+	{
+		lookups.set( 0 );
+		long evaluations = 0;
+		long start = System.nanoTime();
+		long deadline = start + DURATION_MILLIS * 1000000L;
+		while( System.nanoTime() < deadline )
+		{
+			for( int i = 0; i < 1000; i++ )
+			{
+				amount = i;
+				expression.getValue();
+			}
+			evaluations += 1000;
+		}
+		long elapsed = System.nanoTime() - start;
+
+		System.out.println( String.format( "%-45s ns/evaluation[%8.1f] lookups/evaluation[%.2f]", rule, (double) elapsed
+				/ evaluations, (double) lookups.get() / evaluations ) );
+	}
+
+	/**
+	 * Provides the amount of current evaluation
+	 */
+	private static final class AmountProvider implements VariableProvider
+	{
+
+		public void initialize( ExpressionContext expressionContext ) throws ExpressionEngineException
+		{
+		}
+
+		public Type getVariableType( String variableName ) throws ExpressionEngineException
+		{
+			return Type.DOUBLE;
+		}
+
+		public ValueObject getVariableValue( String variableName ) throws ExpressionEngineException
+		{
+			return new ValueObject( amount, Type.DOUBLE );
+		}
+
+		public boolean supportsVariable( String variableName ) throws ExpressionEngineException
+		{
+			return "amount".equals( variableName );
+		}
+	}
+
+	/**
+	 * Provides the lookup function, which stands for a costly call like a lookup in XML
+	 */
+	private static final class LookupProvider implements FunctionProvider
+	{
+
+		public void initialize( ExpressionContext expressionContext ) throws ExpressionEngineException
+		{
+			ExpressionFactory.getInstance().addFunction( "lookup" );
+			ExpressionEngine.getGrammar().addFunction( "lookup" );
+		}
+
+		public Type getFunctionType( String functionName, Type[] parameterTypes ) throws ExpressionEngineException
+		{
+			return Type.DOUBLE;
+		}
+
+		public ValueObject getFunctionValue( String functionName, ValueObject[] parameters )
+				throws ExpressionEngineException
+		{
+			lookups.incrementAndGet();
+			double key = ( (Number) parameters[0].getValue() ).doubleValue();
+			double value = 0;
+			for( int i = 1; i <= 2000; i++ )
+			{
+				value += Math.sqrt( key * i );
+			}
+			return new ValueObject( value / 2000, Type.DOUBLE );
+		}
+
+		public boolean supportsFunction( String functionName, Type[] parameterTypes ) throws ExpressionEngineException
+		{
+			return "lookup".equals( functionName ) && parameterTypes.length == 1;
+		}
+	}
+}
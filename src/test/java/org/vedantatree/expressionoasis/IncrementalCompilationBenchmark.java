@@ -0,0 +1,104 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.extensions.DefaultVariableProvider;
+import org.vedantatree.expressionoasis.grammar.DefaultXMLGrammar;
+import org.vedantatree.expressionoasis.types.Type;
+import org.vedantatree.expressionoasis.types.ValueObject;
+
+
+/**
+ * Measures the latency of compiling an expression on every key stroke, fully and incrementally, for expressions of
+ * 10, 100 and 1000 terms. A digit is typed in and deleted from the middle term again and again.
+ * 
+ * It is not a test case, run it from command line.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public class IncrementalCompilationBenchmark
+{
+
+	public static void main( String[] args ) throws ExpressionEngineException
+	{
+		Logger.getLogger( "org.vedantatree" ).setLevel( Level.INFO );
+
+		Compiler compiler = new Compiler( new DefaultXMLGrammar() );
+		ExpressionContext context = new ExpressionContext();
+		DefaultVariableProvider variableProvider = new DefaultVariableProvider();
+		variableProvider.addVariable( "principal", new ValueObject( new Double( 100.00 ), Type.DOUBLE ) );
+		variableProvider.addVariable( "rate", new ValueObject( new Double( 10.00 ), Type.DOUBLE ) );
+		context.addVariableProvider( variableProvider );
+
+		int[] terms = new int[]
+		{ 10, 100, 1000 };
+
+		for( int i = 0; i < terms.length; i++ )
+		{
+			StringBuilder expression = new StringBuilder( "principal" );
+			for( int j = 0; j < terms[i]; j++ )
+			{
+				expression.append( " + (" ).append( j ).append( " * rate - 2.5)" );
+			}
+			int offset = expression.indexOf( "(" + terms[i] / 2 + " " ) + 1;
+			int iterations = Math.max( 10, 20000 / terms[i] );
+
+			run( compiler, context, expression.toString(), offset, iterations / 10 );
+			run( compiler, context, expression.toString(), offset, iterations );
+		}
+	}
+
+	private static void run( Compiler compiler, ExpressionContext context, String expression, int offset,
+			int iterations ) throws ExpressionEngineException
+	{
+		String edited = expression.substring( 0, offset ) + "7" + expression.substring( offset );
+
+		long start = System.nanoTime();
+		for( int i = 0; i < iterations; i++ )
+		{
+			compiler.compile( i % 2 == 0 ? edited : expression, context, true );
+		}
+		long full = System.nanoTime() - start;
+
+		IncrementalExpression state = compiler.compileIncrementally( expression, context, true );
+		start = System.nanoTime();
+		for( int i = 0; i < iterations; i++ )
+		{
+			state = i % 2 == 0 ? compiler.recompile( state, offset, 0, "7", context, true ) : compiler.recompile(
+					state, offset, 1, null, context, true );
+		}
+		long incremental = System.nanoTime() - start;
+
+		System.out.println( String.format( "chars[%7d] full ms/keystroke[%8.4f] incremental ms/keystroke[%8.4f]",
+				expression.length(), full / 1e6 / iterations, incremental / 1e6 / iterations ) );
+	}
+}
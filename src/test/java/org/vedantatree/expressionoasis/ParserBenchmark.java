@@ -0,0 +1,110 @@
+/**	
+ *  Copyright (c) 2005-2014 VedantaTree all rights reserved.
+ * 
+ *  This file is part of ExpressionOasis.
+ *
+ *  ExpressionOasis is free software. You can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ExpressionOasis is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. IN NO EVENT SHALL 
+ *  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES 
+ *  OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE 
+ *  OR OTHER DEALINGS IN THE SOFTWARE.See the GNU Lesser General Public License 
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ExpressionOasis. If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  Please consider to contribute any enhancements to upstream codebase. 
+ *  It will help the community in getting improved code and features, and 
+ *  may help you to get the later releases with your changes.
+ */
+package org.vedantatree.expressionoasis;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.grammar.DefaultXMLGrammar;
+import org.vedantatree.expressionoasis.grammar.Grammar;
+
+
+/**
+ * Measures the tokenization throughput of Parser in recursive, iterative and longest match lexer modes, for expressions of
+ * around 100 characters, 10 KB and 1 MB.
+ * 
+ * It is not a test case, run it from command line. Recursive mode is reported as failed if it runs out of stack.
+ * 
+ * @author Mohit Gupta
+ * @version 1.0
+ * @since 3.3
+ */
+public class ParserBenchmark
+{
+
+	private static final String	SEGMENT	= "principal * pow(1 + rate / 100, time) - .address.zip + values[2] >= 12.5 && "
+												+ "(flags >>> 2 & 1) != 0 || age <= 18 && !blocked && ";
+
+	public static void main( String[] args ) throws ExpressionEngineException
+	{
+		Logger.getLogger( "org.vedantatree" ).setLevel( Level.INFO );
+
+		Grammar grammar = new DefaultXMLGrammar();
+		int[] sizes = new int[]
+		{ 100, 10 * 1024, 1024 * 1024 };
+
+		for( int i = 0; i < sizes.length; i++ )
+		{
+			String expression = createExpression( sizes[i] );
+			run( new Parser( grammar, ExpressionEngineConstants.LEXER_MODE_RECURSIVE ), "recursive", expression );
+			run( new Parser( grammar, ExpressionEngineConstants.LEXER_MODE_ITERATIVE ), "iterative", expression );
+			run( new Parser( grammar, ExpressionEngineConstants.LEXER_MODE_LONGEST_MATCH ), "longest", expression );
+		}
+	}
+
+	private static void run( Parser parser, String mode, String expression ) throws ExpressionEngineException
+	{
+		// warm up and repeat small expressions more, to get stable numbers
+		int iterations = Math.max( 3, 2000000 / expression.length() );
+
+		try
+		{
+			long tokens = 0;
+			for( int i = 0; i < iterations; i++ )
+			{
+				tokens += parser.parse( expression ).size();
+			}
+
+			tokens = 0;
+			long start = System.nanoTime();
+			for( int i = 0; i < iterations; i++ )
+			{
+				tokens += parser.parse( expression ).size();
+			}
+			long elapsed = System.nanoTime() - start;
+
+			System.out.println( String.format( "%-10s chars[%8d] tokens/sec[%,14.0f] ms/parse[%10.3f]", mode,
+					expression.length(), tokens * 1e9 / elapsed, elapsed / 1e6 / iterations ) );
+		}
+		catch( StackOverflowError e )
+		{
+			System.out.println( String.format( "%-10s chars[%8d] failed with StackOverflowError", mode,
+					expression.length() ) );
+		}
+	}
+
+	private static String createExpression( int length )
+	{
+		StringBuilder expression = new StringBuilder( length + SEGMENT.length() );
+		while( expression.length() + SEGMENT.length() < length )
+		{
+			expression.append( SEGMENT );
+		}
+		expression.append( "principal * rate" );
+		return expression.toString();
+	}
+}
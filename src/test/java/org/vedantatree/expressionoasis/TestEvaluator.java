@@ -28,17 +28,64 @@ package org.vedantatree.expressionoasis;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.vedantatree.expressionoasis.config.ConfigFactory;
 import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.exceptions.NullValueException;
+import org.vedantatree.expressionoasis.expressions.BinaryOperatorExpression;
+import org.vedantatree.expressionoasis.expressions.CompiledExpression;
+import org.vedantatree.expressionoasis.expressions.ConstantExpression;
+import org.vedantatree.expressionoasis.expressions.Expression;
+import org.vedantatree.expressionoasis.expressions.ExpressionClassCompiler;
+import org.vedantatree.expressionoasis.expressions.ExpressionFactory;
+import org.vedantatree.expressionoasis.expressions.ExpressionInterner;
+import org.vedantatree.expressionoasis.expressions.ExpressionOptimizer;
+import org.vedantatree.expressionoasis.expressions.ExpressionTypeFinder;
+import org.vedantatree.expressionoasis.expressions.IdentifierExpression;
+import org.vedantatree.expressionoasis.expressions.ParameterizedExpression;
+import org.vedantatree.expressionoasis.expressions.SharedExpression;
+import org.vedantatree.expressionoasis.expressions.SharedExpressionScope;
+import org.vedantatree.expressionoasis.expressions.arithmatic.AddExpression;
+import org.vedantatree.expressionoasis.expressions.arithmatic.MultiplyExpression;
+import org.vedantatree.expressionoasis.expressions.arithmatic.RemainderExpression;
+import org.vedantatree.expressionoasis.expressions.arithmatic.SubtractExpression;
+import org.vedantatree.expressionoasis.expressions.booleanexp.AndExpression;
+import org.vedantatree.expressionoasis.expressions.property.FunctionExpression;
+import org.vedantatree.expressionoasis.expressions.relational.GTExpression;
+import org.vedantatree.expressionoasis.extensions.Conditional;
+import org.vedantatree.expressionoasis.extensions.DefaultFunctionProvider;
 import org.vedantatree.expressionoasis.extensions.DefaultVariableProvider;
+import org.vedantatree.expressionoasis.extensions.FunctionProvider;
+import org.vedantatree.expressionoasis.extensions.VariableProvider;
+import org.vedantatree.expressionoasis.grammar.DefaultXMLGrammar;
 import org.vedantatree.expressionoasis.types.Type;
 import org.vedantatree.expressionoasis.types.ValueObject;
 
+import com.sun.management.ThreadMXBean;
+
 
 /**
  * Testcase for expression evaluator.
@@ -64,6 +111,12 @@ public class TestEvaluator
 	 */
 	private ExpressionContext	expressionContext;
 
+	/**
+	 * Compilers of both compilation modes, to confirm that they build the same expression
+	 */
+	private Compiler			rpnCompiler;
+	private Compiler			precedenceClimbingCompiler;
+
 	/**
 	 * @see junit.framework.TestCase#setUp()
 	 */
@@ -145,6 +198,23 @@ public class TestEvaluator
 		}
 	}
 
+	public static class ConditionalFunctions
+	{
+
+		private static final AtomicInteger	INVOCATIONS	= new AtomicInteger();
+
+		public ConditionalFunctions( ExpressionContext expressionContext )
+		{
+		}
+
+		@Conditional
+		public Double choose( Boolean condition, Double whenTrue, Double whenFalse )
+		{
+			INVOCATIONS.incrementAndGet();
+			return Boolean.TRUE.equals( condition ) ? whenTrue : whenFalse;
+		}
+	}
+
 	/**
 	 * @see junit.framework.TestCase#tearDown()
 	 */
@@ -154,19 +224,42 @@ public class TestEvaluator
 		expressionContext = null;
 	}
 
+	/**
+	 * Evaluates the expression with the configured engine, after confirming that the RPN and the precedence climbing
+	 * compilation modes build the same expression for it.
+	 * 
+	 * @param expression the expression to evaluate
+	 * @return the value of expression
+	 * @throws ExpressionEngineException if expression can not be evaluated
+	 */
+	private Object evaluate( String expression ) throws ExpressionEngineException
+	{
+		Object value = ExpressionEngine.evaluate( expression, expressionContext );
+
+		if( rpnCompiler == null )
+		{
+			rpnCompiler = new Compiler( ExpressionEngine.getGrammar(), ExpressionEngineConstants.COMPILATION_MODE_RPN );
+			precedenceClimbingCompiler = new Compiler( ExpressionEngine.getGrammar(),
+					ExpressionEngineConstants.COMPILATION_MODE_PRECEDENCE_CLIMBING );
+		}
+		assertEquals( expression, rpnCompiler.compile( expression, expressionContext, true ).toString(),
+				precedenceClimbingCompiler.compile( expression, expressionContext, true ).toString() );
+		return value;
+	}
+
 	@Test
 	public void testAritmaticExpression() throws ExpressionEngineException
 	{
 		String expression = "-10 / 2";
-		Number result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		Number result = (Number) evaluate( expression );
 		assertEquals( -5, result.intValue() );
 
 		expression = "10 + (10 / 2) - 10 * 2 + 10 % 6";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertEquals( -1, result.intValue() );
 
 		expression = "20 - (10/-2 + (-5 * -2)) / (15 * (-5/5) )";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertEquals( 20.333333333333332, result.doubleValue(), 0 );
 	}
 
@@ -174,27 +267,27 @@ public class TestEvaluator
 	public void testLogicalExpression() throws ExpressionEngineException
 	{
 		String expression = "true && !true";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertEquals( false, result.booleanValue() );
 
 		expression = "(false && !true) && !(false && !true)";
-		result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Boolean) evaluate( expression );
 		assertEquals( false, result.booleanValue() );
 
 		expression = "(false && !true) || (!(false && !true) || !false)";
-		result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Boolean) evaluate( expression );
 		assertEquals( true, result.booleanValue() );
 
 		expression = "true == true";
-		result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Boolean) evaluate( expression );
 		assertTrue( result.booleanValue() );
 
 		expression = "false == false";
-		result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Boolean) evaluate( expression );
 		assertTrue( result.booleanValue() );
 
 		expression = "true != false";
-		result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Boolean) evaluate( expression );
 		assertTrue( result.booleanValue() );
 
 	}
@@ -203,27 +296,27 @@ public class TestEvaluator
 	public void testRelationalExpression() throws ExpressionEngineException
 	{
 		String expression = "1/2 == 2/2";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertEquals( false, result.booleanValue() );
 
 		expression = "2 != 3";
-		result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Boolean) evaluate( expression );
 		assertEquals( true, result.booleanValue() );
 
 		expression = "2 < 3";
-		result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Boolean) evaluate( expression );
 		assertEquals( true, result.booleanValue() );
 
 		expression = "2 <= 2";
-		result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Boolean) evaluate( expression );
 		assertEquals( true, result.booleanValue() );
 
 		expression = "2 > 3";
-		result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Boolean) evaluate( expression );
 		assertEquals( false, result.booleanValue() );
 
 		expression = "4 >= 3";
-		result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Boolean) evaluate( expression );
 		assertEquals( true, result.booleanValue() );
 	}
 
@@ -231,7 +324,7 @@ public class TestEvaluator
 	public void testVariableExpression() throws ExpressionEngineException
 	{
 		String expression = "(principle * rate * time) / 100";
-		Number result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		Number result = (Number) evaluate( expression );
 		assertEquals( "value is not matching", 20.0, result.doubleValue(), 0 );
 	}
 
@@ -239,79 +332,79 @@ public class TestEvaluator
 	public void testFunctionExpression() throws ExpressionEngineException
 	{
 		String expression = "abs(-4.5) + 1";
-		Number result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		Number result = (Number) evaluate( expression );
 		assertEquals( 5.5, result.doubleValue(), 0 );
 
 		expression = "min(3, 9) + 1";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertEquals( 4.0, result.doubleValue(), 0 );
 
 		expression = "max(3, 9) + 1";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertEquals( 10.0, result.doubleValue(), 0 );
 
 		expression = "sin(90) + 1";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertEquals( 1.8939966636005579, result.doubleValue(), 0 );
 
 		expression = "cos(0) + 1";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertEquals( 2.0, result.doubleValue(), 0 );
 
 		expression = "tan(45) + 1";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertEquals( 2.6197751905438613, result.doubleValue(), 0 );
 
 		expression = "asin(0.8) + 1";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertEquals( 1.9272952180016123, result.doubleValue(), 0 );
 
 		expression = "acos(0) + 1";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertEquals( 2.5707963267948966, result.doubleValue(), 0 );
 
 		expression = "atan(45) + 1";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertEquals( 2.5485777614681773, result.doubleValue(), 0 );
 
 		expression = "atan2(45, 2) + 1";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertEquals( 2.5263811115479857, result.doubleValue(), 0 );
 
 		expression = "exp(2) + 1";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertEquals( 8.38905609893065, result.doubleValue(), 0 );
 
 		expression = "pow(2, 8) + 1";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertEquals( 257.0, result.doubleValue(), 0 );
 
 		expression = "log(4) + 1";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertEquals( 2.386294361119891, result.doubleValue(), 0 );
 
 		expression = "sqrt(256) + 1";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertEquals( 17.0, result.doubleValue(), 0 );
 
 		expression = "ceil(2.7) + 1";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertEquals( 4.0, result.doubleValue(), 0 );
 
 		expression = "floor(2.3) + 1";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertEquals( 3.0, result.doubleValue(), 0 );
 
 		expression = "rint(2.43) + 1";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertEquals( 3.0, result.doubleValue(), 0 );
 
 		expression = "round(2.43) + 1";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertEquals( 3.0, result.doubleValue(), 0 );
 
 		expression = "random()";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertEquals( true, result.doubleValue() != 0 );
 	}
 
@@ -319,7 +412,7 @@ public class TestEvaluator
 	public void testArrayExpression() throws ExpressionEngineException
 	{
 		String expression = "rates[1] * 10 - _rates[0][0] / 2";
-		Number result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		Number result = (Number) evaluate( expression );
 		assertEquals( "value is not matching", 29.0, result.doubleValue(), 0 );
 	}
 
@@ -327,19 +420,19 @@ public class TestEvaluator
 	public void testPropertyExpression() throws ExpressionEngineException
 	{
 		String expression = "object.class.name";
-		String result = (String) ExpressionEngine.evaluate( expression, expressionContext );
+		String result = (String) evaluate( expression );
 		assertEquals( "Wrong outcome", "java.lang.Object", result );
 
 		expression = "person.class.name";
-		result = (String) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (String) evaluate( expression );
 		assertEquals( "Wrong outcome", Person.class.getName(), result );
 
 		expression = "person.name";
-		result = (String) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (String) evaluate( expression );
 		assertEquals( "Wrong outcome", "Mohit", result );
 
 		expression = "person.age";
-		Integer age = (Integer) ExpressionEngine.evaluate( expression, expressionContext );
+		Integer age = (Integer) evaluate( expression );
 		assertEquals( "Wrong outcome", new Integer( 31 ), age );
 	}
 
@@ -347,14 +440,14 @@ public class TestEvaluator
 	public void test_bitwise_signed_right_shift_expression() throws ExpressionEngineException
 	{
 		String expression = "16 >> 2";
-		Number result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		Number result = (Number) evaluate( expression );
 		assertEquals( 4, result.longValue() );
 
 		expression = "16 >> null";
 		result = null;
 		try
 		{
-			result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+			result = (Number) evaluate( expression );
 		}
 		catch( ExpressionEngineException e )
 		{
@@ -363,7 +456,7 @@ public class TestEvaluator
 		assertNull( result );
 
 		expression = "longsAllNull[0] >> 2";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -371,14 +464,14 @@ public class TestEvaluator
 	public void test_bitwise_signed_left_shift_expression() throws ExpressionEngineException
 	{
 		String expression = "3 << 2";
-		Number result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		Number result = (Number) evaluate( expression );
 		assertEquals( 12, result.longValue() );
 
 		expression = "3 << null";
 		result = null;
 		try
 		{
-			result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+			result = (Number) evaluate( expression );
 		}
 		catch( ExpressionEngineException e )
 		{
@@ -387,7 +480,7 @@ public class TestEvaluator
 		assertNull( result );
 
 		expression = "longsAllNull[0] << 2";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -395,14 +488,14 @@ public class TestEvaluator
 	public void test_bitwise_unsigned_right_shift_expression() throws ExpressionEngineException
 	{
 		String expression = "15 >>> 2";
-		Number result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		Number result = (Number) evaluate( expression );
 		assertEquals( 3, result.longValue() );
 
 		expression = "15 >>> null";
 		result = null;
 		try
 		{
-			result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+			result = (Number) evaluate( expression );
 		}
 		catch( ExpressionEngineException e )
 		{
@@ -411,7 +504,7 @@ public class TestEvaluator
 		assertNull( result );
 
 		expression = "longsAllNull[0] >>> 2";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -419,14 +512,14 @@ public class TestEvaluator
 	public void test_bitwise_or_expression() throws ExpressionEngineException
 	{
 		String expression = "4 | 2";
-		Number result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		Number result = (Number) evaluate( expression );
 		assertEquals( 6, result.longValue() );
 
 		expression = "4 | null";
 		result = null;
 		try
 		{
-			result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+			result = (Number) evaluate( expression );
 		}
 		catch( ExpressionEngineException e )
 		{
@@ -438,7 +531,7 @@ public class TestEvaluator
 		result = null;
 		try
 		{
-			result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+			result = (Number) evaluate( expression );
 		}
 		catch( ExpressionEngineException e )
 		{
@@ -451,14 +544,14 @@ public class TestEvaluator
 	public void test_bitwise_complement_expression() throws ExpressionEngineException
 	{
 		String expression = "~2";
-		Number result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		Number result = (Number) evaluate( expression );
 		assertEquals( -3, result.longValue() );
 
 		expression = "~null";
 		result = null;
 		try
 		{
-			result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+			result = (Number) evaluate( expression );
 		}
 		catch( ExpressionEngineException e )
 		{
@@ -467,7 +560,7 @@ public class TestEvaluator
 		assertNull( result );
 
 		expression = "~longsAllNull[0]";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -475,14 +568,14 @@ public class TestEvaluator
 	public void test_bitwise_and_expression() throws ExpressionEngineException
 	{
 		String expression = "3 & 2";
-		Number result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		Number result = (Number) evaluate( expression );
 		assertEquals( 2, result.longValue() );
 
 		expression = "3 & null";
 		result = null;
 		try
 		{
-			result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+			result = (Number) evaluate( expression );
 		}
 		catch( ExpressionEngineException e )
 		{
@@ -494,7 +587,7 @@ public class TestEvaluator
 		result = null;
 		try
 		{
-			result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+			result = (Number) evaluate( expression );
 		}
 		catch( ExpressionEngineException e )
 		{
@@ -507,26 +600,26 @@ public class TestEvaluator
 	public void test_bitwise_xor_expression() throws ExpressionEngineException
 	{
 		String expression = "1 ^ 0";
-		Number result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		Number result = (Number) evaluate( expression );
 		assertEquals( 1, result.longValue() );
 
 		expression = "1 ^ 1";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertEquals( 0, result.longValue() );
 
 		expression = "0 ^ 0";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertEquals( 0, result.longValue() );
 
 		expression = "3 ^ 5";
-		result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Number) evaluate( expression );
 		assertEquals( 6, result.longValue() );
 
 		expression = "null ^ 3";
 		result = null;
 		try
 		{
-			result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+			result = (Number) evaluate( expression );
 		}
 		catch( ExpressionEngineException e )
 		{
@@ -540,11 +633,11 @@ public class TestEvaluator
 	{
 
 		String expression = "1/2 == 1/2 ? 10 : 3";
-		Object result = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		Object result = (Number) evaluate( expression );
 		assertEquals( 10.0, ( (Number) result ).doubleValue(), 0 );
 
 		expression = "7/3 >= 7 ? 'It is seven' : 'Not seven'";
-		result = (String) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (String) evaluate( expression );
 		assertEquals( "Not seven", result );
 
 	}
@@ -554,7 +647,7 @@ public class TestEvaluator
 	public void test_ternary_expression_null_if_true() throws ExpressionEngineException
 	{
 		String expression = "1 == 1 ? null : 'blah'";
-		Object result = ExpressionEngine.evaluate( expression, expressionContext );
+		Object result = evaluate( expression );
 		assertNull( result );
 	}
 
@@ -562,7 +655,7 @@ public class TestEvaluator
 	public void test_ternary_expression_null_if_false() throws ExpressionEngineException
 	{
 		String expression = "1 == 2 ? 'blah' : null";
-		Object result = ExpressionEngine.evaluate( expression, expressionContext );
+		Object result = evaluate( expression );
 		assertNull( result );
 	}
 
@@ -571,15 +664,15 @@ public class TestEvaluator
 	{
 
 		String expression = "xml('/new1/book/publisher/age/@value')";
-		Object result = (String) ExpressionEngine.evaluate( expression, expressionContext );
+		Object result = (String) evaluate( expression );
 		assertEquals( "50", result );
 
 		expression = "(7/3 >= 7 ? 'It is seven' : 'Not seven') + trim(xml('/new1/book/publisher/weight'))";
-		result = (String) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (String) evaluate( expression );
 		assertEquals( "Not seven72", result );
 
 		expression = "(7/3 >= 7 ? 100 : 200) + trim(xml('/new1/book/publisher/weight'))";
-		result = (String) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (String) evaluate( expression );
 		assertEquals( "20072", result );
 	}
 
@@ -588,11 +681,11 @@ public class TestEvaluator
 	{
 
 		String expression = "((2+3) >> 2) + xml('/new1/book/publisher/age/@value') + sqrt(256) + (20/pow(2,2))";
-		Object result = ExpressionEngine.evaluate( expression, expressionContext );
+		Object result = evaluate( expression );
 		assertEquals( "15016.05.0", result );
 
 		expression = "sqrt(256) - ((20/pow(2,2) + (round(2.6) * -2)) / (rates[1]) )";
-		Number result1 = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		Number result1 = (Number) evaluate( expression );
 		assertEquals( 16.333333333333332, result1.doubleValue(), 0 );
 
 	}
@@ -601,7 +694,7 @@ public class TestEvaluator
 	public void test_isnull_on_null_constant() throws ExpressionEngineException
 	{
 		String expression = "isnull(null)";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertTrue( result );
 	}
 
@@ -609,7 +702,7 @@ public class TestEvaluator
 	public void test_isnull_on_null_string() throws ExpressionEngineException
 	{
 		String expression = "isnull(null_string)";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertTrue( result );
 	}
 
@@ -617,7 +710,7 @@ public class TestEvaluator
 	public void test_isnull_on_non_null_string() throws ExpressionEngineException
 	{
 		String expression = "isnull(non_null_string)";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertFalse( result );
 	}
 
@@ -625,7 +718,7 @@ public class TestEvaluator
 	public void test_iif_true_value_on_same_datatypes() throws ExpressionEngineException
 	{
 		String expression = "iif(true, 5, 6)";
-		Long result = (Long) ExpressionEngine.evaluate( expression, expressionContext );
+		Long result = (Long) evaluate( expression );
 		assertEquals( new Long( 5 ), result );
 	}
 
@@ -633,7 +726,7 @@ public class TestEvaluator
 	public void test_iif_false_value_on_same_datatypes() throws ExpressionEngineException
 	{
 		String expression = "iif(false, 5.3, 6.7)";
-		Double result = (Double) ExpressionEngine.evaluate( expression, expressionContext );
+		Double result = (Double) evaluate( expression );
 		assertEquals( new Double( 6.7 ), result );
 	}
 
@@ -641,7 +734,7 @@ public class TestEvaluator
 	public void test_iif_on_different_datatypes() throws ExpressionEngineException
 	{
 		String expression = "iif(true, 'wastrue', 6)";
-		String result = (String) ExpressionEngine.evaluate( expression, expressionContext );
+		String result = (String) evaluate( expression );
 		assertEquals( "wastrue", result );
 	}
 
@@ -649,7 +742,7 @@ public class TestEvaluator
 	public void test_iif_with_null() throws ExpressionEngineException
 	{
 		String expression = "iif(true, null, 6)";
-		Long result = (Long) ExpressionEngine.evaluate( expression, expressionContext );
+		Long result = (Long) evaluate( expression );
 		assertEquals( null, result );
 	}
 
@@ -658,7 +751,7 @@ public class TestEvaluator
 	public void test_custom_function_with_no_arg() throws ExpressionEngineException
 	{
 		String expression = "testCustomNoArg() + 10";
-		Long result = (Long) ExpressionEngine.evaluate( expression, expressionContext );
+		Long result = (Long) evaluate( expression );
 		assertEquals( new Long( 131 ), result );
 	}
 
@@ -666,7 +759,7 @@ public class TestEvaluator
 	public void test_string_array() throws ExpressionEngineException
 	{
 		String expression = "_names[nameIndex]";
-		String result = (String) ExpressionEngine.evaluate( expression, expressionContext );
+		String result = (String) evaluate( expression );
 		assertEquals( "Kris", result );
 	}
 
@@ -674,7 +767,7 @@ public class TestEvaluator
 	public void test_sum_doubles_with_null() throws ExpressionEngineException
 	{
 		String expression = "sum(doublesWithNull)";
-		Double result = (Double) ExpressionEngine.evaluate( expression, expressionContext );
+		Double result = (Double) evaluate( expression );
 		assertEquals( 5.0, result, 0 );
 	}
 
@@ -682,7 +775,7 @@ public class TestEvaluator
 	public void test_sum_doubles_all_null() throws ExpressionEngineException
 	{
 		String expression = "sum(doublesAllNull)";
-		Double result = (Double) ExpressionEngine.evaluate( expression, expressionContext );
+		Double result = (Double) evaluate( expression );
 		assertEquals( null, result );
 	}
 
@@ -690,7 +783,7 @@ public class TestEvaluator
 	public void test_null_equals_null() throws ExpressionEngineException
 	{
 		String expression = "null == null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertTrue( result );
 	}
 
@@ -698,7 +791,7 @@ public class TestEvaluator
 	public void test_null_null_inequality() throws ExpressionEngineException
 	{
 		String expression = "null != null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertFalse( result );
 	}
 
@@ -706,7 +799,7 @@ public class TestEvaluator
 	public void test_null_double_equality() throws ExpressionEngineException
 	{
 		String expression = "1.0 == null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertFalse( result );
 	}
 
@@ -714,7 +807,7 @@ public class TestEvaluator
 	public void test_double_null_equality() throws ExpressionEngineException
 	{
 		String expression = "null == 1.0";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertFalse( result );
 	}
 
@@ -722,7 +815,7 @@ public class TestEvaluator
 	public void test_String_null_equality() throws ExpressionEngineException
 	{
 		String expression = "'null' == null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertFalse( result );
 	}
 
@@ -730,7 +823,7 @@ public class TestEvaluator
 	public void test_null_double_inequality() throws ExpressionEngineException
 	{
 		String expression = "null != 1.0";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertTrue( result );
 	}
 
@@ -738,7 +831,7 @@ public class TestEvaluator
 	public void test_double_null_inequality() throws ExpressionEngineException
 	{
 		String expression = "1.0 != null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertTrue( result );
 	}
 
@@ -746,7 +839,7 @@ public class TestEvaluator
 	public void test_null_string_inequality() throws ExpressionEngineException
 	{
 		String expression = "null != ''";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertTrue( result );
 	}
 
@@ -754,7 +847,7 @@ public class TestEvaluator
 	public void test_string_null_inequality() throws ExpressionEngineException
 	{
 		String expression = "'funky' != null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertTrue( result );
 	}
 
@@ -762,7 +855,7 @@ public class TestEvaluator
 	public void test_add_null_and_double() throws ExpressionEngineException
 	{
 		String expression = "null + 5.0";
-		Double result = (Double) ExpressionEngine.evaluate( expression, expressionContext );
+		Double result = (Double) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -770,7 +863,7 @@ public class TestEvaluator
 	public void test_add_double_and_null() throws ExpressionEngineException
 	{
 		String expression = "5.0 + null";
-		Double result = (Double) ExpressionEngine.evaluate( expression, expressionContext );
+		Double result = (Double) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -778,7 +871,7 @@ public class TestEvaluator
 	public void test_add_null_and_long() throws ExpressionEngineException
 	{
 		String expression = "null + 5";
-		Double result = (Double) ExpressionEngine.evaluate( expression, expressionContext );
+		Double result = (Double) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -786,7 +879,7 @@ public class TestEvaluator
 	public void test_add_long_and_null() throws ExpressionEngineException
 	{
 		String expression = "5 + null";
-		Double result = (Double) ExpressionEngine.evaluate( expression, expressionContext );
+		Double result = (Double) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -794,7 +887,7 @@ public class TestEvaluator
 	public void test_add_null_and_null() throws ExpressionEngineException
 	{
 		String expression = "null + null";
-		Double result = (Double) ExpressionEngine.evaluate( expression, expressionContext );
+		Double result = (Double) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -802,7 +895,7 @@ public class TestEvaluator
 	public void test_add_double_null_and_double_null() throws ExpressionEngineException
 	{
 		String expression = "doublesAllNull[0] + doublesAllNull[1]";
-		Double result = (Double) ExpressionEngine.evaluate( expression, expressionContext );
+		Double result = (Double) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -810,7 +903,7 @@ public class TestEvaluator
 	public void test_subtract_null_and_double() throws ExpressionEngineException
 	{
 		String expression = "null - 5.0";
-		Double result = (Double) ExpressionEngine.evaluate( expression, expressionContext );
+		Double result = (Double) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -818,7 +911,7 @@ public class TestEvaluator
 	public void test_subtract_double_and_null() throws ExpressionEngineException
 	{
 		String expression = "5.0 - null";
-		Double result = (Double) ExpressionEngine.evaluate( expression, expressionContext );
+		Double result = (Double) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -826,7 +919,7 @@ public class TestEvaluator
 	public void test_subtract_null_and_long() throws ExpressionEngineException
 	{
 		String expression = "null - 5";
-		Double result = (Double) ExpressionEngine.evaluate( expression, expressionContext );
+		Double result = (Double) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -834,7 +927,7 @@ public class TestEvaluator
 	public void test_subtract_long_and_null() throws ExpressionEngineException
 	{
 		String expression = "5 - null";
-		Double result = (Double) ExpressionEngine.evaluate( expression, expressionContext );
+		Double result = (Double) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -842,7 +935,7 @@ public class TestEvaluator
 	public void test_subtract_null_double_and_null_double() throws ExpressionEngineException
 	{
 		String expression = "doublesAllNull[0] - doublesAllNull[1]";
-		Double result = (Double) ExpressionEngine.evaluate( expression, expressionContext );
+		Double result = (Double) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -850,7 +943,7 @@ public class TestEvaluator
 	public void test_subtract_null_and_string() throws ExpressionEngineException
 	{
 		String expression = "null - 'asdf'";
-		Double result = (Double) ExpressionEngine.evaluate( expression, expressionContext );
+		Double result = (Double) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -858,7 +951,7 @@ public class TestEvaluator
 	public void test_multiply_null_and_double() throws ExpressionEngineException
 	{
 		String expression = "null * 5.0";
-		Double result = (Double) ExpressionEngine.evaluate( expression, expressionContext );
+		Double result = (Double) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -866,7 +959,7 @@ public class TestEvaluator
 	public void test_multiply_double_and_null() throws ExpressionEngineException
 	{
 		String expression = "5.0 * null";
-		Double result = (Double) ExpressionEngine.evaluate( expression, expressionContext );
+		Double result = (Double) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -874,7 +967,7 @@ public class TestEvaluator
 	public void test_multiply_null_and_long() throws ExpressionEngineException
 	{
 		String expression = "null * 5";
-		Double result = (Double) ExpressionEngine.evaluate( expression, expressionContext );
+		Double result = (Double) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -882,7 +975,7 @@ public class TestEvaluator
 	public void test_multiply_long_and_null() throws ExpressionEngineException
 	{
 		String expression = "5 * null";
-		Double result = (Double) ExpressionEngine.evaluate( expression, expressionContext );
+		Double result = (Double) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -890,7 +983,7 @@ public class TestEvaluator
 	public void test_multiply_null_double_and_null_double() throws ExpressionEngineException
 	{
 		String expression = "doublesAllNull[0] * doublesAllNull[1]";
-		Double result = (Double) ExpressionEngine.evaluate( expression, expressionContext );
+		Double result = (Double) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -898,7 +991,7 @@ public class TestEvaluator
 	public void test_divide_null_and_double() throws ExpressionEngineException
 	{
 		String expression = "null / 5.0";
-		Double result = (Double) ExpressionEngine.evaluate( expression, expressionContext );
+		Double result = (Double) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -906,7 +999,7 @@ public class TestEvaluator
 	public void test_divide_double_and_null() throws ExpressionEngineException
 	{
 		String expression = "5.0 / null";
-		Double result = (Double) ExpressionEngine.evaluate( expression, expressionContext );
+		Double result = (Double) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -914,7 +1007,7 @@ public class TestEvaluator
 	public void test_divide_null_and_long() throws ExpressionEngineException
 	{
 		String expression = "null / 5";
-		Double result = (Double) ExpressionEngine.evaluate( expression, expressionContext );
+		Double result = (Double) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -922,7 +1015,7 @@ public class TestEvaluator
 	public void test_divide_long_and_null() throws ExpressionEngineException
 	{
 		String expression = "5 / null";
-		Double result = (Double) ExpressionEngine.evaluate( expression, expressionContext );
+		Double result = (Double) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -930,7 +1023,7 @@ public class TestEvaluator
 	public void test_divide_null_double_and_null_double() throws ExpressionEngineException
 	{
 		String expression = "doublesAllNull[0] / doublesAllNull[1]";
-		Double result = (Double) ExpressionEngine.evaluate( expression, expressionContext );
+		Double result = (Double) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -938,19 +1031,19 @@ public class TestEvaluator
 	public void test_boolean_null_relational_expression() throws ExpressionEngineException
 	{
 		String expression = "true == null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertFalse( result );
 
 		expression = "true != null";
-		result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Boolean) evaluate( expression );
 		assertTrue( result );
 
 		expression = "false == null";
-		result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Boolean) evaluate( expression );
 		assertFalse( result );
 
 		expression = "false != null";
-		result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		result = (Boolean) evaluate( expression );
 		assertTrue( result );
 	}
 
@@ -958,7 +1051,7 @@ public class TestEvaluator
 	public void test_LTE_expression_long_null() throws ExpressionEngineException
 	{
 		String expression = "1 <= null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -966,7 +1059,7 @@ public class TestEvaluator
 	public void test_LTE_expression_null_long() throws ExpressionEngineException
 	{
 		String expression = "null <= 1";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -974,7 +1067,7 @@ public class TestEvaluator
 	public void test_LTE_expression_double_null() throws ExpressionEngineException
 	{
 		String expression = "1.0 <= null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -982,7 +1075,7 @@ public class TestEvaluator
 	public void test_LTE_expression_null_double() throws ExpressionEngineException
 	{
 		String expression = "null <= 1.0";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -990,7 +1083,7 @@ public class TestEvaluator
 	public void test_LTE_expression_null_null() throws ExpressionEngineException
 	{
 		String expression = "null <= null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -998,7 +1091,7 @@ public class TestEvaluator
 	public void test_LT_expression_long_null() throws ExpressionEngineException
 	{
 		String expression = "1 < null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1006,7 +1099,7 @@ public class TestEvaluator
 	public void test_LT_expression_null_long() throws ExpressionEngineException
 	{
 		String expression = "null < 1";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1014,7 +1107,7 @@ public class TestEvaluator
 	public void test_LT_expression_double_null() throws ExpressionEngineException
 	{
 		String expression = "1.0 < null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1022,7 +1115,7 @@ public class TestEvaluator
 	public void test_LT_expression_null_double() throws ExpressionEngineException
 	{
 		String expression = "null < 1.0";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1030,7 +1123,7 @@ public class TestEvaluator
 	public void test_LT_expression_null_null() throws ExpressionEngineException
 	{
 		String expression = "null < null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1038,7 +1131,7 @@ public class TestEvaluator
 	public void test_GTE_expression_long_null() throws ExpressionEngineException
 	{
 		String expression = "1 >= null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1046,7 +1139,7 @@ public class TestEvaluator
 	public void test_GTE_expression_null_long() throws ExpressionEngineException
 	{
 		String expression = "null >= 1";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1054,7 +1147,7 @@ public class TestEvaluator
 	public void test_GTE_expression_double_null() throws ExpressionEngineException
 	{
 		String expression = "1.0 >= null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1062,7 +1155,7 @@ public class TestEvaluator
 	public void test_GTE_expression_null_double() throws ExpressionEngineException
 	{
 		String expression = "null >= 1.0";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1070,7 +1163,7 @@ public class TestEvaluator
 	public void test_GTE_expression_null_null() throws ExpressionEngineException
 	{
 		String expression = "null >= null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1078,7 +1171,7 @@ public class TestEvaluator
 	public void test_GT_expression_long_null() throws ExpressionEngineException
 	{
 		String expression = "1 > null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1086,7 +1179,7 @@ public class TestEvaluator
 	public void test_GT_expression_null_long() throws ExpressionEngineException
 	{
 		String expression = "null > 1";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1094,7 +1187,7 @@ public class TestEvaluator
 	public void test_GT_expression_double_null() throws ExpressionEngineException
 	{
 		String expression = "1.0 > null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1102,7 +1195,7 @@ public class TestEvaluator
 	public void test_GT_expression_null_double() throws ExpressionEngineException
 	{
 		String expression = "null > 1.0";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1110,7 +1203,7 @@ public class TestEvaluator
 	public void test_GT_expression_null_null() throws ExpressionEngineException
 	{
 		String expression = "null > null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1118,7 +1211,7 @@ public class TestEvaluator
 	public void test_And_expression_true_true() throws ExpressionEngineException
 	{
 		String expression = "true && true";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertTrue( result );
 	}
 
@@ -1126,7 +1219,7 @@ public class TestEvaluator
 	public void test_And_expression_false_false() throws ExpressionEngineException
 	{
 		String expression = "false && false";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertFalse( result );
 	}
 
@@ -1134,7 +1227,7 @@ public class TestEvaluator
 	public void test_And_expression_true_false() throws ExpressionEngineException
 	{
 		String expression = "true && false";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertFalse( result );
 	}
 
@@ -1142,7 +1235,7 @@ public class TestEvaluator
 	public void test_And_expression_false_true() throws ExpressionEngineException
 	{
 		String expression = "false && true";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertFalse( result );
 	}
 
@@ -1150,7 +1243,7 @@ public class TestEvaluator
 	public void test_And_expression_true_null_constant() throws ExpressionEngineException
 	{
 		String expression = "true && null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1158,7 +1251,7 @@ public class TestEvaluator
 	public void test_And_expression_true_null_boolean() throws ExpressionEngineException
 	{
 		String expression = "true && booleansAllNull[0]";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1166,23 +1259,23 @@ public class TestEvaluator
 	public void test_And_expression_false_null_constant() throws ExpressionEngineException
 	{
 		String expression = "false && null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
-		assertNull( result );
+		Boolean result = (Boolean) evaluate( expression );
+		assertEquals( Boolean.FALSE, result );
 	}
 
 	@Test
 	public void test_And_expression_false_null_boolean() throws ExpressionEngineException
 	{
 		String expression = "false && booleansAllNull[0]";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
-		assertNull( result );
+		Boolean result = (Boolean) evaluate( expression );
+		assertEquals( Boolean.FALSE, result );
 	}
 
 	@Test
 	public void test_And_expression_false_null_constant_null_constant() throws ExpressionEngineException
 	{
 		String expression = "null && null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1190,7 +1283,7 @@ public class TestEvaluator
 	public void test_And_expression_false_null_boolean_null_boolean() throws ExpressionEngineException
 	{
 		String expression = "booleansAllNull[0] && booleansAllNull[0]";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1198,7 +1291,7 @@ public class TestEvaluator
 	public void test_Or_expression_true_true() throws ExpressionEngineException
 	{
 		String expression = "true || true";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertTrue( result );
 	}
 
@@ -1206,7 +1299,7 @@ public class TestEvaluator
 	public void test_Or_expression_false_false() throws ExpressionEngineException
 	{
 		String expression = "false || false";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertFalse( result );
 	}
 
@@ -1214,7 +1307,7 @@ public class TestEvaluator
 	public void test_Or_expression_true_false() throws ExpressionEngineException
 	{
 		String expression = "true || false";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertTrue( result );
 	}
 
@@ -1222,7 +1315,7 @@ public class TestEvaluator
 	public void test_Or_expression_false_true() throws ExpressionEngineException
 	{
 		String expression = "false || true";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertTrue( result );
 	}
 
@@ -1230,23 +1323,23 @@ public class TestEvaluator
 	public void test_Or_expression_true_null_constant() throws ExpressionEngineException
 	{
 		String expression = "true || null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
-		assertNull( result );
+		Boolean result = (Boolean) evaluate( expression );
+		assertEquals( Boolean.TRUE, result );
 	}
 
 	@Test
 	public void test_Or_expression_true_null_boolean() throws ExpressionEngineException
 	{
 		String expression = "true || booleansAllNull[0]";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
-		assertNull( result );
+		Boolean result = (Boolean) evaluate( expression );
+		assertEquals( Boolean.TRUE, result );
 	}
 
 	@Test
 	public void test_Or_expression_false_null_constant() throws ExpressionEngineException
 	{
 		String expression = "false || null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1254,7 +1347,7 @@ public class TestEvaluator
 	public void test_Or_expression_false_null_boolean() throws ExpressionEngineException
 	{
 		String expression = "false || booleansAllNull[0]";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1262,7 +1355,7 @@ public class TestEvaluator
 	public void test_Or_expression_false_null_constant_null_constant() throws ExpressionEngineException
 	{
 		String expression = "null || null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1270,7 +1363,7 @@ public class TestEvaluator
 	public void test_Or_expression_false_null_boolean_null_boolean() throws ExpressionEngineException
 	{
 		String expression = "booleansAllNull[0] || booleansAllNull[0]";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1278,7 +1371,7 @@ public class TestEvaluator
 	public void test_Not_expression_null_boolean() throws ExpressionEngineException
 	{
 		String expression = "!booleansAllNull[0]";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1286,7 +1379,7 @@ public class TestEvaluator
 	public void test_Not_expression_null_constant() throws ExpressionEngineException
 	{
 		String expression = "!null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1294,7 +1387,7 @@ public class TestEvaluator
 	public void test_Plus_expression_null_constant() throws ExpressionEngineException
 	{
 		String expression = "+null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1302,7 +1395,7 @@ public class TestEvaluator
 	public void test_Plus_expression_null_double() throws ExpressionEngineException
 	{
 		String expression = "+doublesAllNull[0]";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1310,7 +1403,7 @@ public class TestEvaluator
 	public void test_Plus_expression_null_long() throws ExpressionEngineException
 	{
 		String expression = "+longsAllNull[0]";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1318,7 +1411,7 @@ public class TestEvaluator
 	public void test_Minus_expression_null_constant() throws ExpressionEngineException
 	{
 		String expression = "-null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1326,7 +1419,7 @@ public class TestEvaluator
 	public void test_Minus_expression_null_double() throws ExpressionEngineException
 	{
 		String expression = "-doublesAllNull[0]";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1334,7 +1427,7 @@ public class TestEvaluator
 	public void test_Minus_expression_null_long() throws ExpressionEngineException
 	{
 		String expression = "-longsAllNull[0]";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1342,7 +1435,7 @@ public class TestEvaluator
 	public void test_remainder_expression_long_null_long() throws ExpressionEngineException
 	{
 		String expression = "3 % longsAllNull[0]";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1350,7 +1443,7 @@ public class TestEvaluator
 	public void test_remainder_expression_long_null_constant() throws ExpressionEngineException
 	{
 		String expression = "3 % null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1358,7 +1451,7 @@ public class TestEvaluator
 	public void test_remainder_expression_long_long_null() throws ExpressionEngineException
 	{
 		String expression = "longsAllNull[0] % 3";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1366,7 +1459,7 @@ public class TestEvaluator
 	public void test_remainder_expression_null_constant_long() throws ExpressionEngineException
 	{
 		String expression = "null % 3";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertNull( result );
 	}
 
@@ -1377,7 +1470,7 @@ public class TestEvaluator
 		expressionContext.addFunctionProvider( provider );
 
 		String expression = "mySum(2.023, 9, 5.208)";
-		Number result1 = (Number) ExpressionEngine.evaluate( expression, expressionContext );
+		Number result1 = (Number) evaluate( expression );
 		assertEquals( 16.231, result1.doubleValue(), 0 );
 	}
 
@@ -1385,7 +1478,7 @@ public class TestEvaluator
 	public void test_starts_with_expression_string_string_true() throws ExpressionEngineException
 	{
 		String expression = "person.name startsWith 'Moh'";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertEquals( Boolean.TRUE, result );
 	}
 
@@ -1393,7 +1486,7 @@ public class TestEvaluator
 	public void test_starts_with_expression_string_string_false() throws ExpressionEngineException
 	{
 		String expression = "person.name startsWith '1Moh'";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertEquals( Boolean.FALSE, result );
 	}
 
@@ -1401,7 +1494,7 @@ public class TestEvaluator
 	public void test_starts_with_expression_null_string_false() throws ExpressionEngineException
 	{
 		String expression = "null startsWith 'Moh'";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertEquals( Boolean.FALSE, result );
 	}
 
@@ -1409,7 +1502,7 @@ public class TestEvaluator
 	public void test_starts_with_expression_null_null_false() throws ExpressionEngineException
 	{
 		String expression = "null startsWith null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertEquals( Boolean.FALSE, result );
 	}
 
@@ -1420,7 +1513,7 @@ public class TestEvaluator
 		boolean exception = false;
 		try
 		{
-			Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+			Boolean result = (Boolean) evaluate( expression );
 		}
 		catch( ExpressionEngineException eee )
 		{
@@ -1433,7 +1526,7 @@ public class TestEvaluator
 	public void test_ends_with_expression_string_string_true() throws ExpressionEngineException
 	{
 		String expression = "person.name endsWith 'it'";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertEquals( Boolean.TRUE, result );
 	}
 
@@ -1441,7 +1534,7 @@ public class TestEvaluator
 	public void test_ends_with_expression_string_string_false() throws ExpressionEngineException
 	{
 		String expression = "person.name endsWith 'it2'";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertEquals( Boolean.FALSE, result );
 	}
 
@@ -1449,7 +1542,7 @@ public class TestEvaluator
 	public void test_ends_with_expression_null_string_false() throws ExpressionEngineException
 	{
 		String expression = "null endsWith 'it'";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertEquals( Boolean.FALSE, result );
 	}
 
@@ -1457,7 +1550,7 @@ public class TestEvaluator
 	public void test_ends_with_expression_null_null_false() throws ExpressionEngineException
 	{
 		String expression = "null endsWith null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertEquals( Boolean.FALSE, result );
 	}
 
@@ -1468,7 +1561,7 @@ public class TestEvaluator
 		boolean exception = false;
 		try
 		{
-			Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+			Boolean result = (Boolean) evaluate( expression );
 		}
 		catch( ExpressionEngineException eee )
 		{
@@ -1481,7 +1574,7 @@ public class TestEvaluator
 	public void test_contains_with_expression_string_string_true() throws ExpressionEngineException
 	{
 		String expression = "person.name contains 'ohi'";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertEquals( Boolean.TRUE, result );
 	}
 
@@ -1489,7 +1582,7 @@ public class TestEvaluator
 	public void test_contains_with_expression_string_string_false() throws ExpressionEngineException
 	{
 		String expression = "person.name contains '1ohi2'";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertEquals( Boolean.FALSE, result );
 	}
 
@@ -1497,7 +1590,7 @@ public class TestEvaluator
 	public void test_contains_with_expression_null_string_false() throws ExpressionEngineException
 	{
 		String expression = "null contains 'Moh'";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertEquals( Boolean.FALSE, result );
 	}
 
@@ -1505,7 +1598,7 @@ public class TestEvaluator
 	public void test_contains_with_expression_null_null_false() throws ExpressionEngineException
 	{
 		String expression = "null contains null";
-		Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+		Boolean result = (Boolean) evaluate( expression );
 		assertEquals( Boolean.FALSE, result );
 	}
 
@@ -1516,7 +1609,7 @@ public class TestEvaluator
 		boolean exception = false;
 		try
 		{
-			Boolean result = (Boolean) ExpressionEngine.evaluate( expression, expressionContext );
+			Boolean result = (Boolean) evaluate( expression );
 		}
 		catch( ExpressionEngineException eee )
 		{
@@ -1524,4 +1617,1193 @@ public class TestEvaluator
 		}
 		assertEquals( Boolean.TRUE, exception );
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testPrecedenceClimbingCompilation() throws ExpressionEngineException
+	{
+		Compiler rpnCompiler = new Compiler( ExpressionEngine.getGrammar(), ExpressionEngineConstants.COMPILATION_MODE_RPN );
+		Compiler precedenceClimbingCompiler = new Compiler( ExpressionEngine.getGrammar(),
+				ExpressionEngineConstants.COMPILATION_MODE_PRECEDENCE_CLIMBING );
+
+		String[] expressions =
+		{ "-10 / 2", "10 + (10 / 2) - 10 * 2 + 10 % 6", "20 - (10/-2 + (-5 * -2)) / (15 * (-5/5) )", "- -3 * -+2",
+				"(false && !true) || (!(false && !true) || !false)", "1/2 == 2/2", "2 <= 3 == 4 > 3",
+				"(principle * rate * time) / 100", "abs(-4.5) + 1", "min(3, 9) + max(3, 9) * 2", "-pow(2, 8) + 1",
+				"sqrt(256) - ((20/pow(2,2) + (round(2.6) * -2)) / (rates[1]) )", "rates[1] * 10 - _rates[0][0] / 2",
+				"-_rates[1][nameIndex + 1]", "_names[nameIndex]", "person.name", "object.class.name",
+				"person.name contains 'ohi' && !(person.age < 18)", "16 >> 2 | 3 << 2 ^ ~2 & 15 >>> 1",
+				"1/2 == 1/2 ? 10 : 3", "7/3 >= 7 ? 'It is seven' : 'Not seven'", "iif(true, 'wastrue', 6)",
+				"isnull(null_string) || isnull(non_null_string)", "'abc' + 'def' + 1", "null + 5.0",
+				"doublesAllNull[0] + doublesAllNull[1]", "sum(doublesWithNull) * 2", "a +", "* 2", "(2 + 3",
+				"2 + 3)", "rates[]", "2 3", "person.", "!", "max(1, 2" };
+
+		for( String expression : expressions )
+		{
+			Object expected;
+			try
+			{
+				expected = rpnCompiler.compile( expression, expressionContext, true ).getValue().getValue();
+			}
+			catch( Exception e )
+			{
+				expected = e;
+			}
+
+			try
+			{
+				Object actual = precedenceClimbingCompiler.compile( expression, expressionContext, true ).getValue()
+						.getValue();
+				assertFalse( expression + " " + expected, expected instanceof Exception );
+				assertEquals( expression, expected, actual );
+			}
+			catch( ExpressionEngineException e )
+			{
+				assertTrue( expression + " " + e, expected instanceof Exception );
+			}
+		}
+
+		// brackets must match, unlike in RPN
+		try
+		{
+			precedenceClimbingCompiler.compile( "(2 + 3]", expressionContext, true );
+			fail( "mismatched brackets must not compile" );
+		}
+		catch( ExpressionEngineException e )
+		{
+			// expected
+		}
+
+		// function without arguments gets empty brackets anywhere
+		for( Compiler compiler : new Compiler[]
+		{ rpnCompiler, precedenceClimbingCompiler } )
+		{
+			assertEquals( 10, ( (Number) compiler.compile( "10 + testCustomNoArg()", expressionContext, true ).getValue()
+					.getValue() ).intValue()
+					- ( (Number) compiler.compile( "testCustomNoArg()", expressionContext, true ).getValue().getValue() )
+							.intValue() );
+			assertEquals( Boolean.TRUE, compiler.compile( "1 + random() >= 1 && random() != 2", expressionContext, true )
+					.getValue().getValue() );
+		}
+
+		try
+		{
+			new Compiler( ExpressionEngine.getGrammar(), "unknown" );
+			fail( "unknown compilation mode must not be accepted" );
+		}
+		catch( IllegalArgumentException e )
+		{
+			// expected
+		}
+	}
+
+	@Test
+	public void testMisplacedOperators() throws ExpressionEngineException
+	{
+		// operators without precedence for their position are malformed expressions in both modes
+		String[] expressions =
+		{ "1 ! 2", "1 * * 2 + 3", "* 2 + 3", "1 + * 2", "(/ 2) + 1" };
+		for( String compilationMode : new String[]
+		{ ExpressionEngineConstants.COMPILATION_MODE_RPN, ExpressionEngineConstants.COMPILATION_MODE_PRECEDENCE_CLIMBING } )
+		{
+			Compiler compiler = new Compiler( ExpressionEngine.getGrammar(), compilationMode );
+			for( String expression : expressions )
+			{
+				try
+				{
+					compiler.compile( expression, expressionContext, true );
+					fail( "Misplaced operator must not compile: " + expression );
+				}
+				catch( ExpressionEngineException e )
+				{
+					// expected
+				}
+			}
+		}
+	}
+	@Test
+	public void testExpressionCache() throws Exception
+	{
+		// bounded by entries, frequently used entry survives the evictions
+		ExpressionCache<String, String> cache = new ExpressionCache<String, String>( 100, 0, 0, TimeUnit.SECONDS,
+				null );
+		cache.put( "hot", "hot" );
+		for( int i = 0; i < 1000; i++ )
+		{
+			assertEquals( "hot", cache.get( "hot" ) );
+			cache.put( "key" + i, "value" + i );
+		}
+		assertTrue( cache.size() <= 100 );
+		assertEquals( "hot", cache.get( "hot" ) );
+		ExpressionCache.Statistics statistics = cache.getStatistics();
+		assertEquals( 1001, statistics.getHitCount() );
+		assertEquals( 1001 - cache.size(), statistics.getEvictionCount() );
+
+		// first value added for a key is kept
+		assertEquals( "hot", cache.put( "hot", "other" ) );
+
+		// bounded by weight
+		ExpressionCache.Weigher<String, String> weigher = new ExpressionCache.Weigher<String, String>()
+		{
+
+			public int weigh( String key, String value )
+			{
+				return value.length();
+			}
+		};
+		cache = new ExpressionCache<String, String>( 0, 50, 0, TimeUnit.SECONDS, weigher );
+		for( int i = 0; i < 100; i++ )
+		{
+			cache.put( "key" + i, "0123456789" );
+		}
+		assertEquals( 5, cache.size() );
+		assertEquals( 50, cache.getWeight() );
+		assertNull( cache.get( "key0" ) );
+		assertEquals( 1, cache.getStatistics().getMissCount() );
+
+		// expiry
+		cache = new ExpressionCache<String, String>( 0, 0, 1, TimeUnit.MILLISECONDS, null );
+		cache.put( "key", "value" );
+		Thread.sleep( 5 );
+		assertNull( cache.get( "key" ) );
+		assertEquals( 1, cache.getStatistics().getExpirationCount() );
+		assertEquals( 0, cache.size() );
+
+		// concurrent reads and additions keep the weight consistent
+		final ExpressionCache<String, String> sharedCache = new ExpressionCache<String, String>( 50, 0, 0,
+				TimeUnit.SECONDS, weigher );
+		final CountDownLatch done = new CountDownLatch( 8 );
+		for( int t = 0; t < 8; t++ )
+		{
+			final int seed = t;
+			new Thread()
+			{
+
+				@Override
+				public void run()
+				{
+					for( int i = 0; i < 10000; i++ )
+					{
+						String key = "key" + ( ( i * 31 + seed ) % 500 );
+						if( sharedCache.get( key ) == null )
+						{
+							sharedCache.put( key, key );
+						}
+					}
+					done.countDown();
+				}
+			}.start();
+		}
+		assertTrue( done.await( 60, TimeUnit.SECONDS ) );
+		sharedCache.put( "last", "last" );
+		assertTrue( sharedCache.size() <= 50 );
+
+		long weight = sharedCache.get( "last" ) == null ? 0 : 4;
+		for( int i = 0; i < 500; i++ )
+		{
+			String value = sharedCache.get( "key" + i );
+			weight += value == null ? 0 : value.length();
+		}
+		assertEquals( weight, sharedCache.getWeight() );
+
+		// compiler reports the statistics of its cache
+		Compiler compiler = new Compiler();
+		ExpressionCache.Statistics before = compiler.getCacheStatistics();
+		assertNotNull( before );
+		compiler.compile( "principle * rate / 100", expressionContext, true );
+		// tree compiled with other validate flag is not cached, so tokens are read from cache
+		compiler.compile( "principle * rate / 100", expressionContext, false );
+		ExpressionCache.Statistics after = compiler.getCacheStatistics();
+		assertEquals( before.getHitCount() + 1, after.getHitCount() );
+		assertEquals( before.getMissCount() + 1, after.getMissCount() );
+		assertEquals( 1, after.getSize() );
+	}
+
+	@Test
+	public void testCompiledTreeCache() throws Exception
+	{
+		Compiler compiler = new Compiler();
+		Expression expression = compiler.compile( "principle * rate / 100", expressionContext, true );
+
+		// same tree is returned for same context and validate flag
+		assertSame( expression, compiler.compile( "principle * rate / 100", expressionContext, true ) );
+		assertNotSame( expression, compiler.compile( "principle * rate / 100", expressionContext, false ) );
+
+		// change of value keeps the tree, and new value is evaluated
+		DefaultVariableProvider dvp = new DefaultVariableProvider();
+		dvp.addVariable( "amount", new ValueObject( new Long( 10 ), Type.LONG ) );
+		expressionContext.addVariableProvider( dvp );
+		expression = compiler.compile( "amount * 2", expressionContext, true );
+		assertEquals( new Long( 20 ), expression.getValue().getValue() );
+		dvp.addVariable( "amount", new ValueObject( new Long( 30 ), Type.LONG ) );
+		assertSame( expression, compiler.compile( "amount * 2", expressionContext, true ) );
+		assertEquals( new Long( 60 ), expression.getValue().getValue() );
+
+		// change of type needs a new tree
+		dvp.addVariable( "amount", new ValueObject( new Double( 1.5 ), Type.DOUBLE ) );
+		Expression retyped = compiler.compile( "amount * 2", expressionContext, true );
+		assertNotSame( expression, retyped );
+		assertEquals( new Double( 3.0 ), retyped.getValue().getValue() );
+
+		// trees are not shared between contexts
+		ExpressionContext otherContext = new ExpressionContext();
+		otherContext.addVariableProvider( dvp );
+		assertNotSame( retyped, compiler.compile( "amount * 2", otherContext, true ) );
+
+		// change of context properties invalidates the trees
+		expressionContext.setContextProperty( "property", "value" );
+		assertNotSame( retyped, compiler.compile( "amount * 2", expressionContext, true ) );
+
+		// type changes of other variable providers can not be tracked, so their trees are not cached
+		ExpressionContext customContext = new ExpressionContext();
+		customContext.addVariableProvider( new VariableProvider()
+		{
+
+			public void initialize( ExpressionContext expressionContext ) throws ExpressionEngineException
+			{
+			}
+
+			public Type getVariableType( String variableName ) throws ExpressionEngineException
+			{
+				return Type.LONG;
+			}
+
+			public ValueObject getVariableValue( String variableName ) throws ExpressionEngineException
+			{
+				return new ValueObject( new Long( 5 ), Type.LONG );
+			}
+
+			public boolean supportsVariable( String variableName ) throws ExpressionEngineException
+			{
+				return "custom".equals( variableName );
+			}
+		} );
+		expression = compiler.compile( "custom + 1", customContext, true );
+		assertNotSame( expression, compiler.compile( "custom + 1", customContext, true ) );
+	}
+
+	@Test
+	public void testPreparedExpression() throws Exception
+	{
+		Map<String, Type> variableTypes = new HashMap<String, Type>();
+		variableTypes.put( "principle", Type.DOUBLE );
+		variableTypes.put( "rate", Type.DOUBLE );
+		variableTypes.put( "years", Type.LONG );
+
+		final PreparedExpression prepared = ExpressionEngine.prepareExpression(
+				"principle * rate * max(years, 1) / 100", variableTypes );
+		assertEquals( Type.DOUBLE, prepared.getReturnType() );
+		assertEquals( 3, prepared.getVariableNames().size() );
+		assertTrue( prepared.getVariableNames().contains( "years" ) );
+
+		Bindings bindings = new Bindings().bind( "principle", 1000.0 ).bind( "rate", 5.0 ).bind( "years", 2L );
+		assertEquals( 100.0, prepared.evaluate( bindings ) );
+		assertEquals( 50.0, prepared.evaluate( bindings.bind( "years", 0L ) ) );
+
+		// every variable used by the expression must be bound with a value of declared type
+		try
+		{
+			prepared.evaluate( new Bindings().bind( "principle", 1000.0 ).bind( "rate", 5.0 ) );
+			fail( "Unbound variable must not be evaluated" );
+		}
+		catch( ExpressionEngineException e )
+		{
+			// expected
+		}
+		try
+		{
+			prepared.evaluate( new Bindings().bind( "principle", "1000" ).bind( "rate", 5.0 ).bind( "years", 2L ) );
+			fail( "Value of other type must not be evaluated" );
+		}
+		catch( ExpressionEngineException e )
+		{
+			// expected
+		}
+
+		// variables must be declared
+		try
+		{
+			ExpressionEngine.prepareExpression( "principle * time", variableTypes );
+			fail( "Undeclared variable must not be compiled" );
+		}
+		catch( ExpressionEngineException e )
+		{
+			// expected
+		}
+
+		// threads evaluate the same prepared expression with their own bindings
+		final int threads = 8;
+		final AtomicInteger failures = new AtomicInteger();
+		final CountDownLatch done = new CountDownLatch( threads );
+		for( int t = 0; t < threads; t++ )
+		{
+			final double principle = ( t + 1 ) * 100;
+			new Thread()
+			{
+
+				@Override
+				public void run()
+				{
+					try
+					{
+						for( int i = 1; i <= 2000; i++ )
+						{
+							Bindings threadBindings = new Bindings().bind( "principle", principle ).bind( "rate",
+									(double) i ).bind( "years", 1L );
+							if( !Double.valueOf( principle * i / 100 ).equals( prepared.evaluate( threadBindings ) ) )
+							{
+								failures.incrementAndGet();
+							}
+						}
+					}
+					catch( ExpressionEngineException e )
+					{
+						failures.incrementAndGet();
+					}
+					done.countDown();
+				}
+			}.start();
+		}
+		assertTrue( done.await( 60, TimeUnit.SECONDS ) );
+		assertEquals( 0, failures.get() );
+	}
+
+	@Test
+	public void testCompiledExpressionStore() throws Exception
+	{
+		File directory = new File( System.getProperty( "java.io.tmpdir" ), "eo-store-" + System.nanoTime() );
+		String[] expressions = new String[]
+		{ "-principle * rate / 100 + 2.5", "max(rate, time) * 3", "'a' + 'b'", "!(rate > 5) || time == 2" };
+		Object[] values = new Object[expressions.length];
+
+		System.setProperty( CompiledExpressionStore.DIRECTORY_PATH_KEY, directory.getPath() );
+		try
+		{
+			Compiler compiler = new Compiler( ExpressionEngine.getGrammar() );
+			CompiledExpressionStore store = compiler.getStore();
+			assertNotNull( store );
+			assertTrue( store.isWritable() );
+			for( int i = 0; i < expressions.length; i++ )
+			{
+				values[i] = compiler.compile( expressions[i], expressionContext, true ).getValue().getValue();
+			}
+			assertEquals( expressions.length, store.size() );
+			long length = store.getFile().length();
+			store.close();
+
+			// damaged end of file, like after a crash while appending, is dropped
+			RandomAccessFile file = new RandomAccessFile( store.getFile(), "rw" );
+			file.seek( length );
+			file.write( new byte[]
+			{ 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13 } );
+			file.close();
+
+			// restarted compiler reads the tokens from store
+			compiler = new Compiler( ExpressionEngine.getGrammar() );
+			store = compiler.getStore();
+			assertEquals( expressions.length, store.size() );
+			assertEquals( length, store.getFile().length() );
+			for( int i = 0; i < expressions.length; i++ )
+			{
+				assertNotNull( store.get( expressions[i] ) );
+				assertEquals( values[i], compiler.compile( expressions[i], expressionContext, true ).getValue()
+						.getValue() );
+			}
+			assertNull( store.get( "rate + 1" ) );
+			assertEquals( 11.0, compiler.compile( "rate + 1", expressionContext, true ).getValue().getValue() );
+			assertEquals( expressions.length + 1, store.size() );
+
+			// other compilation mode stores the tokens in other file
+			String otherMode = ExpressionEngineConstants.COMPILATION_MODE_RPN.equals( ConfigFactory.getConfig()
+					.getCompilationMode() ) ? ExpressionEngineConstants.COMPILATION_MODE_PRECEDENCE_CLIMBING
+					: ExpressionEngineConstants.COMPILATION_MODE_RPN;
+			Compiler otherCompiler = new Compiler( ExpressionEngine.getGrammar(), otherMode );
+			CompiledExpressionStore otherStore = otherCompiler.getStore();
+			assertFalse( store.getFile().equals( otherStore.getFile() ) );
+			assertEquals( values[0], otherCompiler.compile( expressions[0], expressionContext, true ).getValue()
+					.getValue() );
+			assertEquals( 1, otherStore.size() );
+
+			store.close();
+			otherStore.close();
+		}
+		finally
+		{
+			System.clearProperty( CompiledExpressionStore.DIRECTORY_PATH_KEY );
+			File[] files = directory.listFiles();
+			for( int i = 0; files != null && i < files.length; i++ )
+			{
+				files[i].delete();
+			}
+			directory.delete();
+		}
+	}
+
+	@Test
+	public void testCompiledExpressionStoreFingerprint() throws Exception
+	{
+		File directory = new File( System.getProperty( "java.io.tmpdir" ), "eo-store-" + System.nanoTime() );
+		directory.mkdirs();
+		File staleFile = new File( directory, "expressions-1.eos" );
+		new FileOutputStream( staleFile ).close();
+
+		System.setProperty( CompiledExpressionStore.DIRECTORY_PATH_KEY, directory.getPath() );
+		try
+		{
+			// store is written with functions registered in one order
+			DefaultXMLGrammar grammar = new DefaultXMLGrammar();
+			grammar.addFunction( "firstStoredFunction" );
+			grammar.addFunction( "secondStoredFunction" );
+			Compiler compiler = new Compiler( grammar );
+			CompiledExpressionStore store = compiler.getStore();
+			assertEquals( 11.0, compiler.compile( "rate + 1", expressionContext, true ).getValue().getValue() );
+			assertEquals( 1, store.size() );
+			store.close();
+
+			// stale store of other fingerprint is deleted, when store is opened for writing
+			assertFalse( staleFile.exists() );
+
+			// and is read after restart with functions registered in other order
+			grammar = new DefaultXMLGrammar();
+			grammar.addFunction( "secondStoredFunction" );
+			grammar.addFunction( "firstStoredFunction" );
+			compiler = new Compiler( grammar );
+			CompiledExpressionStore restartedStore = compiler.getStore();
+			assertEquals( store.getFile(), restartedStore.getFile() );
+			assertEquals( 1, restartedStore.size() );
+			assertNotNull( restartedStore.get( "rate + 1" ) );
+			restartedStore.close();
+		}
+		finally
+		{
+			System.clearProperty( CompiledExpressionStore.DIRECTORY_PATH_KEY );
+			File[] files = directory.listFiles();
+			for( int i = 0; files != null && i < files.length; i++ )
+			{
+				files[i].delete();
+			}
+			directory.delete();
+		}
+	}
+
+	@Test
+	public void testExpressionOptimizer() throws Exception
+	{
+		Compiler compiler = new Compiler( ExpressionEngine.getGrammar() );
+		compiler.setOptimizeExpressions( true );
+		ExpressionOptimizer.Report report = compiler.getOptimizationReport();
+		assertNotNull( "Optimization should be enabled for compiler", report );
+		long removedNodes = report.getRemovedNodes();
+
+		// constant operands are folded, without reordering the operands
+		Expression expression = compiler.compile( "2 * 3.14 * rate", expressionContext, true );
+		assertTrue( expression instanceof MultiplyExpression );
+		assertTrue( ( (MultiplyExpression) expression ).getLeftOperandExpression() instanceof ConstantExpression );
+		assertEquals( 62.8, (Double) expression.getValue().getValue(), 0.0001 );
+		expression = compiler.compile( "rate * 2 * 3.14", expressionContext, true );
+		assertEquals( 0, new ExpressionTypeFinder( expression, ConstantExpression.class ).getExpressions().size() );
+
+		// deterministic functions are folded, others are not
+		expression = compiler.compile( "pow(2, 10) + (1 + 2)", expressionContext, true );
+		assertTrue( expression instanceof ConstantExpression );
+		assertEquals( new Double( 1027 ), expression.getValue().getValue() );
+		assertEquals( Type.DOUBLE, expression.getReturnType() );
+		assertTrue( compiler.compile( "random()", expressionContext, true ) instanceof FunctionExpression );
+		assertTrue( compiler.compile( "pow(rate, 2)", expressionContext, true ) instanceof FunctionExpression );
+
+		// ternary expressions with constant condition are replaced by chosen branch
+		expression = compiler.compile( "1 < 2 ? rate : principle", expressionContext, true );
+		assertTrue( expression instanceof IdentifierExpression );
+		assertEquals( new Double( 10 ), expression.getValue().getValue() );
+		expression = compiler.compile( "1 > 2 ? rate : principle", expressionContext, true );
+		assertTrue( expression instanceof IdentifierExpression );
+		assertEquals( new Double( 100 ), expression.getValue().getValue() );
+
+		// boolean identities are simplified only if null value gives same result
+		DefaultVariableProvider dvp = new DefaultVariableProvider();
+		dvp.addVariable( "flag", new ValueObject( Boolean.TRUE, Type.BOOLEAN ) );
+		expressionContext.addVariableProvider( dvp );
+		assertTrue( compiler.compile( "flag && (1 == 1)", expressionContext, true ) instanceof IdentifierExpression );
+		assertTrue( compiler.compile( "false || flag", expressionContext, true ) instanceof IdentifierExpression );
+		assertTrue( compiler.compile( "!!flag", expressionContext, true ) instanceof IdentifierExpression );
+		assertTrue( compiler.compile( "flag && false", expressionContext, true ) instanceof AndExpression );
+
+		// expressions failing at compile time are left to fail at evaluation
+		expression = compiler.compile( "1 % 0", expressionContext, true );
+		assertTrue( expression instanceof RemainderExpression );
+		try
+		{
+			expression.getValue();
+			fail( "Division by zero should fail" );
+		}
+		catch( ArithmeticException e )
+		{
+			// expected
+		}
+
+		assertTrue( report.getRemovedNodes() > removedNodes );
+		assertTrue( report.getFoldedCount() > 0 );
+		assertTrue( report.getPrunedCount() >= 2 );
+		assertTrue( report.getSimplifiedCount() >= 3 );
+		assertEquals( ConfigFactory.getConfig().shouldOptimizeExpressions(),
+				ExpressionEngine.getOptimizationReport() != null );
+
+		// trees compiled after disabling optimization are not optimized
+		compiler.setOptimizeExpressions( false );
+		assertNull( compiler.getOptimizationReport() );
+		expression = compiler.compile( "3 * 4 + rate", expressionContext, true );
+		assertTrue( ( (AddExpression) expression ).getLeftOperandExpression() instanceof MultiplyExpression );
+	}
+
+	@Test
+	public void testCommonExpressionElimination() throws Exception
+	{
+		final AtomicInteger reads = new AtomicInteger();
+		ExpressionContext countingContext = new ExpressionContext();
+		countingContext.addVariableProvider( new VariableProvider()
+		{
+
+			public void initialize( ExpressionContext expressionContext ) throws ExpressionEngineException
+			{
+			}
+
+			public Type getVariableType( String variableName ) throws ExpressionEngineException
+			{
+				return Type.DOUBLE;
+			}
+
+			public ValueObject getVariableValue( String variableName ) throws ExpressionEngineException
+			{
+				reads.incrementAndGet();
+				return new ValueObject( "a".equals( variableName ) ? 3.0 : 4.0, Type.DOUBLE );
+			}
+
+			public boolean supportsVariable( String variableName ) throws ExpressionEngineException
+			{
+				return "a".equals( variableName ) || "b".equals( variableName );
+			}
+		} );
+
+		Compiler compiler = new Compiler( ExpressionEngine.getGrammar() );
+		compiler.setOptimizeExpressions( true );
+		ExpressionOptimizer.Report report = compiler.getOptimizationReport();
+		assertNotNull( "Optimization should be enabled for compiler", report );
+		long sharedCount = report.getSharedCount();
+
+		// repeated sub tree is evaluated once in every evaluation
+		Expression expression = compiler.compile( "sqrt(a*a + b*b) + sqrt(a*a + b*b) * 2", countingContext, true );
+		assertTrue( expression instanceof SharedExpressionScope );
+		assertEquals( 1, new ExpressionTypeFinder( expression, FunctionExpression.class ).getExpressions().size() );
+		assertEquals( 15.0, expression.getValue().getValue() );
+		assertEquals( 4, reads.get() );
+		assertEquals( 15.0, expression.getValue().getValue() );
+		assertEquals( 8, reads.get() );
+		assertEquals( sharedCount + 1, report.getSharedCount() );
+
+		// sub trees of shared expression are shared with other occurrences
+		expression = compiler.compile( "(a + b) * 2 + ((a + b) * 2) / (a + b)", countingContext, true );
+		reads.set( 0 );
+		assertEquals( 16.0, expression.getValue().getValue() );
+		assertEquals( 2, reads.get() );
+
+		// shared expressions evaluated outside the tree are evaluated every time
+		Expression tree = ( (SharedExpressionScope) expression ).getExpression();
+		reads.set( 0 );
+		assertEquals( 16.0, tree.getValue().getValue() );
+		assertEquals( 6, reads.get() );
+
+		// functions not known to be deterministic are not shared
+		countingContext.addFunctionProvider( new TestCustomFunctionProvider() );
+		expression = compiler.compile( "mySum(a, b) + mySum(a, b)", countingContext, true );
+		assertFalse( expression instanceof SharedExpressionScope );
+		assertEquals( 0, new ExpressionTypeFinder( expression, SharedExpression.class ).getExpressions().size() );
+	}
+
+	@Test
+	public void testBulkCompilation() throws Exception
+	{
+		Compiler compiler = new Compiler( ExpressionEngine.getGrammar() );
+		List<String> expressions = new ArrayList<String>();
+		for( int i = 0; i < 2000; i++ )
+		{
+			// functions of different names are compiled by many threads with the same context at the same time
+			expressions.add( ( i % 2 == 0 ? "max(" : "min(" ) + i + ", 1000) + rate" );
+		}
+		expressions.add( "max(0, 1000) + rate" );
+		expressions.add( "principle * (rate" );
+		expressions.add( "unknown + 1" );
+
+		ForkJoinPool pool = new ForkJoinPool( 8 );
+		Map<String, CompilationResult> results;
+		try
+		{
+			results = compiler.compileAll( expressions, expressionContext, true, pool );
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+
+		// duplicates are compiled once
+		assertEquals( 2002, results.size() );
+		for( int i = 0; i < 2000; i++ )
+		{
+			CompilationResult result = results.get( expressions.get( i ) );
+			assertTrue( result.toString(), result.isSuccessful() );
+			double expected = ( i % 2 == 0 ? Math.max( i, 1000 ) : Math.min( i, 1000 ) ) + 10;
+			assertEquals( expected, ( (Number) result.getCompiledExpression().getValue().getValue() ).doubleValue(), 0 );
+		}
+
+		// invalid expressions fail alone
+		assertFalse( results.get( "principle * (rate" ).isSuccessful() );
+		assertNotNull( results.get( "unknown + 1" ).getError() );
+		try
+		{
+			results.get( "unknown + 1" ).getCompiledExpressionOrThrow();
+			fail( "Unknown variable should fail the compilation" );
+		}
+		catch( ExpressionEngineException e )
+		{
+			// expected
+		}
+
+		// names having same expression share the result
+		Map<String, String> rules = new LinkedHashMap<String, String>();
+		rules.put( "interest", "principle * rate / 100" );
+		rules.put( "sameInterest", "principle * rate / 100" );
+		rules.put( "broken", "principle *" );
+		Map<String, CompilationResult> namedResults = ExpressionEngine.compileNamedExpressions( rules,
+				expressionContext, true );
+		assertEquals( 3, namedResults.size() );
+		assertSame( namedResults.get( "interest" ), namedResults.get( "sameInterest" ) );
+		assertEquals( 10.0, namedResults.get( "interest" ).getCompiledExpression().getValue().getValue() );
+		assertFalse( namedResults.get( "broken" ).isSuccessful() );
+	}
+
+	@Test
+	public void testExpressionInterning() throws Exception
+	{
+		Compiler compiler = new Compiler( ExpressionEngine.getGrammar() );
+		compiler.setInternExpressions( true );
+		ExpressionContext context = new ExpressionContext();
+		DefaultVariableProvider dvp = new DefaultVariableProvider();
+		dvp.addVariable( "balance", new ValueObject( 200.0, Type.DOUBLE ) );
+		dvp.addVariable( "limit", new ValueObject( 50.0, Type.DOUBLE ) );
+		context.addVariableProvider( dvp );
+
+		// same sub trees of different expressions are same objects
+		Expression first = compiler.compile( "balance * 2 - limit", context, true );
+		Expression second = compiler.compile( "max(balance * 2 - limit, limit)", context, true );
+		Expression third = compiler.compile( "balance * 2 > limit", context, true );
+		assertTrue( first instanceof SubtractExpression );
+		assertSame( ( (SubtractExpression) first ).getLeftOperandExpression(),
+				( (GTExpression) third ).getLeftOperandExpression() );
+		assertSame( ( (SubtractExpression) first ).getRightOperandExpression(),
+				( (GTExpression) third ).getRightOperandExpression() );
+		assertTrue( new ExpressionTypeFinder( second, SubtractExpression.class ).getExpressions().contains( first ) );
+
+		// interned trees evaluate as before
+		assertEquals( 350.0, first.getValue().getValue() );
+		assertEquals( 350.0, second.getValue().getValue() );
+		assertEquals( Boolean.TRUE, third.getValue().getValue() );
+
+		ExpressionInterner interner = context.getExpressionInterner();
+		assertTrue( interner.toString(), interner.getInternedNodeCount() >= 6 );
+		assertTrue( interner.toString(), interner.getSavedBytes() > interner.getInternedNodeCount() * 16 );
+
+		// trees which are not validated, or are compiled with other signature, do not share nodes
+		Expression notValidated = compiler.compile( "balance * 2 > limit", context, false );
+		assertNotSame( ( (GTExpression) third ).getLeftOperandExpression(),
+				( (GTExpression) notValidated ).getLeftOperandExpression() );
+		dvp.addVariable( "balance", new ValueObject( 200L, Type.LONG ) );
+		Expression retyped = compiler.compile( "balance * 2 > limit", context, true );
+		assertNotSame( interner, context.getExpressionInterner() );
+		assertNotSame( ( (GTExpression) third ).getLeftOperandExpression(),
+				( (GTExpression) retyped ).getLeftOperandExpression() );
+	}
+
+	@Test
+	public void testLiteralParameterization() throws Exception
+	{
+		Compiler compiler = new Compiler( ExpressionEngine.getGrammar() );
+		ExpressionContext context = new ExpressionContext();
+		DefaultVariableProvider dvp = new DefaultVariableProvider();
+		dvp.addVariable( "amount", new ValueObject( 600L, Type.LONG ) );
+		dvp.addVariable( "region", new ValueObject( "US", Type.STRING ) );
+		context.addVariableProvider( dvp );
+
+		// expressions differing only in literals and white spaces share one tree
+		Expression first = compiler.compileParameterized( "amount > 500", context, true );
+		Expression second = compiler.compileParameterized( "amount>   750", context, true );
+		assertTrue( first instanceof ParameterizedExpression );
+		assertSame( ( (ParameterizedExpression) first ).getTemplate(),
+				( (ParameterizedExpression) second ).getTemplate() );
+		assertEquals( Boolean.TRUE, first.getValue().getValue() );
+		assertEquals( Boolean.FALSE, second.getValue().getValue() );
+		assertEquals( Boolean.FALSE, compiler.compileParameterized( "region == 'EU'", context, true ).getValue()
+				.getValue() );
+		assertEquals( Boolean.TRUE, compiler.compileParameterized( "region == 'US'", context, true ).getValue()
+				.getValue() );
+		assertEquals( "big", compiler.compileParameterized( "amount > 500 ? 'big' : 'small'", context, true )
+				.getValue().getValue() );
+		assertEquals( "small", compiler.compileParameterized( "amount > 900 ? 'big' : 'small'", context, true )
+				.getValue().getValue() );
+		assertEquals( 3.5, compiler.compileParameterized( "max(1.5, 3.5)", context, true ).getValue().getValue() );
+		assertEquals( 2.5, compiler.compileParameterized( "max(2.5, 0.5)", context, true ).getValue().getValue() );
+		assertEquals( Boolean.TRUE, compiler.compileParameterized( "true && amount > 1", context, true ).getValue()
+				.getValue() );
+		assertEquals( Boolean.FALSE, compiler.compileParameterized( "false && amount > 1", context, true ).getValue()
+				.getValue() );
+
+		ExpressionCache.Statistics statistics = context.getTemplateCacheStatistics();
+		assertEquals( statistics.toString(), 5, statistics.getMissCount() );
+		assertEquals( statistics.toString(), 5, statistics.getHitCount() );
+
+		// literals of other types are other shapes, as tree depends on their types
+		Expression decimal = compiler.compileParameterized( "amount > 500.5", context, true );
+		assertNotSame( ( (ParameterizedExpression) first ).getTemplate(),
+				( (ParameterizedExpression) decimal ).getTemplate() );
+		assertEquals( Boolean.TRUE, decimal.getValue().getValue() );
+
+		// expressions without literals are compiled as such
+		assertTrue( compiler.compileParameterized( "amount", context, true ) instanceof IdentifierExpression );
+
+		// shared tree is bound to the context, like cached trees
+		dvp.addVariable( "amount", new ValueObject( 600.0, Type.DOUBLE ) );
+		Expression retyped = compiler.compileParameterized( "amount > 500", context, true );
+		assertNotSame( ( (ParameterizedExpression) first ).getTemplate(),
+				( (ParameterizedExpression) retyped ).getTemplate() );
+		assertEquals( Boolean.TRUE, retyped.getValue().getValue() );
+
+		// tree can not be evaluated without its literals
+		try
+		{
+			( (ParameterizedExpression) first ).getTemplate().getValue();
+			fail( "Parameterized tree must not be evaluated without literals" );
+		}
+		catch( ExpressionEngineException e )
+		{
+			// expected
+		}
+	}
+
+	@Test
+	public void testLinearTypeInference() throws Exception
+	{
+		final AtomicInteger typeLookups = new AtomicInteger();
+		DefaultVariableProvider dvp = new DefaultVariableProvider()
+		{
+
+			@Override
+			public Type getVariableType( String variableName ) throws ExpressionEngineException
+			{
+				typeLookups.incrementAndGet();
+				return super.getVariableType( variableName );
+			}
+		};
+		dvp.addVariable( "x", new ValueObject( 2L, Type.LONG ) );
+		dvp.addVariable( "y", new ValueObject( 1.5, Type.DOUBLE ) );
+		ExpressionContext context = new ExpressionContext();
+		context.addVariableProvider( dvp );
+
+		// every node of a deep tree gets its type once, not again for each ancestor
+		int terms = 300;
+		StringBuilder expression = new StringBuilder( "x" );
+		for( int i = 1; i < terms; i++ )
+		{
+			expression.append( i % 3 == 0 ? " + y" : i % 3 == 1 ? " * x" : " - x" );
+		}
+		Expression compiledExpression = new Compiler( ExpressionEngine.getGrammar() ).compile( expression.toString(),
+				context, true );
+		assertEquals( Type.DOUBLE, compiledExpression.getReturnType() );
+		assertTrue( String.valueOf( compiledExpression.getValue().getValue() ),
+				compiledExpression.getValue().getValue() instanceof Double );
+		assertTrue( "type lookups[" + typeLookups + "]", typeLookups.get() < terms * 8 );
+
+		// types of functions are found once on validation
+		Expression function = new Compiler( ExpressionEngine.getGrammar() ).compile( "max(x * 2, x) - min(y, y)",
+				context, true );
+		assertEquals( Type.DOUBLE, function.getReturnType() );
+		assertEquals( 2.5, function.getValue().getValue() );
+
+		// types of trees which are not validated follow the types of variables
+		Expression notValidated = new Compiler( ExpressionEngine.getGrammar() ).compile( "x + x", context, false );
+		assertEquals( Type.LONG, notValidated.getReturnType() );
+		dvp.addVariable( "x", new ValueObject( 2.0, Type.DOUBLE ) );
+		assertEquals( Type.DOUBLE, notValidated.getReturnType() );
+	}
+
+	@Test
+	public void testPrimitiveEvaluation() throws Exception
+	{
+		DefaultVariableProvider dvp = new DefaultVariableProvider();
+		dvp.addVariable( "x", new ValueObject( 7L, Type.LONG ) );
+		dvp.addVariable( "y", new ValueObject( 2.5, Type.DOUBLE ) );
+		dvp.addVariable( "b", new ValueObject( Boolean.TRUE, Type.BOOLEAN ) );
+		dvp.addVariable( "n", new ValueObject( null, Type.OBJECT ) );
+		ExpressionContext context = new ExpressionContext();
+		context.addVariableProvider( dvp );
+		Compiler compiler = new Compiler( ExpressionEngine.getGrammar() );
+
+		// primitive evaluation gives the same value as boxed evaluation
+		String[] numericExpressions =
+		{ "x + 3", "x * y - 1", "x / 2", "x % 4", "-x + y", "+y", "(x + 1) * -2", "x & 3 | 8", "x ^ 5", "x << 2 >> 1",
+				"~x", "-x >>> 60", "x > 5 ? x * 2 : x - 1", "b ? y : y * 2", "max(x, 3) + y" };
+		for( String numericExpression : numericExpressions )
+		{
+			Expression expression = compiler.compile( numericExpression, context, true );
+			Number value = (Number) expression.getValue().getValue();
+			assertEquals( numericExpression, value.longValue(), expression.evaluateLong() );
+			assertEquals( numericExpression, value.doubleValue(), expression.evaluateDouble(), 0 );
+		}
+
+		String[] booleanExpressions =
+		{ "x > 5", "x > y", "x <= y", "x < 7.5", "x >= 7", "y >= 2.5", "x == 7", "y == 2.5", "x != y", "b && x > 1",
+				"b || x < 1", "!b", "b == true", "b != false", "b ^ true", "x > 5 ? b : false", "'a' == 'a'",
+				"x == n", "n != n" };
+		for( String booleanExpression : booleanExpressions )
+		{
+			Expression expression = compiler.compile( booleanExpression, context, true );
+			assertEquals( booleanExpression, expression.getValue().getValue(), expression.evaluateBoolean() );
+		}
+
+		// null value can not be a primitive
+		String[] nullExpressions =
+		{ "n + 1", "x * n", "x > n", "!n" };
+		for( String nullExpression : nullExpressions )
+		{
+			Expression expression = compiler.compile( nullExpression, context, true );
+			assertNull( nullExpression, expression.getValue().getValue() );
+			try
+			{
+				if( expression.getReturnType() == Type.BOOLEAN )
+				{
+					expression.evaluateBoolean();
+				}
+				else
+				{
+					expression.evaluateLong();
+				}
+				fail( "Null value must not be evaluated as primitive: " + nullExpression );
+			}
+			catch( NullValueException e )
+			{
+				// expected
+			}
+		}
+
+		// numeric formula is evaluated without creating objects
+		if( ManagementFactory.getThreadMXBean() instanceof ThreadMXBean )
+		{
+			ThreadMXBean allocationBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+			Expression formula = compiler.compile( "(x * y - x / 4) * (x + 2) - x % 3 * -y", context, true );
+			double expected = formula.evaluateDouble();
+			long threadId = Thread.currentThread().getId();
+			long allocatedBefore = allocationBean.getThreadAllocatedBytes( threadId );
+			for( int i = 0; i < 10000; i++ )
+			{
+				if( formula.evaluateDouble() != expected )
+				{
+					fail( "Formula value changed" );
+				}
+			}
+			long allocated = allocationBean.getThreadAllocatedBytes( threadId ) - allocatedBefore;
+			assertTrue( "allocated bytes[" + allocated + "]", allocated < 10000 );
+		}
+	}
+
+	@Test
+	public void testEvaluationFrame() throws Exception
+	{
+		DefaultVariableProvider dvp = new DefaultVariableProvider();
+		dvp.addVariable( "x", new ValueObject( 7L, Type.LONG ) );
+		dvp.addVariable( "y", new ValueObject( 2.5, Type.DOUBLE ) );
+		dvp.addVariable( "z", new ValueObject( -4L, Type.LONG ) );
+		dvp.addVariable( "w", new ValueObject( 5L, Type.DOUBLE ) );
+		ExpressionContext context = new ExpressionContext();
+		context.addVariableProvider( dvp );
+		Compiler compiler = new Compiler( ExpressionEngine.getGrammar() );
+
+		// nested calls get their own buffers of arguments
+		Expression nested = compiler.compile( "max(max(x, 1), max(2, min(x, abs(z)))) * 10 + min(abs(z), x)",
+				context, true );
+		assertEquals( new Long( 74 ), nested.getValue().getValue() );
+		assertEquals( 74, nested.evaluateLong() );
+		assertEquals( 74.0, nested.evaluateDouble(), 0 );
+
+		// formula having functions is evaluated without creating objects in steady state
+		Expression formula = compiler.compile( "max(x, 3) * y + min(x, 2) - abs(z) / (x + y) + (x > 3 ? max(x, 6) : 0)",
+				context, true );
+		double expected = 7 * 2.5 + 2 - 4 / 9.5 + 7;
+		assertEquals( expected, ( (Number) formula.getValue().getValue() ).doubleValue(), 0.0000001 );
+		assertEquals( expected, formula.evaluateDouble(), 0.0000001 );
+		if( ManagementFactory.getThreadMXBean() instanceof ThreadMXBean )
+		{
+			ThreadMXBean allocationBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+			long threadId = Thread.currentThread().getId();
+			for( int i = 0; i < 1000; i++ )
+			{
+				formula.evaluateDouble();
+			}
+			long allocatedBefore = allocationBean.getThreadAllocatedBytes( threadId );
+			for( int i = 0; i < 10000; i++ )
+			{
+				if( formula.evaluateDouble() != expected )
+				{
+					fail( "Formula value changed" );
+				}
+			}
+			long allocated = allocationBean.getThreadAllocatedBytes( threadId ) - allocatedBefore;
+			assertTrue( "allocated bytes[" + allocated + "]", allocated < 10000 );
+		}
+
+		// buffers are released when a function fails, like for a value not of the type of its variable
+		Expression failing = compiler.compile( "rint(w) + max(x, 1)", context, true );
+		for( int i = 0; i < 3; i++ )
+		{
+			try
+			{
+				failing.getValue();
+				fail( "Function with invalid arguments must fail" );
+			}
+			catch( ExpressionEngineException e )
+			{
+				// expected
+			}
+		}
+		assertEquals( 74, nested.evaluateLong() );
+	}
+
+	@Test
+	public void testSpecializedOperators() throws Exception
+	{
+		Compiler compiler = new Compiler( ExpressionEngine.getGrammar() );
+		compiler.setOptimizeExpressions( true );
+		Compiler genericCompiler = new Compiler( ExpressionEngine.getGrammar() );
+		genericCompiler.setOptimizeExpressions( true );
+		long specializedCount = compiler.getOptimizationReport().getSpecializedCount();
+
+		// variants give same values as generic operators, which are not specialized without validation
+		String[] numericExpressions =
+		{ "nameIndex + 2", "rate + nameIndex", "rate - 2.5", "nameIndex - 7", "nameIndex * 3", "rate * time" };
+		String[] booleanExpressions =
+		{ "rate > time", "nameIndex >= 1", "rate < 10", "nameIndex <= 0", "rate > 0.0 / 0", "rate < 0.0 / 0",
+				"nameIndex < rate" };
+		String[] stringExpressions =
+		{ "non_null_string + nameIndex", "rate + non_null_string", "null_string + rate" };
+		for( String[] expressions : new String[][]
+		{ numericExpressions, booleanExpressions, stringExpressions } )
+		{
+			for( String expressionString : expressions )
+			{
+				BinaryOperatorExpression expression = (BinaryOperatorExpression) compiler.compile( expressionString,
+						expressionContext, true );
+				Expression genericExpression = genericCompiler.compile( expressionString, expressionContext, false );
+				assertNotSame( expressionString, expression.getOperatorClass(), expression.getClass() );
+				assertSame( expressionString, genericExpression.getClass(), expression.getOperatorClass() );
+				assertEquals( expressionString, genericExpression.getValue().getValue(), expression.getValue()
+						.getValue() );
+				assertEquals( expressionString, genericExpression.getReturnType(), expression.getReturnType() );
+				assertEquals( expressionString, genericExpression.toString(), expression.toString() );
+				if( expressions == numericExpressions )
+				{
+					assertEquals( expressionString, genericExpression.evaluateDouble(), expression.evaluateDouble(), 0 );
+					assertEquals( expressionString, genericExpression.evaluateLong(), expression.evaluateLong() );
+				}
+				else if( expressions == booleanExpressions )
+				{
+					assertEquals( expressionString, genericExpression.evaluateBoolean(), expression.evaluateBoolean() );
+				}
+			}
+		}
+		assertEquals( numericExpressions.length + booleanExpressions.length + stringExpressions.length,
+				compiler.getOptimizationReport().getSpecializedCount() - specializedCount );
+
+		// null values of typed operands are kept
+		Expression expression = compiler.compile( "doublesWithNull[2] + rate", expressionContext, true );
+		assertNotSame( AddExpression.class, expression.getClass() );
+		assertNull( expression.getValue().getValue() );
+		try
+		{
+			expression.evaluateDouble();
+			fail( "Null value should not be evaluated as primitive" );
+		}
+		catch( NullValueException e )
+		{
+			// expected
+		}
+		assertNull( compiler.compile( "doublesWithNull[2] > rate", expressionContext, true ).getValue().getValue() );
+
+		// operands of OBJECT type are left to generic operators
+		assertSame( AddExpression.class, compiler.compile( "rate + null", expressionContext, true ).getClass() );
+		assertSame( GTExpression.class, compiler.compile( "nameIndex > null", expressionContext, true ).getClass() );
+
+		// variants are known by their operator, and are shared like it
+		expression = compiler.compile( "rate * time + rate * time", expressionContext, true );
+		assertEquals( 1, new ExpressionTypeFinder( expression, MultiplyExpression.class ).getExpressions().size() );
+		assertEquals( 1, new ExpressionTypeFinder( expression, SharedExpression.class ).getExpressions().size() );
+		assertEquals( 40.0, expression.evaluateDouble(), 0 );
+	}
+
+	@Test
+	public void testShortCircuitEvaluation() throws Exception
+	{
+		final AtomicInteger calls = new AtomicInteger();
+		expressionContext.addFunctionProvider( new FunctionProvider()
+		{
+
+			public void initialize( ExpressionContext expressionContext ) throws ExpressionEngineException
+			{
+				ExpressionFactory.getInstance().addFunction( "costly" );
+				ExpressionEngine.getGrammar().addFunction( "costly" );
+			}
+
+			public Type getFunctionType( String functionName, Type[] parameterTypes ) throws ExpressionEngineException
+			{
+				return Type.DOUBLE;
+			}
+
+			public ValueObject getFunctionValue( String functionName, ValueObject[] parameters )
+					throws ExpressionEngineException
+			{
+				calls.incrementAndGet();
+				return new ValueObject( parameters[0].getValue(), Type.DOUBLE );
+			}
+
+			public boolean supportsFunction( String functionName, Type[] parameterTypes )
+					throws ExpressionEngineException
+			{
+				return "costly".equals( functionName ) && parameterTypes.length == 1
+						&& parameterTypes[0] == Type.DOUBLE;
+			}
+		} );
+		Compiler compiler = new Compiler( ExpressionEngine.getGrammar() );
+		compiler.setOptimizeExpressions( true );
+
+		// guarded operand is evaluated only if guard does not decide the value
+		Object[][] cases = new Object[][]
+		{
+		{ "rate > 100 && costly(rate) > 5", Boolean.FALSE, 0 },
+		{ "rate < 100 || costly(rate) > 5", Boolean.TRUE, 0 },
+		{ "booleansAllNull[0] && costly(rate) > 5", null, 0 },
+		{ "booleansAllNull[0] || costly(rate) > 5", null, 0 },
+		{ "rate < 100 && costly(rate) > 5", Boolean.TRUE, 1 },
+		{ "rate > 100 || costly(rate) > 50", Boolean.FALSE, 1 },
+		{ "rate > 5 ? rate : costly(rate)", 10.0, 0 },
+		{ "iif(rate > 100, costly(rate), 0.0)", 0.0, 0 },
+		{ "iif(rate < 100, costly(rate), 0.0)", 10.0, 1 },
+		{ "iif(rate > 100, costly(rate), costly(time))", 2.0, 1 },
+		{ "false && costly(rate) > 5", Boolean.FALSE, 0 },
+		{ "true || costly(rate) > 5", Boolean.TRUE, 0 } };
+		for( Object[] guardCase : cases )
+		{
+			String expressionString = (String) guardCase[0];
+			int expectedCalls = (Integer) guardCase[2];
+			Expression expression = compiler.compile( expressionString, expressionContext, true );
+			calls.set( 0 );
+			assertEquals( expressionString, guardCase[1], expression.getValue().getValue() );
+			assertEquals( expressionString, expectedCalls, calls.get() );
+			if( guardCase[1] instanceof Boolean )
+			{
+				calls.set( 0 );
+				assertEquals( expressionString, guardCase[1], expression.evaluateBoolean() );
+				assertEquals( expressionString, expectedCalls, calls.get() );
+			}
+		}
+
+		// operators with a constant deciding operand are replaced by the constant
+		assertTrue( compiler.compile( "false && costly(rate) > 5", expressionContext, true )
+				instanceof ConstantExpression );
+		assertTrue( compiler.compile( "costly(rate) > 5 && false", expressionContext, true ) instanceof AndExpression );
+
+		// condition is compared by value, not by identity
+		DefaultVariableProvider dvp = new DefaultVariableProvider();
+		dvp.addVariable( "newTrue", new ValueObject( new Boolean( true ), Type.BOOLEAN ) );
+		expressionContext.addVariableProvider( dvp );
+		calls.set( 0 );
+		assertEquals( 10.0, compiler.compile( "iif(newTrue, costly(rate), 0.0)", expressionContext, true ).getValue()
+				.getValue() );
+		assertEquals( 1, calls.get() );
+		assertEquals( new Long( 1 ), compiler.compile( "iif(newTrue, 1, 2)", expressionContext, true ).getValue()
+				.getValue() );
+
+		// chosen argument is the value of conditional function, its method is not invoked to choose again
+		expressionContext.addFunctionProvider( new DefaultFunctionProvider( ConditionalFunctions.class ) );
+		calls.set( 0 );
+		ConditionalFunctions.INVOCATIONS.set( 0 );
+		assertEquals( 2.0, compiler.compile( "choose(rate > 100, costly(rate), costly(time))", expressionContext, true )
+				.getValue().getValue() );
+		assertEquals( 1, calls.get() );
+		assertEquals( 0, ConditionalFunctions.INVOCATIONS.get() );
+	}
+
+	@Test
+	public void testClassCompilation() throws Exception
+	{
+		Compiler compiler = new Compiler( ExpressionEngine.getGrammar() );
+
+		// generated classes give same values as the trees
+		String[] numericExpressions =
+		{ "nameIndex * 3 + 2", "rate * time - rate / 4", "nameIndex % 2 - 7", "-rate + -nameIndex",
+				"rate > 5 ? rate * 2 : time - 1", "abs( rate - 100 ) + max( nameIndex, 3 )",
+				"sqrt( rate * rate ) * pow( time, 3 )", "round( rate / 3 ) * 2", "rate * time + rate * time" };
+		String[] booleanExpressions =
+		{ "rate > time && nameIndex <= 1", "!( rate == time ) || false", "nameIndex != 2 && rate >= 10.5",
+				"rate > 0.0 / 0", "rate < 0.0 / 0", "nameIndex < rate", "time * 5 == rate" };
+		for( String[] expressions : new String[][]
+		{ numericExpressions, booleanExpressions } )
+		{
+			for( String expressionString : expressions )
+			{
+				Expression tree = compiler.compile( expressionString, expressionContext, true );
+				Expression expression = ExpressionClassCompiler.compile( tree );
+				assertTrue( expressionString, expression instanceof CompiledExpression );
+				assertSame( expressionString, tree, ( (CompiledExpression) expression ).getExpression() );
+				assertEquals( expressionString, tree.getValue().getValue(), expression.getValue().getValue() );
+				assertEquals( expressionString, tree.getValue().getValueType(), expression.getValue().getValueType() );
+				assertEquals( expressionString, tree.toString(), expression.toString() );
+				if( expressions == numericExpressions )
+				{
+					assertEquals( expressionString, tree.evaluateDouble(), expression.evaluateDouble(), 0 );
+					assertEquals( expressionString, tree.evaluateLong(), expression.evaluateLong() );
+				}
+				else
+				{
+					assertEquals( expressionString, tree.evaluateBoolean(), expression.evaluateBoolean() );
+				}
+			}
+		}
+
+		// only the variables are evaluated by tree, functions are called directly
+		assertEquals( 1, ( (CompiledExpression) ExpressionClassCompiler.compile( compiler.compile( "nameIndex * 3 + 2",
+				expressionContext, true ) ) ).getInterpretedNodeCount() );
+		assertEquals( 2, ( (CompiledExpression) ExpressionClassCompiler.compile( compiler.compile(
+				"abs( rate - 100 ) + max( nameIndex, 3 )", expressionContext, true ) ) ).getInterpretedNodeCount() );
+
+		// null values give same results as the tree
+		Expression expression = ExpressionClassCompiler.compile( compiler.compile( "doublesWithNull[2] + rate",
+				expressionContext, true ) );
+		assertTrue( expression instanceof CompiledExpression );
+		assertNull( expression.getValue().getValue() );
+		try
+		{
+			expression.evaluateDouble();
+			fail( "Null value should not be evaluated as primitive" );
+		}
+		catch( NullValueException e )
+		{
+			// expected
+		}
+		assertEquals( Boolean.FALSE, ExpressionClassCompiler.compile(
+				compiler.compile( "false && booleansAllNull[0]", expressionContext, true ) ).getValue().getValue() );
+		assertNull( ExpressionClassCompiler.compile(
+				compiler.compile( "rate > 1 && booleansAllNull[0]", expressionContext, true ) ).getValue().getValue() );
+
+		// trees which are not numeric or boolean, or whose root is not compiled, are returned as they are
+		for( String expressionString : new String[]
+		{ "non_null_string + nameIndex", "rate", "booleansAllNull[0]" } )
+		{
+			Expression tree = compiler.compile( expressionString, expressionContext, true );
+			assertSame( expressionString, tree, ExpressionClassCompiler.compile( tree ) );
+		}
+	}
+}
@@ -26,14 +26,30 @@
  */
 package org.vedantatree.expressionoasis;
 
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import junit.framework.TestCase;
 import junit.textui.TestRunner;
 
+import org.vedantatree.expressionoasis.config.ConfigFactory;
+import org.vedantatree.expressionoasis.config.ExpressionConfig;
+import org.vedantatree.expressionoasis.config.ExpressionOasisConfig;
+import org.vedantatree.expressionoasis.config.StartupSnapshot;
 import org.vedantatree.expressionoasis.exceptions.ExpressionEngineException;
+import org.vedantatree.expressionoasis.expressions.Expression;
+import org.vedantatree.expressionoasis.expressions.ExpressionFactory;
+import org.vedantatree.expressionoasis.grammar.CompiledGrammar;
 import org.vedantatree.expressionoasis.grammar.DefaultXMLGrammar;
 import org.vedantatree.expressionoasis.grammar.ExpressionToken;
+import org.vedantatree.expressionoasis.grammar.rules.IProductionRule;
+import org.vedantatree.expressionoasis.grammar.rules.ProductionRule;
+import org.vedantatree.expressionoasis.grammar.rules.ProductionRuleAutomaton;
 
 
 /**
@@ -184,6 +200,505 @@ public class TestParser extends TestCase
 		assertEquals( 0, tokens.size() );
 	}
 
+	public void testIterativeLexerProducesSameTokens() throws ExpressionEngineException
+	{
+		DefaultXMLGrammar grammar = new DefaultXMLGrammar();
+		Parser recursiveParser = new Parser( grammar, ExpressionEngineConstants.LEXER_MODE_RECURSIVE );
+		Parser iterativeParser = new Parser( grammar, ExpressionEngineConstants.LEXER_MODE_ITERATIVE );
+
+		String[] expressions = new String[]
+		{ "123 + 124 - 67 * 45 / 90 + (12 + 34 / 67)", "120 * pow(sin(20) / tan(30), 2)",
+				"values[0] + values[1] + values[2] + 120 * 45 / num[1][1]",
+				"1 + .address.city.name + students[0].rollNo", "abc==xyz || 1!=2 && 3 >= xyz && xvz <= 30",
+				"'a b' + ' c' + 'it\\'s'", "3.14 * .55 + .5 - 2.", "a > = b", "a >>> 2 << 1 >> 3", "  -2 *  - 3  ",
+				"iif(true, 'was true', 6) ? x : y", "\t1\t+\n2", "~5 ^ 3 & 1 | 0", "!(a && b)" };
+
+		for( int i = 0; i < expressions.length; i++ )
+		{
+			assertEquals( expressions[i], recursiveParser.parse( expressions[i] ).toString(), iterativeParser.parse(
+					expressions[i] ).toString() );
+		}
+	}
+
+	public void testIterativeLexerLongExpression() throws ExpressionEngineException
+	{
+		Parser iterativeParser = new Parser( new DefaultXMLGrammar(), ExpressionEngineConstants.LEXER_MODE_ITERATIVE );
+
+		StringBuilder expression = new StringBuilder( "1" );
+		for( int i = 0; i < 20000; i++ )
+		{
+			expression.append( " + 1" );
+		}
+
+		assertEquals( 40001, iterativeParser.parse( expression.toString() ).size() );
+	}
+
+	public void testLongestMatchLexer() throws ExpressionEngineException
+	{
+		DefaultXMLGrammar grammar = new DefaultXMLGrammar();
+		Parser iterativeParser = new Parser( grammar, ExpressionEngineConstants.LEXER_MODE_ITERATIVE );
+		Parser longestMatchParser = new Parser( grammar, ExpressionEngineConstants.LEXER_MODE_LONGEST_MATCH );
+
+		String[] expressions = new String[]
+		{ "123 + 124 - 67 * 45 / 90 + (12 + 34 / 67)", "120 * pow(sin(20) / tan(30), 2)",
+				"values[0] + values[1] + values[2] + 120 * 45 / num[1][1]",
+				"1 + .address.city.name + students[0].rollNo", "abc==xyz || 1!=2 && 3 >= xyz && xvz <= 30",
+				"'a b' + ' c' + 'it\\'s'", "3.14 * .55 - 2.", "a >>> 2 << 1 >> 3", "  -2 *  - 3  ",
+				"iif(true, 'was true', 6) ? x : y", "~5 ^ 3 & 1 | 0", "!(a && b)" };
+
+		for( int i = 0; i < expressions.length; i++ )
+		{
+			assertEquals( expressions[i], getValues( iterativeParser.parse( expressions[i] ) ),
+					getValues( longestMatchParser.parse( expressions[i] ) ) );
+		}
+
+		List<ExpressionToken> tokens = longestMatchParser.parse( "a>>>=2&&.5" );
+		assertEquals( "[{a, 0}, {>>>, 1}, {=, 4}, {2, 5}, {&&, 6}, {.5, 8}]", tokens.toString() );
+
+		// delimiters separated by blank are not combined
+		assertEquals( "[a, >, =, b]", getValues( longestMatchParser.parse( "a > = b" ) ) );
+		assertEquals( "[x, ., 5]", getValues( longestMatchParser.parse( "x.5" ) ) );
+	}
+
+	public void testTokensOverCharacters() throws ExpressionEngineException
+	{
+		Parser iterativeParser = new Parser( new DefaultXMLGrammar(), ExpressionEngineConstants.LEXER_MODE_ITERATIVE );
+		char[] buffer = "##12 + abc * 2.5 - 'x y'##".toCharArray();
+
+		List<ExpressionToken> tokens = iterativeParser.parse( buffer, 2, buffer.length - 4 );
+		assertEquals( iterativeParser.parse( "12 + abc * 2.5 - 'x y'" ).toString(), tokens.toString() );
+
+		tokens = iterativeParser.parse( buffer, 2, buffer.length - 4 );
+		ExpressionToken operand = tokens.get( 0 );
+		assertFalse( operand.isMaterialized() );
+		assertEquals( 2, operand.length() );
+		assertEquals( '2', operand.charAt( 1 ) );
+		assertEquals( '1', operand.getText().charAt( 0 ) );
+		assertFalse( operand.isMaterialized() );
+		assertEquals( "12", operand.getValue() );
+		assertTrue( operand.isMaterialized() );
+
+		// delimiters share the strings of grammar
+		assertTrue( tokens.get( 1 ).isMaterialized() );
+
+		buffer = "##12 + 30 * 2##".toCharArray();
+		Expression expression = new Compiler().compile( buffer, 2, buffer.length - 4, new ExpressionContext(), true );
+		buffer[2] = '9';
+		assertEquals( new Long( 72 ), expression.getValue().getValue() );
+	}
+
+	public void testOperandKindsFromLexer() throws ExpressionEngineException
+	{
+		String expression = "12 + 2.5 * abc - 'x' + true";
+		String[] modes = new String[]
+		{ ExpressionEngineConstants.LEXER_MODE_ITERATIVE, ExpressionEngineConstants.LEXER_MODE_LONGEST_MATCH };
+
+		for( int i = 0; i < modes.length; i++ )
+		{
+			List<ExpressionToken> tokens = new Parser( new DefaultXMLGrammar(), modes[i] ).parse( expression );
+
+			// numbers are parsed while lexing, without creating the token string
+			assertEquals( new Long( 12 ), tokens.get( 0 ).getLiteralValue() );
+			assertFalse( tokens.get( 0 ).isMaterialized() );
+			assertEquals( new Double( 2.5 ), tokens.get( 2 ).getLiteralValue() );
+
+			assertEquals( -1, tokens.get( 1 ).getOperandKind() );
+			assertTrue( tokens.get( 4 ).getOperandKind() >= 0 );
+			assertTrue( tokens.get( 6 ).getOperandKind() >= 0 );
+			assertNull( tokens.get( 6 ).getLiteralValue() );
+
+			// literal operand is not taken as identifier, though identifier rule allows it
+			assertTrue( tokens.get( 8 ).getOperandKind() >= 0 );
+			assertTrue( tokens.get( 8 ).getOperandKind() != tokens.get( 4 ).getOperandKind() );
+		}
+
+		// recursive parser does not resolve the kinds, operand patterns are matched for its tokens
+		Parser recursiveParser = new Parser( new DefaultXMLGrammar(), ExpressionEngineConstants.LEXER_MODE_RECURSIVE );
+		assertEquals( -1, recursiveParser.parse( expression ).get( 0 ).getOperandKind() );
+
+		Compiler compiler = new Compiler();
+		assertEquals( Boolean.TRUE, compiler.compile( "true && 12 > 2.5 && 'x' != null", new ExpressionContext(), true )
+				.getValue().getValue() );
+		assertEquals( new Double( 14.5 ), compiler.compile( "12 + 2.5", new ExpressionContext(), true ).getValue()
+				.getValue() );
+
+		try
+		{
+			ExpressionFactory.getInstance().createExpression( "#", ExpressionFactory.OPERAND );
+			fail( "Operand without pattern must not be created" );
+		}
+		catch( ExpressionEngineException e )
+		{
+			// expected
+		}
+	}
+
+	public void testIncrementalCompilation() throws ExpressionEngineException
+	{
+		Compiler compiler = new Compiler( new DefaultXMLGrammar() );
+		ExpressionContext context = new ExpressionContext();
+
+		// type the expression, then edit it in the middle and delete it back from the end
+		String typed = "12 + max(3, 4) * (5 - 2) >= 2 && 'a + b' != 'y' || 10 / 2 == 5";
+		List<String> versions = new ArrayList<String>();
+		for( int i = 1; i <= typed.length(); i++ )
+		{
+			versions.add( typed.substring( 0, i ) );
+		}
+		versions.add( typed.replace( "(5 -", "(50 -" ) );
+		versions.add( typed.replace( "(5 -", "(50 + 7 -" ) );
+		versions.add( typed.replace( "'a + b'", "'a + b" ) );
+		versions.add( typed.replace( "'a + b'", "'a' + b'" ) );
+		versions.add( typed.replace( "'a + b'", "'a' + 'b'" ) );
+		for( int i = typed.length() - 1; i > 0; i-- )
+		{
+			versions.add( typed.substring( 0, i ) );
+		}
+
+		// partial expressions may fail with any exception, then incremental compilation must fail too
+		IncrementalExpression state = null;
+		for( String version : versions )
+		{
+			IncrementalExpression expected;
+			try
+			{
+				expected = compiler.compileIncrementally( version, context, true );
+			}
+			catch( Exception ex )
+			{
+				expected = null;
+			}
+
+			IncrementalExpression actual;
+			try
+			{
+				actual = state == null ? compiler.compileIncrementally( version, context, true ) : compiler.recompile(
+						state, version, context, true );
+			}
+			catch( Exception ex )
+			{
+				actual = null;
+			}
+
+			assertEquals( version, expected == null, actual == null );
+			if( actual != null )
+			{
+				assertEquals( version, version, actual.getExpression() );
+				assertEquals( version, expected.getTokens().toString(), actual.getTokens().toString() );
+				assertEquals( version, expected.getCompiledExpression().getValue().getValue(), actual
+						.getCompiledExpression().getValue().getValue() );
+				state = actual;
+			}
+		}
+
+		// only the part around edit is tokenized, and unchanged sub trees are reused
+		StringBuilder expression = new StringBuilder( "1" );
+		for( int i = 0; i < 100; i++ )
+		{
+			expression.append( " + (" ).append( i ).append( " * 2)" );
+		}
+		state = compiler.compileIncrementally( expression, context, true );
+		int offset = expression.indexOf( "(50 * 2)" ) + 1;
+
+		IncrementalExpression edited = compiler.recompile( state, offset, 2, "500", context, true );
+		assertTrue( edited.getTokenizedLength() < 20 );
+		// literal, multiplication, brackets and the additions above these are created again
+		assertEquals( 3 + 50, edited.getExpressionCount() - edited.getReusedExpressionCount() );
+		assertEquals( compiler.compile( edited.getExpression(), context, true ).getValue().getValue(), edited
+				.getCompiledExpression().getValue().getValue() );
+
+		// expressions are not reused for another context
+		edited = compiler.recompile( state, offset, 2, "500", new ExpressionContext(), true );
+		assertEquals( 0, edited.getReusedExpressionCount() );
+
+		try
+		{
+			compiler.recompile( state, expression.length(), 1, "1", context, true );
+			fail( "Edit must be inside the expression" );
+		}
+		catch( IndexOutOfBoundsException ex )
+		{
+			// expected
+		}
+	}
+
+	public void testCompiledGrammar() throws ExpressionEngineException
+	{
+		DefaultXMLGrammar grammar = new DefaultXMLGrammar();
+		CompiledGrammar compiledGrammar = grammar.getCompiledGrammar();
+
+		int plus = compiledGrammar.getKind( "+" );
+		assertTrue( compiledGrammar.isBinaryOperator( plus ) && compiledGrammar.isUnary( plus ) );
+		assertEquals( grammar.getPrecedenceOrder( "+", false ), compiledGrammar.getPrecedenceOrder( plus, false ) );
+		assertEquals( grammar.getPrecedenceOrder( "+", true ), compiledGrammar.getPrecedenceOrder( plus, true ) );
+
+		int leftBracket = compiledGrammar.getKind( "(" );
+		assertTrue( compiledGrammar.isLeftBracket( leftBracket ) );
+		assertEquals( ")", compiledGrammar.getSymbol( compiledGrammar.getOppositeBracket( leftBracket ) ) );
+		assertEquals( "()", compiledGrammar.getSymbol( compiledGrammar.getBracketPair( leftBracket ) ) );
+		assertEquals( CompiledGrammar.OPERAND, compiledGrammar.getKind( "abc" ) );
+
+		List<ExpressionToken> tokens = new Parser( grammar, ExpressionEngineConstants.LEXER_MODE_ITERATIVE )
+				.parse( "12 + myFunction(3)" );
+		assertEquals( CompiledGrammar.OPERAND, compiledGrammar.getKind( tokens.get( 0 ) ) );
+		assertFalse( tokens.get( 0 ).isMaterialized() );
+		assertEquals( plus, compiledGrammar.getKind( tokens.get( 1 ) ) );
+		assertFalse( grammar.isFunction( tokens.get( 2 ) ) );
+
+		// kinds of existing symbols are kept after adding a function, and operands are resolved again
+		grammar.addFunction( "myFunction" );
+		CompiledGrammar extendedGrammar = grammar.getCompiledGrammar();
+		assertNotSame( compiledGrammar, extendedGrammar );
+		assertEquals( plus, extendedGrammar.getKind( "+" ) );
+		assertTrue( extendedGrammar.isFunction( extendedGrammar.getKind( tokens.get( 2 ) ) ) );
+		assertTrue( grammar.isFunction( tokens.get( 2 ) ) );
+		assertEquals( 13, grammar.getPrecedenceOrder( tokens.get( 2 ), true ) );
+	}
+
+	public void testConcurrentFunctionRegistration() throws Exception
+	{
+		final DefaultXMLGrammar grammar = new DefaultXMLGrammar();
+		final int functionCount = 200;
+		final List<Throwable> failures = Collections.synchronizedList( new ArrayList<Throwable>() );
+		final CountDownLatch start = new CountDownLatch( 1 );
+		final AtomicBoolean adding = new AtomicBoolean( true );
+		grammar.addFunction( "max" );
+
+		Thread writer = new Thread( new Runnable()
+		{
+
+			public void run()
+			{
+				try
+				{
+					start.await();
+					for( int i = 0; i < functionCount; i++ )
+					{
+						grammar.addFunction( "added" + i );
+					}
+				}
+				catch( Throwable th )
+				{
+					failures.add( th );
+				}
+				finally
+				{
+					adding.set( false );
+				}
+			}
+		} );
+
+		Thread[] readers = new Thread[4];
+		for( int i = 0; i < readers.length; i++ )
+		{
+			readers[i] = new Thread( new Runnable()
+			{
+
+				public void run()
+				{
+					try
+					{
+						Parser readerParser = new Parser( grammar );
+						start.await();
+						do
+						{
+							List<ExpressionToken> tokens = readerParser.parse( "added7(3) + max(1, 2) * -4" );
+							assertEquals( 14, tokens.size() );
+							// function added before stays while other functions are added
+							assertTrue( grammar.isFunction( tokens.get( 5 ) ) );
+							assertTrue( grammar.isBinaryOperator( tokens.get( 4 ) ) );
+							assertTrue( grammar.isUnary( tokens.get( 12 ) ) );
+
+							// a function is either not seen yet, or seen with its precedence
+							if( grammar.isFunction( tokens.get( 0 ) ) )
+							{
+								assertEquals( 13, grammar.getPrecedenceOrder( tokens.get( 0 ), true ) );
+								assertEquals( 13, grammar.getPrecedenceOrder( "added7", true ) );
+							}
+						}
+						while( adding.get() );
+					}
+					catch( Throwable th )
+					{
+						failures.add( th );
+					}
+				}
+			} );
+			readers[i].start();
+		}
+		writer.start();
+		start.countDown();
+
+		writer.join();
+		for( Thread reader : readers )
+		{
+			reader.join();
+		}
+
+		assertTrue( failures.toString(), failures.isEmpty() );
+		for( int i = 0; i < functionCount; i++ )
+		{
+			assertTrue( grammar.isFunction( "added" + i ) );
+		}
+
+		// adding the same function again keeps the grammar as it is
+		CompiledGrammar compiledGrammar = grammar.getCompiledGrammar();
+		grammar.addFunction( "added0" );
+		assertSame( compiledGrammar, grammar.getCompiledGrammar() );
+	}
+
+	public void testStartupSnapshot() throws Exception
+	{
+		File file = File.createTempFile( "expressionoasis", ".snapshot" );
+		file.delete();
+		try
+		{
+			ClassLoader classLoader = getClass().getClassLoader();
+			ExpressionOasisConfig config = ConfigFactory.getConfig();
+			byte[] configSource = StartupSnapshot.readFully( classLoader.getResourceAsStream( "config.xml" ) );
+			byte[] grammarSource = StartupSnapshot.readFully( classLoader.getResourceAsStream( config
+					.getGrammarPath() ) );
+
+			// first start loads from XML and writes the snapshot
+			StartupSnapshot snapshot = StartupSnapshot.open( file, configSource );
+			assertNull( snapshot.getConfig() );
+			assertNull( snapshot.getGrammarSection( config.getGrammarPath(), grammarSource ) );
+			snapshot.setConfig( config );
+			DefaultXMLGrammar xmlGrammar = new DefaultXMLGrammar( snapshot );
+			assertTrue( file.isFile() );
+
+			// next start reads both from snapshot
+			StartupSnapshot nextSnapshot = StartupSnapshot.open( file, configSource );
+			ExpressionOasisConfig snapshotConfig = nextSnapshot.getConfig();
+			assertNotNull( snapshotConfig );
+			assertNotNull( nextSnapshot.getGrammarSection( config.getGrammarPath(), grammarSource ) );
+			assertEquals( config.shouldCacheCompiledExpressions(), snapshotConfig.shouldCacheCompiledExpressions() );
+			assertEquals( config.getGrammarPath(), snapshotConfig.getGrammarPath() );
+			assertEquals( config.getLexerMode(), snapshotConfig.getLexerMode() );
+			assertEquals( config.getCompilationMode(), snapshotConfig.getCompilationMode() );
+			assertEquals( config.getCompiledExpressionDirectory(), snapshotConfig.getCompiledExpressionDirectory() );
+			assertEquals( config.getExpressionCacheConfig().getMaximumEntries(), snapshotConfig
+					.getExpressionCacheConfig().getMaximumEntries() );
+			assertEquals( config.getExpressionCacheConfig().getMaximumWeight(), snapshotConfig
+					.getExpressionCacheConfig().getMaximumWeight() );
+			assertEquals( config.getGrammar().getClass(), snapshotConfig.getGrammar().getClass() );
+			assertEquals( config.getExpressionConfigs().size(), snapshotConfig.getExpressionConfigs().size() );
+			for( int i = 0; i < config.getExpressionConfigs().size(); i++ )
+			{
+				ExpressionConfig expected = config.getExpressionConfigs().get( i );
+				ExpressionConfig actual = snapshotConfig.getExpressionConfigs().get( i );
+				assertEquals( expected.getExpressionName(), actual.getExpressionName() );
+				assertEquals( expected.getExpressionType(), actual.getExpressionType() );
+				assertEquals( expected.getExpressionClass(), actual.getExpressionClass() );
+			}
+
+			long length = file.length();
+			DefaultXMLGrammar snapshotGrammar = new DefaultXMLGrammar( nextSnapshot );
+			assertEquals( length, file.length() );
+			assertEquals( xmlGrammar.isIgnoreBlank(), snapshotGrammar.isIgnoreBlank() );
+			assertEquals( xmlGrammar.getProductionRuleAutomaton().getCompiledRules().size(), snapshotGrammar
+					.getProductionRuleAutomaton().getCompiledRules().size() );
+			assertEquals( xmlGrammar.getPrecedenceOrder( "*", false ), snapshotGrammar.getPrecedenceOrder( "*", false ) );
+			assertEquals( xmlGrammar.getPrecedenceOrder( "!", true ), snapshotGrammar.getPrecedenceOrder( "!", true ) );
+
+			String[] expressions = { "120 * pow(sin(20) / tan(30), 2)", "a.b[1] >= 12.5 && 'x y' != name || !false",
+					"x >>> 2 << 3 | ~4 ^ 5 & 6", "flag ? -1 : +2.0", "a > = b" };
+			String[] lexerModes = { ExpressionEngineConstants.LEXER_MODE_RECURSIVE,
+					ExpressionEngineConstants.LEXER_MODE_ITERATIVE, ExpressionEngineConstants.LEXER_MODE_LONGEST_MATCH };
+			for( String lexerMode : lexerModes )
+			{
+				Parser xmlParser = new Parser( xmlGrammar, lexerMode );
+				Parser snapshotParser = new Parser( snapshotGrammar, lexerMode );
+				for( String expression : expressions )
+				{
+					assertEquals( expression, getValues( xmlParser.parse( expression ) ), getValues( snapshotParser
+							.parse( expression ) ) );
+				}
+			}
+
+			// snapshot is stale if any of the XML is changed
+			byte[] changedSource = ( new String( grammarSource, "UTF-8" ) + " " ).getBytes( "UTF-8" );
+			assertNull( nextSnapshot.getGrammarSection( config.getGrammarPath(), changedSource ) );
+			assertNull( nextSnapshot.getGrammarSection( "other.xml", grammarSource ) );
+			assertNull( StartupSnapshot.open( file, changedSource ).getConfig() );
+
+			// damaged snapshot is not used
+			RandomAccessFile randomAccessFile = new RandomAccessFile( file, "rw" );
+			randomAccessFile.setLength( length / 2 );
+			randomAccessFile.close();
+			assertNull( StartupSnapshot.open( file, configSource ).getConfig() );
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	public void testProductionRuleAutomatonMatchesRegularExpressions()
+	{
+		DefaultXMLGrammar grammar = new DefaultXMLGrammar();
+		ProductionRuleAutomaton automaton = grammar.getProductionRuleAutomaton();
+		assertFalse( automaton.hasFallbackRules() );
+
+		// all the tokens up to four characters from the characters significant for default rules
+		char[] characters = new char[]
+		{ '0', '9', '.', 'a', 'Z', '_', '@', '\'', '\\', ' ', '-' };
+		List<String> tokens = new ArrayList<String>();
+		tokens.add( "" );
+		for( int start = 0, end = 1, length = 1; length <= 4; length++ )
+		{
+			for( int i = start; i < end; i++ )
+			{
+				for( int j = 0; j < characters.length; j++ )
+				{
+					tokens.add( tokens.get( i ) + characters[j] );
+				}
+			}
+			start = end;
+			end = tokens.size();
+		}
+
+		for( String token : tokens )
+		{
+			boolean approachable = false;
+			boolean allowed = false;
+			for( IProductionRule rule : automaton.getCompiledRules() )
+			{
+				approachable |= rule.isApproaching( token );
+				allowed |= rule.isAllowed( token );
+			}
+			assertEquals( "approachable[" + token + "]", approachable, grammar.isApproachable( token ) );
+			assertEquals( "allowed[" + token + "]", allowed, grammar.isAllowed( token ) );
+		}
+	}
+
+	public void testProductionRuleAutomatonFallback()
+	{
+		List<IProductionRule> rules = new ArrayList<IProductionRule>();
+		rules.add( new ProductionRule( "Numeric Rule", "[0-9]+" ) );
+		rules.add( new ProductionRule( "Hex Rule", "0x(?=[0-9a-f])[0-9a-f]*" ) );
+
+		ProductionRuleAutomaton automaton = ProductionRuleAutomaton.compile( rules );
+		assertEquals( 1, automaton.getCompiledRules().size() );
+		assertEquals( "Hex Rule", automaton.getFallbackRules().get( 0 ).getName() );
+		assertTrue( automaton.isAllowed( "12" ) );
+		assertTrue( automaton.isAllowed( "0x1f" ) );
+		assertFalse( automaton.isAllowed( "0x" ) );
+	}
+
+	/**
+	 * Returns the values of tokens
+	 */
+	private String getValues( List<ExpressionToken> tokens )
+	{
+		List<String> values = new ArrayList<String>();
+		for( ExpressionToken token : tokens )
+		{
+			values.add( token.getValue() );
+		}
+		return values.toString();
+	}
+
 	/**
 	 * Returns the token value from top of list and remove from list.
 	 * 